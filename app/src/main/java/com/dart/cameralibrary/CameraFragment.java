@@ -16,33 +16,44 @@ import android.widget.RadioGroup;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import com.dart.core.net.Frame;
+import com.dart.core.net.LegacyOcrClient;
+import com.dart.core.net.OcrLanguage;
+import com.dart.core.net.PayloadWriter;
+import com.dart.core.net.OcrRouter;
+import com.dart.core.pipeline.StagedPipeline;
+import com.dart.core.skew.MomentSkewEstimator;
+import com.dart.core.skew.SkewBox;
+import com.dart.core.skew.SkewCriteria;
+import com.dart.core.skew.SkewEstimate;
+import com.dart.core.skew.SkewSearch;
+import com.dart.core.threshold.AdaptiveThreshold;
+import com.dart.core.trace.Tracer;
 import com.dart.paracamera.Camera;
 
-import org.opencv.android.Utils;
 import org.opencv.core.Core;
 import org.opencv.core.CvException;
 import org.opencv.core.CvType;
 import org.opencv.core.Mat;
-import org.opencv.core.MatOfPoint;
+import org.opencv.core.MatRowCursor;
+import org.opencv.core.MatScope;
 import org.opencv.core.Point;
 import org.opencv.core.RotatedRect;
-import org.opencv.core.Scalar;
 import org.opencv.core.Size;
 import org.opencv.imgproc.Imgproc;
 
 import java.io.BufferedReader;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.lang.ref.WeakReference;
 import java.net.InetAddress;
 import java.net.Socket;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 
 import static android.content.ContentValues.TAG;
-import static org.opencv.imgproc.Imgproc.ADAPTIVE_THRESH_MEAN_C;
 import static org.opencv.imgproc.Imgproc.THRESH_BINARY;
 
 /**
@@ -64,7 +75,6 @@ public class CameraFragment extends Fragment {
     public static Boolean lFlag = false;
 
     private Camera camera; // Instance of the ParaCamera library for handling camera operations.
-    private Socket socket; // Socket for network communication with the OCR server.
 
     // Flags to manage network connection status.
     public boolean clientConnected = false;
@@ -75,12 +85,88 @@ public class CameraFragment extends Fragment {
     // Network Configuration
     /** Port number for the OCR server. */
     private static final int SERVERPORT = 10000;
-    /** Default IP address of the OCR server. Can be changed via {@link #setServerIp(String)}. */
+    /**
+     * Default IP address of the OCR server. Can be changed via {@link #setServerIp(String)}.
+     * With {@link #FRAMED_PROTOCOL} this may be a comma-separated list of {@code host} or
+     * {@code host:port} entries; requests are then routed over all of them ({@link OcrRouter}).
+     * The legacy protocol uses the first entry.
+     */
     public static String SERVER_IP = "111.68.101.28";
+    /**
+     * True to talk to the server with length-prefixed frames over a keep-alive connection
+     * ({@link Frame}); false for the original one-socket-per-image protocol. Off until the
+     * deployed server speaks framing: it only understands the legacy protocol.
+     */
+    public static boolean FRAMED_PROTOCOL = false;
+    /**
+     * True to upload thresholded images in the run-length coded 1-bit format
+     * ({@link com.dart.core.image.BilevelCodec}) instead of PNG. Requires {@link #FRAMED_PROTOCOL}
+     * and a server that decodes the format, which the deployed one does not.
+     */
+    public static boolean BILEVEL_TRANSPORT = false;
+    /**
+     * True to crop each envelope to its address block ({@link com.dart.core.layout.AddressBlockLocator})
+     * before encoding, so stamps, logos, borders and the sender block are not uploaded.
+     */
+    public static boolean LOCATE_ADDRESS = true;
+    /**
+     * True to split the address into text lines on the phone and upload them as one multi-part
+     * request ({@link com.dart.core.image.LinesCodec}). Requires {@link #BILEVEL_TRANSPORT} and a
+     * server that understands the multi-part bundle, which the deployed one does not.
+     */
+    public static boolean SEGMENT_LINES = false;
+    /**
+     * True to encode each envelope straight into the upload stream, sending it in parts while
+     * later rows are still being encoded, instead of building the whole payload in memory first.
+     */
+    public static boolean STREAMING_UPLOAD = true;
+    /**
+     * True to choose the crop, resolution and encoding of each envelope from the measured link
+     * speed ({@link com.dart.core.adaptive.UploadPlanner}), so that uploads aim for
+     * {@link #UPLOAD_TARGET_MS}; false to always send the full capture in the fixed format.
+     */
+    public static boolean ADAPTIVE_UPLOAD = true;
+    /** End-to-end time, from encoding to the OCR result, adaptive uploads aim for, in milliseconds. */
+    public static long UPLOAD_TARGET_MS = 8000;
+    /**
+     * True to record how long each step of every capture takes ({@link CaptureTrace}), logging
+     * a per-stage summary and writing a trace file every few captures.
+     */
+    public static boolean TRACE_CAPTURES = true;
+    /**
+     * True to binarise captures with the pure-Java {@link com.dart.core.threshold.AdaptiveThreshold}
+     * engine, using {@link #THRESHOLD_METHOD}, and median filter, instead of OpenCV's
+     * {@code adaptiveThreshold} and {@code medianBlur}. Both run as one pass over bands of the
+     * image ({@link com.dart.core.tile.TiledExecutor}), on all cores on API 21 and later.
+     */
+    public static boolean JAVA_THRESHOLD = false;
+    /** Threshold rule of the Java engine; MEAN gives the same pixels as the OpenCV step. */
+    public static AdaptiveThreshold.Method THRESHOLD_METHOD = AdaptiveThreshold.Method.MEAN;
+    /**
+     * True for {@link #correctSkew(Mat)} to estimate skew in one streaming pass with
+     * {@link MomentSkewEstimator}, instead of listing every ink pixel for {@code minAreaRect}.
+     */
+    public static boolean MOMENT_SKEW = false;
+    /** Rectangle rule of the streaming estimator; MIN_AREA matches the OpenCV path. */
+    public static final MomentSkewEstimator.Method MOMENT_SKEW_METHOD = MomentSkewEstimator.Method.MIN_AREA;
+    /** Maximum number of envelopes awaiting recognition on the framed connection at once. */
+    static final int OCR_WINDOW = 3;
+    /** Size of the chunks the legacy protocol sends while an image is being encoded. */
+    private static final int LEGACY_CHUNK = 16 * 1024;
+    /** Time allowed for the server to answer one envelope, in milliseconds. */
+    private static final long OCR_TIMEOUT_MS = 60000;
+
+    private static OcrRouter ocrClient;     // Shared framed client, see ocrClient().
+    private static String ocrEndpoints;     // SERVER_IP the shared client was built for.
+    private static WeakReference<CameraFragment> visibleFragment; // Resumed fragment, for queued results.
 
     // Image data
     private Bitmap bitmap; // Holds the captured image.
     byte[] array;          // Byte array representation of the processed image, ready for network transmission.
+    private boolean jobInFlight; // True while this fragment's capture is in the pipeline (main thread only).
+    private long cameraOpened;   // Tracer.now() when the camera app was launched.
+
+    private final Handler uiHandler = new Handler(); // Posts pipeline progress to the UI thread.
 
     /**
      * Sets the server IP address.
@@ -138,9 +224,11 @@ public class CameraFragment extends Fragment {
                 .setImageFormat(Camera.IMAGE_JPEG) // Desired image format.
                 .setCompression(75)              // JPEG compression quality.
                 .setImageHeight(1000)            // Target height for the image, maintaining aspect ratio.
+                .setBitmapPool(CapturePools.CAMERA_BITMAPS) // Reuse bitmaps across captures.
                 .build(this);                    // Build the camera instance for this fragment.
         try {
             // Open the camera and capture a picture.
+            cameraOpened = Tracer.now();
             camera.takePicture();
         } catch (Exception e) {
             e.printStackTrace();
@@ -153,6 +241,10 @@ public class CameraFragment extends Fragment {
      * {@link #startActivityForResult(Intent, int)}. This follows the
      * related Activity API as described there in
      * {@link Fragment#onActivityResult(int, int, Intent)}.
+     * <p>
+     * Decoding, thresholding, PNG encoding and the upload all run on the background
+     * {@link CapturePipeline}; this method only queues the capture. The thresholded bitmap
+     * and the OCR text are posted back to the UI when they are ready.
      *
      * @param requestCode The integer request code originally supplied to
      * startActivityForResult(), allowing you to identify who this
@@ -167,62 +259,97 @@ public class CameraFragment extends Fragment {
         super.onActivityResult(requestCode, resultCode, data);
 
         if (requestCode == Camera.REQUEST_TAKE_PHOTO) { // Check if this is the result from ParaCamera
-            Bitmap currentBitmap = camera.getCameraBitmap(); // Get the captured bitmap from ParaCamera.
-
-            Log.i(TAG, "BITMAP CREATED!");
-            if (currentBitmap != null) {
-                this.bitmap = currentBitmap; // Store the bitmap.
-                Mat mrgba = new Mat(); // OpenCV Mat object for image processing.
-
-                // Convert Bitmap to Mat for OpenCV processing.
-                Utils.bitmapToMat(this.bitmap, mrgba);
-
-                // --- OpenCV Image Preprocessing Steps ---
-                // 1. Convert to Grayscale: Simplifies image, reduces noise, necessary for many thresholding algorithms.
-                Imgproc.cvtColor(mrgba, mrgba, Imgproc.COLOR_RGB2GRAY, 3);
-                // 2. Adaptive Thresholding: Converts grayscale image to binary (black & white).
-                //    ADAPTIVE_THRESH_MEAN_C: Threshold value is the mean of the neighbourhood area.
-                //    THRESH_BINARY: Pixels > threshold become white (255), else black (0).
-                //    15: Block size (size of the pixel neighborhood).
-                //    9: Constant subtracted from the mean.
-                Imgproc.adaptiveThreshold(mrgba, mrgba, 255, ADAPTIVE_THRESH_MEAN_C, THRESH_BINARY, 15, 9);
-                // 3. Median Blur: Reduces salt-and-pepper noise.
-                //    5: Kernel size (must be odd).
-                Imgproc.medianBlur(mrgba,mrgba,5);
-
-                Log.i(TAG, "Bitmap Thresholded");
-                Toast.makeText(getActivity().getApplicationContext(), "Bitmap Thresholded!", Toast.LENGTH_SHORT).show();
-
-                // Convert the processed Mat back to Bitmap to display.
-                Utils.matToBitmap(mrgba, this.bitmap);
-                picFrame.setImageBitmap(this.bitmap); // Display the processed image.
-
-                // Convert the processed bitmap to a byte array for network transmission.
-                ByteArrayOutputStream bos = new ByteArrayOutputStream();
-                this.bitmap.compress(Bitmap.CompressFormat.PNG, 0, bos); // PNG is lossless, compression value is ignored.
-                array = bos.toByteArray();
-
-                // If not already connected, start the client thread to send the image to the server.
-                if (!clientConnected) {
-                    if (!SERVER_IP.equals("")) {
-                        Thread cThread = new Thread(new ClientThread());
-                        cThread.start();
-                    } else {
-                        Toast.makeText(getActivity().getApplicationContext(), "Server IP not set!", Toast.LENGTH_LONG).show();
+            if (SERVER_IP.equals("")) {
+                Toast.makeText(getActivity().getApplicationContext(), "Server IP not set!", Toast.LENGTH_LONG).show();
+                return;
+            }
+            StagedPipeline<CaptureJob, CaptureJob> pipeline;
+            try {
+                pipeline = CapturePipeline.get(getActivity());
+            } catch (IOException e) {
+                Log.e(TAG, "Cannot open upload spool", e);
+                Toast.makeText(getActivity().getApplicationContext(), "Storage error: " + e.getMessage(), Toast.LENGTH_LONG).show();
+                return;
+            }
+            Tracer tracer = CaptureTrace.TRACER;
+            tracer.setEnabled(TRACE_CAPTURES);
+            long trace = tracer.newTrace();
+            tracer.end(trace, CaptureTrace.CAMERA, cameraOpened);
+            CaptureJob job = new CaptureJob(camera, lFlag, "capture_" + System.currentTimeMillis(), previewListener,
+                    trace, cameraOpened);
+            job.mark = Tracer.now();
+            if (pipeline.submit(job, resultListener) < 0) {
+                Toast.makeText(getActivity().getApplicationContext(), "Still processing previous envelopes, try again", Toast.LENGTH_LONG).show();
+                return;
+            }
+            jobInFlight = true;
+            prewarmOcr(); // Connect while the capture is decoded and preprocessed.
+            Toast.makeText(getActivity().getApplicationContext(), "Processing...", Toast.LENGTH_SHORT).show();
+        }
+    }
+
+    /**
+     * Posts the thresholded bitmap to the UI as soon as the preprocess stage produces it.
+     * Called on a pipeline worker thread.
+     */
+    private final CaptureJob.PreviewListener previewListener = new CaptureJob.PreviewListener() {
+        @Override
+        public void onPreview(final Bitmap processed) {
+            uiHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (!isAdded()) {
+                        return;
                     }
-                    // These toasts might be premature as connection isn't confirmed yet.
-                    Toast.makeText(getActivity().getApplicationContext(), "Server Connected!", Toast.LENGTH_SHORT).show();
-                    Toast.makeText(getActivity().getApplicationContext(), "Sending for OCR...", Toast.LENGTH_SHORT).show();
+                    bitmap = processed;
+                    picFrame.setImageBitmap(processed); // Display the processed image.
+                    Log.i(TAG, "Bitmap Thresholded");
+                    Toast.makeText(getActivity().getApplicationContext(), "Waiting for Result...", Toast.LENGTH_LONG).show();
                 }
+            });
+        }
+    };
 
-                Toast.makeText(getActivity().getApplicationContext(), "Waiting for Result...", Toast.LENGTH_LONG).show();
-
+    /**
+     * Receives the outcome of a capture on the main thread.
+     */
+    private final StagedPipeline.Listener<CaptureJob> resultListener = new StagedPipeline.Listener<CaptureJob>() {
+        @Override
+        public void onComplete(long jobId, CaptureJob job) {
+            long delivered = CaptureTrace.TRACER.end(job.trace, CaptureTrace.POST, job.mark);
+            jobInFlight = false;
+            if (!isAdded()) {
+                releaseCapture(); // The fragment was destroyed while the job was in flight.
+                return;
+            }
+            if (job.queued) {
+                Toast.makeText(getActivity().getApplicationContext(),
+                        "No connection, envelope queued (" + CapturePipeline.pendingUploads() + " waiting)",
+                        Toast.LENGTH_LONG).show();
+                return;
             }
-            else {
-                Toast.makeText(getActivity().getApplicationContext(), "Picture not taken!", Toast.LENGTH_SHORT).show();
+            ocrOutput = job.text;
+            showOCRResult();
+            long shown = CaptureTrace.TRACER.end(job.trace, CaptureTrace.DISPLAY, delivered);
+            CaptureTrace.TRACER.record(job.trace, CaptureTrace.TOTAL, job.started, shown);
+            CaptureTrace.completed(getActivity());
+            if (job.cached) {
+                Toast.makeText(getActivity().getApplicationContext(), "Same envelope as before, result reused", Toast.LENGTH_SHORT).show();
             }
         }
-    }
+
+        @Override
+        public void onFailure(long jobId, String stage, Throwable error) {
+            jobInFlight = false;
+            Log.e(TAG, "Capture failed in stage " + stage, error);
+            if (!isAdded()) {
+                releaseCapture(); // The fragment was destroyed while the job was in flight.
+                return;
+            }
+            String message = "decode".equals(stage) ? "Picture not taken!" : "OCR failed: " + error.getMessage();
+            Toast.makeText(getActivity().getApplicationContext(), message, Toast.LENGTH_SHORT).show();
+        }
+    };
 
     /**
      * Displays the OCR result received from the server in the TextView.
@@ -232,6 +359,38 @@ public class CameraFragment extends Fragment {
             textView.setVisibility(View.VISIBLE);
     }
 
+    /**
+     * Shows the result of an envelope that was queued while offline and uploaded later by the
+     * spool drainer. Displayed in the visible fragment if there is one, otherwise as a toast.
+     * Must be called on the main thread.
+     *
+     * @param context Application context for the toast.
+     * @param label   Label of the queued capture.
+     * @param text    The recognised text.
+     */
+    static void showQueuedResult(Context context, String label, String text) {
+        CameraFragment fragment = visibleFragment == null ? null : visibleFragment.get();
+        if (fragment != null && fragment.isAdded()) {
+            fragment.ocrOutput = text;
+            fragment.showOCRResult();
+        }
+        Toast.makeText(context, "Queued envelope " + label + " recognised", Toast.LENGTH_SHORT).show();
+    }
+
+    @Override
+    public void onResume() {
+        super.onResume();
+        visibleFragment = new WeakReference<>(this);
+    }
+
+    @Override
+    public void onPause() {
+        super.onPause();
+        if (visibleFragment != null && visibleFragment.get() == this) {
+            visibleFragment = null;
+        }
+    }
+
     /**
      * Called when the fragment is no longer in use. This is called
      * after {@link #onStop()} and before {@link #onDetach()}.
@@ -240,17 +399,22 @@ public class CameraFragment extends Fragment {
     @Override
     public void onDestroy() {
         super.onDestroy();
-        // Clean up ParaCamera image file.
+        // While a capture is still in the pipeline it may be reading the image file or encoding
+        // the bitmap; the result listener cleans up once the job has left the pipeline.
+        if (!jobInFlight) {
+            releaseCapture();
+        }
+    }
+
+    /**
+     * Deletes the ParaCamera image file and gives the capture's bitmap back to the pool.
+     */
+    private void releaseCapture() {
+        // Clean up ParaCamera image file; the camera hands its bitmap, the one shown, to the pool.
         if (camera != null) {
             camera.deleteImage();
         }
-        // Recycle the bitmap to free memory.
-        if (bitmap != null) {
-            bitmap.recycle();
-            bitmap = null;
-        }
-        // Consider closing the socket if it's still open.
-        // However, socket management is primarily within ClientThread/ServerThread.
+        bitmap = null;
     }
 
     /**
@@ -261,13 +425,18 @@ public class CameraFragment extends Fragment {
      * @param angle The rotation angle in degrees. Positive values mean counter-clockwise rotation.
      */
     public void deskew(Mat src, double angle) {
-        Point center = new Point(src.width() / 2, src.height() / 2); // Define the center of rotation.
-        Mat rotImage = Imgproc.getRotationMatrix2D(center, angle, 1.0); // Get the 2x3 rotation matrix. 1.0 is scale.
-        Size size = new Size(src.width(), src.height()); // Define the size of the output image (same as input).
-        // Apply the affine transformation (rotation).
-        // INTER_LINEAR: Bilinear interpolation for better quality.
-        // CV_WARP_FILL_OUTLIERS: Fills outlier pixels (not used in this version of OpenCV constant).
-        Imgproc.warpAffine(src, src, rotImage, size, Imgproc.INTER_LINEAR + Imgproc.CV_WARP_FILL_OUTLIERS);
+        MatScope scope = MatScope.open(); // Frees the rotation matrix on return, not at finalization.
+        try {
+            Point center = new Point(src.width() / 2, src.height() / 2); // Define the center of rotation.
+            Mat rotImage = Imgproc.getRotationMatrix2D(center, angle, 1.0); // Get the 2x3 rotation matrix. 1.0 is scale.
+            Size size = new Size(src.width(), src.height()); // Define the size of the output image (same as input).
+            // Apply the affine transformation (rotation).
+            // INTER_LINEAR: Bilinear interpolation for better quality.
+            // CV_WARP_FILL_OUTLIERS: Fills outlier pixels (not used in this version of OpenCV constant).
+            Imgproc.warpAffine(src, src, rotImage, size, Imgproc.INTER_LINEAR + Imgproc.CV_WARP_FILL_OUTLIERS);
+        } finally {
+            scope.close();
+        }
     }
 
     /**
@@ -276,41 +445,51 @@ public class CameraFragment extends Fragment {
      * finding contours of white pixels, determining the minimum area rectangle enclosing these pixels,
      * and then using the angle of this rectangle to deskew the image.
      *
+     * With {@link #MOMENT_SKEW} set, a grayscale image is measured in one pass by
+     * {@link #momentSkew(Mat)} instead, without copying it or listing its pixels.
+     *
      * @param img The input {@link Mat} (image) to be skew-corrected.
      */
     public void correctSkew(Mat img) {
-        Mat temp = img.clone(); // Work on a copy to avoid modifying the original image prematurely.
-        // Binarize the image: pixels with value > 200 become 255 (white), others 0 (black).
-        Imgproc.threshold(temp, temp, 200, 255, THRESH_BINARY);
-
-        // Invert the colors: objects become white, background black. This is often needed for contour detection.
-        Core.bitwise_not(temp, temp);
-        // Define a structuring element for morphological operations.
-        Mat element = Imgproc.getStructuringElement(Imgproc.MORPH_RECT, new Size(3, 3));
-
-        // Erode the image: shrinks white regions, helps to remove small noise or disconnect weakly connected components.
-        Imgproc.erode(temp, temp, element);
-
-        // Find all non-zero (white) pixels.
-        Mat wLocMat = Mat.zeros(img.size(), temp.type());
-        Core.findNonZero(temp, wLocMat);
-
-        // Convert the locations of non-zero pixels to MatOfPoint.
-        MatOfPoint matOfPoint = new MatOfPoint(wLocMat);
-
-        // Convert MatOfPoint to MatOfPoint2f for minAreaRect.
-        org.opencv.core.MatOfPoint2f mat2f = new org.opencv.core.MatOfPoint2f();
-        matOfPoint.convertTo(mat2f, CvType.CV_32FC2);
-
-        // Find the minimum area rotated rectangle that encloses all white pixels.
-        RotatedRect rotatedRect = Imgproc.minAreaRect(mat2f);
-
-        // Draw the contour of the found rectangle (optional, for visualization).
-        Point[] vertices = new Point[4];
-        rotatedRect.points(vertices);
-        List<MatOfPoint> boxContours = new ArrayList<>();
-        boxContours.add(new MatOfPoint(vertices));
-        Imgproc.drawContours(temp, boxContours, 0, new Scalar(128, 128, 128), -1);
+        if (MOMENT_SKEW && img.type() == CvType.CV_8UC1) {
+            SkewBox box = momentSkew(img);
+            Log.i(TAG, "MOMENT SKEW: " + box);
+            if (box != null) {
+                deskew(img, -box.angle); // The box tilts counter-clockwise by angle.
+            }
+            return;
+        }
+        // Work on a pooled copy to avoid modifying the original image prematurely.
+        Mat temp = CapturePools.MATS.acquire(img.cols(), img.rows(), img.type());
+        MatScope scope = MatScope.open(); // Closes the point lists below on the way out.
+        RotatedRect rotatedRect;
+        try {
+            Mat wLocMat = new Mat(); // Sized by findNonZero to the number of white pixels.
+            org.opencv.core.MatOfPoint2f mat2f = new org.opencv.core.MatOfPoint2f();
+            img.copyTo(temp);
+            // Binarize the image: pixels with value > 200 become 255 (white), others 0 (black).
+            Imgproc.threshold(temp, temp, 200, 255, THRESH_BINARY);
+
+            // Invert the colors: objects become white, background black. This is often needed for contour detection.
+            Core.bitwise_not(temp, temp);
+
+            // Erode the image: shrinks white regions, helps to remove small noise or disconnect weakly connected components.
+            Imgproc.erode(temp, temp, erodeElement());
+
+            // Find all non-zero (white) pixels.
+            Core.findNonZero(temp, wLocMat);
+
+            // Convert the CV_32SC2 locations to CV_32FC2 for minAreaRect, in native memory: the
+            // points never become Java objects, and no MatOfPoint header is needed to do it.
+            wLocMat.convertTo(mat2f, CvType.CV_32FC2);
+
+            // Find the minimum area rotated rectangle that encloses all white pixels.
+            rotatedRect = Imgproc.minAreaRect(mat2f);
+        } finally {
+            // Free the point lists now, and return the copy for the next capture.
+            scope.close();
+            CapturePools.MATS.release(temp);
+        }
 
         // Adjust angle if width is greater than height (common for text lines).
         if (rotatedRect.size.width > rotatedRect.size.height) {
@@ -322,6 +501,49 @@ public class CameraFragment extends Fragment {
         deskew(img, rotatedRect.angle);
     }
 
+    /**
+     * Shared one-pass skew estimator used by {@link #momentSkew(Mat)}; its row buffers are
+     * reused across captures, so access is synchronized on the instance.
+     */
+    private static final MomentSkewEstimator MOMENT_ESTIMATOR = new MomentSkewEstimator.Builder()
+            .setMethod(MOMENT_SKEW_METHOD) // The hull's smallest rectangle, like minAreaRect.
+            .setThreshold(200)             // Same foreground as the OpenCV path: 200 and below,
+            .setErode(true)                // eroded by a 3x3 square.
+            .build();
+
+    /**
+     * Measures the skew of a grayscale image straight from its native memory.
+     *
+     * @param img A CV_8UC1 image, continuous or not.
+     * @return The skew and the rectangle bounding the ink, or null if there is none.
+     */
+    private static SkewBox momentSkew(Mat img) {
+        ByteBuffer pixels;
+        int stride;
+        if (img.isContinuous()) {
+            pixels = img.byteBuffer();
+            stride = img.cols();
+        } else {
+            MatRowCursor rows = img.rowCursor();
+            pixels = rows.buffer();
+            stride = rows.step();
+        }
+        synchronized (MOMENT_ESTIMATOR) {
+            return MOMENT_ESTIMATOR.estimate(pixels, 0, stride, img.cols(), img.rows());
+        }
+    }
+
+    /** 3x3 rectangle for eroding in {@link #correctSkew(Mat)}; created once OpenCV is loaded. */
+    private static Mat erodeElement;
+
+    private static synchronized Mat erodeElement() {
+        if (erodeElement == null) {
+            // Kept for good, so out of the scope of the call that happens to create it.
+            erodeElement = MatScope.detach(Imgproc.getStructuringElement(Imgproc.MORPH_RECT, new Size(3, 3)));
+        }
+        return erodeElement;
+    }
+
     /**
      * Detects and draws line segments in an image using OpenCV's Line Segment Detector (LSD).
      *
@@ -355,103 +577,65 @@ public class CameraFragment extends Fragment {
      * @return The rotated {@link Mat}.
      */
     private static Mat RotateImage(Mat rotImg, double theta) {
-        Mat rotatedImage = new Mat();
-        // Specific handling for angles near 90 degrees: transpose the image.
-        // This might be an optimization or a way to handle specific orientations.
-        if (theta >= 92 && theta <= 93) {
-            Core.transpose(rotImg, rotatedImage);
-        } else {
-            Point center = new Point(rotImg.cols() / 2.0, rotImg.rows() / 2.0); // Center of rotation.
-            Mat rotMatrix = Imgproc.getRotationMatrix2D(center, theta, 1.0); // Get rotation matrix.
-            Imgproc.warpAffine(rotImg, rotatedImage, rotMatrix, rotImg.size()); // Apply rotation.
+        MatScope scope = MatScope.open(); // Frees the rotation matrix on return.
+        try {
+            Mat rotatedImage = new Mat();
+            // Specific handling for angles near 90 degrees: transpose the image.
+            // This might be an optimization or a way to handle specific orientations.
+            if (theta >= 92 && theta <= 93) {
+                Core.transpose(rotImg, rotatedImage);
+            } else {
+                Point center = new Point(rotImg.cols() / 2.0, rotImg.rows() / 2.0); // Center of rotation.
+                Mat rotMatrix = Imgproc.getRotationMatrix2D(center, theta, 1.0); // Get rotation matrix.
+                Imgproc.warpAffine(rotImg, rotatedImage, rotMatrix, rotImg.size()); // Apply rotation.
+            }
+            return scope.keep(rotatedImage); // The caller owns the result.
+        } finally {
+            scope.close();
         }
-        return rotatedImage;
     }
 
+    /**
+     * Shared coarse-to-fine skew search used by {@link #skewDetectImageRotation(Mat)}.
+     * Its buffers are reused across captures, so access is synchronized on the instance.
+     */
+    private static final SkewSearch SKEW_SEARCH = new SkewSearch.Builder()
+            .setRange(-15, 15)                     // Same range as the original whole-degree scan.
+            .setScale(4)                           // Score candidate angles on a 1/4-scale copy.
+            .setTolerance(0.1)                     // Refine to 0.1 degrees on the full image.
+            .setCriterion(SkewCriteria.VARIANCE)   // Smooth around the optimum, unlike the peak.
+            .build();
+
     /**
      * Detects the skew angle of an image, primarily for text images.
-     * It works by rotating the image by small angles, calculating horizontal projections
-     * of white pixels for each rotation, and finding the angle that maximizes a criterion function
-     * based on these projections (likely looking for strongest horizontal lines).
+     * The pixels are read straight from native memory through a direct buffer view (row by
+     * row for a non-continuous submat, with no intermediate clone) and handed to
+     * {@link SkewSearch}, which scores whole-degree angles on a reduced copy and then refines
+     * the best one to a tenth of a degree on the full image. Small skews (below one degree)
+     * are no longer skipped.
      *
-     * @param mat The input {@link Mat} (expected to be a binary image where text is white).
+     * @param mat The input {@link Mat} (expected to be a single-channel binary image where text is white).
      * @return The detected skew angle in degrees.
      */
-    private static int skewDetectImageRotation(Mat mat) {
-        int[] projections; // Array to store horizontal projection profile.
-        HashMap<Integer, Double> angle_measure = new HashMap<>(); // Map to store angle and its corresponding criterion value.
-
-        // Iterate through a range of small angles.
-        for (int theta = -15; theta <= 15; theta++) {
-            if (theta == 0 || theta == -1 || theta == 1) // Skip minor angles or zero.
-                continue;
-            Mat rotImage = RotateImage(mat.clone(), -theta); // Rotate image by -theta. Use clone to preserve original 'mat'.
-            projections = new int[rotImage.rows()]; // Initialize projection array for current rotated image.
-            // Calculate horizontal projection: sum of white pixels per row.
-            for (int i = 0; i < rotImage.rows(); i++) {
-                for (int j = 0; j < rotImage.cols(); j++) {
-                    double[] pixVal = rotImage.get(i, j);
-                    if (pixVal != null && pixVal[0] == 255) { // Check for white pixel.
-                        projections[i]++;
-                    }
-                }
-            }
-            angle_measure.put(theta, criterion_func(projections)); // Store angle and its criterion value.
-        }
-
-        int angle = 0; // Best angle found.
-        double val = Double.NEGATIVE_INFINITY; // Max criterion value found.
-        // Find the angle that yielded the maximum criterion value.
-        for (HashMap.Entry<Integer, Double> entry : angle_measure.entrySet()) {
-            if (val < entry.getValue()) {
-                val = entry.getValue();
-                angle = entry.getKey();
+    private static double skewDetectImageRotation(Mat mat) {
+        int cols = mat.cols();
+        int rows = mat.rows();
+        byte[] pixels = new byte[cols * rows];
+        if (mat.isContinuous()) {
+            mat.byteBuffer().get(pixels); // Copied from the Mat's memory, no JNI call per pixel.
+        } else {
+            MatRowCursor cursor = mat.rowCursor();
+            while (cursor.next()) {
+                cursor.get(pixels, cursor.row() * cols);
             }
         }
-        return angle;
-    }
 
-    /**
-     * Criterion function used in skew detection.
-     * Calculates a measure from the horizontal projection profile.
-     * In this case, it simply returns the maximum value in the projection array.
-     * A higher maximum suggests stronger horizontal alignment of pixels (e.g., text lines).
-     *
-     * @param projections An array representing the horizontal projection profile (sum of white pixels per row).
-     * @return The maximum value in the projections array.
-     */
-    private static double criterion_func(int[] projections) {
-        double max = 0;
-        for (int projection : projections) {
-            if (max < projection) {
-                max = projection;
-            }
+        SkewEstimate estimate;
+        synchronized (SKEW_SEARCH) {
+            estimate = SKEW_SEARCH.search(pixels, cols, rows);
         }
-        return max;
-    }
-
-    /**
-     * Calculates the new row position of a point (x1, y1) after rotating it by theta degrees
-     * around the center (x0, y0) of the given matrix 'mat'.
-     * This seems to be a helper function, possibly for transforming coordinates during rotation,
-     * though it's not directly used by other skew correction methods in this file.
-     *
-     * @param y1 Original y-coordinate of the point.
-     * @param x1 Original x-coordinate of the point.
-     * @param theta Rotation angle in degrees.
-     * @param mat The {@link Mat} defining the coordinate system and center of rotation.
-     * @return The new row (y-coordinate) after rotation.
-     */
-    private static int rotate(double y1, double x1, int theta, Mat mat) {
-        double x0 = mat.cols() / 2.0; // Center x-coordinate.
-        double y0 = mat.rows() / 2.0; // Center y-coordinate.
-        double thetaRad = Math.toRadians(theta); // Convert angle to radians for Math functions.
-
-        // Standard 2D rotation formulas.
-        // int new_col = (int) ((x1 - x0) * Math.cos(thetaRad) - (y1 - y0) * Math.sin(thetaRad) + x0);
-        int new_row = (int) ((x1 - x0) * Math.sin(thetaRad) + (y1 - y0) * Math.cos(thetaRad) + y0);
-
-        return new_row;
+        Log.i(TAG, "SKEW: " + estimate);
+        return estimate.angle;
     }
 
     /**
@@ -460,73 +644,144 @@ public class CameraFragment extends Fragment {
      * and receives the OCR result. Updates the UI with the result.
      */
     public class ClientThread implements Runnable {
-        private BufferedReader input; // For reading data from the server.
         Handler handler = new Handler(); // Handler to post UI updates from this background thread.
 
         @Override
         public void run() {
             try {
-                InetAddress serverAddr = InetAddress.getByName(SERVER_IP); // Resolve server IP.
-                Log.d("ClientActivity", "C: Connecting...");
-                socket = new Socket(serverAddr, SERVERPORT); // Establish socket connection.
                 clientConnected = true; // Set connection flag.
-                StringBuilder stringBuilder = new StringBuilder(); // To accumulate server response.
-
-                // --- Send data to server ---
-                try {
-                    Log.d("ClientActivity", "C: Sending command.");
-                    OutputStream output = socket.getOutputStream(); // Get output stream.
-                    Log.d("ClientActivity", "C: image writing.");
-
-                    // Prepend language flag if English is selected.
-                    // The server likely uses this to choose the OCR language model.
-                    if (lFlag) { // lFlag is true for English
-                        output.write("ENGLISH\n".getBytes());
+                ocrOutput = requestOcr(array, Frame.FORMAT_PNG, lFlag);
+                Log.d("Server Reply: ", "Server Reply Received!");
+
+                // Update UI with the received OCR text.
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        textView.setText(ocrOutput);
                     }
-                    output.write(array); // Write image byte array.
-                    output.flush();      // Ensure data is sent.
-                    Log.d("ClientActivity", "C: Sent.");
-                }
-                catch(Exception e){
-                        e.printStackTrace();
-                        // Consider closing socket or setting clientConnected = false here.
+                });
+            } catch (Exception e) {
+                Log.e("ClientActivity", "C: Error in client thread", e);
+            }
+            clientConnected = false;
+        }
+    }
+
+    /**
+     * Sends an encoded image to the OCR server and waits for the recognised text.
+     * With {@link #FRAMED_PROTOCOL} set, the request is pipelined over a shared framed
+     * connection: other captures may have requests outstanding on it at the same time, up to
+     * {@link #OCR_WINDOW}, and replies are matched by request id. If {@link #SERVER_IP} lists
+     * several servers, the request goes to the one expected to answer first and fails over to
+     * the others. Otherwise it falls back to {@link #requestOcrLegacy}. Safe to call from any
+     * background thread.
+     *
+     * @param image   The encoded image.
+     * @param format  Encoding of the image, one of the {@link Frame} request formats.
+     * @param english True to use the English model, false for Urdu.
+     * @return The recognised text.
+     * @throws IOException If the server cannot be reached, the exchange fails or times out.
+     */
+    static String requestOcr(final byte[] image, int format, boolean english) throws IOException {
+        if (!FRAMED_PROTOCOL) {
+            return requestOcr(new PayloadWriter() {
+                @Override
+                public void writeTo(OutputStream out) throws IOException {
+                    out.write(image);
                 }
+            }, format, english);
+        }
+        return ocrClient().recognise(english ? OcrLanguage.ENGLISH : OcrLanguage.URDU, format, image);
+    }
 
-                // --- Receive data from server ---
-                try{
-                    this.input = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-                    String line;
-                    // Read lines until end of stream.
-                    while ((line = input.readLine()) != null) {
-                        stringBuilder.append(line).append('\n');
-                    }
-                    Log.d("Server Reply: ", "Server Reply Received!");
-                    ocrOutput = stringBuilder.toString();
-                    // Remove trailing newline if server sends one, for cleaner display.
-                    if (ocrOutput.endsWith("\n")) {
-                        ocrOutput = ocrOutput.substring(0, ocrOutput.length() -1);
-                    }
+    /**
+     * Like {@link #requestOcr(byte[], int, boolean)}, but the image is encoded by {@code image}
+     * while it is being sent: in {@link Frame#KIND_PART} frames on the framed connection, or
+     * straight into the socket with the legacy protocol. The writer is not called if the
+     * server cannot be reached.
+     *
+     * @param image   Writes the encoded image.
+     * @param format  Encoding of the image, one of the {@link Frame} request formats.
+     * @param english True to use the English model, false for Urdu.
+     * @return The recognised text.
+     * @throws IOException If the server cannot be reached, the exchange or the writer fails, or it times out.
+     */
+    static String requestOcr(PayloadWriter image, int format, boolean english) throws IOException {
+        if (!FRAMED_PROTOCOL) {
+            if (format != Frame.FORMAT_PNG) {
+                throw new IOException("Legacy OCR protocol only accepts PNG");
+            }
+            return requestOcrLegacy(image, english);
+        }
+        return ocrClient().recognise(english ? OcrLanguage.ENGLISH : OcrLanguage.URDU, format, image);
+    }
 
-                    // Update UI with the received OCR text.
-                    handler.post(new Runnable() {
-                        @Override
-                        public void run() {
-                            textView.setText(ocrOutput);
-                        }
-                    });
+    /**
+     * Starts connecting to the OCR server in the background, so the connection is ready by
+     * the time a capture has been preprocessed. Only the framed protocol keeps a connection
+     * that can be opened ahead of time; the legacy protocol connects per request.
+     */
+    static void prewarmOcr() {
+        if (FRAMED_PROTOCOL && !SERVER_IP.equals("")) {
+            ocrClient().prewarm();
+        }
+    }
 
-                } catch (Exception e) {
-                    Log.e("ClientActivity", "S: Error receiving/processing server reply", e);
-                }
+    /**
+     * @return True if an upload can start without connecting first: the framed protocol's
+     * connection is open. The legacy protocol always connects.
+     */
+    static boolean ocrConnected() {
+        return FRAMED_PROTOCOL && ocrClient().isConnected();
+    }
 
-                // Close socket after communication.
-                socket.close();
-                Log.d("ClientActivity", "C: Closed.");
-            } catch (Exception e) {
-                Log.e("ClientActivity", "C: Error in client thread", e);
-                clientConnected = false; // Reset connection flag on error.
+    /**
+     * @return Latency and failure statistics of each OCR server in {@link #SERVER_IP}; empty
+     * with the legacy protocol or before the first request.
+     */
+    static synchronized List<OcrRouter.EndpointStats> ocrServerStats() {
+        return FRAMED_PROTOCOL && ocrClient != null ? ocrClient.stats() : new ArrayList<OcrRouter.EndpointStats>();
+    }
+
+    /**
+     * Returns the shared client routing over the servers in {@link #SERVER_IP}, recreating it
+     * if the list has changed.
+     */
+    private static synchronized OcrRouter ocrClient() {
+        if (ocrClient == null || !SERVER_IP.equals(ocrEndpoints)) {
+            if (ocrClient != null) {
+                ocrClient.close();
             }
+            ocrClient = new OcrRouter.Builder()
+                    .addEndpoints(SERVER_IP, SERVERPORT)
+                    .setWindow(OCR_WINDOW)
+                    .setRequestTimeout(OCR_TIMEOUT_MS)
+                    .build();
+            ocrEndpoints = SERVER_IP;
         }
+        return ocrClient;
+    }
+
+    /**
+     * Sends an encoded image to an OCR server that only speaks the original unframed protocol,
+     * and blocks until the full reply has been read. Opens one connection per call, see
+     * {@link LegacyOcrClient}; the image is written through a {@link #LEGACY_CHUNK} buffer
+     * straight into the socket, so it is on the wire while it is still being encoded.
+     *
+     * @param image   Writes the encoded (PNG) image.
+     * @param english True to prefix the request with the English language flag.
+     * @return The recognised text, without a trailing newline.
+     * @throws IOException If the server cannot be reached or the exchange fails.
+     */
+    static String requestOcrLegacy(PayloadWriter image, boolean english) throws IOException {
+        Log.d("ClientActivity", "C: Connecting...");
+        String host = SERVER_IP.split(",")[0].trim();
+        LegacyOcrClient client = new LegacyOcrClient.Builder(host, SERVERPORT)
+                .setChunkSize(LEGACY_CHUNK)
+                .build();
+        String reply = client.recognise(english ? OcrLanguage.ENGLISH : OcrLanguage.URDU, image);
+        Log.d("ClientActivity", "C: Received reply.");
+        return reply;
     }
 
     /**
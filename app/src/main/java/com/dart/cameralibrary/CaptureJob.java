@@ -0,0 +1,59 @@
+package com.dart.cameralibrary;
+
+import android.graphics.Bitmap;
+
+import com.dart.core.adaptive.UploadEncoding;
+import com.dart.core.adaptive.UploadPlan;
+import com.dart.core.layout.TextBlock;
+import com.dart.core.layout.TextLine;
+import com.dart.paracamera.Camera;
+
+import java.util.List;
+
+/**
+ * State of one envelope capture as it moves through the {@link CapturePipeline}.
+ * Each stage fills in the field the next stage consumes; only the pipeline's workers touch
+ * the mutable fields until the job is delivered back to the UI thread.
+ */
+final class CaptureJob {
+
+    /**
+     * Notified, on a pipeline worker thread, once the thresholded bitmap is ready.
+     */
+    interface PreviewListener {
+        void onPreview(Bitmap bitmap);
+    }
+
+    final Camera camera;                    // Source of the captured image file.
+    final boolean english;                  // Language selected when the capture was taken.
+    final String label;                     // Identifies the capture in the upload spool.
+    final PreviewListener previewListener;  // May be null.
+    final long trace;                       // Id of the capture's spans in CaptureTrace.TRACER.
+    final long started;                     // Tracer.now() when the camera was opened.
+
+    long mark; // Tracer.now() when the job last moved on: entered a queue or was delivered.
+
+    Bitmap bitmap;  // Set by the decode stage, thresholded in place by the preprocess stage.
+    byte[] gray;    // Thresholded 8-bit pixels (0/255), set by the preprocess stage.
+    int width;      // Size of the thresholded image (after the plan stage, of the crop as sent).
+    int height;
+    long hash;      // AverageHash of the thresholded image, set by the preprocess stage.
+    TextBlock block; // Address block found by the locate stage; may be null.
+    UploadPlan plan; // Crop, scale and encoding chosen by the plan stage; null unless adaptive.
+    UploadEncoding encoding; // How the image is sent, set by the plan stage.
+    List<TextLine> lines; // Deskewed text lines, set by the segment stage; null if not segmented.
+    byte[] payload; // Encoded image, set by the encode stage unless the upload is streamed.
+    int format;     // Frame.FORMAT_* of the payload.
+    String text;    // OCR result, set by the upload stage (or the preprocess stage on a cache hit).
+    boolean cached; // True if the text came from the result cache; later stages then do nothing.
+    boolean queued; // True if the server was unreachable and the envelope waits in the spool.
+
+    CaptureJob(Camera camera, boolean english, String label, PreviewListener previewListener, long trace, long started) {
+        this.camera = camera;
+        this.english = english;
+        this.label = label;
+        this.previewListener = previewListener;
+        this.trace = trace;
+        this.started = started;
+    }
+}
@@ -0,0 +1,788 @@
+package com.dart.cameralibrary;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.graphics.Bitmap;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.dart.core.adaptive.LinkEstimator;
+import com.dart.core.adaptive.MeteredOutputStream;
+import com.dart.core.adaptive.UploadEncoding;
+import com.dart.core.adaptive.UploadPlan;
+import com.dart.core.adaptive.UploadPlanner;
+import com.dart.core.cache.AverageHash;
+import com.dart.core.cache.ResultCache;
+import com.dart.core.image.BilevelCodec;
+import com.dart.core.image.LinesCodec;
+import com.dart.core.layout.AddressBlockLocator;
+import com.dart.core.layout.LineSegmenter;
+import com.dart.core.layout.TextBlock;
+import com.dart.core.layout.TextLine;
+import com.dart.core.net.OcrLanguage;
+import com.dart.core.net.OcrServerException;
+import com.dart.core.net.PayloadWriter;
+import com.dart.core.pipeline.Stage;
+import com.dart.core.pipeline.StagedPipeline;
+import com.dart.core.spool.SpoolDrainer;
+import com.dart.core.spool.SpoolRecord;
+import com.dart.core.spool.UploadSpool;
+import com.dart.core.threshold.AdaptiveThreshold;
+import com.dart.core.tile.MedianBlur;
+import com.dart.core.tile.TiledExecutor;
+import com.dart.core.trace.Tracer;
+
+import org.opencv.android.Utils;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfByte;
+import org.opencv.core.MatOfInt;
+import org.opencv.core.Size;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.opencv.imgproc.Imgproc;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+import static android.content.ContentValues.TAG;
+import static org.opencv.imgproc.Imgproc.ADAPTIVE_THRESH_MEAN_C;
+import static org.opencv.imgproc.Imgproc.THRESH_BINARY;
+
+/**
+ * Background pipeline that takes a capture from the camera file to OCR text:
+ * decode &rarr; preprocess &rarr; encode &rarr; upload.
+ * <p>
+ * Each stage runs on its own worker thread behind a small bounded queue, so a new capture
+ * can be decoded and thresholded while the previous envelope is still being encoded or
+ * uploaded. The upload stage has several workers sharing one pipelined OCR connection.
+ * Nothing here runs on the main thread; results are delivered to the listener on the main
+ * thread. The pipeline is process-wide so that it outlives individual {@link CameraFragment}
+ * instances.
+ * <p>
+ * Every encoded envelope is first appended to a durable {@link UploadSpool}. If the upload
+ * fails because the server is unreachable, the envelope stays in the spool and the
+ * {@link SpoolDrainer} retries it with backoff, draining the whole backlog as soon as
+ * connectivity returns; its results are shown through {@link CameraFragment#showQueuedResult}.
+ * <p>
+ * Couriers often re-shoot an envelope while waiting for its result. The preprocess stage
+ * hashes the thresholded image and, if a {@link ResultCache} entry is close enough, completes
+ * the job with the cached text; the later stages pass such jobs straight through. Otherwise
+ * the locate stage finds the envelope's address block, the plan stage crops to it and picks
+ * the encoding, and the segment stage splits the block into the text lines the server's line
+ * recogniser consumes, before they are encoded.
+ * <p>
+ * On a slow link the upload can take far longer than recognition. With
+ * {@link CameraFragment#ADAPTIVE_UPLOAD} every upload is measured into a {@link LinkEstimator},
+ * and the plan stage lets an {@link UploadPlanner} trade a less certain crop or a lower
+ * resolution for latency, and choose the encoding that is fastest end to end, encoding time
+ * included. Each plan is logged, and attached to the job, for telemetry.
+ * <p>
+ * Every stage records how long the capture waited for it and how long it ran into the
+ * capture's {@link CaptureTrace}.
+ */
+final class CapturePipeline {
+
+    /** Maximum number of captures waiting in front of each stage. */
+    private static final int QUEUE_CAPACITY = 2;
+
+    /** Segment size of the upload spool. */
+    private static final long SPOOL_SEGMENT_BYTES = 4 * 1024 * 1024;
+
+    /** Bounds of the result cache. */
+    private static final int CACHE_ENTRIES = 256;
+    private static final long CACHE_BYTES = 512 * 1024;
+
+    /** Largest hash distance, in bits, at which two captures count as the same envelope. */
+    private static final int CACHE_MAX_DISTANCE = 4;
+
+    private static StagedPipeline<CaptureJob, CaptureJob> instance;
+    private static UploadSpool spool;
+    private static SpoolDrainer drainer;
+    private static ResultCache resultCache;
+    private static LinkEstimator link;
+    private static UploadPlanner planner;
+    private static Handler mainHandler;
+    private static Context appContext;
+    private static final MedianBlur MEDIAN = new MedianBlur(5);
+    private static AdaptiveThreshold thresholder;            // Preprocess worker only.
+    private static AdaptiveThreshold.Method thresholdMethod;
+    private static TiledExecutor tiles;
+
+    private CapturePipeline() {
+    }
+
+    /**
+     * @param context Any context; only the application context is retained.
+     * @return The shared pipeline, creating it (and opening the upload spool and result cache) on first use.
+     * @throws IOException If the upload spool cannot be opened.
+     */
+    static synchronized StagedPipeline<CaptureJob, CaptureJob> get(Context context) throws IOException {
+        if (instance == null) {
+            appContext = context.getApplicationContext();
+            mainHandler = new Handler(Looper.getMainLooper());
+            resultCache = new ResultCache.Builder()
+                    .setMaxEntries(CACHE_ENTRIES)
+                    .setMaxBytes(CACHE_BYTES)
+                    .setMaxDistance(CACHE_MAX_DISTANCE)
+                    .setFile(new File(appContext.getFilesDir(), "results.cache"))
+                    .build();
+            link = new LinkEstimator.Builder().build();
+            planner = new UploadPlanner.Builder(link)
+                    .setTargetMillis(CameraFragment.UPLOAD_TARGET_MS)
+                    .setListener(new UploadPlanner.Listener() {
+                        @Override
+                        public void onPlan(UploadPlan plan) {
+                            Log.i(TAG, "Upload plan: " + plan);
+                        }
+                    })
+                    .build();
+            startSpool();
+            Executor mainExecutor = new Executor() {
+                @Override
+                public void execute(Runnable command) {
+                    mainHandler.post(command);
+                }
+            };
+            instance = StagedPipeline.Builder.<CaptureJob>start(mainExecutor)
+                    .then("decode", traced("decode", DECODE), QUEUE_CAPACITY)
+                    .then("preprocess", traced("preprocess", PREPROCESS), QUEUE_CAPACITY)
+                    .then("locate", traced("locate", LOCATE), QUEUE_CAPACITY)
+                    .then("plan", traced("plan", PLAN), QUEUE_CAPACITY)
+                    .then("segment", traced("segment", SEGMENT), QUEUE_CAPACITY)
+                    .then("encode", traced("encode", ENCODE), QUEUE_CAPACITY)
+                    // One upload worker per window slot, so several envelopes can be pipelined
+                    // on the shared OCR connection while the server is still recognising earlier ones.
+                    .then("upload", traced("upload", UPLOAD), QUEUE_CAPACITY, CameraFragment.OCR_WINDOW)
+                    .build();
+        }
+        return instance;
+    }
+
+    /**
+     * @return Number of envelopes waiting in the spool for the server, including ones being uploaded.
+     */
+    static synchronized int pendingUploads() {
+        return spool == null ? 0 : spool.pendingCount();
+    }
+
+    /**
+     * Opens the spool in the app's private storage, starts draining anything left over from
+     * a previous run, and retries immediately whenever connectivity changes.
+     */
+    private static void startSpool() throws IOException {
+        spool = UploadSpool.open(new File(appContext.getFilesDir(), "spool"), SPOOL_SEGMENT_BYTES);
+        drainer = new SpoolDrainer.Builder(spool, new SpoolDrainer.Uploader() {
+            @Override
+            public String upload(SpoolRecord record, byte[] payload) throws IOException {
+                return CameraFragment.requestOcr(payload, record.format, record.language == OcrLanguage.ENGLISH.code);
+            }
+        }).setListener(new SpoolDrainer.Listener() {
+            @Override
+            public void onUploaded(final SpoolRecord record, final String text) {
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        CameraFragment.showQueuedResult(appContext, record.label, text);
+                    }
+                });
+            }
+
+            @Override
+            public void onRejected(SpoolRecord record, OcrServerException error) {
+                Log.w(TAG, "Server rejected queued envelope " + record, error);
+            }
+
+            @Override
+            public void onBackoff(long delayMillis, int pending, IOException cause) {
+                Log.i(TAG, "Upload failed, " + pending + " queued, retrying in " + delayMillis + " ms: " + cause);
+            }
+        }).build().start();
+
+        appContext.registerReceiver(new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                ConnectivityManager cm = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+                NetworkInfo network = cm.getActiveNetworkInfo();
+                if (network != null && network.isConnected()) {
+                    drainer.wakeUp(); // Link is back: flush the backlog now.
+                }
+            }
+        }, new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION));
+    }
+
+    /**
+     * Wraps a stage so that it records, into the capture's trace, the time the capture waited
+     * in front of it ({@code <name>.wait}) and the time it ran ({@code <name>}).
+     */
+    private static Stage<CaptureJob, CaptureJob> traced(String name, final Stage<CaptureJob, CaptureJob> stage) {
+        final int wait = CaptureTrace.TRACER.stage(name + ".wait");
+        final int run = CaptureTrace.TRACER.stage(name);
+        return new Stage<CaptureJob, CaptureJob>() {
+            @Override
+            public CaptureJob process(CaptureJob job) throws Exception {
+                long start = Tracer.now();
+                CaptureTrace.TRACER.record(job.trace, wait, job.mark, start);
+                try {
+                    return stage.process(job);
+                } finally {
+                    job.mark = CaptureTrace.TRACER.end(job.trace, run, start); // Handed on through the next queue.
+                }
+            }
+        };
+    }
+
+    /**
+     * Decodes, resizes and orients the captured file via ParaCamera.
+     */
+    private static final Stage<CaptureJob, CaptureJob> DECODE = new Stage<CaptureJob, CaptureJob>() {
+        @Override
+        public CaptureJob process(CaptureJob job) throws Exception {
+            job.bitmap = job.camera.getCameraBitmap(CaptureTrace.fileSteps(job));
+            if (job.bitmap == null) {
+                throw new IOException("Picture not taken!");
+            }
+            return job;
+        }
+    };
+
+    /**
+     * Thresholds (block size 15, constant 9, as in the OpenCV steps) and median-blurs a
+     * grayscale Mat in place in one tiled pass: on API 21 and later its bands run on all cores,
+     * and neither step ever holds a whole intermediate image. Rebuilds the filters when
+     * {@link CameraFragment#THRESHOLD_METHOD} changes. Only called from the preprocess worker.
+     *
+     * @param gray Continuous 8-bit single-channel image.
+     */
+    private static void javaBinarise(Mat gray) {
+        AdaptiveThreshold.Method method = CameraFragment.THRESHOLD_METHOD;
+        if (thresholder == null || thresholdMethod != method) {
+            thresholder = new AdaptiveThreshold.Builder()
+                    .setMethod(method)
+                    .setWindow(15)
+                    .setC(9)
+                    .build();
+            thresholdMethod = method;
+        }
+        if (tiles == null) {
+            int cores = Build.VERSION.SDK_INT >= 21 ? Runtime.getRuntime().availableProcessors() : 1;
+            tiles = new TiledExecutor.Builder().setParallelism(cores).build();
+        }
+        int width = gray.cols();
+        int height = gray.rows();
+        byte[] pixels = new byte[width * height];
+        gray.get(0, 0, pixels);
+        tiles.apply(pixels, pixels, width, height, thresholder, MEDIAN);
+        gray.put(0, 0, pixels);
+    }
+
+    /**
+     * Grayscale conversion, adaptive thresholding and median blur, written back into the bitmap.
+     */
+    private static final Stage<CaptureJob, CaptureJob> PREPROCESS = new Stage<CaptureJob, CaptureJob>() {
+        @Override
+        public CaptureJob process(CaptureJob job) {
+            // Both buffers come from the pool: the same resolution as the previous capture reuses them.
+            int cols = job.bitmap.getWidth();
+            int rows = job.bitmap.getHeight();
+            Mat mrgba = CapturePools.MATS.acquire(cols, rows, CvType.CV_8UC4);
+            Mat gray = CapturePools.MATS.acquire(cols, rows, CvType.CV_8UC1);
+            try {
+                Utils.bitmapToMat(job.bitmap, mrgba);
+                // 1. Convert to Grayscale.
+                Imgproc.cvtColor(mrgba, gray, Imgproc.COLOR_RGB2GRAY, 3);
+                if (CameraFragment.JAVA_THRESHOLD) {
+                    // 2 and 3 as one tiled, parallel pass.
+                    javaBinarise(gray);
+                } else {
+                    // 2. Adaptive Thresholding: block size 15, constant 9.
+                    Imgproc.adaptiveThreshold(gray, gray, 255, ADAPTIVE_THRESH_MEAN_C, THRESH_BINARY, 15, 9);
+                    // 3. Median Blur: reduces salt-and-pepper noise, kernel size 5.
+                    Imgproc.medianBlur(gray, gray, 5);
+                }
+                Utils.matToBitmap(gray, job.bitmap);
+                // Keep the strictly binary 8-bit pixels for the bi-level encoder (one bulk copy).
+                job.width = cols;
+                job.height = rows;
+                job.gray = new byte[job.width * job.height];
+                gray.get(0, 0, job.gray);
+            } finally {
+                CapturePools.MATS.release(mrgba);
+                CapturePools.MATS.release(gray);
+            }
+
+            if (job.previewListener != null) {
+                job.previewListener.onPreview(job.bitmap);
+            }
+
+            // A re-shot envelope hashes within a few bits of the earlier capture.
+            job.hash = AverageHash.compute(job.gray, job.width, job.height);
+            String text = resultCache.lookup(job.hash, language(job));
+            if (text != null) {
+                job.text = text;
+                job.cached = true;
+                job.gray = null;
+            }
+            return job;
+        }
+    };
+
+    /** Smallest locator confidence at which the address block is always cropped to. */
+    private static final double CROP_CONFIDENCE = 0.5;
+
+    /** Smallest locator confidence at which a slow link may still crop to the address block. */
+    private static final double GUESS_CONFIDENCE = 0.25;
+
+    /**
+     * Address block locator used by {@link #LOCATE}; it reuses its buffers, so access is
+     * synchronized on the instance.
+     */
+    private static final AddressBlockLocator LOCATOR = new AddressBlockLocator.Builder()
+            .setMinConfidence(CROP_CONFIDENCE)
+            .build();
+
+    /**
+     * Finds the address block of the thresholded image. The hash is taken before cropping, as
+     * a re-shot envelope may be cropped slightly differently. With adaptive uploads a less
+     * certain block is kept too, for the plan stage to crop to if the link is slow.
+     */
+    private static final Stage<CaptureJob, CaptureJob> LOCATE = new Stage<CaptureJob, CaptureJob>() {
+        @Override
+        public CaptureJob process(CaptureJob job) {
+            if (job.cached || !CameraFragment.LOCATE_ADDRESS) {
+                return job;
+            }
+            double minConfidence = CameraFragment.ADAPTIVE_UPLOAD ? GUESS_CONFIDENCE : CROP_CONFIDENCE;
+            synchronized (LOCATOR) {
+                job.block = LOCATOR.locate(job.gray, job.width, job.height, minConfidence);
+            }
+            Log.i(TAG, "Address block: " + job.block);
+            return job;
+        }
+    };
+
+    /**
+     * Decides what is sent. By default the image is cropped to a confidently located address
+     * block and sent in the best format the protocol allows: segmented lines, else the
+     * run-length coded bi-level format, else, for the legacy protocol, the bitmap as PNG. With
+     * {@link CameraFragment#ADAPTIVE_UPLOAD} the {@link UploadPlanner} instead picks the crop,
+     * resolution and encoding expected to meet {@link CameraFragment#UPLOAD_TARGET_MS} on the
+     * link as measured so far.
+     */
+    private static final Stage<CaptureJob, CaptureJob> PLAN = new Stage<CaptureJob, CaptureJob>() {
+        @Override
+        public CaptureJob process(CaptureJob job) {
+            if (job.cached) {
+                return job;
+            }
+            TextBlock block = job.block;
+            boolean located = block != null && !block.fallback;
+            boolean confident = located && block.confidence >= CROP_CONFIDENCE;
+            if (!CameraFragment.ADAPTIVE_UPLOAD) {
+                if (confident) {
+                    crop(job, block);
+                }
+                job.encoding = !CameraFragment.FRAMED_PROTOCOL || !CameraFragment.BILEVEL_TRANSPORT
+                        ? UploadEncoding.PNG_RGBA
+                        : CameraFragment.SEGMENT_LINES ? UploadEncoding.LINES : UploadEncoding.BILEVEL_RUNS;
+                return job;
+            }
+
+            List<UploadPlanner.Crop> crops = new ArrayList<>(2);
+            UploadPlanner.Crop full = new UploadPlanner.Crop("full", job.width, job.height);
+            crops.add(confident ? new UploadPlanner.Crop("block", block.width, block.height) : full);
+            if (located && !confident) {
+                crops.add(new UploadPlanner.Crop("guess", block.width, block.height));
+            }
+            job.plan = planner.plan(crops, encodings(), CameraFragment.ocrConnected());
+            if (job.plan.crop != full) {
+                crop(job, block);
+            }
+            if (job.plan.scale < 1) {
+                scale(job, job.plan.width, job.plan.height);
+            }
+            job.encoding = job.plan.encoding;
+            return job;
+        }
+    };
+
+    /**
+     * @return The encodings the server accepts over the configured protocol. The RGBA bitmap
+     * is left out: the same pixels are always smaller and cheaper as grayscale or 1-bit PNG.
+     */
+    private static Set<UploadEncoding> encodings() {
+        Set<UploadEncoding> encodings = EnumSet.of(UploadEncoding.PNG_GRAY_FAST, UploadEncoding.PNG_GRAY_SMALL,
+                UploadEncoding.PNG_BILEVEL_FAST, UploadEncoding.PNG_BILEVEL_SMALL);
+        if (CameraFragment.FRAMED_PROTOCOL && CameraFragment.BILEVEL_TRANSPORT) {
+            encodings.add(UploadEncoding.BILEVEL_RUNS);
+            if (CameraFragment.SEGMENT_LINES) {
+                encodings.add(UploadEncoding.LINES);
+            }
+        }
+        return encodings;
+    }
+
+    /**
+     * Crops the thresholded pixels, and the bitmap the RGBA encoding is made from, to the block.
+     */
+    private static void crop(CaptureJob job, TextBlock block) {
+        job.gray = block.crop(job.gray, job.width);
+        job.width = block.width;
+        job.height = block.height;
+        job.bitmap = Bitmap.createBitmap(job.bitmap, block.x, block.y, block.width, block.height);
+    }
+
+    /**
+     * Downscales the thresholded pixels, by area averaging and thresholding again so the
+     * result stays strictly bi-level. The bitmap is left alone: adaptive plans never send it.
+     */
+    private static void scale(CaptureJob job, int width, int height) {
+        Mat src = new Mat(job.height, job.width, CvType.CV_8UC1);
+        Mat dst = new Mat();
+        try {
+            src.put(0, 0, job.gray);
+            Imgproc.resize(src, dst, new Size(width, height), 0, 0, Imgproc.INTER_AREA);
+            Imgproc.threshold(dst, dst, 127, 255, THRESH_BINARY);
+            job.gray = new byte[width * height];
+            dst.get(0, 0, job.gray);
+            job.width = width;
+            job.height = height;
+        } finally {
+            src.close(); // Native memory back now, not at finalization.
+            dst.close();
+        }
+    }
+
+    /**
+     * Line segmenter used by {@link #SEGMENT}; synchronized on the instance like {@link #LOCATOR}.
+     */
+    private static final LineSegmenter SEGMENTER = new LineSegmenter.Builder().build();
+
+    /**
+     * Splits the address block into deskewed text lines using its horizontal projection
+     * profile, if the lines are to be sent. If no lines are found the block is sent whole.
+     */
+    private static final Stage<CaptureJob, CaptureJob> SEGMENT = new Stage<CaptureJob, CaptureJob>() {
+        @Override
+        public CaptureJob process(CaptureJob job) {
+            if (job.cached || job.encoding != UploadEncoding.LINES) {
+                return job;
+            }
+            List<TextLine> lines;
+            synchronized (SEGMENTER) {
+                lines = SEGMENTER.segment(job.gray, job.width, job.height);
+            }
+            Log.i(TAG, "Segmented " + lines.size() + " lines");
+            if (lines.isEmpty()) {
+                job.encoding = UploadEncoding.BILEVEL_RUNS;
+            } else {
+                job.lines = lines;
+            }
+            return job;
+        }
+    };
+
+    /**
+     * Encodes the image in the planned encoding. With {@link CameraFragment#STREAMING_UPLOAD}
+     * the encoding itself is left to the upload stage, which writes it straight into the request.
+     */
+    private static final Stage<CaptureJob, CaptureJob> ENCODE = new Stage<CaptureJob, CaptureJob>() {
+        @Override
+        public CaptureJob process(CaptureJob job) throws IOException {
+            if (job.cached) {
+                return job;
+            }
+            job.format = job.encoding.format;
+            if (!CameraFragment.STREAMING_UPLOAD) {
+                ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                long start = System.nanoTime();
+                encode(job, bos);
+                planner.recordEncode(job.encoding, (long) job.width * job.height, bos.size(), System.nanoTime() - start);
+                job.payload = bos.toByteArray();
+                releaseImage(job);
+            }
+            return job;
+        }
+    };
+
+    /**
+     * Writes the job's image in its planned encoding.
+     */
+    private static void encode(CaptureJob job, OutputStream out) throws IOException {
+        switch (job.encoding) {
+            case LINES:
+                LinesCodec.encode(job.lines, out);
+                break;
+            case BILEVEL_RUNS:
+                BilevelCodec.encodeRuns(job.gray, job.width, job.height, out);
+                break;
+            case PNG_RGBA:
+                job.bitmap.compress(Bitmap.CompressFormat.PNG, 0, out); // PNG is lossless, compression value is ignored.
+                break;
+            default:
+                encodePng(job, out);
+                break;
+        }
+    }
+
+    /**
+     * Writes the thresholded pixels as a grayscale or 1-bit PNG at the encoding's zlib level.
+     */
+    private static void encodePng(CaptureJob job, OutputStream out) throws IOException {
+        Mat mat = new Mat(job.height, job.width, CvType.CV_8UC1);
+        MatOfInt params = job.encoding.bitDepth == 1
+                ? new MatOfInt(Imgcodecs.IMWRITE_PNG_COMPRESSION, job.encoding.level, Imgcodecs.IMWRITE_PNG_BILEVEL, 1)
+                : new MatOfInt(Imgcodecs.IMWRITE_PNG_COMPRESSION, job.encoding.level);
+        MatOfByte png = new MatOfByte();
+        try {
+            mat.put(0, 0, job.gray);
+            if (!Imgcodecs.imencode(".png", mat, png, params)) {
+                throw new IOException("Cannot encode " + job.encoding);
+            }
+            out.write(png.toArray());
+        } finally {
+            mat.close();
+            params.close();
+            png.close();
+        }
+    }
+
+    /**
+     * Drops the pixel copies once the image is encoded, so they can be collected while the
+     * upload is in flight. The bitmap stays: it is shown as the preview.
+     */
+    private static void releaseImage(CaptureJob job) {
+        job.gray = null;
+        job.lines = null;
+    }
+
+    /**
+     * Spools the encoded image, then sends it to the OCR server and waits for the recognised
+     * text. If the server cannot be reached the job completes without text and the envelope
+     * is left in the spool for the drainer.
+     */
+    private static final Stage<CaptureJob, CaptureJob> UPLOAD = new Stage<CaptureJob, CaptureJob>() {
+        @Override
+        public CaptureJob process(CaptureJob job) throws Exception {
+            if (job.cached) {
+                return job;
+            }
+            // An OcrServerException is acknowledged before it propagates: retrying would not help.
+            SpoolRecord record = job.payload == null ? uploadStreaming(job) : upload(job);
+            if (job.queued) {
+                Log.i(TAG, "Upload failed, envelope queued as " + record);
+                spool.release(record.id);
+                drainer.recordsAdded();
+                return job;
+            }
+            spool.ack(record.id);
+            resultCache.put(job.hash, language(job), job.text);
+            try {
+                resultCache.flush();
+            } catch (IOException e) {
+                Log.w(TAG, "Cannot save result cache", e); // Still cached in memory.
+            }
+            return job;
+        }
+    };
+
+    /**
+     * Spools the already encoded payload, then sends it.
+     *
+     * @return The claimed spool record; {@code job.queued} is set if the server was unreachable.
+     */
+    private static SpoolRecord upload(CaptureJob job) throws IOException {
+        SpoolRecord record = spool.append(language(job), job.format, job.label, job.payload, true);
+        final byte[] payload = job.payload;
+        job.payload = null; // The spool holds it from here on.
+        try {
+            job.text = send(job, new PayloadWriter() {
+                @Override
+                public void writeTo(OutputStream out) throws IOException {
+                    out.write(payload);
+                }
+            }, false);
+        } catch (OcrServerException e) {
+            spool.ack(record.id);
+            throw e;
+        } catch (IOException e) {
+            Log.i(TAG, "Upload failed: " + e);
+            job.queued = true;
+        }
+        return record;
+    }
+
+    /**
+     * Encodes the image straight into the request and, through a tee, into a spool appender,
+     * so the first bytes are on the wire while later rows are still being encoded and the
+     * payload is never held in memory as a whole. If the connection breaks part way the
+     * encoder still finishes into the spool; if the server cannot be reached at all the image
+     * is encoded into the spool alone.
+     *
+     * @return The claimed spool record; {@code job.queued} is set if the server was unreachable.
+     */
+    private static SpoolRecord uploadStreaming(final CaptureJob job) throws IOException {
+        final UploadSpool.Appender appender = spool.appender(language(job), job.format, job.label);
+        final SpoolRecord[] record = new SpoolRecord[1];
+        final boolean[] started = new boolean[1];
+        try {
+            job.text = send(job, new PayloadWriter() {
+                @Override
+                public void writeTo(OutputStream out) throws IOException {
+                    started[0] = true;
+                    TeeOutputStream tee = new TeeOutputStream(out, appender);
+                    encode(job, tee);
+                    record[0] = appender.commit(true);
+                    tee.checkFirst(); // Report a broken connection only once the spool copy is safe.
+                }
+            }, true);
+        } catch (OcrServerException e) {
+            if (record[0] != null) {
+                spool.ack(record[0].id);
+            }
+            throw e;
+        } catch (IOException e) {
+            if (started[0] && record[0] == null) {
+                throw e; // Encoding or spooling failed, not the network.
+            }
+            Log.i(TAG, "Upload failed: " + e);
+            if (record[0] == null) {
+                encode(job, appender); // Never connected: spool it for the drainer.
+                record[0] = appender.commit(true);
+            }
+            job.queued = true;
+        } finally {
+            appender.abort(); // No-op once committed.
+            releaseImage(job);
+        }
+        return record[0];
+    }
+
+    /**
+     * Sends the image written by {@code payload} and waits for the text, recording into the
+     * link estimate and the capture's trace how long connecting, sending and the server took. Adaptive uploads log
+     * the time taken next to the plan's prediction.
+     *
+     * @param streamed True if {@code payload} encodes the image as it writes; the time it
+     *                 spends not blocked on the connection is then recorded as encoding cost.
+     * @return The recognised text.
+     */
+    private static String send(CaptureJob job, final PayloadWriter payload, boolean streamed) throws IOException {
+        boolean connect = !CameraFragment.ocrConnected();
+        final long[] written = new long[2]; // System.nanoTime() at the start and end of the payload.
+        final MeteredOutputStream[] meter = new MeteredOutputStream[1];
+        long start = System.nanoTime();
+        String text = CameraFragment.requestOcr(new PayloadWriter() {
+            @Override
+            public void writeTo(OutputStream out) throws IOException {
+                written[0] = System.nanoTime();
+                meter[0] = new MeteredOutputStream(out);
+                payload.writeTo(meter[0]);
+                written[1] = System.nanoTime();
+            }
+        }, job.format, job.english);
+        long end = System.nanoTime();
+        CaptureTrace.TRACER.record(job.trace, CaptureTrace.OCR_CONNECT, start, written[0]);
+        CaptureTrace.TRACER.record(job.trace, CaptureTrace.OCR_SEND, written[0], written[1]);
+        CaptureTrace.TRACER.record(job.trace, CaptureTrace.OCR_SERVER, written[1], end);
+
+        long blocked = meter[0].blockedNanos();
+        if (connect) {
+            link.recordConnect(millis(written[0] - start));
+        }
+        link.recordTransfer(meter[0].bytes(), millis(blocked), millis(end - written[1]));
+        if (streamed) {
+            planner.recordEncode(job.encoding, (long) job.width * job.height, meter[0].bytes(),
+                    written[1] - written[0] - blocked);
+        }
+        if (job.plan != null) {
+            Log.i(TAG, "Uploaded " + meter[0].bytes() + " bytes in " + millis(end - start) + " ms, planned "
+                    + job.plan + "; link now " + link);
+        }
+        return text;
+    }
+
+    private static long millis(long nanos) {
+        return nanos / 1000000;
+    }
+
+    /**
+     * Copies everything written to two streams: the request and the spool. A failure of the
+     * first stream is remembered and further output to it dropped, so the spool copy is always
+     * completed; {@link #checkFirst()} reports it afterwards.
+     */
+    private static final class TeeOutputStream extends OutputStream {
+        private final OutputStream first;
+        private final OutputStream second;
+        private IOException firstFailure;
+
+        TeeOutputStream(OutputStream first, OutputStream second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (firstFailure == null) {
+                try {
+                    first.write(b);
+                } catch (IOException e) {
+                    firstFailure = e;
+                }
+            }
+            second.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (firstFailure == null) {
+                try {
+                    first.write(b, off, len);
+                } catch (IOException e) {
+                    firstFailure = e;
+                }
+            }
+            second.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (firstFailure == null) {
+                try {
+                    first.flush();
+                } catch (IOException e) {
+                    firstFailure = e;
+                }
+            }
+            second.flush();
+        }
+
+        /**
+         * @throws IOException The first failure of the first stream, if there was one.
+         */
+        void checkFirst() throws IOException {
+            if (firstFailure != null) {
+                throw firstFailure;
+            }
+        }
+    }
+
+    /**
+     * @return The OcrLanguage code the job is recognised in.
+     */
+    private static int language(CaptureJob job) {
+        return job.english ? OcrLanguage.ENGLISH.code : OcrLanguage.URDU.code;
+    }
+}
@@ -0,0 +1,122 @@
+package com.dart.cameralibrary;
+
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import com.dart.core.pool.BufferPool;
+import com.dart.paracamera.Camera;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatScope;
+
+import static android.content.ContentValues.TAG;
+
+/**
+ * Process-wide pools of the Mats and Bitmaps every capture needs, so that scanning envelope
+ * after envelope at the same resolution reuses the same native buffers instead of piling up
+ * native heap until the finalizers run.
+ * <p>
+ * Mats are keyed by columns, rows and OpenCV type; Bitmaps by width, height and
+ * {@link Bitmap.Config}. Whoever acquires a buffer releases it when done, and must not touch
+ * it afterwards. Mats the pool allocates belong to no {@link MatScope}; a Mat created in a
+ * scope must be detached from it before it is released here. The hit and miss counts are
+ * logged with each capture trace summary.
+ */
+final class CapturePools {
+
+    /** Most memory idle Mats may hold: about four full-resolution RGBA captures. */
+    private static final long MAT_BYTES = 12 * 1024 * 1024;
+
+    /** Most memory idle Bitmaps may hold: about four full-resolution ARGB captures. */
+    private static final long BITMAP_BYTES = 12 * 1024 * 1024;
+
+    static final BufferPool<Mat> MATS = new BufferPool.Builder<>(new BufferPool.Allocator<Mat>() {
+        @Override
+        public Mat allocate(BufferPool.Key key) {
+            // Pooled Mats outlive any MatScope they happen to be created in.
+            return MatScope.detach(new Mat(key.height, key.width, key.type));
+        }
+
+        @Override
+        public BufferPool.Key keyOf(Mat mat) {
+            return new BufferPool.Key(mat.cols(), mat.rows(), mat.type());
+        }
+
+        @Override
+        public long bytes(BufferPool.Key key) {
+            return (long) key.width * key.height * CvType.ELEM_SIZE(key.type);
+        }
+
+        @Override
+        public boolean isReusable(Mat mat) {
+            return !mat.isClosed() && !mat.empty();
+        }
+
+        @Override
+        public void free(Mat mat) {
+            mat.close();
+        }
+    }).setMaxBytes(MAT_BYTES).build();
+
+    static final BufferPool<Bitmap> BITMAPS = new BufferPool.Builder<>(new BufferPool.Allocator<Bitmap>() {
+        @Override
+        public Bitmap allocate(BufferPool.Key key) {
+            return Bitmap.createBitmap(key.width, key.height, Bitmap.Config.values()[key.type]);
+        }
+
+        @Override
+        public BufferPool.Key keyOf(Bitmap bitmap) {
+            Bitmap.Config config = bitmap.getConfig();
+            return new BufferPool.Key(bitmap.getWidth(), bitmap.getHeight(), config == null ? -1 : config.ordinal());
+        }
+
+        @Override
+        public long bytes(BufferPool.Key key) {
+            Bitmap.Config config = Bitmap.Config.values()[key.type];
+            int pixelBytes = config == Bitmap.Config.ALPHA_8 ? 1 : config == Bitmap.Config.ARGB_8888 ? 4 : 2;
+            return (long) key.width * key.height * pixelBytes;
+        }
+
+        @Override
+        public boolean isReusable(Bitmap bitmap) {
+            // Only mutable bitmaps of a known format can be drawn or decoded into again.
+            return !bitmap.isRecycled() && bitmap.isMutable() && bitmap.getConfig() != null;
+        }
+
+        @Override
+        public void free(Bitmap bitmap) {
+            bitmap.recycle();
+        }
+    }).setMaxBytes(BITMAP_BYTES).build();
+
+    /** {@link #BITMAPS} as ParaCamera's pool, for decoding and rotating captures. */
+    static final Camera.BitmapPool CAMERA_BITMAPS = new Camera.BitmapPool() {
+        @Override
+        public Bitmap acquire(int width, int height, Bitmap.Config config) {
+            return BITMAPS.acquire(width, height, config.ordinal());
+        }
+
+        @Override
+        public void release(Bitmap bitmap) {
+            if (bitmap.isMutable()) {
+                BITMAPS.release(bitmap);
+            } else if (!bitmap.isRecycled()) {
+                bitmap.recycle(); // Immutable bitmaps cannot be drawn or decoded into again.
+            }
+        }
+    };
+
+    private CapturePools() {
+    }
+
+    /**
+     * Logs the counters of both pools, and how many Mats were closed or left to the finalizer.
+     */
+    static void logStats() {
+        Log.i(TAG, "Mat pool: " + MATS.stats());
+        Log.i(TAG, "Bitmap pool: " + BITMAPS.stats());
+        Log.i(TAG, "Mats created=" + Mat.createdCount() + " closed=" + Mat.closedCount()
+                + " leaked to finalizer=" + Mat.finalizedCount());
+    }
+}
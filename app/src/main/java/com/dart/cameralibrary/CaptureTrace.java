@@ -0,0 +1,121 @@
+package com.dart.cameralibrary;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.dart.core.net.OcrRouter;
+import com.dart.core.trace.Tracer;
+import com.dart.paracamera.Camera;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import static android.content.ContentValues.TAG;
+
+/**
+ * Latency trace of every capture, from {@code takePicture()} to the OCR text being shown.
+ * <p>
+ * Each capture is one trace, and each step of it a span in the process-wide {@link #TRACER}:
+ * <ul>
+ *   <li>{@code camera}: the external camera app, until {@code onActivityResult}.</li>
+ *   <li>{@code file.decode}, {@code file.rotate}, {@code file.save}: the steps of
+ *       {@link Camera#getCameraBitmap()}, inside the {@code decode} stage.</li>
+ *   <li>One span per pipeline stage, e.g. {@code preprocess}, and one for the time the
+ *       capture waited in front of it, e.g. {@code preprocess.wait}.</li>
+ *   <li>{@code ocr.connect}, {@code ocr.send}, {@code ocr.server}: inside the {@code upload}
+ *       stage, getting a connection and a slot in its window (DNS and connect, if there was no
+ *       connection yet), writing the image, and waiting for the text.</li>
+ *   <li>{@code post}: from the last stage until the result reaches the main thread.</li>
+ *   <li>{@code display}: setting the text; {@code total}: the whole capture.</li>
+ * </ul>
+ * Every {@link #SUMMARY_INTERVAL} captures the per-stage percentiles are logged, along with
+ * the statistics of each OCR server and of the {@link CapturePools}, and the spans of the
+ * recent captures written to {@code trace.csv} in the app's files directory.
+ */
+final class CaptureTrace {
+
+    /** Captures between logged summaries and trace file exports. */
+    static final int SUMMARY_INTERVAL = 20;
+
+    /** Spans kept for the trace file: about 50 captures. */
+    private static final int CAPACITY = 1024;
+
+    static final Tracer TRACER = new Tracer.Builder().setCapacity(CAPACITY).build();
+
+    static final int CAMERA = TRACER.stage("camera");
+    static final int FILE_DECODE = TRACER.stage("file.decode");
+    static final int FILE_ROTATE = TRACER.stage("file.rotate");
+    static final int FILE_SAVE = TRACER.stage("file.save");
+    static final int OCR_CONNECT = TRACER.stage("ocr.connect");
+    static final int OCR_SEND = TRACER.stage("ocr.send");
+    static final int OCR_SERVER = TRACER.stage("ocr.server");
+    static final int POST = TRACER.stage("post");
+    static final int DISPLAY = TRACER.stage("display");
+    static final int TOTAL = TRACER.stage("total");
+
+    private static int completed; // Captures traced to the end; main thread only.
+
+    private CaptureTrace() {
+    }
+
+    /**
+     * @param job Capture being decoded.
+     * @return A timer recording the ParaCamera processing steps into the capture's trace.
+     */
+    static Camera.StepTimer fileSteps(final CaptureJob job) {
+        return new Camera.StepTimer() {
+            @Override
+            public void onStep(int step, long startNanos, long endNanos) {
+                int stage = step == Camera.STEP_DECODE ? FILE_DECODE : step == Camera.STEP_ROTATE ? FILE_ROTATE : FILE_SAVE;
+                TRACER.record(job.trace, stage, startNanos, endNanos);
+            }
+        };
+    }
+
+    /**
+     * Counts a capture traced to the end and, every {@link #SUMMARY_INTERVAL} captures, logs
+     * the summary and exports the spans. Must be called on the main thread.
+     *
+     * @param context Any context, for the files directory.
+     */
+    static void completed(Context context) {
+        if (!TRACER.isEnabled() || ++completed % SUMMARY_INTERVAL != 0) {
+            return;
+        }
+        Log.i(TAG, "Capture latency (ms) over " + completed + " captures:\n" + TRACER.summary());
+        for (OcrRouter.EndpointStats server : CameraFragment.ocrServerStats()) {
+            Log.i(TAG, "OCR server " + server);
+        }
+        CapturePools.logStats();
+        final File file = new File(context.getFilesDir(), "trace.csv");
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    export(file);
+                } catch (IOException e) {
+                    Log.w(TAG, "Cannot write " + file, e);
+                }
+            }
+        }, "dart-trace-export").start();
+    }
+
+    /**
+     * Writes the spans of the recent captures as CSV, replacing the file.
+     *
+     * @param file Destination.
+     * @throws IOException If writing fails.
+     */
+    static void export(File file) throws IOException {
+        Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+        try {
+            TRACER.writeSpans(out);
+        } finally {
+            out.close();
+        }
+    }
+}
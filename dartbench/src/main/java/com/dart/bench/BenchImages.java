@@ -0,0 +1,153 @@
+package com.dart.bench;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import javax.imageio.ImageIO;
+
+/**
+ * Envelope images for the benchmarks: 8-bit pixels, thresholded (0 = ink, 255 = paper) as the
+ * preprocess stage produces them, or grayscale as it receives them.
+ */
+final class BenchImages {
+
+    /** Skew of the synthetic envelopes, in degrees. */
+    static final double SKEW = 3.0;
+
+    /** Value of {@code @Param("source")} selecting a generated envelope. */
+    static final String SYNTHETIC = "synthetic";
+
+    private BenchImages() {
+    }
+
+    /**
+     * @param resolution "WIDTHxHEIGHT", e.g. "1000x750".
+     * @return {width, height}.
+     */
+    static int[] size(String resolution) {
+        String[] parts = resolution.split("x");
+        return new int[]{Integer.parseInt(parts[0]), Integer.parseInt(parts[1])};
+    }
+
+    /**
+     * @param source     {@link #SYNTHETIC}, or the path of a recorded envelope photo or scan
+     *                   (any format ImageIO reads), which is resampled and thresholded.
+     * @param resolution "WIDTHxHEIGHT".
+     * @return The thresholded image.
+     */
+    static byte[] load(String source, String resolution) throws IOException {
+        int[] size = size(resolution);
+        if (SYNTHETIC.equals(source)) {
+            return envelope(size[0], size[1], SKEW, 7);
+        }
+        byte[] pixels = gray(source, resolution);
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = (pixels[i] & 0xFF) < 128 ? 0 : (byte) 255;
+        }
+        return pixels;
+    }
+
+    /**
+     * @param source     {@link #SYNTHETIC}, or the path of a recorded envelope photo or scan,
+     *                   which is resampled.
+     * @param resolution "WIDTHxHEIGHT".
+     * @return The grayscale image, as the preprocess stage thresholds it. The synthetic
+     * envelope is shaded from one corner to the other and carries sensor noise.
+     */
+    static byte[] gray(String source, String resolution) throws IOException {
+        int[] size = size(resolution);
+        if (SYNTHETIC.equals(source)) {
+            byte[] pixels = envelope(size[0], size[1], SKEW, 7);
+            Random random = new Random(7);
+            for (int y = 0; y < size[1]; y++) {
+                for (int x = 0; x < size[0]; x++) {
+                    int i = y * size[0] + x;
+                    int light = 150 + 90 * x / size[0] - 50 * y / size[1];
+                    int v = (pixels[i] == 0 ? light / 3 : light) + random.nextInt(17) - 8;
+                    pixels[i] = (byte) Math.max(0, Math.min(255, v));
+                }
+            }
+            return pixels;
+        }
+        BufferedImage recorded = ImageIO.read(new File(source));
+        if (recorded == null) {
+            throw new IOException("Cannot read image " + source);
+        }
+        BufferedImage gray = new BufferedImage(size[0], size[1], BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D g = gray.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(recorded, 0, 0, size[0], size[1], null);
+        g.dispose();
+        return ((DataBufferByte) gray.getRaster().getDataBuffer()).getData().clone();
+    }
+
+    /**
+     * Draws a thresholded envelope: a border, a solid stamp, a small sender block and a five
+     * line handwritten-looking address, all rotated by {@code skew} degrees. Feature sizes
+     * scale with the image, so every resolution looks like the same envelope.
+     */
+    static byte[] envelope(int width, int height, double skew, long seed) {
+        byte[] page = new byte[width * height];
+        Arrays.fill(page, (byte) 255);
+        Random random = new Random(seed);
+        double u = height / 400.0; // Feature scale: the layout is designed at 400 px high.
+        int b = Math.max(1, (int) (3 * u));
+        fill(page, width, 4, 4, width - 4, 4 + b);
+        fill(page, width, 4, height - 4 - b, width - 4, height - 4);
+        fill(page, width, 4, 4, 4 + b, height - 4);
+        fill(page, width, width - 4 - b, 4, width - 4, height - 4);
+        fill(page, width, (int) (width - 120 * u), (int) (20 * u), (int) (width - 30 * u), (int) (120 * u));
+        write(page, width, random, u, (int) (20 * u), (int) (20 * u), 2, (int) (80 * u));
+        write(page, width, random, u, (int) (width * 0.3), (int) (height * 0.45), 5, (int) (width * 0.45));
+        return rotate(page, width, height, skew);
+    }
+
+    private static void write(byte[] page, int width, Random random, double u, int x, int y, int lines, int lineWidth) {
+        int pitch = (int) (28 * u);
+        int stroke = Math.max(1, (int) (2 * u));
+        for (int line = 0; line < lines; line++) {
+            int base = y + line * pitch + (int) (16 * u);
+            for (int cx = x; cx < x + lineWidth; ) {
+                int word = (int) ((10 + random.nextInt(30)) * u);
+                for (int px = cx; px < Math.min(cx + word, x + lineWidth); px += stroke + Math.max(1, (int) u)) {
+                    int h = (int) ((6 + random.nextInt(10)) * u);
+                    fill(page, width, px, base - h, px + stroke, base);
+                }
+                cx += word + (int) ((8 + random.nextInt(8)) * u);
+            }
+        }
+    }
+
+    private static void fill(byte[] page, int width, int x0, int y0, int x1, int y1) {
+        int height = page.length / width;
+        for (int y = Math.max(0, y0); y < Math.min(height, y1); y++) {
+            Arrays.fill(page, y * width + Math.max(0, x0), y * width + Math.min(width, x1), (byte) 0);
+        }
+    }
+
+    /** Nearest-neighbour rotation about the centre; uncovered corners become paper. */
+    private static byte[] rotate(byte[] page, int width, int height, double degrees) {
+        byte[] out = new byte[page.length];
+        double rad = Math.toRadians(degrees);
+        double sin = Math.sin(rad);
+        double cos = Math.cos(rad);
+        double cx = width / 2.0;
+        double cy = height / 2.0;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                double dx = x - cx;
+                double dy = y - cy;
+                int sx = (int) Math.round(dx * cos - dy * sin + cx);
+                int sy = (int) Math.round(dx * sin + dy * cos + cy);
+                boolean inside = sx >= 0 && sx < width && sy >= 0 && sy < height;
+                out[y * width + x] = inside ? page[sy * width + sx] : (byte) 255;
+            }
+        }
+        return out;
+    }
+}
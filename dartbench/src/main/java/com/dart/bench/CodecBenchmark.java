@@ -0,0 +1,91 @@
+package com.dart.bench;
+
+import com.dart.core.cache.AverageHash;
+import com.dart.core.image.BilevelCodec;
+import com.dart.core.image.BilevelImage;
+import com.dart.core.image.LinesCodec;
+import com.dart.core.layout.LineSegmenter;
+import com.dart.core.layout.TextLine;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Binary packing and the upload encodings that run in pure Java: packed and run-length
+ * bilevel, the multi-line payload, and the perceptual hash taken before every upload.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+
+    @Param({"640x480", "1000x750", "2000x1500"})
+    public String resolution;
+
+    @Param({BenchImages.SYNTHETIC})
+    public String source;
+
+    private byte[] pixels;
+    private int width;
+    private int height;
+    private BilevelImage packed;
+    private byte[] runs;
+    private List<TextLine> lines;
+
+    @Setup
+    public void setUp() throws IOException {
+        int[] size = BenchImages.size(resolution);
+        width = size[0];
+        height = size[1];
+        pixels = BenchImages.load(source, resolution);
+        packed = BilevelImage.pack(pixels, width, height, 128);
+        runs = BilevelCodec.encodeRuns(pixels, width, height);
+        lines = new LineSegmenter.Builder().build().segment(pixels, width, height);
+    }
+
+    @Benchmark
+    public BilevelImage pack() {
+        return BilevelImage.pack(pixels, width, height, 128);
+    }
+
+    @Benchmark
+    public byte[] encodePacked() {
+        return BilevelCodec.encodePacked(packed);
+    }
+
+    @Benchmark
+    public byte[] encodeRuns() {
+        return BilevelCodec.encodeRuns(pixels, width, height);
+    }
+
+    @Benchmark
+    public BilevelImage decodeRuns() throws IOException {
+        return BilevelCodec.decode(runs);
+    }
+
+    @Benchmark
+    public byte[] encodeLines() {
+        return LinesCodec.encode(lines);
+    }
+
+    @Benchmark
+    public long averageHash() {
+        return AverageHash.compute(pixels, width, height);
+    }
+}
@@ -0,0 +1,75 @@
+package com.dart.bench;
+
+import com.dart.core.layout.AddressBlockLocator;
+import com.dart.core.layout.LineSegmenter;
+import com.dart.core.layout.TextBlock;
+import com.dart.core.layout.TextLine;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Locating the address block and segmenting it into text lines, as the locate and segment
+ * stages do with the thresholded image.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LayoutBenchmark {
+
+    @Param({"640x480", "1000x750", "2000x1500"})
+    public String resolution;
+
+    @Param({BenchImages.SYNTHETIC})
+    public String source;
+
+    private byte[] pixels;
+    private int width;
+    private int height;
+    private byte[] block;
+    private int blockWidth;
+    private int blockHeight;
+    private AddressBlockLocator locator;
+    private LineSegmenter segmenter;
+
+    @Setup
+    public void setUp() throws IOException {
+        int[] size = BenchImages.size(resolution);
+        width = size[0];
+        height = size[1];
+        pixels = BenchImages.load(source, resolution);
+        locator = new AddressBlockLocator.Builder().setMinConfidence(0.5).build();
+        segmenter = new LineSegmenter.Builder().build();
+        TextBlock located = locator.locate(pixels, width, height);
+        block = located.crop(pixels, width);
+        blockWidth = located.width;
+        blockHeight = located.height;
+    }
+
+    @Benchmark
+    public TextBlock locate() {
+        return locator.locate(pixels, width, height);
+    }
+
+    /** Segmentation of the located block, deskew included. */
+    @Benchmark
+    public List<TextLine> segment() {
+        return segmenter.segment(block, blockWidth, blockHeight);
+    }
+}
@@ -0,0 +1,295 @@
+package com.dart.bench;
+
+import org.opencv.core.Point;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The Java side of {@code org.opencv.utils.Converters} and {@code MatOfPoint}: copying point
+ * lists into the primitive buffers handed to {@code Mat.put}, and boxing the buffers filled by
+ * {@code Mat.get} back into points.
+ * <p>
+ * {@code Mat.put} and {@code Mat.get} are JNI calls into the Android OpenCV library and cannot
+ * run on a desktop JVM, so each benchmark mirrors the loop of the named method with the
+ * native copy left out. What is measured is the boxing, list traffic and per-point casts that
+ * happen on top of the native copy.
+ * <p>
+ * The {@code boxed*} and {@code primitive*} pairs compare the {@code List<Integer>},
+ * {@code List<Float>} and {@code List<Byte>} converters with their primitive-array
+ * counterparts ({@code array_int_to_Mat}, {@code Mat_to_array_int}, {@code xy_int_to_Mat}, ...),
+ * whose Java side is at most the allocation of the buffer {@code Mat.get} fills.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MarshallingBenchmark {
+
+    @Param({"100", "10000", "100000"})
+    public int count;
+
+    private List<Point> points;
+    private Point[] array;
+    private int[] ints;
+    private float[] floats;
+    private double[] doubles;
+    private List<Integer> intList;
+    private List<Float> floatList;
+    private List<Byte> byteList;
+    private byte[] bytes;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(7);
+        array = new Point[count];
+        for (int i = 0; i < count; i++) {
+            array[i] = new Point(random.nextInt(4000), random.nextInt(3000));
+        }
+        points = new ArrayList<>(Arrays.asList(array));
+        ints = new int[count * 2];
+        floats = new float[count * 2];
+        doubles = new double[count * 2];
+        for (int i = 0; i < count * 2; i++) {
+            ints[i] = random.nextInt(4000);
+            floats[i] = ints[i];
+            doubles[i] = ints[i];
+        }
+        intList = new ArrayList<>(count);
+        floatList = new ArrayList<>(count);
+        byteList = new ArrayList<>(count);
+        bytes = new byte[count];
+        for (int i = 0; i < count; i++) {
+            intList.add(ints[i]);
+            floatList.add(floats[i]);
+            bytes[i] = (byte) ints[i];
+            byteList.add(bytes[i]);
+        }
+    }
+
+    /** {@code Converters.vector_Point_to_Mat(pts)}: CV_32SC2. */
+    @Benchmark
+    public int[] vectorPointToInts() {
+        int[] buff = new int[count * 2];
+        for (int i = 0; i < count; i++) {
+            Point p = points.get(i);
+            buff[i * 2] = (int) p.x;
+            buff[i * 2 + 1] = (int) p.y;
+        }
+        return buff;
+    }
+
+    /** {@code Converters.vector_Point2f_to_Mat(pts)}: CV_32FC2. */
+    @Benchmark
+    public float[] vectorPointToFloats() {
+        float[] buff = new float[count * 2];
+        for (int i = 0; i < count; i++) {
+            Point p = points.get(i);
+            buff[i * 2] = (float) p.x;
+            buff[i * 2 + 1] = (float) p.y;
+        }
+        return buff;
+    }
+
+    /** {@code Converters.vector_Point2d_to_Mat(pts)}: CV_64FC2. */
+    @Benchmark
+    public double[] vectorPointToDoubles() {
+        double[] buff = new double[count * 2];
+        for (int i = 0; i < count; i++) {
+            Point p = points.get(i);
+            buff[i * 2] = p.x;
+            buff[i * 2 + 1] = p.y;
+        }
+        return buff;
+    }
+
+    /** {@code Converters.Mat_to_vector_Point(m, pts)} for CV_32SC2. */
+    @Benchmark
+    public List<Point> intsToVectorPoint() {
+        List<Point> pts = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            pts.add(new Point(ints[i * 2], ints[i * 2 + 1]));
+        }
+        return pts;
+    }
+
+    /** {@code Converters.Mat_to_vector_Point2f(m, pts)}. */
+    @Benchmark
+    public List<Point> floatsToVectorPoint() {
+        List<Point> pts = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            pts.add(new Point(floats[i * 2], floats[i * 2 + 1]));
+        }
+        return pts;
+    }
+
+    /** {@code Converters.Mat_to_vector_Point2d(m, pts)}. */
+    @Benchmark
+    public List<Point> doublesToVectorPoint() {
+        List<Point> pts = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            pts.add(new Point(doubles[i * 2], doubles[i * 2 + 1]));
+        }
+        return pts;
+    }
+
+    /** {@code MatOfPoint.fromArray(a)}. */
+    @Benchmark
+    public int[] matOfPointFromArray() {
+        int[] buff = new int[count * 2];
+        for (int i = 0; i < count; i++) {
+            Point p = array[i];
+            buff[2 * i] = (int) p.x;
+            buff[2 * i + 1] = (int) p.y;
+        }
+        return buff;
+    }
+
+    /** {@code MatOfPoint.toArray()}. */
+    @Benchmark
+    public Point[] matOfPointToArray() {
+        Point[] ap = new Point[count];
+        for (int i = 0; i < count; i++) {
+            ap[i] = new Point(ints[i * 2], ints[i * 2 + 1]);
+        }
+        return ap;
+    }
+
+    /** {@code MatOfPoint.fromList(lp)}: the list is copied to an array before packing. */
+    @Benchmark
+    public int[] matOfPointFromList() {
+        Point[] ap = points.toArray(new Point[0]);
+        int[] buff = new int[ap.length * 2];
+        for (int i = 0; i < ap.length; i++) {
+            Point p = ap[i];
+            buff[2 * i] = (int) p.x;
+            buff[2 * i + 1] = (int) p.y;
+        }
+        return buff;
+    }
+
+    /** {@code Converters.vector_int_to_Mat(is)}: unboxes the list into the buffer. */
+    @Benchmark
+    public int[] boxedVectorIntToMat() {
+        int[] buff = new int[count];
+        for (int i = 0; i < count; i++) {
+            buff[i] = intList.get(i);
+        }
+        return buff;
+    }
+
+    /** {@code Converters.array_int_to_Mat(is)}: the array is the buffer. */
+    @Benchmark
+    public int[] primitiveArrayIntToMat() {
+        return ints;
+    }
+
+    /** {@code Converters.Mat_to_vector_int(m, is)}: boxes every element into the list. */
+    @Benchmark
+    public List<Integer> boxedMatToVectorInt() {
+        int[] buff = new int[count];
+        List<Integer> is = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            is.add(buff[i]);
+        }
+        return is;
+    }
+
+    /** {@code Converters.Mat_to_array_int(m)}. */
+    @Benchmark
+    public int[] primitiveMatToArrayInt() {
+        return new int[count];
+    }
+
+    /** {@code Converters.vector_float_to_Mat(fs)}. */
+    @Benchmark
+    public float[] boxedVectorFloatToMat() {
+        float[] buff = new float[count];
+        for (int i = 0; i < count; i++) {
+            buff[i] = floatList.get(i);
+        }
+        return buff;
+    }
+
+    /** {@code Converters.Mat_to_vector_float(m, fs)}. */
+    @Benchmark
+    public List<Float> boxedMatToVectorFloat() {
+        float[] buff = new float[count];
+        List<Float> fs = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            fs.add(buff[i]);
+        }
+        return fs;
+    }
+
+    /** {@code Converters.Mat_to_array_float(m)}. */
+    @Benchmark
+    public float[] primitiveMatToArrayFloat() {
+        return new float[count];
+    }
+
+    /** {@code Converters.vector_uchar_to_Mat(bs)}. */
+    @Benchmark
+    public byte[] boxedVectorUcharToMat() {
+        byte[] buff = new byte[count];
+        for (int i = 0; i < count; i++) {
+            buff[i] = byteList.get(i);
+        }
+        return buff;
+    }
+
+    /** {@code Converters.array_uchar_to_Mat(bs)}. */
+    @Benchmark
+    public byte[] primitiveArrayUcharToMat() {
+        return bytes;
+    }
+
+    /** {@code Converters.Mat_to_vector_uchar(m, bs)}. */
+    @Benchmark
+    public List<Byte> boxedMatToVectorUchar() {
+        byte[] buff = new byte[count];
+        List<Byte> bs = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            bs.add(buff[i]);
+        }
+        return bs;
+    }
+
+    /** {@code Converters.Mat_to_array_uchar(m)}. */
+    @Benchmark
+    public byte[] primitiveMatToArrayUchar() {
+        return new byte[count];
+    }
+
+    /**
+     * {@code Converters.Mat_to_xy_int(m)}, the packed counterpart of {@link #intsToVectorPoint()};
+     * compare also with {@link #vectorPointToInts()} for {@code xy_int_to_Mat}, which has no
+     * Java-side work at all.
+     */
+    @Benchmark
+    public int[] primitiveMatToXyInt() {
+        return new int[count * 2];
+    }
+
+    /** {@code Converters.Mat_to_xy_float(m)}, against {@link #floatsToVectorPoint()}. */
+    @Benchmark
+    public float[] primitiveMatToXyFloat() {
+        return new float[count * 2];
+    }
+}
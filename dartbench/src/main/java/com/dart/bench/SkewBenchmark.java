@@ -0,0 +1,113 @@
+package com.dart.bench;
+
+import com.dart.core.skew.MomentSkewEstimator;
+import com.dart.core.skew.ProjectionSkewDetector;
+import com.dart.core.skew.SkewBox;
+import com.dart.core.skew.SkewCriteria;
+import com.dart.core.skew.SkewEstimate;
+import com.dart.core.skew.SkewSearch;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Projection-profile skew detection: loading the foreground, a single projection, and the
+ * whole-degree scan against the coarse-to-fine search configured as in the app, and the
+ * one-pass streaming estimator offered as the fast path of {@code correctSkew}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SkewBenchmark {
+
+    @Param({"640x480", "1000x750", "2000x1500"})
+    public String resolution;
+
+    @Param({BenchImages.SYNTHETIC})
+    public String source;
+
+    private byte[] pixels;
+    private int width;
+    private int height;
+    private ProjectionSkewDetector detector; // Loaded once, for the per-angle benchmarks.
+    private ProjectionSkewDetector scratch;  // Reloaded by the benchmarks that include loading.
+    private SkewSearch search;
+    private MomentSkewEstimator moments;
+    private MomentSkewEstimator minArea;
+
+    @Setup
+    public void setUp() throws IOException {
+        int[] size = BenchImages.size(resolution);
+        width = size[0];
+        height = size[1];
+        pixels = BenchImages.load(source, resolution);
+        detector = new ProjectionSkewDetector(0);
+        detector.load(pixels, width, height);
+        scratch = new ProjectionSkewDetector(0);
+        search = new SkewSearch.Builder()
+                .setRange(-15, 15)
+                .setScale(4)
+                .setTolerance(0.1)
+                .setCriterion(SkewCriteria.VARIANCE)
+                .setForeground(0)
+                .build();
+        moments = new MomentSkewEstimator.Builder().setMethod(MomentSkewEstimator.Method.MOMENTS).build();
+        minArea = new MomentSkewEstimator.Builder().build();
+    }
+
+    @Benchmark
+    public int load() {
+        scratch.load(pixels, width, height);
+        return scratch.foregroundCount();
+    }
+
+    @Benchmark
+    public int[] projection() {
+        return detector.projection(BenchImages.SKEW);
+    }
+
+    @Benchmark
+    public double score() {
+        return detector.score(BenchImages.SKEW, SkewCriteria.VARIANCE);
+    }
+
+    /** The original whole-degree scan over the app's range, image load included. */
+    @Benchmark
+    public int detect() {
+        scratch.load(pixels, width, height);
+        return scratch.detect(-15, 15, -1);
+    }
+
+    /** The app's skew search: whole degrees at 1/4 scale, then refined on the full image. */
+    @Benchmark
+    public SkewEstimate search() {
+        return search.search(pixels, width, height);
+    }
+
+    /** Principal axis of the eroded ink, in one pass. */
+    @Benchmark
+    public SkewBox moments() {
+        return moments.estimate(pixels, width, height);
+    }
+
+    /** Smallest rectangle around the hull of the per-row extremes of the eroded ink. */
+    @Benchmark
+    public SkewBox minArea() {
+        return minArea.estimate(pixels, width, height);
+    }
+}
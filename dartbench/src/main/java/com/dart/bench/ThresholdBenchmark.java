@@ -0,0 +1,86 @@
+package com.dart.bench;
+
+import com.dart.core.threshold.AdaptiveThreshold;
+import com.dart.core.tile.MedianBlur;
+import com.dart.core.tile.TiledExecutor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adaptive thresholding of a grayscale envelope with the Java engine, alone and chained with
+ * the median filter on a {@link TiledExecutor}. The cost per pixel should not depend on
+ * {@code window}; {@code parallelism} 1 is what devices before API 21 run.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ThresholdBenchmark {
+
+    @Param({"640x480", "1000x750", "2000x1500"})
+    public String resolution;
+
+    @Param({BenchImages.SYNTHETIC})
+    public String source;
+
+    @Param({"MEAN", "SAUVOLA"})
+    public AdaptiveThreshold.Method method;
+
+    @Param({"15", "51"})
+    public int window;
+
+    @Param({"1", "4"})
+    public int parallelism;
+
+    private byte[] gray;
+    private byte[] binary;
+    private int width;
+    private int height;
+    private AdaptiveThreshold engine;
+    private TiledExecutor tiles;
+    private MedianBlur median;
+
+    @Setup
+    public void setUp() throws IOException {
+        int[] size = BenchImages.size(resolution);
+        width = size[0];
+        height = size[1];
+        gray = BenchImages.gray(source, resolution);
+        binary = new byte[gray.length];
+        engine = new AdaptiveThreshold.Builder()
+                .setMethod(method)
+                .setWindow(window)
+                .setParallelism(parallelism)
+                .build();
+        tiles = new TiledExecutor.Builder().setParallelism(parallelism).build();
+        median = new MedianBlur(5);
+    }
+
+    @Benchmark
+    public byte[] threshold() {
+        engine.apply(gray, binary, width, height);
+        return binary;
+    }
+
+    /** Threshold and 5x5 median filter as one banded pass, as the preprocess stage runs them. */
+    @Benchmark
+    public byte[] binarise() {
+        tiles.apply(gray, binary, width, height, engine, median);
+        return binary;
+    }
+}
@@ -0,0 +1,205 @@
+package com.dart.core.adaptive;
+
+import java.util.Locale;
+
+/**
+ * Rolling estimate of the link to the OCR server, built from the uploads that actually went
+ * through it. Each upload is split into three parts, each smoothed with an exponentially
+ * weighted moving average:
+ * <ul>
+ *   <li><b>connect</b>: time to open a connection, roughly one round trip plus the TCP
+ *       handshake; only paid by protocols that connect per request;</li>
+ *   <li><b>throughput</b>: bytes that left the device over the time the sender spent blocked
+ *       writing them;</li>
+ *   <li><b>wait</b>: time from the last byte written to the reply, less the time the link
+ *       still needed for the bytes left in the socket's send buffer, i.e. roughly the server's
+ *       recognition plus one round trip.</li>
+ * </ul>
+ * A write returns as soon as its bytes are copied into the send buffer, so the last
+ * {@link Builder#setSendBufferBytes(long) sendBufferBytes} of a payload are still queued when
+ * the sender finishes, and a payload that fits in the buffer is written in no time at all.
+ * Those bytes are left out of the throughput sample and their transfer time is taken out of
+ * the wait, so the size of a payload keeps showing in the prediction instead of being charged
+ * to every payload alike.
+ * <p>
+ * Thread-safe.
+ */
+public final class LinkEstimator {
+
+    private final double smoothing;
+    private final long minSampleBytes;
+    private final long sendBufferBytes;
+
+    private double throughput;     // Bytes per second.
+    private double connectMillis;
+    private double waitMillis;
+    private int transfers;         // Uploads recorded, for telemetry.
+
+    private LinkEstimator(Builder builder) {
+        this.smoothing = builder.smoothing;
+        this.minSampleBytes = builder.minSampleBytes;
+        this.sendBufferBytes = builder.sendBufferBytes;
+        this.throughput = builder.throughput;
+        this.connectMillis = builder.connectMillis;
+        this.waitMillis = builder.waitMillis;
+    }
+
+    /**
+     * @param millis Time it took to open a connection to the server.
+     */
+    public synchronized void recordConnect(long millis) {
+        connectMillis = smooth(connectMillis, Math.max(0, millis));
+    }
+
+    /**
+     * Records one completed upload.
+     *
+     * @param bytes      Payload size.
+     * @param sendMillis Time spent blocked writing the payload.
+     * @param waitMillis Time from the end of the payload to the reply.
+     */
+    public synchronized void recordTransfer(long bytes, long sendMillis, long waitMillis) {
+        long buffered = Math.min(bytes, sendBufferBytes); // Still queued when the writes returned.
+        long drained = bytes - buffered;
+        if (drained >= minSampleBytes) {
+            throughput = smooth(throughput, drained * 1000.0 / Math.max(1, sendMillis));
+        }
+        double serverMillis = waitMillis - buffered * 1000.0 / throughput;
+        this.waitMillis = smooth(this.waitMillis, Math.max(0, serverMillis));
+        transfers++;
+    }
+
+    private double smooth(double average, double sample) {
+        return average + smoothing * (sample - average);
+    }
+
+    /**
+     * @return Estimated throughput in bytes per second.
+     */
+    public synchronized double throughput() {
+        return throughput;
+    }
+
+    /**
+     * @return Estimated time to open a connection, in milliseconds.
+     */
+    public synchronized double connectMillis() {
+        return connectMillis;
+    }
+
+    /**
+     * @return Estimated time from the end of a payload to its reply, in milliseconds.
+     */
+    public synchronized double waitMillis() {
+        return waitMillis;
+    }
+
+    /**
+     * @return Number of uploads recorded so far.
+     */
+    public synchronized int transfers() {
+        return transfers;
+    }
+
+    /**
+     * @param bytes   Payload size.
+     * @param connect True if a connection has to be opened first.
+     * @return Predicted time from the start of sending to the reply, in milliseconds.
+     */
+    public synchronized double predictMillis(long bytes, boolean connect) {
+        return (connect ? connectMillis : 0) + bytes * 1000.0 / throughput + waitMillis;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format(Locale.US, "%.1f KiB/s connect=%.0fms wait=%.0fms (%d uploads)",
+                throughput / 1024, connectMillis, waitMillis, transfers);
+    }
+
+    /**
+     * Builder for {@link LinkEstimator}. The initial values are the estimate before the first
+     * upload; the defaults assume a slow mobile link, so the first capture is not oversized.
+     */
+    public static final class Builder {
+        private double smoothing = 0.3;
+        private long minSampleBytes = 16 * 1024;
+        private long sendBufferBytes = 256 * 1024;
+        private double throughput = 16 * 1024;
+        private double connectMillis = 600;
+        private double waitMillis = 2000;
+
+        /**
+         * @param smoothing Weight of each new sample, 0-1. Default 0.3.
+         * @return This builder.
+         */
+        public Builder setSmoothing(double smoothing) {
+            if (smoothing <= 0 || smoothing > 1) {
+                throw new IllegalArgumentException("smoothing must be in (0, 1]: " + smoothing);
+            }
+            this.smoothing = smoothing;
+            return this;
+        }
+
+        /**
+         * @param minSampleBytes Payloads that leave fewer bytes than this beyond the send buffer
+         *                       do not update the throughput. Default 16 KiB.
+         * @return This builder.
+         */
+        public Builder setMinSampleBytes(long minSampleBytes) {
+            this.minSampleBytes = minSampleBytes;
+            return this;
+        }
+
+        /**
+         * @param sendBufferBytes Bytes the socket accepts before a write blocks, e.g.
+         *                        {@link java.net.Socket#getSendBufferSize()}; overestimating
+         *                        it only costs samples. Default 256 KiB, about what Android
+         *                        grows a TCP send buffer to.
+         * @return This builder.
+         */
+        public Builder setSendBufferBytes(long sendBufferBytes) {
+            if (sendBufferBytes < 0) {
+                throw new IllegalArgumentException("sendBufferBytes must be >= 0: " + sendBufferBytes);
+            }
+            this.sendBufferBytes = sendBufferBytes;
+            return this;
+        }
+
+        /**
+         * @param bytesPerSecond Initial throughput. Default 16 KiB/s.
+         * @return This builder.
+         */
+        public Builder setInitialThroughput(double bytesPerSecond) {
+            if (bytesPerSecond <= 0) {
+                throw new IllegalArgumentException("bytesPerSecond must be > 0: " + bytesPerSecond);
+            }
+            this.throughput = bytesPerSecond;
+            return this;
+        }
+
+        /**
+         * @param connectMillis Initial connect time. Default 600 ms.
+         * @return This builder.
+         */
+        public Builder setInitialConnectMillis(double connectMillis) {
+            this.connectMillis = connectMillis;
+            return this;
+        }
+
+        /**
+         * @param waitMillis Initial wait for the reply. Default 2000 ms.
+         * @return This builder.
+         */
+        public Builder setInitialWaitMillis(double waitMillis) {
+            this.waitMillis = waitMillis;
+            return this;
+        }
+
+        /**
+         * @return A new estimator.
+         */
+        public LinkEstimator build() {
+            return new LinkEstimator(this);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.dart.core.adaptive;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Counts the bytes written to a stream and the time spent blocked writing them, which is the
+ * time the link, not the encoder, was the bottleneck. Feeds {@link LinkEstimator#recordTransfer}.
+ * Only bulk writes and flushes are timed; single bytes are counted but not timed.
+ * <p>
+ * Not thread-safe.
+ */
+public final class MeteredOutputStream extends FilterOutputStream {
+
+    private long bytes;
+    private long blockedNanos;
+
+    public MeteredOutputStream(OutputStream out) {
+        super(out);
+    }
+
+    /**
+     * Counts the byte without timing it: two clock reads per byte would cost more than the
+     * write itself. Payloads of any size should go through {@link #write(byte[], int, int)}.
+     */
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        bytes++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        long start = System.nanoTime();
+        out.write(b, off, len); // FilterOutputStream would write byte by byte.
+        blockedNanos += System.nanoTime() - start;
+        bytes += len;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        long start = System.nanoTime();
+        out.flush();
+        blockedNanos += System.nanoTime() - start;
+    }
+
+    /**
+     * @return Bytes written so far.
+     */
+    public long bytes() {
+        return bytes;
+    }
+
+    /**
+     * @return Nanoseconds spent inside writes and flushes so far.
+     */
+    public long blockedNanos() {
+        return blockedNanos;
+    }
+}
@@ -0,0 +1,43 @@
+package com.dart.core.adaptive;
+
+import com.dart.core.net.Frame;
+
+/**
+ * Ways of encoding a thresholded envelope for upload. The image is already bi-level, so every
+ * encoding is lossless; they differ only in size and in the time the phone spends encoding.
+ * The size and cost figures are starting points for the {@link UploadPlanner}, which replaces
+ * them with what it measures.
+ */
+public enum UploadEncoding {
+    /** PNG of the RGBA bitmap at the default compression, as originally sent. */
+    PNG_RGBA(Frame.FORMAT_PNG, 32, 6, 0.12, 60),
+    /** 8-bit grayscale PNG, fastest zlib level. */
+    PNG_GRAY_FAST(Frame.FORMAT_PNG, 8, 1, 0.09, 20),
+    /** 8-bit grayscale PNG, best zlib compression. */
+    PNG_GRAY_SMALL(Frame.FORMAT_PNG, 8, 9, 0.06, 80),
+    /** 1-bit PNG, fastest zlib level. */
+    PNG_BILEVEL_FAST(Frame.FORMAT_PNG, 1, 1, 0.04, 10),
+    /** 1-bit PNG, best zlib compression. */
+    PNG_BILEVEL_SMALL(Frame.FORMAT_PNG, 1, 9, 0.03, 30),
+    /** Run-length coded bi-level image, framed protocol only. */
+    BILEVEL_RUNS(Frame.FORMAT_BILEVEL, 1, 0, 0.02, 5),
+    /** Segmented text lines, framed protocol only. */
+    LINES(Frame.FORMAT_LINES, 1, 0, 0.015, 8);
+
+    /** Request format the encoding is sent as, one of the {@link Frame} request formats. */
+    public final int format;
+    /** Bits per pixel of the encoded image. */
+    public final int bitDepth;
+    /** zlib compression level, 0-9; 0 if the encoding does not use zlib. */
+    public final int level;
+    final double bytesPerPixel;  // Initial size estimate.
+    final double nanosPerPixel;  // Initial encoding cost estimate, on a mid-range phone.
+
+    UploadEncoding(int format, int bitDepth, int level, double bytesPerPixel, double nanosPerPixel) {
+        this.format = format;
+        this.bitDepth = bitDepth;
+        this.level = level;
+        this.bytesPerPixel = bytesPerPixel;
+        this.nanosPerPixel = nanosPerPixel;
+    }
+}
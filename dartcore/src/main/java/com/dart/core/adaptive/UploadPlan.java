@@ -0,0 +1,57 @@
+package com.dart.core.adaptive;
+
+import java.util.Locale;
+
+/**
+ * One decision of the {@link UploadPlanner}: how a capture is cropped, scaled and encoded,
+ * what that was predicted to cost, and the link estimate the prediction was based on. Plans
+ * are immutable, so they can be handed to telemetry as they are.
+ */
+public final class UploadPlan {
+
+    public final UploadPlanner.Crop crop;  // Region of the capture to send.
+    public final double scale;             // Resolution relative to the capture, 0-1.
+    public final int width;                // Size of the image sent, after cropping and scaling.
+    public final int height;
+    public final UploadEncoding encoding;
+    public final long predictedBytes;
+    public final double predictedMillis;   // Encoding plus upload plus the wait for the reply.
+    public final long targetMillis;
+    public final double throughput;        // Link estimate used, bytes per second.
+    public final double connectMillis;     // 0 if the connection was already open.
+    public final double waitMillis;
+    public final int options;              // Crop, scale and encoding combinations evaluated.
+
+    UploadPlan(UploadPlanner.Crop crop, double scale, int width, int height, UploadEncoding encoding,
+               long predictedBytes, double predictedMillis, long targetMillis,
+               double throughput, double connectMillis, double waitMillis, int options) {
+        this.crop = crop;
+        this.scale = scale;
+        this.width = width;
+        this.height = height;
+        this.encoding = encoding;
+        this.predictedBytes = predictedBytes;
+        this.predictedMillis = predictedMillis;
+        this.targetMillis = targetMillis;
+        this.throughput = throughput;
+        this.connectMillis = connectMillis;
+        this.waitMillis = waitMillis;
+        this.options = options;
+    }
+
+    /**
+     * @return True if the plan is predicted to meet the latency target; otherwise it is the
+     * fastest option there was.
+     */
+    public boolean meetsTarget() {
+        return predictedMillis <= targetMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US,
+                "%s %dx%d@%.2f %s ~%dB ~%.0fms/%dms%s [%.1f KiB/s connect=%.0fms wait=%.0fms, %d options]",
+                crop.name, width, height, scale, encoding, predictedBytes, predictedMillis, targetMillis,
+                meetsTarget() ? "" : " (over target)", throughput / 1024, connectMillis, waitMillis, options);
+    }
+}
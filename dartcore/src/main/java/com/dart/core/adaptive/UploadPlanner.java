@@ -0,0 +1,257 @@
+package com.dart.core.adaptive;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Chooses the resolution, crop and encoding of each upload so that the whole round trip,
+ * encoding included, meets a latency target on the link at hand.
+ * <p>
+ * Since captures are thresholded before they are planned, every {@link UploadEncoding} is
+ * lossless; only cropping and downscaling lose anything. The planner therefore walks the
+ * options from most to least faithful, every crop at full resolution, then every crop at each
+ * smaller scale, and for each one predicts the fastest encoding:
+ * <pre>
+ *   millis = pixels * nanosPerPixel / 1e6 + {@link LinkEstimator#predictMillis(long, boolean)}(pixels * bytesPerPixel)
+ * </pre>
+ * The first option that meets the target wins. If none does, the fastest option overall is
+ * sent anyway, since waiting would not make the link any faster.
+ * <p>
+ * Bytes and nanoseconds per pixel start from the figures in {@link UploadEncoding} and track
+ * the real encoder through {@link #recordEncode}. Every plan is passed to the
+ * {@link Listener}, for telemetry.
+ * <p>
+ * Thread-safe.
+ */
+public final class UploadPlanner {
+
+    /**
+     * Receives every plan, on the thread that asked for it.
+     */
+    public interface Listener {
+        void onPlan(UploadPlan plan);
+    }
+
+    /**
+     * A region of the capture that may be sent, e.g. the whole envelope or its address block.
+     */
+    public static final class Crop {
+        public final String name;  // For logs and telemetry.
+        public final int width;
+        public final int height;
+
+        public Crop(String name, int width, int height) {
+            if (width <= 0 || height <= 0) {
+                throw new IllegalArgumentException("Invalid crop " + name + ": " + width + "x" + height);
+            }
+            this.name = name;
+            this.width = width;
+            this.height = height;
+        }
+
+        @Override
+        public String toString() {
+            return name + " " + width + "x" + height;
+        }
+    }
+
+    private final LinkEstimator link;
+    private final long targetMillis;
+    private final double[] scales;
+    private final double smoothing;
+    private final Listener listener;
+
+    private final double[] bytesPerPixel;  // By UploadEncoding ordinal; guarded by this.
+    private final double[] nanosPerPixel;
+
+    private UploadPlanner(Builder builder) {
+        this.link = builder.link;
+        this.targetMillis = builder.targetMillis;
+        this.scales = builder.scales;
+        this.smoothing = builder.smoothing;
+        this.listener = builder.listener;
+        UploadEncoding[] encodings = UploadEncoding.values();
+        this.bytesPerPixel = new double[encodings.length];
+        this.nanosPerPixel = new double[encodings.length];
+        for (UploadEncoding encoding : encodings) {
+            bytesPerPixel[encoding.ordinal()] = encoding.bytesPerPixel;
+            nanosPerPixel[encoding.ordinal()] = encoding.nanosPerPixel;
+        }
+    }
+
+    /**
+     * @return The link estimate the planner predicts with.
+     */
+    public LinkEstimator link() {
+        return link;
+    }
+
+    /**
+     * Plans one upload.
+     *
+     * @param crops     Regions that may be sent, most trusted first, e.g. the confidently
+     *                  located address block (or the whole image), then a less certain crop.
+     * @param encodings Encodings the server accepts.
+     * @param connected True if a connection to the server is already open.
+     * @return The plan, also passed to the listener.
+     */
+    public UploadPlan plan(List<Crop> crops, Set<UploadEncoding> encodings, boolean connected) {
+        if (crops.isEmpty() || encodings.isEmpty()) {
+            throw new IllegalArgumentException("Nothing to plan: " + crops + " " + encodings);
+        }
+        Crop planCrop = null;
+        double planScale = 0;
+        UploadEncoding planEncoding = null;
+        long planBytes = 0;
+        double planMillis = Double.MAX_VALUE;
+        int options = 0;
+        UploadPlan plan;
+        synchronized (this) {
+            search:
+            for (double scale : scales) {
+                for (Crop crop : crops) {
+                    long pixels = (long) scaled(crop.width, scale) * scaled(crop.height, scale);
+                    for (UploadEncoding encoding : encodings) {
+                        options++;
+                        long bytes = (long) Math.ceil(pixels * bytesPerPixel[encoding.ordinal()]);
+                        double millis = pixels * nanosPerPixel[encoding.ordinal()] / 1e6
+                                + link.predictMillis(bytes, !connected);
+                        if (millis < planMillis) { // Fastest so far, at this scale or overall.
+                            planCrop = crop;
+                            planScale = scale;
+                            planEncoding = encoding;
+                            planBytes = bytes;
+                            planMillis = millis;
+                        }
+                    }
+                    if (planMillis <= targetMillis) {
+                        break search; // Only this option's encodings can have got it under the target.
+                    }
+                }
+            }
+            plan = new UploadPlan(planCrop, planScale, scaled(planCrop.width, planScale),
+                    scaled(planCrop.height, planScale), planEncoding, planBytes, planMillis, targetMillis,
+                    link.throughput(), connected ? 0 : link.connectMillis(), link.waitMillis(), options);
+        }
+        if (listener != null) {
+            listener.onPlan(plan);
+        }
+        return plan;
+    }
+
+    private static int scaled(int size, double scale) {
+        return Math.max(1, (int) Math.round(size * scale));
+    }
+
+    /**
+     * Records the real size and cost of an encoded upload, so later plans predict better.
+     *
+     * @param encoding How the image was encoded.
+     * @param pixels   Pixels in the encoded image.
+     * @param bytes    Encoded size.
+     * @param nanos    Time spent encoding.
+     */
+    public synchronized void recordEncode(UploadEncoding encoding, long pixels, long bytes, long nanos) {
+        if (pixels <= 0) {
+            return;
+        }
+        int i = encoding.ordinal();
+        bytesPerPixel[i] += smoothing * ((double) bytes / pixels - bytesPerPixel[i]);
+        nanosPerPixel[i] += smoothing * ((double) Math.max(0, nanos) / pixels - nanosPerPixel[i]);
+    }
+
+    /**
+     * @return Current size estimate of the encoding, in bytes per pixel.
+     */
+    public synchronized double bytesPerPixel(UploadEncoding encoding) {
+        return bytesPerPixel[encoding.ordinal()];
+    }
+
+    /**
+     * @return Current cost estimate of the encoding, in nanoseconds per pixel.
+     */
+    public synchronized double nanosPerPixel(UploadEncoding encoding) {
+        return nanosPerPixel[encoding.ordinal()];
+    }
+
+    /**
+     * Builder for {@link UploadPlanner}.
+     */
+    public static final class Builder {
+        private final LinkEstimator link;
+        private long targetMillis = 8000;
+        private double[] scales = {1.0, 0.8, 0.6};
+        private double smoothing = 0.3;
+        private Listener listener;
+
+        /**
+         * @param link Link estimate to predict with; the caller keeps recording uploads into it.
+         */
+        public Builder(LinkEstimator link) {
+            this.link = link;
+        }
+
+        /**
+         * @param targetMillis End-to-end latency to aim for, from encoding to the reply.
+         *                     Default 8000 ms.
+         * @return This builder.
+         */
+        public Builder setTargetMillis(long targetMillis) {
+            this.targetMillis = targetMillis;
+            return this;
+        }
+
+        /**
+         * @param scales Resolutions that may be sent, relative to the capture, each in (0, 1].
+         *               Default 1, 0.8 and 0.6; the smallest one is the floor below which text
+         *               becomes unreadable.
+         * @return This builder.
+         */
+        public Builder setScales(double... scales) {
+            if (scales.length == 0) {
+                throw new IllegalArgumentException("No scales");
+            }
+            double[] sorted = scales.clone();
+            Arrays.sort(sorted);
+            if (sorted[0] <= 0 || sorted[sorted.length - 1] > 1) {
+                throw new IllegalArgumentException("Scales must be in (0, 1]: " + Arrays.toString(scales));
+            }
+            for (int i = 0; i < sorted.length / 2; i++) { // Largest first.
+                double t = sorted[i];
+                sorted[i] = sorted[sorted.length - 1 - i];
+                sorted[sorted.length - 1 - i] = t;
+            }
+            this.scales = sorted;
+            return this;
+        }
+
+        /**
+         * @param smoothing Weight of each new encoder measurement, 0-1. Default 0.3.
+         * @return This builder.
+         */
+        public Builder setSmoothing(double smoothing) {
+            if (smoothing <= 0 || smoothing > 1) {
+                throw new IllegalArgumentException("smoothing must be in (0, 1]: " + smoothing);
+            }
+            this.smoothing = smoothing;
+            return this;
+        }
+
+        /**
+         * @param listener Receives every plan. Optional.
+         * @return This builder.
+         */
+        public Builder setListener(Listener listener) {
+            this.listener = listener;
+            return this;
+        }
+
+        /**
+         * @return A new planner.
+         */
+        public UploadPlanner build() {
+            return new UploadPlanner(this);
+        }
+    }
+}
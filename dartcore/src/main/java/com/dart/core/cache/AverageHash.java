@@ -0,0 +1,107 @@
+package com.dart.core.cache;
+
+/**
+ * 64-bit perceptual hash of an 8-bit single-channel image.
+ * <p>
+ * The image is reduced to an 8x8 grid of block means and each bit records whether a cell is
+ * darker (holds more ink) than the grid's overall mean. The hash depends only on the coarse
+ * layout of text on the envelope, so two shots of the same envelope with slightly different
+ * framing, exposure or noise differ in a few bits, while different envelopes differ in many.
+ * Compare hashes with {@link #distance(long, long)}.
+ * <p>
+ * A difference hash (each cell compared with its neighbour) is the usual choice for photos,
+ * but a thresholded envelope is mostly blank paper: neighbouring cells tie exactly and their
+ * bits are decided by stray noise pixels. Comparing against the global mean has no such ties.
+ */
+public final class AverageHash {
+
+    private static final int GRID = 8; // Cells per side; GRID * GRID bits.
+
+    private AverageHash() {
+    }
+
+    /**
+     * Hashes a tightly packed image.
+     *
+     * @param pixels Row-major 8-bit pixels, e.g. the thresholded image.
+     * @param width  Image width in pixels.
+     * @param height Image height in pixels.
+     * @return The 64-bit hash.
+     */
+    public static long compute(byte[] pixels, int width, int height) {
+        return compute(pixels, 0, width, width, height);
+    }
+
+    /**
+     * Hashes an image stored with an arbitrary row stride.
+     *
+     * @param pixels Pixel data.
+     * @param offset Index of the first pixel of the first row.
+     * @param stride Distance in bytes between the starts of consecutive rows.
+     * @param width  Image width in pixels.
+     * @param height Image height in pixels.
+     * @return The 64-bit hash.
+     */
+    public static long compute(byte[] pixels, int offset, int stride, int width, int height) {
+        if (width < GRID || height < GRID) {
+            throw new IllegalArgumentException("Image too small to hash: " + width + "x" + height);
+        }
+        if (stride < width || offset < 0 || offset + (long) stride * (height - 1) + width > pixels.length) {
+            throw new IllegalArgumentException("Pixel buffer too small for " + width + "x" + height);
+        }
+
+        // Sum each cell of the grid in one pass over the image.
+        long[] sums = new long[GRID * GRID];
+        int[] cellOfColumn = new int[width];
+        for (int x = 0; x < width; x++) {
+            cellOfColumn[x] = (int) ((long) x * GRID / width);
+        }
+        for (int y = 0, row = offset; y < height; y++, row += stride) {
+            int base = (int) ((long) y * GRID / height) * GRID;
+            for (int x = 0; x < width; x++) {
+                sums[base + cellOfColumn[x]] += pixels[row + x] & 0xFF;
+            }
+        }
+
+        // Cells differ in size by at most one row/column; compare means, not sums.
+        double[] means = new double[sums.length];
+        double total = 0;
+        for (int gy = 0; gy < GRID; gy++) {
+            int rows = span(gy, GRID, height);
+            for (int gx = 0; gx < GRID; gx++) {
+                int i = gy * GRID + gx;
+                means[i] = sums[i] / (double) (rows * span(gx, GRID, width));
+                total += means[i];
+            }
+        }
+        double mean = total / means.length;
+
+        long hash = 0;
+        for (double cell : means) {
+            hash <<= 1;
+            if (cell < mean) {
+                hash |= 1;
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * @return Number of pixels mapped to grid cell {@code cell} out of {@code cells} along an axis of {@code size} pixels.
+     */
+    private static int span(int cell, int cells, int size) {
+        // Pixel p belongs to cell floor(p * cells / size); invert for the first pixel of each cell.
+        int first = (int) (((long) cell * size + cells - 1) / cells);
+        int next = (int) (((long) (cell + 1) * size + cells - 1) / cells);
+        return next - first;
+    }
+
+    /**
+     * @param a A hash.
+     * @param b Another hash.
+     * @return The number of differing bits (0-64).
+     */
+    public static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+}
@@ -0,0 +1,342 @@
+package com.dart.core.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Client-side cache of OCR results keyed by the {@link AverageHash} of the thresholded
+ * envelope, so a re-shot envelope is answered without encoding, uploading or running
+ * inference on it again.
+ * <p>
+ * A lookup matches any entry of the same language whose hash is within
+ * {@link Builder#setMaxDistance(int) maxDistance} bits of the query; the closest one wins.
+ * Entries are evicted least recently used first once either the entry count or the total
+ * size of the cached text exceeds its bound. If a file is configured the cache is loaded from
+ * it on {@link Builder#build()} and written back by {@link #flush()}, so results survive app
+ * restarts. Thread-safe.
+ * <p>
+ * File layout (big-endian): {@code magic u32 | count u32 | count x (hash u64 | language u8 |
+ * text (u16 length + modified UTF-8))}, least recently used first.
+ */
+public final class ResultCache {
+
+    private static final int FILE_MAGIC = 0x44524331; // "DRC1"
+    private static final int ENTRY_OVERHEAD = 48;      // Approximate per-entry bookkeeping in bytes.
+    private static final int MAX_TEXT_LENGTH = 0xFFFF / 3; // Keeps every text within writeUTF's limit.
+
+    private final int maxEntries;
+    private final long maxBytes;
+    private final int maxDistance;
+    private final File file;
+
+    // Access-ordered: iteration runs from least to most recently used.
+    private final LinkedHashMap<Key, String> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;      // Estimated memory held by the entries.
+    private boolean dirty;   // Changed since the last load or flush.
+    private long hits;
+    private long misses;
+
+    private ResultCache(Builder builder) {
+        this.maxEntries = builder.maxEntries;
+        this.maxBytes = builder.maxBytes;
+        this.maxDistance = builder.maxDistance;
+        this.file = builder.file;
+    }
+
+    /**
+     * Finds the cached text of the closest matching envelope and marks it as recently used.
+     *
+     * @param hash     Hash of the envelope.
+     * @param language Language the text was requested in.
+     * @return The cached text, or null if no entry is close enough.
+     */
+    public synchronized String lookup(long hash, int language) {
+        Key best = null;
+        int bestDistance = maxDistance + 1;
+        for (Key key : entries.keySet()) {
+            if (key.language != language) {
+                continue;
+            }
+            int d = AverageHash.distance(hash, key.hash);
+            if (d < bestDistance) {
+                best = key;
+                bestDistance = d;
+                if (d == 0) {
+                    break;
+                }
+            }
+        }
+        if (best == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entries.get(best); // get() moves it to the most recently used end.
+    }
+
+    /**
+     * Caches a result, replacing any entry with the same hash and language.
+     *
+     * @param hash     Hash of the envelope.
+     * @param language Language the text was requested in.
+     * @param text     The recognised text.
+     */
+    public synchronized void put(long hash, int language, String text) {
+        if (text.length() > MAX_TEXT_LENGTH || cost(text) > maxBytes) {
+            return; // Would evict everything else, or cannot be persisted.
+        }
+        Key key = new Key(hash, language);
+        String old = entries.put(key, text);
+        if (old != null) {
+            bytes -= cost(old);
+        }
+        bytes += cost(text);
+        dirty = true;
+        trim();
+    }
+
+    /**
+     * Drops least recently used entries until both bounds hold.
+     */
+    private void trim() {
+        Iterator<Map.Entry<Key, String>> it = entries.entrySet().iterator();
+        while ((entries.size() > maxEntries || bytes > maxBytes) && it.hasNext()) {
+            bytes -= cost(it.next().getValue());
+            it.remove();
+        }
+    }
+
+    /**
+     * @return Approximate bytes an entry holding {@code text} occupies.
+     */
+    private static long cost(String text) {
+        return ENTRY_OVERHEAD + 2L * text.length();
+    }
+
+    /**
+     * @return Number of cached results.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return Estimated memory held by the cached results, in bytes.
+     */
+    public synchronized long bytes() {
+        return bytes;
+    }
+
+    /**
+     * @return Number of lookups that returned a result.
+     */
+    public synchronized long hits() {
+        return hits;
+    }
+
+    /**
+     * @return Number of lookups that found nothing.
+     */
+    public synchronized long misses() {
+        return misses;
+    }
+
+    /**
+     * Removes every entry.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+        dirty = true;
+    }
+
+    /**
+     * Writes the cache to its file if it changed since it was loaded or last flushed. The file
+     * is replaced atomically, so a crash mid-write leaves the previous contents intact.
+     *
+     * @throws IOException If the file cannot be written.
+     */
+    public void flush() throws IOException {
+        if (file == null) {
+            return;
+        }
+        // The snapshot is taken under the file lock so flushes write in snapshot order; lookups
+        // only wait for the copy, not the disk I/O.
+        synchronized (file) {
+            List<Key> keys;
+            List<String> texts;
+            synchronized (this) {
+                if (!dirty) {
+                    return;
+                }
+                keys = new ArrayList<>(entries.keySet());
+                texts = new ArrayList<>(entries.values());
+                dirty = false;
+            }
+            File tmp = new File(file.getPath() + ".tmp");
+            FileOutputStream fos = new FileOutputStream(tmp);
+            try {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos));
+                out.writeInt(FILE_MAGIC);
+                out.writeInt(keys.size());
+                for (int i = 0; i < keys.size(); i++) {
+                    out.writeLong(keys.get(i).hash);
+                    out.writeByte(keys.get(i).language);
+                    out.writeUTF(texts.get(i));
+                }
+                out.flush();
+                fos.getFD().sync();
+            } catch (IOException e) {
+                markDirty();
+                throw e;
+            } finally {
+                fos.close();
+            }
+            if (!tmp.renameTo(file)) {
+                markDirty();
+                throw new IOException("Cannot replace " + file);
+            }
+        }
+    }
+
+    private synchronized void markDirty() {
+        dirty = true;
+    }
+
+    /**
+     * Loads entries from the file, oldest first so the access order is restored. A missing
+     * file is an empty cache; a corrupt one is discarded.
+     */
+    private void load() {
+        if (!file.isFile()) {
+            return;
+        }
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try {
+                if (in.readInt() != FILE_MAGIC) {
+                    return;
+                }
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    long hash = in.readLong();
+                    int language = in.readUnsignedByte();
+                    put(hash, language, in.readUTF());
+                }
+            } finally {
+                in.close();
+            }
+        } catch (EOFException e) {
+            // Truncated file: keep what was read.
+        } catch (IOException e) {
+            clear();
+        }
+        dirty = false;
+    }
+
+    /**
+     * Identifies a cached result.
+     */
+    private static final class Key {
+        final long hash;
+        final int language;
+
+        Key(long hash, int language) {
+            this.hash = hash;
+            this.language = language;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) o;
+            return hash == k.hash && language == k.language;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (hash ^ (hash >>> 32)) * 31 + language;
+        }
+    }
+
+    /**
+     * Builder for {@link ResultCache}.
+     */
+    public static final class Builder {
+        private int maxEntries = 256;
+        private long maxBytes = 512 * 1024;
+        private int maxDistance = 4;
+        private File file;
+
+        /**
+         * @param maxEntries Largest number of cached results. Default 256.
+         * @return This builder.
+         */
+        public Builder setMaxEntries(int maxEntries) {
+            if (maxEntries < 1) {
+                throw new IllegalArgumentException("maxEntries must be >= 1: " + maxEntries);
+            }
+            this.maxEntries = maxEntries;
+            return this;
+        }
+
+        /**
+         * @param maxBytes Largest estimated memory held by the cached text. Default 512 KiB.
+         * @return This builder.
+         */
+        public Builder setMaxBytes(long maxBytes) {
+            if (maxBytes < 1) {
+                throw new IllegalArgumentException("maxBytes must be >= 1: " + maxBytes);
+            }
+            this.maxBytes = maxBytes;
+            return this;
+        }
+
+        /**
+         * @param maxDistance Largest Hamming distance, in bits, still treated as the same
+         *                    envelope. 0 requires an exact hash match. Default 4.
+         * @return This builder.
+         */
+        public Builder setMaxDistance(int maxDistance) {
+            if (maxDistance < 0 || maxDistance > 64) {
+                throw new IllegalArgumentException("maxDistance must be in [0, 64]: " + maxDistance);
+            }
+            this.maxDistance = maxDistance;
+            return this;
+        }
+
+        /**
+         * @param file File the cache is loaded from and flushed to; null for a memory-only cache.
+         * @return This builder.
+         */
+        public Builder setFile(File file) {
+            this.file = file;
+            return this;
+        }
+
+        /**
+         * @return A cache holding the contents of the file, if one was set.
+         */
+        public ResultCache build() {
+            ResultCache cache = new ResultCache(this);
+            if (file != null) {
+                cache.load();
+            }
+            return cache;
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package com.dart.core.image;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ProtocolException;
+
+/**
+ * Compact transport encoding for thresholded envelope images, sent with
+ * {@link com.dart.core.net.Frame#FORMAT_BILEVEL}. Encoding works directly on the 8-bit pixels of
+ * the thresholded {@code Mat}, so the phone never builds an ARGB bitmap or runs PNG for upload.
+ * <p>
+ * Layout (integers big-endian, varints are unsigned LEB128):
+ * <pre>
+ *   magic 'D' 'B' 'I' '1' | width u16 | height u16 | mode u8 | body
+ * </pre>
+ * {@link #MODE_PACKED}: the body is the bit-packed rows of a {@link BilevelImage}.
+ * <p>
+ * {@link #MODE_RUNS}: for each row, a varint run count {@code n} followed by {@code n} varint
+ * run lengths that alternate paper, ink, paper, ... starting with paper (the first run may be
+ * empty) and sum to the width. A run count of 0 means "same as the previous row", a cheap
+ * vertical mode in the spirit of CCITT G4 that collapses blank margins and repeated rows.
+ * Thresholded handwriting is mostly long paper runs, so this is typically several times
+ * smaller than the packed bits and far smaller than an ARGB PNG.
+ */
+public final class BilevelCodec {
+
+    public static final int MAGIC = 0x44424931; // "DBI1"
+    public static final int MODE_PACKED = 0;
+    public static final int MODE_RUNS = 1;
+
+    /**
+     * Largest image {@link #decode} accepts, in pixels: 2 MB of packed bits, well above a
+     * full-resolution capture. Bounds the memory a hostile header can make a server allocate.
+     */
+    public static final int MAX_PIXELS = 16 * 1024 * 1024;
+
+    private static final int HEADER_SIZE = 9;
+
+    private BilevelCodec() {
+    }
+
+    /**
+     * Run-length encodes an 8-bit grayscale image; pixels below 128 are ink.
+     *
+     * @param pixels Row-major pixels, e.g. the result of {@code Mat.get(0, 0, byte[])}.
+     * @param width  Image width (at most 65535).
+     * @param height Image height (at most 65535).
+     * @return The encoded image.
+     */
+    public static byte[] encodeRuns(byte[] pixels, int width, int height) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(HEADER_SIZE + height * 8);
+        try {
+            encodeRuns(pixels, width, height, out);
+        } catch (IOException e) {
+            throw new AssertionError(e); // ByteArrayOutputStream does not throw.
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Run-length encodes an 8-bit grayscale image straight into a stream, row by row, so the
+     * first rows can be on the wire while later ones are still being encoded. Writes are
+     * small; pass a buffered stream.
+     *
+     * @param pixels Row-major pixels.
+     * @param width  Image width (at most 65535).
+     * @param height Image height (at most 65535).
+     * @param out    Destination of the encoded image.
+     * @throws IOException If writing to {@code out} fails.
+     */
+    public static void encodeRuns(byte[] pixels, int width, int height, OutputStream out) throws IOException {
+        checkSize(width, height);
+        if (pixels.length < width * height) {
+            throw new IllegalArgumentException("Pixel buffer too small for " + width + "x" + height);
+        }
+        writeHeader(out, width, height, MODE_RUNS);
+        int[] runs = new int[width + 1];
+        int[] previous = new int[width + 1];
+        int previousCount = -1;
+        for (int y = 0, row = 0; y < height; y++, row += width) {
+            // Collect alternating paper/ink runs for this row.
+            int count = 0;
+            boolean ink = false;
+            int run = 0;
+            for (int x = row, end = row + width; x < end; x++) {
+                boolean pixelInk = (pixels[x] & 0xFF) < 128;
+                if (pixelInk != ink) {
+                    runs[count++] = run;
+                    run = 0;
+                    ink = pixelInk;
+                }
+                run++;
+            }
+            runs[count++] = run;
+
+            if (count == previousCount && sameRuns(runs, previous, count)) {
+                out.write(0);
+                continue;
+            }
+            writeVarint(out, count);
+            for (int i = 0; i < count; i++) {
+                writeVarint(out, runs[i]);
+            }
+            int[] t = previous;
+            previous = runs;
+            runs = t;
+            previousCount = count;
+        }
+    }
+
+    /**
+     * Encodes an already packed image without further compression.
+     */
+    public static byte[] encodePacked(BilevelImage image) {
+        checkSize(image.width, image.height);
+        int size = image.stride * image.height;
+        ByteArrayOutputStream out = new ByteArrayOutputStream(HEADER_SIZE + size);
+        try {
+            writeHeader(out, image.width, image.height, MODE_PACKED);
+        } catch (IOException e) {
+            throw new AssertionError(e); // ByteArrayOutputStream does not throw.
+        }
+        out.write(image.bits, 0, size);
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes either mode into a packed image.
+     *
+     * @param data Encoded image.
+     * @return The decoded image.
+     * @throws ProtocolException If the data is malformed, or the image exceeds {@link #MAX_PIXELS}.
+     */
+    public static BilevelImage decode(byte[] data) throws IOException {
+        if (data.length < HEADER_SIZE || readInt(data, 0) != MAGIC) {
+            throw new ProtocolException("Not a bi-level image");
+        }
+        int width = ((data[4] & 0xFF) << 8) | (data[5] & 0xFF);
+        int height = ((data[6] & 0xFF) << 8) | (data[7] & 0xFF);
+        int mode = data[8] & 0xFF;
+        if (width == 0 || height == 0) {
+            throw new ProtocolException("Empty image");
+        }
+        if ((long) width * height > MAX_PIXELS) {
+            throw new ProtocolException("Image too large: " + width + "x" + height);
+        }
+        int stride = (width + 7) >>> 3;
+        // Check the body can hold the image before allocating it: packed rows take stride
+        // bytes each, and coded rows at least one (the run count).
+        if (mode == MODE_PACKED) {
+            if (data.length - HEADER_SIZE < stride * height) {
+                throw new ProtocolException("Truncated packed image");
+            }
+            byte[] bits = new byte[stride * height];
+            System.arraycopy(data, HEADER_SIZE, bits, 0, bits.length);
+            return new BilevelImage(width, height, bits);
+        }
+        if (mode != MODE_RUNS) {
+            throw new ProtocolException("Unknown bi-level mode: " + mode);
+        }
+        if (data.length - HEADER_SIZE < height) {
+            throw new ProtocolException("Truncated run-length image");
+        }
+        byte[] bits = new byte[stride * height];
+
+        int[] pos = {HEADER_SIZE};
+        for (int y = 0; y < height; y++) {
+            int rowStart = y * stride;
+            int count = readVarint(data, pos);
+            if (count == 0) {
+                if (y == 0) {
+                    throw new ProtocolException("First row cannot repeat");
+                }
+                System.arraycopy(bits, rowStart - stride, bits, rowStart, stride);
+                continue;
+            }
+            int x = 0;
+            for (int i = 0; i < count; i++) {
+                int run = readVarint(data, pos);
+                if (run > width - x) {
+                    throw new ProtocolException("Run overflows row " + y);
+                }
+                if ((i & 1) == 1) { // Odd runs are ink.
+                    setBits(bits, rowStart, x, run);
+                }
+                x += run;
+            }
+            if (x != width) {
+                throw new ProtocolException("Row " + y + " has " + x + " pixels, expected " + width);
+            }
+        }
+        return new BilevelImage(width, height, bits);
+    }
+
+    /**
+     * Sets {@code length} bits starting at bit {@code x} of the row at {@code rowStart}.
+     */
+    private static void setBits(byte[] bits, int rowStart, int x, int length) {
+        int end = x + length;
+        // Leading partial byte.
+        while (x < end && (x & 7) != 0) {
+            bits[rowStart + (x >>> 3)] |= (byte) (0x80 >>> (x & 7));
+            x++;
+        }
+        // Whole bytes.
+        while (end - x >= 8) {
+            bits[rowStart + (x >>> 3)] = (byte) 0xFF;
+            x += 8;
+        }
+        // Trailing partial byte.
+        while (x < end) {
+            bits[rowStart + (x >>> 3)] |= (byte) (0x80 >>> (x & 7));
+            x++;
+        }
+    }
+
+    private static boolean sameRuns(int[] a, int[] b, int count) {
+        for (int i = 0; i < count; i++) {
+            if (a[i] != b[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void checkSize(int width, int height) {
+        if (width <= 0 || height <= 0 || width > 0xFFFF || height > 0xFFFF) {
+            throw new IllegalArgumentException("Invalid image size: " + width + "x" + height);
+        }
+    }
+
+    private static void writeHeader(OutputStream out, int width, int height, int mode) throws IOException {
+        out.write(MAGIC >>> 24);
+        out.write(MAGIC >>> 16);
+        out.write(MAGIC >>> 8);
+        out.write(MAGIC);
+        out.write(width >>> 8);
+        out.write(width);
+        out.write(height >>> 8);
+        out.write(height);
+        out.write(mode);
+    }
+
+    private static void writeVarint(OutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    /**
+     * Reads a varint written by {@link #writeVarint}. Counts and runs are never negative, so
+     * values beyond 31 bits are rejected rather than wrapped.
+     */
+    private static int readVarint(byte[] data, int[] pos) throws ProtocolException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            if (pos[0] >= data.length) {
+                throw new ProtocolException("Truncated bi-level image");
+            }
+            int b = data[pos[0]++] & 0xFF;
+            if (shift == 28 && b > 0x07) {
+                throw new ProtocolException("Varint out of range");
+            }
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new ProtocolException("Varint too long");
+    }
+
+    private static int readInt(byte[] data, int offset) {
+        return ((data[offset] & 0xFF) << 24) | ((data[offset + 1] & 0xFF) << 16)
+                | ((data[offset + 2] & 0xFF) << 8) | (data[offset + 3] & 0xFF);
+    }
+}
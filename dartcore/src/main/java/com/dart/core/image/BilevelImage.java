@@ -0,0 +1,97 @@
+package com.dart.core.image;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A bi-level (1 bit per pixel) image stored as bit-packed rows. Bits are packed most
+ * significant bit first and every row starts on a byte boundary, with a set bit meaning ink
+ * (black) and a clear bit meaning paper (white). This is exactly the raster layout of a binary
+ * PBM (P4) file, so the image can be handed to any PBM reader without conversion.
+ */
+public final class BilevelImage {
+
+    public final int width;
+    public final int height;
+    /** Bytes per packed row: {@code (width + 7) / 8}. */
+    public final int stride;
+    /** Packed rows, {@code stride * height} bytes. */
+    public final byte[] bits;
+
+    public BilevelImage(int width, int height, byte[] bits) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Invalid image size: " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+        this.stride = (width + 7) >>> 3;
+        if (bits.length < stride * height) {
+            throw new IllegalArgumentException("Bit buffer too small for " + width + "x" + height);
+        }
+        this.bits = bits;
+    }
+
+    /**
+     * Packs an 8-bit grayscale image: pixels below {@code threshold} become ink.
+     *
+     * @param pixels    Row-major pixels, e.g. the result of {@code Mat.get(0, 0, byte[])}.
+     * @param width     Image width.
+     * @param height    Image height.
+     * @param threshold Gray level (1-255) at or above which a pixel is paper; 128 for 0/255 images.
+     * @return The packed image.
+     */
+    public static BilevelImage pack(byte[] pixels, int width, int height, int threshold) {
+        BilevelImage image = new BilevelImage(width, height, new byte[((width + 7) >>> 3) * height]);
+        byte[] bits = image.bits;
+        int stride = image.stride;
+        for (int y = 0, src = 0; y < height; y++) {
+            int dst = y * stride;
+            int acc = 0;
+            int n = 0;
+            for (int x = 0; x < width; x++, src++) {
+                acc = (acc << 1) | ((pixels[src] & 0xFF) < threshold ? 1 : 0);
+                if (++n == 8) {
+                    bits[dst++] = (byte) acc;
+                    acc = 0;
+                    n = 0;
+                }
+            }
+            if (n > 0) {
+                bits[dst] = (byte) (acc << (8 - n)); // Pad the last byte of the row with paper.
+            }
+        }
+        return image;
+    }
+
+    /**
+     * @return True if the pixel at ({@code x}, {@code y}) is ink.
+     */
+    public boolean isInk(int x, int y) {
+        return (bits[y * stride + (x >>> 3)] & (0x80 >>> (x & 7))) != 0;
+    }
+
+    /**
+     * Expands the image to 8-bit grayscale with ink as 0 and paper as 255.
+     *
+     * @return Row-major pixels, {@code width * height} bytes.
+     */
+    public byte[] toGray() {
+        byte[] pixels = new byte[width * height];
+        for (int y = 0, dst = 0; y < height; y++) {
+            int row = y * stride;
+            for (int x = 0; x < width; x++, dst++) {
+                boolean ink = (bits[row + (x >>> 3)] & (0x80 >>> (x & 7))) != 0;
+                pixels[dst] = ink ? 0 : (byte) 255;
+            }
+        }
+        return pixels;
+    }
+
+    /**
+     * Writes the image as a binary PBM (P4) file.
+     */
+    public void writePbm(OutputStream out) throws IOException {
+        out.write(("P4\n" + width + " " + height + "\n").getBytes("US-ASCII"));
+        out.write(bits, 0, stride * height);
+    }
+}
@@ -0,0 +1,110 @@
+package com.dart.core.image;
+
+import com.dart.core.layout.TextLine;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ProtocolException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Multi-part request body holding the text lines of one address, sent with
+ * {@link com.dart.core.net.Frame#FORMAT_LINES}. The server can decode every part and batch the
+ * lines straight into its line recogniser, then join the results in order.
+ * <p>
+ * Layout (big-endian):
+ * <pre>
+ *   magic 'D' 'L' 'N' '1' | count u16 | count x (x u16 | y u16 | length u32 | line)
+ * </pre>
+ * where {@code x} and {@code y} place the line in the deskewed address block and each
+ * {@code line} is a {@link BilevelCodec} run-length coded image.
+ */
+public final class LinesCodec {
+
+    public static final int MAGIC = 0x444C4E31; // "DLN1"
+
+    private LinesCodec() {
+    }
+
+    /**
+     * @param lines Lines in reading order (at most 65535).
+     * @return The encoded request body.
+     */
+    public static byte[] encode(List<TextLine> lines) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            encode(lines, bytes);
+        } catch (IOException e) {
+            throw new AssertionError(e); // ByteArrayOutputStream does not throw.
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Encodes the lines straight into a stream, one line at a time, so earlier lines can be on
+     * the wire while later ones are still being encoded.
+     *
+     * @param lines Lines in reading order (at most 65535).
+     * @param out   Destination of the request body.
+     * @throws IOException If writing to {@code out} fails.
+     */
+    public static void encode(List<TextLine> lines, OutputStream out) throws IOException {
+        if (lines.size() > 0xFFFF) {
+            throw new IllegalArgumentException("Too many lines: " + lines.size());
+        }
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeShort(lines.size());
+        for (TextLine line : lines) {
+            // Each part is length-prefixed, so a line is encoded whole before it is written.
+            byte[] part = BilevelCodec.encodeRuns(line.pixels, line.width, line.height);
+            data.writeShort(line.x);
+            data.writeShort(line.y);
+            data.writeInt(part.length);
+            data.write(part);
+        }
+        data.flush();
+    }
+
+    /**
+     * @param data Encoded request body.
+     * @return The lines, with pixels expanded to 8-bit grayscale.
+     * @throws ProtocolException If the data is malformed, or its lines exceed {@link BilevelCodec#MAX_PIXELS} in all.
+     */
+    public static List<TextLine> decode(byte[] data) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new ProtocolException("Not a line bundle");
+            }
+            int count = in.readUnsignedShort();
+            List<TextLine> lines = new ArrayList<>(count);
+            long pixels = 0; // Decoded so far; each line costs a byte per pixel.
+            for (int i = 0; i < count; i++) {
+                int x = in.readUnsignedShort();
+                int y = in.readUnsignedShort();
+                int length = in.readInt();
+                if (length < 0 || length > in.available()) {
+                    throw new ProtocolException("Line " + i + " overruns the bundle");
+                }
+                byte[] part = new byte[length];
+                in.readFully(part);
+                BilevelImage image = BilevelCodec.decode(part);
+                pixels += (long) image.width * image.height;
+                if (pixels > BilevelCodec.MAX_PIXELS) {
+                    throw new ProtocolException("Line bundle exceeds " + BilevelCodec.MAX_PIXELS + " pixels");
+                }
+                lines.add(new TextLine(x, y, image.width, image.height, image.toGray()));
+            }
+            return lines;
+        } catch (EOFException e) {
+            throw new ProtocolException("Truncated line bundle");
+        }
+    }
+}
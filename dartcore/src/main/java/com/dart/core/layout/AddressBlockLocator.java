@@ -0,0 +1,349 @@
+package com.dart.core.layout;
+
+import java.util.Arrays;
+
+/**
+ * Finds the dominant block of handwritten text on a thresholded envelope, so that only the
+ * address, rather than stamps, logos, borders and the sender block, is sent for recognition.
+ * <p>
+ * The image is summarised on a coarse grid of cells holding the amount of "text ink" in each:
+ * <ol>
+ *   <li>Horizontal and vertical ink runs longer than {@link Builder#setMaxRunFraction(double)
+ *       maxRunFraction} of the image side are ruling lines or borders and are not counted.</li>
+ *   <li>Cells denser than the {@link Builder#setDensityRange(double, double) density range}
+ *       are solid print (stamps, logos, photos) and sparser ones are noise; neither counts.</li>
+ *   <li>The remaining text cells are dilated so the words of a line, and the lines of a block,
+ *       join up, and the connected components of the result are the candidate blocks.</li>
+ * </ol>
+ * The block holding the most text ink wins. Its confidence is the share of all text ink it
+ * holds; below {@link Builder#setMinConfidence(double) minConfidence}, or if the block is
+ * nearly the whole image anyway, the full image is returned instead.
+ * <p>
+ * Instances hold reusable buffers and are not thread-safe.
+ */
+public final class AddressBlockLocator {
+
+    private final int ink;
+    private final int cellSize;
+    private final double maxRunFraction;
+    private final double minDensity;
+    private final double maxDensity;
+    private final int joinX;
+    private final int joinY;
+    private final double minConfidence;
+    private final double maxAreaFraction;
+    private final int margin;
+
+    private int[] cellInk = new int[0];   // Text ink per cell.
+    private int[] runStart = new int[0];  // Per column: first row of the current vertical ink run, or -1.
+    private int[] labels = new int[0];    // Component of each text cell, 0 = not yet visited.
+    private int[] stack = new int[0];     // Flood fill work list.
+
+    private AddressBlockLocator(Builder builder) {
+        this.ink = builder.ink;
+        this.cellSize = builder.cellSize;
+        this.maxRunFraction = builder.maxRunFraction;
+        this.minDensity = builder.minDensity;
+        this.maxDensity = builder.maxDensity;
+        this.joinX = builder.joinX;
+        this.joinY = builder.joinY;
+        this.minConfidence = builder.minConfidence;
+        this.maxAreaFraction = builder.maxAreaFraction;
+        this.margin = builder.margin;
+    }
+
+    /**
+     * Locates the address block of a tightly packed single-channel image.
+     *
+     * @param pixels Row-major pixels, 0 or 255 after thresholding.
+     * @param width  Image width in pixels.
+     * @param height Image height in pixels.
+     * @return The block to crop to, or the full image with {@link TextBlock#fallback} set.
+     */
+    public TextBlock locate(byte[] pixels, int width, int height) {
+        return locate(pixels, width, height, minConfidence);
+    }
+
+    /**
+     * Like {@link #locate(byte[], int, int)}, with a different confidence threshold for this
+     * call, e.g. to accept a less certain crop when the link is slow.
+     *
+     * @param pixels        Row-major pixels, 0 or 255 after thresholding.
+     * @param width         Image width in pixels.
+     * @param height        Image height in pixels.
+     * @param minConfidence Blocks holding less of the text ink than this are not returned.
+     * @return The block to crop to, or the full image with {@link TextBlock#fallback} set.
+     */
+    public TextBlock locate(byte[] pixels, int width, int height, double minConfidence) {
+        if (width <= 0 || height <= 0 || pixels.length < width * height) {
+            throw new IllegalArgumentException("Invalid image: " + width + "x" + height);
+        }
+        int cols = (width + cellSize - 1) / cellSize;
+        int rows = (height + cellSize - 1) / cellSize;
+        countTextInk(pixels, width, height, cols, rows);
+
+        // Keep only cells whose density looks like handwriting.
+        long totalInk = 0;
+        for (int cy = 0; cy < rows; cy++) {
+            int cellH = Math.min(cellSize, height - cy * cellSize);
+            for (int cx = 0; cx < cols; cx++) {
+                int area = cellH * Math.min(cellSize, width - cx * cellSize);
+                int i = cy * cols + cx;
+                double density = cellInk[i] / (double) area;
+                if (density < minDensity || density > maxDensity) {
+                    cellInk[i] = 0;
+                } else {
+                    totalInk += cellInk[i];
+                }
+            }
+        }
+        if (totalInk == 0) {
+            return new TextBlock(0, 0, width, height, 0, true);
+        }
+
+        // Label the dilated text cells; components are grown directly from the text cells so
+        // no separate dilated mask is needed: two text cells are neighbours if they lie within
+        // (joinX, joinY) cells of each other.
+        int cells = cols * rows;
+        if (labels.length < cells) {
+            labels = new int[cells];
+            stack = new int[cells];
+        }
+        Arrays.fill(labels, 0, cells, 0);
+        int label = 0;
+        long bestInk = 0;
+        int bestX0 = 0, bestY0 = 0, bestX1 = 0, bestY1 = 0;
+        for (int seed = 0; seed < cells; seed++) {
+            if (cellInk[seed] == 0 || labels[seed] != 0) {
+                continue;
+            }
+            label++;
+            long blockInk = 0;
+            int x0 = cols, y0 = rows, x1 = -1, y1 = -1;
+            int top = 0;
+            stack[top++] = seed;
+            labels[seed] = label;
+            while (top > 0) {
+                int i = stack[--top];
+                int cx = i % cols;
+                int cy = i / cols;
+                blockInk += cellInk[i];
+                x0 = Math.min(x0, cx);
+                x1 = Math.max(x1, cx);
+                y0 = Math.min(y0, cy);
+                y1 = Math.max(y1, cy);
+                for (int ny = Math.max(0, cy - joinY); ny <= Math.min(rows - 1, cy + joinY); ny++) {
+                    for (int nx = Math.max(0, cx - joinX); nx <= Math.min(cols - 1, cx + joinX); nx++) {
+                        int n = ny * cols + nx;
+                        if (cellInk[n] != 0 && labels[n] == 0) {
+                            labels[n] = label;
+                            stack[top++] = n;
+                        }
+                    }
+                }
+            }
+            if (blockInk > bestInk) {
+                bestInk = blockInk;
+                bestX0 = x0;
+                bestY0 = y0;
+                bestX1 = x1;
+                bestY1 = y1;
+            }
+        }
+
+        double confidence = bestInk / (double) totalInk;
+        int x = Math.max(0, bestX0 * cellSize - margin);
+        int y = Math.max(0, bestY0 * cellSize - margin);
+        int right = Math.min(width, (bestX1 + 1) * cellSize + margin);
+        int bottom = Math.min(height, (bestY1 + 1) * cellSize + margin);
+        long area = (long) (right - x) * (bottom - y);
+        if (confidence < minConfidence || area >= maxAreaFraction * width * height) {
+            return new TextBlock(0, 0, width, height, confidence, true);
+        }
+        return new TextBlock(x, y, right - x, bottom - y, confidence, false);
+    }
+
+    /**
+     * Fills {@link #cellInk} with the ink of each cell, leaving out long horizontal and
+     * vertical runs.
+     */
+    private void countTextInk(byte[] pixels, int width, int height, int cols, int rows) {
+        if (cellInk.length < cols * rows) {
+            cellInk = new int[cols * rows];
+        }
+        Arrays.fill(cellInk, 0, cols * rows, 0);
+        if (runStart.length < width) {
+            runStart = new int[width];
+        }
+        Arrays.fill(runStart, 0, width, -1);
+        final byte fg = (byte) ink;
+        final int maxRunX = Math.max(1, (int) (maxRunFraction * width));
+        final int maxRunY = Math.max(1, (int) (maxRunFraction * height));
+
+        for (int y = 0; y <= height; y++) {
+            int base = (y / cellSize) * cols;
+            int runX = -1; // Start of the current horizontal run in this row.
+            for (int x = 0; x < width; x++) {
+                boolean on = y < height && pixels[y * width + x] == fg;
+                if (on) {
+                    if (runX < 0) {
+                        runX = x;
+                    }
+                    if (runStart[x] < 0) {
+                        runStart[x] = y;
+                    }
+                } else {
+                    if (runX >= 0) {
+                        addRun(base, runX, x, maxRunX);
+                        runX = -1;
+                    }
+                    if (runStart[x] >= 0) {
+                        // A vertical run just ended; a long one was counted row by row above, take it back.
+                        if (y - runStart[x] > maxRunY) {
+                            for (int yy = runStart[x]; yy < y; yy++) {
+                                int i = (yy / cellSize) * cols + x / cellSize;
+                                if (cellInk[i] > 0) {
+                                    cellInk[i]--;
+                                }
+                            }
+                        }
+                        runStart[x] = -1;
+                    }
+                }
+            }
+            if (runX >= 0) {
+                addRun(base, runX, width, maxRunX);
+            }
+        }
+    }
+
+    /**
+     * Adds the horizontal run {@code [from, to)} of one row to its cells unless it is too long.
+     */
+    private void addRun(int base, int from, int to, int maxRun) {
+        if (to - from > maxRun) {
+            return;
+        }
+        for (int x = from; x < to; ) {
+            int cell = x / cellSize;
+            int end = Math.min(to, (cell + 1) * cellSize);
+            cellInk[base + cell] += end - x;
+            x = end;
+        }
+    }
+
+    /**
+     * Builder for {@link AddressBlockLocator}.
+     */
+    public static final class Builder {
+        private int ink = 0;
+        private int cellSize = 8;
+        private double maxRunFraction = 0.25;
+        private double minDensity = 0.02;
+        private double maxDensity = 0.6;
+        private int joinX = 3;
+        private int joinY = 2;
+        private double minConfidence = 0.5;
+        private double maxAreaFraction = 0.9;
+        private int margin = 8;
+
+        /**
+         * @param ink Pixel value (0-255) of ink. Default 0, i.e. dark text on white after THRESH_BINARY.
+         * @return This builder.
+         */
+        public Builder setInk(int ink) {
+            if (ink < 0 || ink > 255) {
+                throw new IllegalArgumentException("ink must be in [0, 255]: " + ink);
+            }
+            this.ink = ink;
+            return this;
+        }
+
+        /**
+         * @param cellSize Side of a grid cell in pixels, roughly the stroke height of small
+         *                 handwriting. Default 8.
+         * @return This builder.
+         */
+        public Builder setCellSize(int cellSize) {
+            if (cellSize < 1) {
+                throw new IllegalArgumentException("cellSize must be >= 1: " + cellSize);
+            }
+            this.cellSize = cellSize;
+            return this;
+        }
+
+        /**
+         * @param maxRunFraction Straight ink runs longer than this fraction of the image side
+         *                       are treated as lines or borders. Default 0.25.
+         * @return This builder.
+         */
+        public Builder setMaxRunFraction(double maxRunFraction) {
+            this.maxRunFraction = maxRunFraction;
+            return this;
+        }
+
+        /**
+         * @param minDensity Cells with a smaller fraction of ink are noise. Default 0.02.
+         * @param maxDensity Cells with a larger fraction of ink are solid print. Default 0.6.
+         * @return This builder.
+         */
+        public Builder setDensityRange(double minDensity, double maxDensity) {
+            if (minDensity < 0 || maxDensity > 1 || minDensity >= maxDensity) {
+                throw new IllegalArgumentException("Invalid density range: " + minDensity + ", " + maxDensity);
+            }
+            this.minDensity = minDensity;
+            this.maxDensity = maxDensity;
+            return this;
+        }
+
+        /**
+         * @param joinX Text cells up to this many cells apart horizontally belong to the same block. Default 3.
+         * @param joinY Text cells up to this many cells apart vertically belong to the same block. Default 2.
+         * @return This builder.
+         */
+        public Builder setJoin(int joinX, int joinY) {
+            if (joinX < 1 || joinY < 1) {
+                throw new IllegalArgumentException("join distances must be >= 1");
+            }
+            this.joinX = joinX;
+            this.joinY = joinY;
+            return this;
+        }
+
+        /**
+         * @param minConfidence Smallest share of the text ink the block must hold to be
+         *                      cropped to. Default 0.5.
+         * @return This builder.
+         */
+        public Builder setMinConfidence(double minConfidence) {
+            this.minConfidence = minConfidence;
+            return this;
+        }
+
+        /**
+         * @param maxAreaFraction Blocks covering at least this fraction of the image are not
+         *                        worth cropping to. Default 0.9.
+         * @return This builder.
+         */
+        public Builder setMaxAreaFraction(double maxAreaFraction) {
+            this.maxAreaFraction = maxAreaFraction;
+            return this;
+        }
+
+        /**
+         * @param margin Pixels of context kept around the block. Default 8.
+         * @return This builder.
+         */
+        public Builder setMargin(int margin) {
+            this.margin = margin;
+            return this;
+        }
+
+        /**
+         * @return A new locator.
+         */
+        public AddressBlockLocator build() {
+            return new AddressBlockLocator(this);
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.dart.core.layout;
+
+import com.dart.core.skew.ProjectionSkewDetector;
+import com.dart.core.skew.SkewSearch;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits a thresholded address block into single text lines for the server's line recogniser.
+ * <p>
+ * Lines are found in the horizontal projection profile, the same one the skew search scores:
+ * the block is loaded into a {@link ProjectionSkewDetector}, its profile is taken at the skew
+ * angle so that lines are horizontal, and runs of rows holding ink are the lines. Gaps shorter
+ * than {@link Builder#setMinGap(int) minGap} rows (broken strokes, dots) are bridged and bands
+ * shorter than {@link Builder#setMinHeight(int) minHeight} rows are dropped as noise. Each line
+ * is then resampled straight out of the skewed block into its own deskewed strip and trimmed
+ * to its ink, so nothing else has to be rotated.
+ * <p>
+ * Instances hold reusable buffers and are not thread-safe.
+ */
+public final class LineSegmenter {
+
+    private final int ink;
+    private final SkewSearch skewSearch; // Null to assume the block is level.
+    private final int minGap;
+    private final int minHeight;
+    private final double minRowInk;
+    private final int margin;
+    private final ProjectionSkewDetector profile;
+
+    private LineSegmenter(Builder builder) {
+        this.ink = builder.ink;
+        this.skewSearch = builder.deskew
+                ? new SkewSearch.Builder().setRange(-15, 15).setForeground(builder.ink).build()
+                : null;
+        this.minGap = builder.minGap;
+        this.minHeight = builder.minHeight;
+        this.minRowInk = builder.minRowInk;
+        this.margin = builder.margin;
+        this.profile = new ProjectionSkewDetector(builder.ink);
+    }
+
+    /**
+     * Estimates the skew of the block and segments it.
+     *
+     * @param pixels Row-major 8-bit pixels of the block.
+     * @param width  Block width in pixels.
+     * @param height Block height in pixels.
+     * @return The lines from top to bottom; empty if the block holds no ink.
+     */
+    public List<TextLine> segment(byte[] pixels, int width, int height) {
+        double angle = skewSearch == null ? 0 : skewSearch.search(pixels, width, height).angle;
+        return segment(pixels, width, height, angle);
+    }
+
+    /**
+     * Segments a block whose skew is already known.
+     *
+     * @param pixels Row-major 8-bit pixels of the block.
+     * @param width  Block width in pixels.
+     * @param height Block height in pixels.
+     * @param angle  Skew in degrees, as returned by {@link SkewSearch}.
+     * @return The lines from top to bottom; empty if the block holds no ink.
+     */
+    public List<TextLine> segment(byte[] pixels, int width, int height, double angle) {
+        profile.load(pixels, width, height);
+        List<TextLine> lines = new ArrayList<>();
+        if (profile.foregroundCount() == 0) {
+            return lines;
+        }
+        int[] proj = profile.projection(angle);
+
+        // Rows with less ink than a fraction of an average inked row are gaps.
+        long sum = 0;
+        int inked = 0;
+        for (int y = 0; y < height; y++) {
+            if (proj[y] > 0) {
+                sum += proj[y];
+                inked++;
+            }
+        }
+        int threshold = Math.max(1, (int) Math.ceil(minRowInk * sum / inked));
+
+        int start = -1; // First row of the current band.
+        int end = -1;   // One past the last row above threshold in the current band.
+        for (int y = 0; y <= height; y++) {
+            boolean on = y < height && proj[y] >= threshold;
+            if (on) {
+                if (start < 0) {
+                    start = y;
+                } else if (y - end >= minGap) {
+                    addLine(lines, pixels, width, height, angle, start, end);
+                    start = y;
+                }
+                end = y + 1;
+            }
+        }
+        if (start >= 0) {
+            addLine(lines, pixels, width, height, angle, start, end);
+        }
+        return lines;
+    }
+
+    /**
+     * Cuts the band of rotated rows {@code [top, bottom)} out of the block, if it is tall enough.
+     */
+    private void addLine(List<TextLine> lines, byte[] pixels, int width, int height, double angle,
+                         int top, int bottom) {
+        if (bottom - top < minHeight) {
+            return;
+        }
+        top = Math.max(0, top - margin);
+        bottom = Math.min(height, bottom + margin);
+        int rows = bottom - top;
+
+        // Inverse of the detector's mapping: rotated (c, r) -> source (x, y), nearest neighbour.
+        final double rad = Math.toRadians(angle);
+        final double sin = Math.sin(rad);
+        final double cos = Math.cos(rad);
+        final double x0 = width / 2.0;
+        final double y0 = height / 2.0;
+        final byte fg = (byte) ink;
+        final byte paper = (byte) (255 - ink);
+        byte[] strip = new byte[width * rows];
+        int left = width;
+        int right = -1;
+        for (int r = 0; r < rows; r++) {
+            double dr = top + r - y0;
+            for (int c = 0; c < width; c++) {
+                double dc = c - x0;
+                int x = (int) Math.floor(dc * cos + dr * sin + x0 + 0.5);
+                int y = (int) Math.floor(-dc * sin + dr * cos + y0 + 0.5);
+                byte value = paper;
+                if (x >= 0 && x < width && y >= 0 && y < height && pixels[y * width + x] == fg) {
+                    value = fg;
+                    left = Math.min(left, c);
+                    right = Math.max(right, c);
+                }
+                strip[r * width + c] = value;
+            }
+        }
+        if (right < 0) {
+            return; // All of the band's ink mapped outside the block.
+        }
+        left = Math.max(0, left - margin);
+        right = Math.min(width - 1, right + margin);
+        int w = right - left + 1;
+        byte[] trimmed = new byte[w * rows];
+        for (int r = 0; r < rows; r++) {
+            System.arraycopy(strip, r * width + left, trimmed, r * w, w);
+        }
+        lines.add(new TextLine(left, top, w, rows, trimmed));
+    }
+
+    /**
+     * Builder for {@link LineSegmenter}.
+     */
+    public static final class Builder {
+        private int ink = 0;
+        private boolean deskew = true;
+        private int minGap = 3;
+        private int minHeight = 5;
+        private double minRowInk = 0.1;
+        private int margin = 2;
+
+        /**
+         * @param ink Pixel value of ink, 0 or 255. Default 0.
+         * @return This builder.
+         */
+        public Builder setInk(int ink) {
+            if (ink != 0 && ink != 255) {
+                throw new IllegalArgumentException("ink must be 0 or 255: " + ink);
+            }
+            this.ink = ink;
+            return this;
+        }
+
+        /**
+         * @param deskew True to estimate the skew of each block with a {@link SkewSearch}
+         *               before segmenting. Default true.
+         * @return This builder.
+         */
+        public Builder setDeskew(boolean deskew) {
+            this.deskew = deskew;
+            return this;
+        }
+
+        /**
+         * @param minGap Bands separated by fewer empty rows than this are one line. Default 3.
+         * @return This builder.
+         */
+        public Builder setMinGap(int minGap) {
+            if (minGap < 1) {
+                throw new IllegalArgumentException("minGap must be >= 1: " + minGap);
+            }
+            this.minGap = minGap;
+            return this;
+        }
+
+        /**
+         * @param minHeight Bands of fewer rows are noise. Default 5.
+         * @return This builder.
+         */
+        public Builder setMinHeight(int minHeight) {
+            this.minHeight = minHeight;
+            return this;
+        }
+
+        /**
+         * @param minRowInk Rows with less ink than this fraction of the average inked row
+         *                  count as gaps. Default 0.1.
+         * @return This builder.
+         */
+        public Builder setMinRowInk(double minRowInk) {
+            this.minRowInk = minRowInk;
+            return this;
+        }
+
+        /**
+         * @param margin Pixels of paper kept around each line. Default 2.
+         * @return This builder.
+         */
+        public Builder setMargin(int margin) {
+            this.margin = margin;
+            return this;
+        }
+
+        /**
+         * @return A new segmenter.
+         */
+        public LineSegmenter build() {
+            return new LineSegmenter(this);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.dart.core.layout;
+
+import java.util.Locale;
+
+/**
+ * Rectangle of an image chosen by {@link AddressBlockLocator}, with the locator's confidence
+ * that it holds the address.
+ */
+public final class TextBlock {
+
+    public final int x;             // Left edge in pixels.
+    public final int y;             // Top edge in pixels.
+    public final int width;
+    public final int height;
+    public final double confidence; // Share of the image's text ink inside the block, 0-1.
+    public final boolean fallback;  // True if the locator was not confident and returned the whole image.
+
+    TextBlock(int x, int y, int width, int height, double confidence, boolean fallback) {
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+        this.confidence = confidence;
+        this.fallback = fallback;
+    }
+
+    /**
+     * Copies the block out of a single-channel image.
+     *
+     * @param pixels Row-major pixels of the image the block was located in.
+     * @param stride Width of that image.
+     * @return The block's pixels, {@code width * height} bytes.
+     */
+    public byte[] crop(byte[] pixels, int stride) {
+        byte[] out = new byte[width * height];
+        for (int row = 0; row < height; row++) {
+            System.arraycopy(pixels, (y + row) * stride + x, out, row * width, width);
+        }
+        return out;
+    }
+
+    @Override
+    public String toString() {
+        return width + "x" + height + "+" + x + "+" + y + " confidence=" + String.format(Locale.US, "%.2f", confidence)
+                + (fallback ? " (full image)" : "");
+    }
+}
@@ -0,0 +1,30 @@
+package com.dart.core.layout;
+
+/**
+ * One text line cut out of an address block by {@link LineSegmenter}: a deskewed strip of
+ * 8-bit pixels (0 = ink, 255 = paper) and its position in the deskewed block.
+ */
+public final class TextLine {
+
+    public final int x;        // Left edge of the strip in the deskewed block.
+    public final int y;        // Top edge of the strip in the deskewed block.
+    public final int width;
+    public final int height;
+    public final byte[] pixels; // Row-major, width * height.
+
+    public TextLine(int x, int y, int width, int height, byte[] pixels) {
+        if (pixels.length < width * height) {
+            throw new IllegalArgumentException("Pixel buffer too small for " + width + "x" + height);
+        }
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+        this.pixels = pixels;
+    }
+
+    @Override
+    public String toString() {
+        return width + "x" + height + "+" + x + "+" + y;
+    }
+}
@@ -0,0 +1,260 @@
+package com.dart.core.loadgen;
+
+import com.dart.core.net.LatencyDistribution;
+import com.dart.core.net.LegacyOcrClient;
+import com.dart.core.net.LegacyOcrServer;
+import com.dart.core.net.OcrLanguage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays envelope images against an OCR server speaking the legacy protocol, through the same
+ * {@link LegacyOcrClient} the app uses, and reports latency percentiles and throughput.
+ * <p>
+ * The load is open-loop: requests are issued at a fixed rate whether or not earlier ones have
+ * been answered, and handed to a pool of {@link Builder#setClients(int) clients} concurrent
+ * connections. Latency is measured from when a request was due, not from when a client got
+ * round to sending it, so a saturated server shows up as growing latency rather than as a
+ * quietly reduced request rate.
+ * <p>
+ * Run with {@code java com.dart.core.loadgen.LoadGenerator <image dir> [host|local] [port] [rate/s] [clients] [requests]};
+ * {@code local} starts a {@link LegacyOcrServer} stand-in in the same process.
+ * <p>
+ * This class uses a Builder pattern for its instantiation.
+ */
+public final class LoadGenerator {
+
+    private final LegacyOcrClient client;
+    private final List<byte[]> images;
+    private final OcrLanguage language;
+    private final double rate;
+    private final int clients;
+    private final int requests;
+
+    private LoadGenerator(Builder builder) {
+        this.client = builder.client;
+        this.images = builder.images;
+        this.language = builder.language;
+        this.rate = builder.rate;
+        this.clients = builder.clients;
+        this.requests = builder.requests;
+    }
+
+    /**
+     * Issues all requests and waits for their outcome.
+     *
+     * @return The report.
+     * @throws InterruptedException If interrupted while issuing or waiting.
+     */
+    public LoadReport run() throws InterruptedException {
+        final long[] latencies = new long[requests]; // Each slot written by one request only.
+        final String[] errors = new String[requests];
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        long period = (long) (1e9 / rate);
+        long start = System.nanoTime();
+        try {
+            for (int i = 0; i < requests; i++) {
+                final int request = i;
+                final long due = start + i * period;
+                long wait = due - System.nanoTime();
+                if (wait > 0) {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                }
+                pool.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            String text = client.recognise(language, images.get(request % images.size()));
+                            if (text.isEmpty()) {
+                                errors[request] = "empty reply";
+                            }
+                        } catch (IOException e) {
+                            errors[request] = e.getClass().getSimpleName();
+                        }
+                        latencies[request] = System.nanoTime() - due;
+                    }
+                });
+            }
+        } finally {
+            pool.shutdown();
+        }
+        pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        long elapsed = System.nanoTime() - start;
+
+        long[] ok = new long[requests];
+        int completed = 0;
+        Map<String, Integer> failures = new HashMap<>();
+        for (int i = 0; i < requests; i++) {
+            if (errors[i] == null) {
+                ok[completed++] = latencies[i];
+            } else {
+                Integer count = failures.get(errors[i]);
+                failures.put(errors[i], count == null ? 1 : count + 1);
+            }
+        }
+        return new LoadReport(Arrays.copyOf(ok, completed), failures, elapsed, rate, clients);
+    }
+
+    /**
+     * Reads every PNG and JPEG file of a directory, in name order.
+     *
+     * @param dir Directory of envelope images.
+     * @return Their contents.
+     * @throws IOException If the directory holds no images or one cannot be read.
+     */
+    public static List<byte[]> loadImages(File dir) throws IOException {
+        File[] files = dir.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File d, String name) {
+                String lower = name.toLowerCase(Locale.US);
+                return lower.endsWith(".png") || lower.endsWith(".jpg") || lower.endsWith(".jpeg");
+            }
+        });
+        if (files == null || files.length == 0) {
+            throw new IOException("No images in " + dir);
+        }
+        Arrays.sort(files);
+        List<byte[]> images = new ArrayList<>(files.length);
+        for (File file : files) {
+            InputStream in = new FileInputStream(file);
+            try {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream((int) file.length());
+                byte[] buffer = new byte[64 * 1024];
+                int n;
+                while ((n = in.read(buffer)) >= 0) {
+                    bytes.write(buffer, 0, n);
+                }
+                images.add(bytes.toByteArray());
+            } finally {
+                in.close();
+            }
+        }
+        return images;
+    }
+
+    /**
+     * Builder class for {@link LoadGenerator}.
+     */
+    public static class Builder {
+        private final LegacyOcrClient client;
+        private final List<byte[]> images;
+        private OcrLanguage language = OcrLanguage.URDU;
+        private double rate = 10;
+        private int clients = 8;
+        private int requests = 100;
+
+        /**
+         * @param client Client to send with; give it a read timeout so stalls are counted.
+         * @param images Encoded images, replayed round-robin.
+         */
+        public Builder(LegacyOcrClient client, List<byte[]> images) {
+            if (images.isEmpty()) {
+                throw new IllegalArgumentException("No images to replay");
+            }
+            this.client = client;
+            this.images = images;
+        }
+
+        /**
+         * @param language Recognition model requested. Default Urdu.
+         * @return This builder.
+         */
+        public Builder setLanguage(OcrLanguage language) {
+            this.language = language;
+            return this;
+        }
+
+        /**
+         * @param rate Requests issued per second. Default 10.
+         * @return This builder.
+         */
+        public Builder setRate(double rate) {
+            if (rate <= 0) {
+                throw new IllegalArgumentException("rate must be > 0: " + rate);
+            }
+            this.rate = rate;
+            return this;
+        }
+
+        /**
+         * @param clients Requests in flight at most, one connection each. Default 8.
+         * @return This builder.
+         */
+        public Builder setClients(int clients) {
+            if (clients < 1) {
+                throw new IllegalArgumentException("clients must be >= 1: " + clients);
+            }
+            this.clients = clients;
+            return this;
+        }
+
+        /**
+         * @param requests Number of requests to issue. Default 100.
+         * @return This builder.
+         */
+        public Builder setRequests(int requests) {
+            this.requests = requests;
+            return this;
+        }
+
+        /**
+         * @return A new load generator.
+         */
+        public LoadGenerator build() {
+            return new LoadGenerator(this);
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 1) {
+            System.err.println("Usage: LoadGenerator <image dir> [host|local] [port] [rate/s] [clients] [requests]");
+            System.exit(2);
+        }
+        List<byte[]> images = loadImages(new File(args[0]));
+        String host = args.length > 1 ? args[1] : "local";
+        int port = args.length > 2 ? Integer.parseInt(args[2]) : 10000;
+        double rate = args.length > 3 ? Double.parseDouble(args[3]) : 10;
+        int clients = args.length > 4 ? Integer.parseInt(args[4]) : 8;
+        int requests = args.length > 5 ? Integer.parseInt(args[5]) : 100;
+
+        LegacyOcrServer server = null;
+        if (host.equals("local")) {
+            server = new LegacyOcrServer.Builder()
+                    .setLatency(LatencyDistribution.logNormal(800, 0.5))
+                    .setSlots(4)
+                    .build()
+                    .start();
+            host = "127.0.0.1";
+            port = server.port();
+        }
+        LegacyOcrClient client = new LegacyOcrClient.Builder(host, port)
+                .setConnectTimeout(10000)
+                .setReadTimeout(60000)
+                .build();
+        System.out.println("Replaying " + images.size() + " images against " + host + ":" + port);
+        LoadReport report = new Builder(client, images)
+                .setRate(rate)
+                .setClients(clients)
+                .setRequests(requests)
+                .build()
+                .run();
+        System.out.println(report);
+        if (server != null) {
+            server.close();
+        }
+    }
+}
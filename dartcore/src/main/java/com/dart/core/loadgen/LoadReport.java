@@ -0,0 +1,98 @@
+package com.dart.core.loadgen;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Outcome of a {@link LoadGenerator} run: latency percentiles of the successful requests,
+ * achieved throughput and what went wrong with the rest.
+ */
+public final class LoadReport {
+
+    private final long[] latencies; // Nanoseconds, successful requests only, sorted.
+    private final Map<String, Integer> errors;
+    private final long elapsedNanos;
+    private final double targetRate;
+    private final int clients;
+
+    LoadReport(long[] latencies, Map<String, Integer> errors, long elapsedNanos, double targetRate, int clients) {
+        this.latencies = latencies.clone();
+        Arrays.sort(this.latencies);
+        this.errors = Collections.unmodifiableMap(new TreeMap<>(errors));
+        this.elapsedNanos = elapsedNanos;
+        this.targetRate = targetRate;
+        this.clients = clients;
+    }
+
+    /**
+     * @return Number of requests answered with text.
+     */
+    public int completed() {
+        return latencies.length;
+    }
+
+    /**
+     * @return Number of requests that failed.
+     */
+    public int failed() {
+        int failed = 0;
+        for (int count : errors.values()) {
+            failed += count;
+        }
+        return failed;
+    }
+
+    /**
+     * @return Failed requests by cause, e.g. the exception class.
+     */
+    public Map<String, Integer> errors() {
+        return errors;
+    }
+
+    /**
+     * @param percentile 0-100.
+     * @return Latency of the successful requests at that percentile (nearest rank), in
+     * milliseconds; 0 if none succeeded.
+     */
+    public double percentileMillis(double percentile) {
+        if (latencies.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percentile / 100 * latencies.length);
+        return latencies[Math.min(latencies.length - 1, Math.max(0, rank - 1))] / 1e6;
+    }
+
+    /**
+     * @return Mean latency of the successful requests in milliseconds; 0 if none succeeded.
+     */
+    public double meanMillis() {
+        if (latencies.length == 0) {
+            return 0;
+        }
+        double sum = 0;
+        for (long latency : latencies) {
+            sum += latency;
+        }
+        return sum / latencies.length / 1e6;
+    }
+
+    /**
+     * @return Successful requests per second over the whole run.
+     */
+    public double throughput() {
+        return elapsedNanos == 0 ? 0 : latencies.length * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US,
+                "%d ok, %d failed %s in %.1f s (target %.1f/s, %d clients): %.2f/s%n"
+                        + "latency ms: p50 %.0f  p95 %.0f  p99 %.0f  max %.0f  mean %.0f",
+                completed(), failed(), errors, elapsedNanos / 1e9, targetRate, clients, throughput(),
+                percentileMillis(50), percentileMillis(95), percentileMillis(99), percentileMillis(100),
+                meanMillis());
+    }
+}
@@ -0,0 +1,180 @@
+package com.dart.core.net;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ProtocolException;
+
+/**
+ * One message of the framed OCR protocol. Every frame starts with a fixed 16-byte header
+ * followed by {@code length} payload bytes, so both sides know where a message ends without
+ * closing the connection:
+ * <pre>
+ *   offset  size  field
+ *        0     4  magic      'D' 'A' 'R' 'T'
+ *        4     1  version    {@link #VERSION}
+ *        5     1  kind       {@link #KIND_REQUEST} or {@link #KIND_REPLY}
+ *        6     1  code       request: {@link OcrLanguage#code}; reply: {@link #STATUS_OK} or {@link #STATUS_ERROR}
+ *        7     1  format     payload encoding: {@link #FORMAT_PNG}, {@link #FORMAT_BILEVEL} or
+ *                            {@link #FORMAT_LINES} for requests, {@link #FORMAT_TEXT} for replies
+ *        8     4  requestId  chosen by the client, echoed in the reply
+ *       12     4  length     payload size in bytes
+ * </pre>
+ * All integers are big-endian. Reply payloads are UTF-8 text: the recognised address, or an
+ * error message when the status is {@link #STATUS_ERROR}.
+ * <p>
+ * A request whose size is not known when it starts, because it is still being encoded, is
+ * streamed as {@link #KIND_PART} frames instead: any number of parts with the same request id,
+ * language and format, ended by an empty part. The server concatenates the parts and treats
+ * the result exactly like a single {@link #KIND_REQUEST}. An empty part with format
+ * {@link #FORMAT_ABORT} instead discards what was sent and expects no reply. Parts of
+ * different requests may be interleaved on one connection.
+ */
+public final class Frame {
+
+    public static final int MAGIC = 0x44415254; // "DART"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 16;
+
+    public static final int KIND_REQUEST = 1;
+    public static final int KIND_REPLY = 2;
+    /** One piece of a streamed request; see the class comment. */
+    public static final int KIND_PART = 3;
+
+    public static final int STATUS_OK = 0;
+    public static final int STATUS_ERROR = 1;
+
+    public static final int FORMAT_PNG = 0;
+    public static final int FORMAT_TEXT = 1;
+    /** Bi-level image encoded with {@link com.dart.core.image.BilevelCodec}. */
+    public static final int FORMAT_BILEVEL = 2;
+    /** Text lines of one address, encoded with {@link com.dart.core.image.LinesCodec}. */
+    public static final int FORMAT_LINES = 3;
+    /** Format of an empty {@link #KIND_PART} that cancels a streamed request. */
+    public static final int FORMAT_ABORT = 0xFF;
+
+    /** Largest payload accepted when reading, to guard against corrupt length fields. */
+    public static final int MAX_PAYLOAD = 32 * 1024 * 1024;
+
+    public final int kind;
+    public final int code;
+    public final int format;
+    public final int requestId;
+    public final byte[] payload;
+
+    public Frame(int kind, int code, int format, int requestId, byte[] payload) {
+        this.kind = kind;
+        this.code = code;
+        this.format = format;
+        this.requestId = requestId;
+        this.payload = payload;
+    }
+
+    /**
+     * Creates a request frame.
+     */
+    public static Frame request(int requestId, OcrLanguage language, int format, byte[] payload) {
+        return new Frame(KIND_REQUEST, language.code, format, requestId, payload);
+    }
+
+    /**
+     * Creates a successful reply carrying the recognised text.
+     */
+    public static Frame reply(int requestId, String text) {
+        return new Frame(KIND_REPLY, STATUS_OK, FORMAT_TEXT, requestId, utf8(text));
+    }
+
+    /**
+     * Creates an error reply carrying a message.
+     */
+    public static Frame error(int requestId, String message) {
+        return new Frame(KIND_REPLY, STATUS_ERROR, FORMAT_TEXT, requestId, utf8(message));
+    }
+
+    /**
+     * @return The payload decoded as UTF-8.
+     */
+    public String text() {
+        try {
+            return new String(payload, "UTF-8");
+        } catch (java.io.UnsupportedEncodingException e) {
+            throw new AssertionError(e); // UTF-8 is always supported.
+        }
+    }
+
+    /**
+     * Writes a frame header announcing {@code length} payload bytes. Does not flush.
+     */
+    public static void writeHeader(DataOutputStream out, int kind, int code, int format,
+                                   int requestId, int length) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeByte(kind);
+        out.writeByte(code);
+        out.writeByte(format);
+        out.writeInt(requestId);
+        out.writeInt(length);
+    }
+
+    /**
+     * Writes one {@link #KIND_PART} frame of a streamed request. Does not flush.
+     *
+     * @param length Number of bytes of {@code buffer} to send; 0 ends the request.
+     */
+    public static void writePart(DataOutputStream out, int requestId, int code, int format,
+                                 byte[] buffer, int offset, int length) throws IOException {
+        writeHeader(out, KIND_PART, code, format, requestId, length);
+        out.write(buffer, offset, length);
+    }
+
+    /**
+     * Writes this frame. Does not flush.
+     */
+    public void write(DataOutputStream out) throws IOException {
+        writeHeader(out, kind, code, format, requestId, payload.length);
+        out.write(payload);
+    }
+
+    /**
+     * Reads one frame.
+     *
+     * @param in The stream to read from.
+     * @return The frame, or null if the stream ended cleanly before the first header byte.
+     * @throws ProtocolException If the header is malformed.
+     * @throws EOFException      If the stream ends inside a frame.
+     */
+    public static Frame read(DataInputStream in) throws IOException {
+        int first = in.read();
+        if (first < 0) {
+            return null;
+        }
+        int magic = (first << 24) | (in.readUnsignedByte() << 16) | in.readUnsignedShort();
+        if (magic != MAGIC) {
+            throw new ProtocolException("Bad frame magic: 0x" + Integer.toHexString(magic));
+        }
+        int version = in.readUnsignedByte();
+        if (version != VERSION) {
+            throw new ProtocolException("Unsupported frame version: " + version);
+        }
+        int kind = in.readUnsignedByte();
+        int code = in.readUnsignedByte();
+        int format = in.readUnsignedByte();
+        int requestId = in.readInt();
+        int length = in.readInt();
+        if (length < 0 || length > MAX_PAYLOAD) {
+            throw new ProtocolException("Bad frame length: " + length);
+        }
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        return new Frame(kind, code, format, requestId, payload);
+    }
+
+    static byte[] utf8(String s) {
+        try {
+            return s.getBytes("UTF-8");
+        } catch (java.io.UnsupportedEncodingException e) {
+            throw new AssertionError(e); // UTF-8 is always supported.
+        }
+    }
+}
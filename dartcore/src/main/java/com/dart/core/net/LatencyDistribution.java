@@ -0,0 +1,94 @@
+package com.dart.core.net;
+
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Distribution of simulated server-side processing times, for {@link LegacyOcrServer}.
+ */
+public abstract class LatencyDistribution {
+
+    /**
+     * @param random Source of randomness; the caller synchronizes access to it.
+     * @return One processing time in milliseconds, never negative.
+     */
+    public abstract long sample(Random random);
+
+    /**
+     * @param millis The constant processing time.
+     * @return A distribution that always answers after {@code millis}.
+     */
+    public static LatencyDistribution fixed(final long millis) {
+        return new LatencyDistribution() {
+            @Override
+            public long sample(Random random) {
+                return millis;
+            }
+
+            @Override
+            public String toString() {
+                return "fixed(" + millis + "ms)";
+            }
+        };
+    }
+
+    /**
+     * @return Processing times uniformly distributed in {@code [min, max]} milliseconds.
+     */
+    public static LatencyDistribution uniform(final long min, final long max) {
+        if (max < min) {
+            throw new IllegalArgumentException("max < min: " + max + " < " + min);
+        }
+        return new LatencyDistribution() {
+            @Override
+            public long sample(Random random) {
+                return min + (long) (random.nextDouble() * (max - min + 1));
+            }
+
+            @Override
+            public String toString() {
+                return "uniform(" + min + "-" + max + "ms)";
+            }
+        };
+    }
+
+    /**
+     * @return Exponentially distributed processing times with the given mean, in milliseconds.
+     */
+    public static LatencyDistribution exponential(final double meanMillis) {
+        return new LatencyDistribution() {
+            @Override
+            public long sample(Random random) {
+                return Math.round(-meanMillis * Math.log(1 - random.nextDouble()));
+            }
+
+            @Override
+            public String toString() {
+                return String.format(Locale.US, "exponential(mean %.0fms)", meanMillis);
+            }
+        };
+    }
+
+    /**
+     * Log-normal processing times: the usual shape of a service's latency, with most requests
+     * near the median and a long tail.
+     *
+     * @param medianMillis Median processing time.
+     * @param sigma        Standard deviation of the logarithm; the 99th percentile is
+     *                     {@code median * exp(2.33 * sigma)}.
+     * @return The distribution.
+     */
+    public static LatencyDistribution logNormal(final double medianMillis, final double sigma) {
+        return new LatencyDistribution() {
+            @Override
+            public long sample(Random random) {
+                return Math.round(medianMillis * Math.exp(sigma * random.nextGaussian()));
+            }
+
+            @Override
+            public String toString() {
+                return String.format(Locale.US, "lognormal(median %.0fms, sigma %.2f)", medianMillis, sigma);
+            }
+        };
+    }
+}
@@ -0,0 +1,152 @@
+package com.dart.core.net;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+/**
+ * Client for the original, unframed OCR protocol: one connection per image. The optional
+ * {@code ENGLISH\n} language line and the image are written, the output is half-closed to
+ * mark the end of the image, and the reply is read as text lines until the server closes.
+ * <p>
+ * Thread-safe: calls share nothing but the configuration.
+ * <p>
+ * This class uses a Builder pattern for its instantiation.
+ */
+public final class LegacyOcrClient {
+
+    /** Line sent before the image to select the English model; Urdu is the default. */
+    public static final String ENGLISH_PREFIX = "ENGLISH\n";
+
+    private final String host;
+    private final int port;
+    private final int chunkSize;
+    private final int connectTimeout;
+    private final int readTimeout;
+
+    private LegacyOcrClient(Builder builder) {
+        this.host = builder.host;
+        this.port = builder.port;
+        this.chunkSize = builder.chunkSize;
+        this.connectTimeout = builder.connectTimeout;
+        this.readTimeout = builder.readTimeout;
+    }
+
+    /**
+     * @see #recognise(OcrLanguage, PayloadWriter)
+     */
+    public String recognise(OcrLanguage language, final byte[] image) throws IOException {
+        return recognise(language, new PayloadWriter() {
+            @Override
+            public void writeTo(OutputStream out) throws IOException {
+                out.write(image);
+            }
+        });
+    }
+
+    /**
+     * Sends one image and blocks until the full reply has been read. The image is written
+     * through a buffer of {@link Builder#setChunkSize(int) chunkSize} bytes straight into the
+     * socket, so it is on the wire while it is still being encoded.
+     *
+     * @param language Recognition model to use.
+     * @param image    Writes the encoded (PNG) image.
+     * @return The recognised text, without a trailing newline.
+     * @throws IOException If the server cannot be reached, the exchange fails or times out.
+     */
+    public String recognise(OcrLanguage language, PayloadWriter image) throws IOException {
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(host, port), connectTimeout);
+            socket.setSoTimeout(readTimeout);
+            OutputStream output = new BufferedOutputStream(socket.getOutputStream(), chunkSize);
+            if (language == OcrLanguage.ENGLISH) {
+                output.write(ENGLISH_PREFIX.getBytes("UTF-8"));
+            }
+            image.writeTo(output);
+            output.flush();
+            socket.shutdownOutput(); // End of image; the input stays open for the reply.
+
+            BufferedReader input = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+            StringBuilder reply = new StringBuilder();
+            String line;
+            boolean first = true;
+            while ((line = input.readLine()) != null) {
+                if (!first) {
+                    reply.append('\n');
+                }
+                reply.append(line);
+                first = false;
+            }
+            return reply.toString();
+        } finally {
+            socket.close();
+        }
+    }
+
+    /**
+     * @return Host name this client connects to.
+     */
+    public String host() {
+        return host;
+    }
+
+    /**
+     * Builder class for {@link LegacyOcrClient}.
+     */
+    public static class Builder {
+        private final String host;
+        private final int port;
+        private int chunkSize = 16 * 1024;
+        private int connectTimeout = 0;
+        private int readTimeout = 0;
+
+        /**
+         * @param host Server host name or IP address.
+         * @param port Server port.
+         */
+        public Builder(String host, int port) {
+            this.host = host;
+            this.port = port;
+        }
+
+        /**
+         * @param chunkSize Size of the buffer the image is written through. Default 16 KiB.
+         * @return This builder.
+         */
+        public Builder setChunkSize(int chunkSize) {
+            this.chunkSize = chunkSize;
+            return this;
+        }
+
+        /**
+         * @param connectTimeout Connect timeout in milliseconds, 0 for none. Default 0.
+         * @return This builder.
+         */
+        public Builder setConnectTimeout(int connectTimeout) {
+            this.connectTimeout = connectTimeout;
+            return this;
+        }
+
+        /**
+         * @param readTimeout Longest silence while waiting for the reply, in milliseconds,
+         *                    0 for none. Default 0.
+         * @return This builder.
+         */
+        public Builder setReadTimeout(int readTimeout) {
+            this.readTimeout = readTimeout;
+            return this;
+        }
+
+        /**
+         * @return A new client.
+         */
+        public LegacyOcrClient build() {
+            return new LegacyOcrClient(this);
+        }
+    }
+}
@@ -0,0 +1,361 @@
+package com.dart.core.net;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pure-Java stand-in for the GPU host speaking the original, unframed protocol that
+ * {@link LegacyOcrClient} talks: an optional {@code ENGLISH\n} line, the image until the client
+ * half-closes, then the text lines of the reply until the server closes.
+ * <p>
+ * Recognition is simulated: each image holds one of {@link Builder#setSlots(int) slots}
+ * recognisers (the GPU) for a time drawn from a {@link LatencyDistribution}, so queueing under
+ * load shows up in the client's tail latency as it would on the real host. A configurable
+ * share of requests fails instead, in one of the {@link Failure} modes.
+ * <p>
+ * Run standalone with
+ * {@code java com.dart.core.net.LegacyOcrServer [port] [median ms] [sigma] [failure rate]}.
+ * <p>
+ * This class uses a Builder pattern for its instantiation.
+ */
+public final class LegacyOcrServer implements Closeable {
+
+    /**
+     * Produces the reply text for an image. Throwing drops the connection without a reply.
+     */
+    public interface Recognizer {
+        String recognise(OcrLanguage language, byte[] image) throws Exception;
+    }
+
+    /** Replies with "&lt;LANGUAGE&gt;\n&lt;image length&gt;". */
+    public static final Recognizer ECHO = new Recognizer() {
+        @Override
+        public String recognise(OcrLanguage language, byte[] image) {
+            return language + "\n" + image.length;
+        }
+    };
+
+    /**
+     * Ways an injected failure shows up at the client.
+     */
+    public enum Failure {
+        /** Connection reset without a reply: the client's read fails. */
+        RESET,
+        /** Connection closed cleanly without a reply: the client reads empty text. */
+        EMPTY,
+        /** No reply until {@link Builder#setStallMillis(long) stallMillis}, then a reset. */
+        STALL
+    }
+
+    private static final byte[] ENGLISH = Frame.utf8(LegacyOcrClient.ENGLISH_PREFIX);
+
+    private final ServerSocket serverSocket;
+    private final Recognizer recognizer;
+    private final LatencyDistribution latency;
+    private final Semaphore slots;
+    private final double failureRate;
+    private final Failure failure;
+    private final long stallMillis;
+    private final Random random;
+    private final Set<Socket> connections = Collections.synchronizedSet(new HashSet<Socket>());
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private volatile boolean running = true;
+
+    private LegacyOcrServer(Builder builder) throws IOException {
+        this.serverSocket = new ServerSocket(builder.port);
+        this.recognizer = builder.recognizer;
+        this.latency = builder.latency;
+        this.slots = new Semaphore(builder.slots, true);
+        this.failureRate = builder.failureRate;
+        this.failure = builder.failure;
+        this.stallMillis = builder.stallMillis;
+        this.random = new Random(builder.seed);
+    }
+
+    /**
+     * Starts the accept loop on a background thread.
+     *
+     * @return This server.
+     */
+    public LegacyOcrServer start() {
+        daemonThreads("dart-legacy-accept").newThread(new Runnable() {
+            @Override
+            public void run() {
+                acceptLoop();
+            }
+        }).start();
+        return this;
+    }
+
+    /**
+     * @return The port the server is listening on.
+     */
+    public int port() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * @return Images received so far.
+     */
+    public long requests() {
+        return requests.get();
+    }
+
+    /**
+     * @return Requests that were failed on purpose so far.
+     */
+    public long failures() {
+        return failures.get();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            // Already closed.
+        }
+        synchronized (connections) {
+            for (Socket socket : connections) {
+                closeQuietly(socket);
+            }
+            connections.clear();
+        }
+    }
+
+    private void acceptLoop() {
+        ThreadFactory threads = daemonThreads("dart-legacy-conn");
+        while (running) {
+            final Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                return; // Server socket closed.
+            }
+            connections.add(socket);
+            threads.newThread(new Runnable() {
+                @Override
+                public void run() {
+                    serve(socket);
+                }
+            }).start();
+        }
+    }
+
+    private void serve(Socket socket) {
+        try {
+            byte[] request = readAll(socket.getInputStream());
+            requests.incrementAndGet();
+            boolean english = request.length >= ENGLISH.length
+                    && Arrays.equals(Arrays.copyOf(request, ENGLISH.length), ENGLISH);
+            byte[] image = english ? Arrays.copyOfRange(request, ENGLISH.length, request.length) : request;
+
+            long delay;
+            boolean fail;
+            synchronized (random) {
+                delay = latency.sample(random);
+                fail = random.nextDouble() < failureRate;
+            }
+            String text;
+            slots.acquire();
+            try {
+                Thread.sleep(delay); // Simulated recognition, one image per slot.
+                text = fail ? null : recognizer.recognise(english ? OcrLanguage.ENGLISH : OcrLanguage.URDU, image);
+            } finally {
+                slots.release();
+            }
+            if (fail) {
+                failures.incrementAndGet();
+                fail(socket);
+                return;
+            }
+            OutputStream out = socket.getOutputStream();
+            out.write(Frame.utf8(text + "\n"));
+            out.flush();
+        } catch (InterruptedException e) {
+            // Shutting down.
+        } catch (Exception e) {
+            reset(socket); // Client went away, or the recognizer failed.
+        } finally {
+            connections.remove(socket);
+            closeQuietly(socket);
+        }
+    }
+
+    private void fail(Socket socket) throws InterruptedException {
+        switch (failure) {
+            case STALL:
+                Thread.sleep(stallMillis);
+                reset(socket);
+                break;
+            case RESET:
+                reset(socket);
+                break;
+            default:
+                break; // EMPTY: the finally block closes cleanly.
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[16 * 1024];
+        int n;
+        while ((n = in.read(buffer)) >= 0) {
+            bytes.write(buffer, 0, n);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Closes with an RST rather than a FIN, so the client sees an error rather than EOF.
+     */
+    private static void reset(Socket socket) {
+        try {
+            socket.setSoLinger(true, 0);
+        } catch (IOException e) {
+            // Closed already.
+        }
+        closeQuietly(socket);
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Ignore.
+        }
+    }
+
+    private static ThreadFactory daemonThreads(final String name) {
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, name);
+                t.setDaemon(true);
+                return t;
+            }
+        };
+    }
+
+    /**
+     * Builder class for {@link LegacyOcrServer}.
+     */
+    public static class Builder {
+        private int port = 0;
+        private Recognizer recognizer = ECHO;
+        private LatencyDistribution latency = LatencyDistribution.fixed(0);
+        private int slots = 1;
+        private double failureRate = 0;
+        private Failure failure = Failure.RESET;
+        private long stallMillis = 30000;
+        private long seed = 1;
+
+        /**
+         * @param port Port to listen on, 0 for any free port. Default 0.
+         * @return This builder.
+         */
+        public Builder setPort(int port) {
+            this.port = port;
+            return this;
+        }
+
+        /**
+         * @param recognizer Produces reply texts. Default {@link #ECHO}.
+         * @return This builder.
+         */
+        public Builder setRecognizer(Recognizer recognizer) {
+            this.recognizer = recognizer;
+            return this;
+        }
+
+        /**
+         * @param latency Time each image holds a slot. Default 0.
+         * @return This builder.
+         */
+        public Builder setLatency(LatencyDistribution latency) {
+            this.latency = latency;
+            return this;
+        }
+
+        /**
+         * @param slots Images recognised at the same time; more wait for a slot. Default 1,
+         *              like a single GPU.
+         * @return This builder.
+         */
+        public Builder setSlots(int slots) {
+            if (slots < 1) {
+                throw new IllegalArgumentException("slots must be >= 1: " + slots);
+            }
+            this.slots = slots;
+            return this;
+        }
+
+        /**
+         * @param failureRate Share of requests to fail, 0-1. Default 0.
+         * @param failure     How they fail. Default {@link Failure#RESET}.
+         * @return This builder.
+         */
+        public Builder setFailures(double failureRate, Failure failure) {
+            this.failureRate = failureRate;
+            this.failure = failure;
+            return this;
+        }
+
+        /**
+         * @param stallMillis How long a {@link Failure#STALL} holds the connection. Default 30 s.
+         * @return This builder.
+         */
+        public Builder setStallMillis(long stallMillis) {
+            this.stallMillis = stallMillis;
+            return this;
+        }
+
+        /**
+         * @param seed Seed for the latency and failure draws, for repeatable runs. Default 1.
+         * @return This builder.
+         */
+        public Builder setSeed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        /**
+         * @return A new server, bound; call {@link LegacyOcrServer#start()} to begin accepting.
+         * @throws IOException If the port cannot be bound.
+         */
+        public LegacyOcrServer build() throws IOException {
+            return new LegacyOcrServer(this);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        double median = args.length > 1 ? Double.parseDouble(args[1]) : 800;
+        double sigma = args.length > 2 ? Double.parseDouble(args[2]) : 0.5;
+        double failureRate = args.length > 3 ? Double.parseDouble(args[3]) : 0;
+        LegacyOcrServer server = new Builder()
+                .setPort(port)
+                .setLatency(LatencyDistribution.logNormal(median, sigma))
+                .setFailures(failureRate, Failure.RESET)
+                .setSeed(System.nanoTime())
+                .build();
+        System.out.println("Legacy OCR stand-in listening on port " + server.port() + ", " + server.latency
+                + ", failure rate " + failureRate);
+        server.acceptLoop(); // Serve on the main thread until the process is killed.
+    }
+}
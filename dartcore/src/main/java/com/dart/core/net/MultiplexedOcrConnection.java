@@ -0,0 +1,341 @@
+package com.dart.core.net;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One framed connection carrying several outstanding requests at once.
+ * <p>
+ * Requests are written as soon as they are submitted, up to a configurable in-flight window,
+ * without waiting for earlier replies. A dedicated reader thread matches each reply frame to
+ * its request by id, so the server may answer in any order. Each request may carry its own
+ * timeout; a request that times out releases its window slot and a late reply for it is
+ * discarded. If the connection fails, every outstanding request fails with the same error and
+ * the connection is closed.
+ */
+public final class MultiplexedOcrConnection implements Closeable {
+
+    /** Largest payload chunk sent in one {@link Frame#KIND_PART} frame. */
+    public static final int PART_SIZE = 16 * 1024;
+
+    private final OcrConnection connection;
+    private final DataOutputStream out;
+    private final Semaphore window;
+    private final ScheduledExecutorService timer;
+    private final ConcurrentHashMap<Integer, OcrCall> pending = new ConcurrentHashMap<>();
+    private final AtomicInteger nextRequestId = new AtomicInteger(1);
+    private final Object writeLock = new Object();
+    private final Thread reader;
+
+    private volatile IOException failure; // Set once the connection is unusable.
+
+    private MultiplexedOcrConnection(OcrConnection connection, int window, ScheduledExecutorService timer) {
+        this.connection = connection;
+        this.out = connection.output();
+        this.window = new Semaphore(window);
+        this.timer = timer;
+        this.reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                readLoop();
+            }
+        }, "dart-ocr-reader");
+        this.reader.setDaemon(true);
+    }
+
+    /**
+     * Opens a connection and starts its reader thread.
+     *
+     * @param address        Server address.
+     * @param connectTimeout Connect timeout in milliseconds.
+     * @param window         Maximum number of requests in flight at once.
+     * @param timer          Scheduler used for per-request timeouts.
+     * @return The connected multiplexer.
+     * @throws IOException If the server cannot be reached.
+     */
+    public static MultiplexedOcrConnection open(InetSocketAddress address, int connectTimeout, int window,
+                                                ScheduledExecutorService timer) throws IOException {
+        if (window < 1) {
+            throw new IllegalArgumentException("window must be >= 1");
+        }
+        // No socket read timeout: the reader idles between replies; timeouts are per request.
+        MultiplexedOcrConnection mux = new MultiplexedOcrConnection(
+                OcrConnection.open(address, connectTimeout, 0), window, timer);
+        mux.reader.start();
+        return mux;
+    }
+
+    /**
+     * Sends a request without waiting for its reply. Blocks while the in-flight window is full.
+     *
+     * @param language      Recognition model to use.
+     * @param format        Payload encoding.
+     * @param payload       Encoded image.
+     * @param timeoutMillis Time allowed for the reply after the request is written, 0 for none.
+     * @param callback      Notified on completion; may be null.
+     * @return The call handle.
+     * @throws IOException If the connection has failed or the write fails.
+     */
+    public OcrCall submit(OcrLanguage language, int format, byte[] payload, long timeoutMillis,
+                          OcrCall.Callback callback) throws IOException {
+        OcrCall call = register(callback);
+        try {
+            synchronized (writeLock) {
+                Frame.request(call.requestId(), language, format, payload).write(out);
+                out.flush();
+            }
+        } catch (IOException e) {
+            shutdown(e);
+            throw e;
+        }
+        armTimeout(call, timeoutMillis);
+        return call;
+    }
+
+    /**
+     * Streams a request while its payload is still being produced. The payload is sent as
+     * {@link Frame#KIND_PART} frames of up to {@link #PART_SIZE} bytes as soon as each fills up,
+     * so the first bytes are on the wire long before the writer finishes, and parts of other
+     * requests may be interleaved with them. Blocks while the in-flight window is full.
+     * <p>
+     * If the connection fails part way, the writer still runs to completion (its output is
+     * discarded), so a writer that also copies the payload elsewhere, e.g. to a spool, is not
+     * cut short; the failure is reported through the returned call. If the writer itself
+     * throws, the request is aborted and the exception rethrown.
+     *
+     * @param language      Recognition model to use.
+     * @param format        Payload encoding.
+     * @param payload       Writes the encoded image.
+     * @param timeoutMillis Time allowed for the reply after the last part is written, 0 for none.
+     * @param callback      Notified on completion; may be null.
+     * @return The call handle.
+     * @throws IOException If the connection has already failed or the writer fails.
+     */
+    public OcrCall submit(OcrLanguage language, int format, PayloadWriter payload, long timeoutMillis,
+                          OcrCall.Callback callback) throws IOException {
+        OcrCall call = register(callback);
+        PartOutputStream parts = new PartOutputStream(call.requestId(), language.code, format);
+        try {
+            payload.writeTo(parts);
+        } catch (IOException | RuntimeException e) {
+            parts.abort();
+            fail(call.requestId(), e instanceof IOException ? (IOException) e : new IOException(e));
+            throw e;
+        }
+        parts.finish();
+        armTimeout(call, timeoutMillis);
+        return call;
+    }
+
+    /**
+     * Waits for a window slot and registers a new outstanding call.
+     */
+    private OcrCall register(OcrCall.Callback callback) throws IOException {
+        checkOpen();
+        try {
+            window.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for a window slot");
+        }
+        int requestId = nextRequestId.getAndIncrement();
+        OcrCall call = new OcrCall(requestId, callback);
+        pending.put(requestId, call);
+        if (failure != null) { // Failed while we were waiting for a slot.
+            fail(requestId, failure);
+            throw failure;
+        }
+        return call;
+    }
+
+    /**
+     * Starts the reply timeout of a call whose request has been written.
+     */
+    private void armTimeout(OcrCall call, long timeoutMillis) {
+        if (timeoutMillis <= 0 || call.isDone()) {
+            return;
+        }
+        final int requestId = call.requestId();
+        call.timeoutTask = timer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                fail(requestId, new SocketTimeoutException("No reply to request " + requestId));
+            }
+        }, timeoutMillis, TimeUnit.MILLISECONDS);
+        if (call.isDone()) { // Reply raced the scheduling.
+            call.timeoutTask.cancel(false);
+        }
+    }
+
+    /**
+     * @return Number of requests written but not yet completed.
+     */
+    public int inFlight() {
+        return pending.size();
+    }
+
+    /**
+     * @return True once the connection has failed or been closed.
+     */
+    public boolean isClosed() {
+        return failure != null;
+    }
+
+    /**
+     * Closes the connection; outstanding requests fail.
+     */
+    @Override
+    public void close() {
+        shutdown(new IOException("Connection closed"));
+    }
+
+    private void checkOpen() throws IOException {
+        IOException f = failure;
+        if (f != null) {
+            throw new IOException("Connection is closed", f);
+        }
+    }
+
+    private void readLoop() {
+        DataInputStream in = connection.input();
+        try {
+            while (true) {
+                Frame reply = Frame.read(in);
+                if (reply == null) {
+                    throw new EOFException("Server closed the connection");
+                }
+                if (reply.kind != Frame.KIND_REPLY) {
+                    throw new ProtocolException("Unexpected frame kind " + reply.kind);
+                }
+                OcrCall call = pending.remove(reply.requestId);
+                if (call == null) {
+                    continue; // Timed out earlier; the late reply is dropped.
+                }
+                window.release();
+                if (reply.code == Frame.STATUS_OK) {
+                    call.finish(reply.text(), null);
+                } else {
+                    call.finish(null, new OcrServerException(reply.text()));
+                }
+            }
+        } catch (IOException e) {
+            shutdown(e);
+        }
+    }
+
+    /**
+     * Fails a single outstanding request, releasing its window slot.
+     */
+    private void fail(int requestId, IOException error) {
+        OcrCall call = pending.remove(requestId);
+        if (call != null) {
+            window.release();
+            call.finish(null, error);
+        }
+    }
+
+    private void shutdown(IOException cause) {
+        synchronized (this) {
+            if (failure != null) {
+                return;
+            }
+            failure = cause;
+        }
+        connection.close();
+        List<Integer> ids = new ArrayList<>(pending.keySet());
+        for (Integer id : ids) {
+            fail(id, cause);
+        }
+    }
+
+    /**
+     * Buffers a streamed payload and writes it out as {@link Frame#KIND_PART} frames. Once the
+     * connection has failed further writes are dropped rather than thrown, see
+     * {@link #submit(OcrLanguage, int, PayloadWriter, long, OcrCall.Callback)}.
+     */
+    private final class PartOutputStream extends OutputStream {
+        private final int requestId;
+        private final int code;
+        private final int format;
+        private final byte[] buffer = new byte[PART_SIZE];
+        private int count;
+        private boolean broken; // The connection failed; output is discarded.
+
+        PartOutputStream(int requestId, int code, int format) {
+            this.requestId = requestId;
+            this.code = code;
+            this.format = format;
+        }
+
+        @Override
+        public void write(int b) {
+            if (count == buffer.length) {
+                send(format, count);
+            }
+            buffer[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            while (len > 0) {
+                if (count == buffer.length) {
+                    send(format, count);
+                }
+                int n = Math.min(len, buffer.length - count);
+                System.arraycopy(b, off, buffer, count, n);
+                count += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        /**
+         * Sends what is buffered and the empty part that completes the request.
+         */
+        void finish() {
+            if (count > 0) {
+                send(format, count);
+            }
+            send(format, 0);
+        }
+
+        /**
+         * Tells the server to drop the parts sent so far.
+         */
+        void abort() {
+            send(Frame.FORMAT_ABORT, 0);
+        }
+
+        private void send(int partFormat, int length) {
+            count = 0;
+            if (broken || failure != null) {
+                broken = true;
+                return;
+            }
+            try {
+                synchronized (writeLock) {
+                    Frame.writePart(out, requestId, code, partFormat, buffer, 0, length);
+                    out.flush(); // Each part goes out as soon as it is full.
+                }
+            } catch (IOException e) {
+                broken = true;
+                shutdown(e); // Fails this call along with every other one on the connection.
+            }
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.dart.core.net;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Handle for one request sent on a {@link MultiplexedOcrConnection}. The call completes exactly
+ * once: with the recognised text, with the server's error, with a timeout, or with the
+ * connection's failure. Completion can be awaited with {@link #get()} or observed through the
+ * {@link Callback} given when the request was submitted.
+ */
+public final class OcrCall {
+
+    /**
+     * Notified on the connection's reader (or timer) thread when a call completes.
+     * Implementations should return quickly.
+     */
+    public interface Callback {
+        void onResult(int requestId, String text);
+
+        void onFailure(int requestId, IOException error);
+    }
+
+    private final int requestId;
+    private final Callback callback;
+    private final CountDownLatch done = new CountDownLatch(1);
+
+    private String text;
+    private IOException error;
+    private boolean finished;       // Guarded by this.
+    volatile ScheduledFuture<?> timeoutTask; // Cancelled when the reply arrives in time.
+
+    OcrCall(int requestId, Callback callback) {
+        this.requestId = requestId;
+        this.callback = callback;
+    }
+
+    /**
+     * @return The request id written in the request frame.
+     */
+    public int requestId() {
+        return requestId;
+    }
+
+    /**
+     * @return True once the call has a result or an error.
+     */
+    public boolean isDone() {
+        return done.getCount() == 0;
+    }
+
+    /**
+     * Waits for the call to complete.
+     *
+     * @return The recognised text.
+     * @throws OcrServerException       If the server replied with an error.
+     * @throws java.net.SocketTimeoutException If no reply arrived within the request timeout.
+     * @throws IOException              If the connection failed.
+     * @throws InterruptedIOException   If the waiting thread was interrupted.
+     */
+    public String get() throws IOException {
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for request " + requestId);
+        }
+        if (error != null) {
+            throw error;
+        }
+        return text;
+    }
+
+    /**
+     * Waits at most the given time for the call to complete.
+     *
+     * @return The recognised text.
+     * @throws java.net.SocketTimeoutException If the call is still pending after the wait.
+     * @see #get()
+     */
+    public String get(long timeout, TimeUnit unit) throws IOException {
+        try {
+            if (!done.await(timeout, unit)) {
+                throw new java.net.SocketTimeoutException("Request " + requestId + " still pending");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for request " + requestId);
+        }
+        if (error != null) {
+            throw error;
+        }
+        return text;
+    }
+
+    /**
+     * Completes the call; later completions are ignored.
+     *
+     * @return True if this completion won.
+     */
+    boolean finish(String text, IOException error) {
+        synchronized (this) {
+            if (finished) {
+                return false;
+            }
+            finished = true;
+            this.text = text;
+            this.error = error;
+        }
+        if (timeoutTask != null) {
+            timeoutTask.cancel(false);
+        }
+        try {
+            // The callback runs before waiters are released, so get() observes its effects.
+            if (callback != null) {
+                if (error == null) {
+                    callback.onResult(requestId, text);
+                } else {
+                    callback.onFailure(requestId, error);
+                }
+            }
+        } finally {
+            done.countDown();
+        }
+        return true;
+    }
+}
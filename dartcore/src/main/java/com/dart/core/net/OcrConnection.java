@@ -0,0 +1,77 @@
+package com.dart.core.net;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+/**
+ * A keep-alive socket to the OCR server with buffered streams for the {@link Frame} protocol,
+ * carrying the requests of a {@link MultiplexedOcrConnection}.
+ */
+final class OcrConnection implements Closeable {
+
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+
+    private OcrConnection(Socket socket) throws IOException {
+        this.socket = socket;
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 64 * 1024));
+    }
+
+    /**
+     * Opens a new connection.
+     *
+     * @param address        Server address; resolved here if unresolved.
+     * @param connectTimeout Connect timeout in milliseconds, 0 for none.
+     * @param readTimeout    Timeout for each blocking read in milliseconds, 0 for none.
+     * @return The connected connection.
+     * @throws IOException If the server cannot be reached.
+     */
+    static OcrConnection open(InetSocketAddress address, int connectTimeout, int readTimeout)
+            throws IOException {
+        if (address.isUnresolved()) {
+            address = new InetSocketAddress(address.getHostName(), address.getPort());
+        }
+        Socket socket = new Socket();
+        try {
+            socket.setKeepAlive(true);
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(readTimeout);
+            socket.connect(address, connectTimeout);
+            return new OcrConnection(socket);
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return The buffered input stream frames are read from.
+     */
+    DataInputStream input() {
+        return in;
+    }
+
+    /**
+     * @return The buffered output stream frames are written to; flush after each frame.
+     */
+    DataOutputStream output() {
+        return out;
+    }
+
+    @Override
+    public void close() {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Nothing useful to do; the socket is gone either way.
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.dart.core.net;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Minimal pure-Java server speaking the {@link Frame} protocol, for testing clients without the
+ * GPU backend. Requests are read as they arrive and handed to a shared worker pool, and each
+ * reply is written as soon as its worker finishes, so pipelined requests can be answered out
+ * of order. Streamed requests ({@link Frame#KIND_PART}) are reassembled before they are handed
+ * on. By default every request is answered with a description of what was received.
+ * <p>
+ * Run standalone with {@code java com.dart.core.net.OcrEchoServer [port] [workers]}.
+ */
+public final class OcrEchoServer implements Closeable {
+
+    /**
+     * Produces the reply text for a request. Throwing sends an error reply.
+     */
+    public interface Recognizer {
+        String recognise(OcrLanguage language, int format, byte[] payload) throws Exception;
+    }
+
+    /** Replies with "&lt;LANGUAGE&gt; &lt;format&gt; &lt;payload length&gt;". */
+    public static final Recognizer ECHO = new Recognizer() {
+        @Override
+        public String recognise(OcrLanguage language, int format, byte[] payload) {
+            return language + " " + format + " " + payload.length;
+        }
+    };
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService workers;
+    private final Recognizer recognizer;
+    private final Set<Socket> connections = Collections.synchronizedSet(new HashSet<Socket>());
+    private volatile boolean running = true;
+
+    /**
+     * Binds the server; call {@link #start()} to begin accepting.
+     *
+     * @param port       Port to listen on, 0 for any free port.
+     * @param workers    Number of threads recognising requests concurrently.
+     * @param recognizer Produces reply texts.
+     * @throws IOException If the port cannot be bound.
+     */
+    public OcrEchoServer(int port, int workers, Recognizer recognizer) throws IOException {
+        this.serverSocket = new ServerSocket(port);
+        this.recognizer = recognizer;
+        this.workers = Executors.newFixedThreadPool(workers, daemonThreads("dart-echo-worker"));
+    }
+
+    /**
+     * Starts the accept loop on a background thread.
+     *
+     * @return This server.
+     */
+    public OcrEchoServer start() {
+        Thread acceptor = daemonThreads("dart-echo-accept").newThread(new Runnable() {
+            @Override
+            public void run() {
+                acceptLoop();
+            }
+        });
+        acceptor.start();
+        return this;
+    }
+
+    /**
+     * @return The port the server is listening on.
+     */
+    public int port() {
+        return serverSocket.getLocalPort();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            // Already closed.
+        }
+        workers.shutdownNow();
+        synchronized (connections) {
+            for (Socket socket : connections) {
+                closeQuietly(socket);
+            }
+            connections.clear();
+        }
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            final Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                return; // Server socket closed.
+            }
+            connections.add(socket);
+            daemonThreads("dart-echo-conn").newThread(new Runnable() {
+                @Override
+                public void run() {
+                    serve(socket);
+                }
+            }).start();
+        }
+    }
+
+    private void serve(final Socket socket) {
+        try {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            Map<Integer, ByteArrayOutputStream> streams = new HashMap<>(); // Streamed requests being reassembled.
+            Frame frame;
+            while ((frame = Frame.read(in)) != null) {
+                if (frame.kind == Frame.KIND_PART) {
+                    frame = reassemble(streams, frame);
+                    if (frame == null) {
+                        continue; // More parts to come, or aborted.
+                    }
+                } else if (frame.kind != Frame.KIND_REQUEST) {
+                    throw new ProtocolException("Unexpected frame kind " + frame.kind);
+                }
+                final Frame r = frame;
+                workers.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        Frame reply;
+                        try {
+                            reply = Frame.reply(r.requestId,
+                                    recognizer.recognise(OcrLanguage.fromCode(r.code), r.format, r.payload));
+                        } catch (Exception e) {
+                            reply = Frame.error(r.requestId, String.valueOf(e.getMessage()));
+                        }
+                        try {
+                            synchronized (out) {
+                                reply.write(out);
+                                out.flush();
+                            }
+                        } catch (IOException e) {
+                            closeQuietly(socket);
+                        }
+                    }
+                });
+            }
+        } catch (IOException e) {
+            // Client disconnected or sent a malformed frame.
+        } catch (RejectedExecutionException e) {
+            // Server is shutting down.
+        }
+        connections.remove(socket);
+        closeQuietly(socket);
+    }
+
+    /**
+     * Adds a {@link Frame#KIND_PART} to its request.
+     *
+     * @return The complete request once its final part arrives, otherwise null.
+     */
+    private static Frame reassemble(Map<Integer, ByteArrayOutputStream> streams, Frame part)
+            throws ProtocolException {
+        ByteArrayOutputStream body = streams.get(part.requestId);
+        if (part.payload.length == 0) {
+            streams.remove(part.requestId);
+            if (part.format == Frame.FORMAT_ABORT) {
+                return null;
+            }
+            byte[] payload = body == null ? new byte[0] : body.toByteArray();
+            return new Frame(Frame.KIND_REQUEST, part.code, part.format, part.requestId, payload);
+        }
+        if (body == null) {
+            body = new ByteArrayOutputStream();
+            streams.put(part.requestId, body);
+        }
+        if (body.size() + part.payload.length > Frame.MAX_PAYLOAD) {
+            throw new ProtocolException("Streamed request " + part.requestId + " too large");
+        }
+        body.write(part.payload, 0, part.payload.length);
+        return null;
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Ignore.
+        }
+    }
+
+    private static ThreadFactory daemonThreads(final String name) {
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, name);
+                t.setDaemon(true);
+                return t;
+            }
+        };
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int workers = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        OcrEchoServer server = new OcrEchoServer(port, workers, ECHO);
+        System.out.println("OCR echo server listening on port " + server.port());
+        server.acceptLoop(); // Serve on the main thread until the process is killed.
+    }
+}
@@ -0,0 +1,30 @@
+package com.dart.core.net;
+
+/**
+ * Recognition models offered by the OCR server, identified on the wire by a single byte.
+ */
+public enum OcrLanguage {
+    URDU(0),
+    ENGLISH(1);
+
+    /** Value written in the language field of a request {@link Frame}. */
+    public final int code;
+
+    OcrLanguage(int code) {
+        this.code = code;
+    }
+
+    /**
+     * @param code The wire value.
+     * @return The matching language.
+     * @throws IllegalArgumentException If the code is unknown.
+     */
+    public static OcrLanguage fromCode(int code) {
+        for (OcrLanguage language : values()) {
+            if (language.code == code) {
+                return language;
+            }
+        }
+        throw new IllegalArgumentException("Unknown language code: " + code);
+    }
+}
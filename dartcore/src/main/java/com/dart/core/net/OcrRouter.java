@@ -0,0 +1,519 @@
+package com.dart.core.net;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OCR client spreading requests over several servers, each reached through its own
+ * {@link PipelinedOcrClient}.
+ * <p>
+ * Each request goes to the endpoint expected to answer first: the one with the lowest recent
+ * latency, weighted by the requests it already has in flight, so a fast server takes more
+ * work but a busy one is not piled onto. Endpoints that have not answered yet are tried
+ * first, so every server gets measured.
+ * <p>
+ * If an endpoint cannot be reached or a request to it fails or times out, the endpoint is
+ * taken out of rotation and the request is sent to the next one, until every endpoint has
+ * been tried. An error reply ({@link OcrServerException}) is an answer and is not retried.
+ * A streamed request can only fail over while its payload has not been written yet: its
+ * writer runs once.
+ * <p>
+ * Endpoints out of rotation come back when a health probe reaches them, or after a cooldown.
+ * The probe is a plain TCP connect, which any server accepts without a protocol change; it
+ * runs on a background thread every {@link Builder#setProbeInterval(long) probe interval}.
+ * If every endpoint is out of rotation, requests still try them all rather than fail outright.
+ * <p>
+ * This class uses a Builder pattern for its instantiation and is thread-safe.
+ */
+public final class OcrRouter implements Closeable {
+
+    /**
+     * Statistics of one endpoint at the time {@link #stats()} was called.
+     */
+    public static final class EndpointStats {
+        public final String host;
+        public final int port;
+        public final boolean available;    // True if the endpoint is in rotation.
+        public final int inFlight;         // Requests sent and not yet answered.
+        public final long requests;        // Requests answered, including error replies.
+        public final long failures;        // Requests and probes that could not reach the server.
+        public final double latencyMillis; // Smoothed request latency; -1 before the first answer.
+        public final long probeMillis;     // Connect time of the last successful probe; -1 if none.
+        public final String lastError;     // Most recent failure, or null.
+
+        EndpointStats(String host, int port, boolean available, int inFlight, long requests, long failures,
+                      double latencyMillis, long probeMillis, String lastError) {
+            this.host = host;
+            this.port = port;
+            this.available = available;
+            this.inFlight = inFlight;
+            this.requests = requests;
+            this.failures = failures;
+            this.latencyMillis = latencyMillis;
+            this.probeMillis = probeMillis;
+            this.lastError = lastError;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%s:%d %s, %d in flight, %d ok, %d failed, latency %.0f ms, probe %d ms%s",
+                    host, port, available ? "up" : "down", inFlight, requests, failures, latencyMillis, probeMillis,
+                    lastError == null ? "" : ", last error: " + lastError);
+        }
+    }
+
+    private final Endpoint[] endpoints;
+    private final long cooldownMillis;
+    private final int probeTimeout;
+    private final double smoothing;
+    private final ScheduledThreadPoolExecutor prober;
+
+    private OcrRouter(Builder builder) {
+        this.cooldownMillis = builder.cooldownMillis;
+        this.probeTimeout = builder.probeTimeout;
+        this.smoothing = builder.smoothing;
+        this.endpoints = new Endpoint[builder.hosts.size()];
+        for (int i = 0; i < endpoints.length; i++) {
+            PipelinedOcrClient client = new PipelinedOcrClient.Builder(builder.hosts.get(i), builder.ports.get(i))
+                    .setWindow(builder.window)
+                    .setConnectTimeout(builder.connectTimeout)
+                    .setRequestTimeout(builder.requestTimeout)
+                    .build();
+            endpoints[i] = new Endpoint(i, builder.hosts.get(i), builder.ports.get(i), client);
+        }
+        this.prober = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "dart-ocr-probe");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        if (builder.probeInterval > 0) {
+            prober.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    probe();
+                }
+            }, builder.probeInterval, builder.probeInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Sends a request to the best endpoint and waits for its reply, failing over to the others.
+     *
+     * @param language Recognition model to use.
+     * @param format   Payload encoding.
+     * @param payload  Encoded image.
+     * @return The recognised text.
+     * @throws IOException The last endpoint's failure if none answered, or an error reply.
+     */
+    public String recognise(final OcrLanguage language, final int format, final byte[] payload) throws IOException {
+        return route(new Request() {
+            @Override
+            public String send(PipelinedOcrClient client) throws IOException {
+                return client.recognise(language, format, payload);
+            }
+
+            @Override
+            public boolean retryable() {
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Streams a request to the best endpoint and waits for its reply. Fails over only while no
+     * endpoint has started writing the payload, i.e. if connecting fails.
+     *
+     * @param language Recognition model to use.
+     * @param format   Payload encoding.
+     * @param payload  Writes the encoded image; called at most once.
+     * @return The recognised text.
+     * @throws IOException The failure that ended the request, or an error reply.
+     */
+    public String recognise(final OcrLanguage language, final int format, final PayloadWriter payload)
+            throws IOException {
+        final boolean[] written = new boolean[1];
+        final PayloadWriter once = new PayloadWriter() {
+            @Override
+            public void writeTo(OutputStream out) throws IOException {
+                written[0] = true;
+                payload.writeTo(out);
+            }
+        };
+        return route(new Request() {
+            @Override
+            public String send(PipelinedOcrClient client) throws IOException {
+                return client.recognise(language, format, once);
+            }
+
+            @Override
+            public boolean retryable() {
+                return !written[0];
+            }
+        });
+    }
+
+    /**
+     * Connects the endpoint the next request would go to in the background, see
+     * {@link PipelinedOcrClient#prewarm()}.
+     */
+    public void prewarm() {
+        ranked().get(0).client.prewarm();
+    }
+
+    /**
+     * @return True if the endpoint the next request would go to has an open connection.
+     */
+    public boolean isConnected() {
+        return ranked().get(0).client.isConnected();
+    }
+
+    /**
+     * Probes every endpoint now, on the calling thread: endpoints that accept a connection are
+     * put back in rotation, the others taken out.
+     */
+    public void probe() {
+        for (Endpoint endpoint : endpoints) {
+            long start = System.nanoTime();
+            Socket socket = new Socket();
+            try {
+                socket.connect(new InetSocketAddress(endpoint.host, endpoint.port), probeTimeout);
+                endpoint.probed(millis(System.nanoTime() - start));
+            } catch (IOException e) {
+                endpoint.failed(e);
+            } finally {
+                try {
+                    socket.close();
+                } catch (IOException e) {
+                    // Ignore.
+                }
+            }
+        }
+    }
+
+    /**
+     * @return Statistics of every endpoint, in the order they were added.
+     */
+    public List<EndpointStats> stats() {
+        List<EndpointStats> stats = new ArrayList<>(endpoints.length);
+        long now = System.nanoTime();
+        for (Endpoint endpoint : endpoints) {
+            stats.add(endpoint.stats(now));
+        }
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        prober.shutdownNow();
+        for (Endpoint endpoint : endpoints) {
+            endpoint.client.close();
+        }
+    }
+
+    /**
+     * One way of sending a request, repeated on each endpoint tried.
+     */
+    private interface Request {
+        String send(PipelinedOcrClient client) throws IOException;
+
+        /**
+         * @return True if the request may still be sent to another endpoint after a failure.
+         */
+        boolean retryable();
+    }
+
+    private String route(Request request) throws IOException {
+        IOException failure = null;
+        List<Endpoint> ranked;
+        synchronized (this) { // Rank and claim together, so concurrent requests see each other.
+            ranked = ranked();
+            ranked.get(0).begin();
+        }
+        for (int i = 0; i < ranked.size(); i++) {
+            Endpoint endpoint = ranked.get(i);
+            if (i > 0) {
+                endpoint.begin();
+            }
+            long start = System.nanoTime();
+            try {
+                String text = request.send(endpoint.client);
+                endpoint.answered(millis(System.nanoTime() - start));
+                return text;
+            } catch (OcrServerException e) {
+                endpoint.answered(millis(System.nanoTime() - start)); // The server is fine; the image was not.
+                throw e;
+            } catch (IOException e) {
+                if (e instanceof InterruptedIOException && !(e instanceof SocketTimeoutException)) {
+                    throw e; // The caller was interrupted, not failed by the server.
+                }
+                endpoint.failed(e);
+                failure = e;
+                if (!request.retryable()) {
+                    throw e;
+                }
+            } finally {
+                endpoint.end();
+            }
+        }
+        throw failure;
+    }
+
+    /**
+     * @return All endpoints, best first: those in rotation by expected time to answer
+     * (smoothed latency times requests in flight plus one, untried ones first, then fewest in
+     * flight), followed by those out of rotation, longest out first.
+     */
+    private List<Endpoint> ranked() {
+        final long now = System.nanoTime();
+        final int n = endpoints.length;
+        final boolean[] available = new boolean[n];
+        final double[] cost = new double[n];
+        final int[] inFlight = new int[n];
+        final long[] lastFailure = new long[n];
+        List<Endpoint> ranked = new ArrayList<>(n);
+        for (Endpoint endpoint : endpoints) {
+            synchronized (endpoint) {
+                int i = endpoint.index;
+                available[i] = endpoint.available(now);
+                inFlight[i] = endpoint.inFlight;
+                cost[i] = endpoint.latency < 0 ? 0 : endpoint.latency * (endpoint.inFlight + 1);
+                lastFailure[i] = endpoint.lastFailure;
+            }
+            ranked.add(endpoint);
+        }
+        Collections.sort(ranked, new Comparator<Endpoint>() {
+            @Override
+            public int compare(Endpoint a, Endpoint b) {
+                int i = a.index;
+                int j = b.index;
+                if (available[i] != available[j]) {
+                    return available[i] ? -1 : 1;
+                }
+                if (!available[i]) {
+                    return compareLong(lastFailure[i], lastFailure[j]);
+                }
+                int c = Double.compare(cost[i], cost[j]);
+                return c != 0 ? c : inFlight[i] != inFlight[j] ? inFlight[i] - inFlight[j] : i - j;
+            }
+        });
+        return ranked;
+    }
+
+    private static int compareLong(long a, long b) {
+        return a < b ? -1 : a == b ? 0 : 1;
+    }
+
+    private static long millis(long nanos) {
+        return nanos / 1000000;
+    }
+
+    /**
+     * One server and what is known about it. Fields guarded by the instance.
+     */
+    private final class Endpoint {
+        final int index;
+        final String host;
+        final int port;
+        final PipelinedOcrClient client;
+
+        int inFlight;
+        long requests;
+        long failures;
+        int consecutiveFailures;
+        long lastFailure;        // System.nanoTime() of the latest failure.
+        double latency = -1;     // Smoothed request latency in milliseconds, -1 if unknown.
+        long probeMillis = -1;
+        String lastError;
+
+        Endpoint(int index, String host, int port, PipelinedOcrClient client) {
+            this.index = index;
+            this.host = host;
+            this.port = port;
+            this.client = client;
+        }
+
+        boolean available(long now) {
+            return consecutiveFailures == 0 || now - lastFailure >= TimeUnit.MILLISECONDS.toNanos(cooldownMillis);
+        }
+
+        synchronized void begin() {
+            inFlight++;
+        }
+
+        synchronized void end() {
+            inFlight--;
+        }
+
+        synchronized void answered(long millis) {
+            requests++;
+            consecutiveFailures = 0;
+            latency = latency < 0 ? millis : smoothing * millis + (1 - smoothing) * latency;
+        }
+
+        synchronized void probed(long millis) {
+            probeMillis = millis;
+            consecutiveFailures = 0;
+        }
+
+        synchronized void failed(IOException e) {
+            failures++;
+            consecutiveFailures++;
+            lastFailure = System.nanoTime();
+            lastError = e.toString();
+        }
+
+        synchronized EndpointStats stats(long now) {
+            return new EndpointStats(host, port, available(now), inFlight, requests, failures, latency,
+                    probeMillis, lastError);
+        }
+    }
+
+    /**
+     * Builder class for {@link OcrRouter}.
+     */
+    public static class Builder {
+        private final List<String> hosts = new ArrayList<>();
+        private final List<Integer> ports = new ArrayList<>();
+        private int window = 4;
+        private int connectTimeout = 10000;
+        private long requestTimeout = 60000;
+        private long probeInterval = 30000;
+        private int probeTimeout = 3000;
+        private long cooldownMillis = 60000;
+        private double smoothing = 0.3;
+
+        /**
+         * Adds a server. Requests are spread over all servers added.
+         *
+         * @param host Server host name or IP address.
+         * @param port Server port.
+         * @return This builder.
+         */
+        public Builder addEndpoint(String host, int port) {
+            if (host == null || host.length() == 0) {
+                throw new IllegalArgumentException("host must not be empty");
+            }
+            hosts.add(host);
+            ports.add(port);
+            return this;
+        }
+
+        /**
+         * Adds servers from a comma-separated list of {@code host} or {@code host:port} entries.
+         *
+         * @param endpoints   E.g. "10.0.0.5, 10.0.0.6:10001".
+         * @param defaultPort Port of entries without one.
+         * @return This builder.
+         */
+        public Builder addEndpoints(String endpoints, int defaultPort) {
+            for (String entry : endpoints.split(",")) {
+                entry = entry.trim();
+                if (entry.isEmpty()) {
+                    continue;
+                }
+                int colon = entry.lastIndexOf(':');
+                if (colon > 0 && entry.indexOf(':') == colon) { // One colon: host:port, not an IPv6 address.
+                    addEndpoint(entry.substring(0, colon), Integer.parseInt(entry.substring(colon + 1)));
+                } else {
+                    addEndpoint(entry, defaultPort);
+                }
+            }
+            return this;
+        }
+
+        /**
+         * @param window Requests outstanding at once on each endpoint's connection. Default 4.
+         * @return This builder.
+         */
+        public Builder setWindow(int window) {
+            this.window = window;
+            return this;
+        }
+
+        /**
+         * @param connectTimeout Connect timeout of requests in milliseconds. Default 10 seconds.
+         * @return This builder.
+         */
+        public Builder setConnectTimeout(int connectTimeout) {
+            this.connectTimeout = connectTimeout;
+            return this;
+        }
+
+        /**
+         * @param requestTimeout Time allowed for each reply in milliseconds, 0 for none; a
+         *                       request that times out fails over. Default 60 seconds.
+         * @return This builder.
+         */
+        public Builder setRequestTimeout(long requestTimeout) {
+            this.requestTimeout = requestTimeout;
+            return this;
+        }
+
+        /**
+         * @param probeInterval Time between health probes in milliseconds, 0 for none; see
+         *                      {@link OcrRouter#probe()}. Default 30 seconds.
+         * @return This builder.
+         */
+        public Builder setProbeInterval(long probeInterval) {
+            this.probeInterval = probeInterval;
+            return this;
+        }
+
+        /**
+         * @param probeTimeout Connect timeout of a health probe in milliseconds. Default 3 seconds.
+         * @return This builder.
+         */
+        public Builder setProbeTimeout(int probeTimeout) {
+            this.probeTimeout = probeTimeout;
+            return this;
+        }
+
+        /**
+         * @param cooldownMillis Time a failed endpoint stays out of rotation unless a probe
+         *                       reaches it first. Default 60 seconds.
+         * @return This builder.
+         */
+        public Builder setCooldown(long cooldownMillis) {
+            this.cooldownMillis = cooldownMillis;
+            return this;
+        }
+
+        /**
+         * @param smoothing Weight of the newest latency in the smoothed latency, 0-1. Default 0.3.
+         * @return This builder.
+         */
+        public Builder setSmoothing(double smoothing) {
+            if (smoothing <= 0 || smoothing > 1) {
+                throw new IllegalArgumentException("smoothing must be in (0, 1]: " + smoothing);
+            }
+            this.smoothing = smoothing;
+            return this;
+        }
+
+        /**
+         * @return A new router.
+         */
+        public OcrRouter build() {
+            if (hosts.isEmpty()) {
+                throw new IllegalStateException("No endpoints");
+            }
+            return new OcrRouter(this);
+        }
+    }
+}
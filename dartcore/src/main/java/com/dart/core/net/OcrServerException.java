@@ -0,0 +1,16 @@
+package com.dart.core.net;
+
+import java.io.IOException;
+
+/**
+ * Thrown when the OCR server answers a request with an error reply. The connection itself is
+ * still usable.
+ */
+public class OcrServerException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public OcrServerException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,19 @@
+package com.dart.core.net;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Produces a request payload by writing it to a stream, so it can be sent while it is still
+ * being encoded. See {@link MultiplexedOcrConnection#submit(OcrLanguage, int, PayloadWriter, long, OcrCall.Callback)}.
+ */
+public interface PayloadWriter {
+
+    /**
+     * Writes the whole payload. Must not close {@code out}.
+     *
+     * @param out Stream the payload is sent through.
+     * @throws IOException If producing the payload fails; the request is then abandoned.
+     */
+    void writeTo(OutputStream out) throws IOException;
+}
@@ -0,0 +1,220 @@
+package com.dart.core.net;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * OCR client that pipelines requests over a single {@link MultiplexedOcrConnection}.
+ * Several envelopes can be outstanding at once, up to the configured window, and replies are
+ * matched to requests by id in whatever order the server sends them. The connection is opened
+ * lazily and reopened after it fails.
+ * <p>
+ * This class uses a Builder pattern for its instantiation and is thread-safe.
+ */
+public final class PipelinedOcrClient implements Closeable {
+
+    private final InetSocketAddress address;
+    private final int window;
+    private final int connectTimeout;
+    private final long requestTimeout;
+    private final ScheduledThreadPoolExecutor timer;
+
+    private MultiplexedOcrConnection connection; // Guarded by this.
+    private boolean closed;                      // Guarded by this.
+    private boolean prewarming;                  // Guarded by this.
+
+    private PipelinedOcrClient(Builder builder) {
+        this.address = InetSocketAddress.createUnresolved(builder.host, builder.port);
+        this.window = builder.window;
+        this.connectTimeout = builder.connectTimeout;
+        this.requestTimeout = builder.requestTimeout;
+        this.timer = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "dart-ocr-timeouts");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * Sends a request without waiting for the reply.
+     *
+     * @param language Recognition model to use.
+     * @param format   Payload encoding.
+     * @param payload  Encoded image.
+     * @param callback Notified when the call completes; may be null.
+     * @return The call handle.
+     * @throws IOException If the server cannot be reached.
+     */
+    public OcrCall submit(OcrLanguage language, int format, byte[] payload, OcrCall.Callback callback)
+            throws IOException {
+        return connection().submit(language, format, payload, requestTimeout, callback);
+    }
+
+    /**
+     * Sends a request and waits for its reply. Other threads may have requests in flight on the
+     * same connection at the same time.
+     *
+     * @return The recognised text.
+     * @throws IOException If the request fails or times out.
+     */
+    public String recognise(OcrLanguage language, int format, byte[] payload) throws IOException {
+        return submit(language, format, payload, null).get();
+    }
+
+    /**
+     * Streams a request while its payload is still being encoded, without waiting for the reply.
+     * See {@link MultiplexedOcrConnection#submit(OcrLanguage, int, PayloadWriter, long, OcrCall.Callback)}.
+     *
+     * @param language Recognition model to use.
+     * @param format   Payload encoding.
+     * @param payload  Writes the encoded image.
+     * @param callback Notified when the call completes; may be null.
+     * @return The call handle.
+     * @throws IOException If the server cannot be reached or the writer fails.
+     */
+    public OcrCall submit(OcrLanguage language, int format, PayloadWriter payload, OcrCall.Callback callback)
+            throws IOException {
+        return connection().submit(language, format, payload, requestTimeout, callback);
+    }
+
+    /**
+     * Streams a request and waits for its reply.
+     *
+     * @return The recognised text.
+     * @throws IOException If the request fails or times out.
+     */
+    public String recognise(OcrLanguage language, int format, PayloadWriter payload) throws IOException {
+        return submit(language, format, payload, null).get();
+    }
+
+    /**
+     * Opens the connection on a background thread if it is not open yet, so the TCP handshake
+     * overlaps with whatever the caller does before its first request, e.g. preprocessing an
+     * image. A request submitted meanwhile waits for that connection instead of opening its
+     * own. Failures are ignored; the next request retries.
+     */
+    public void prewarm() {
+        synchronized (this) {
+            if (closed || prewarming || (connection != null && !connection.isClosed())) {
+                return;
+            }
+            prewarming = true;
+        }
+        Thread t = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    connection();
+                } catch (IOException e) {
+                    // Unreachable for now; the request itself will report it.
+                } finally {
+                    synchronized (PipelinedOcrClient.this) {
+                        prewarming = false;
+                    }
+                }
+            }
+        }, "dart-ocr-prewarm");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /**
+     * @return True if a connection is open, e.g. after {@link #prewarm()} completed.
+     */
+    public synchronized boolean isConnected() {
+        return connection != null && !connection.isClosed();
+    }
+
+    /**
+     * @return Host name this client connects to.
+     */
+    public String host() {
+        return address.getHostName();
+    }
+
+    /**
+     * @return Number of requests currently awaiting a reply.
+     */
+    public synchronized int inFlight() {
+        return connection == null ? 0 : connection.inFlight();
+    }
+
+    private synchronized MultiplexedOcrConnection connection() throws IOException {
+        if (closed) {
+            throw new IOException("Client is closed");
+        }
+        if (connection == null || connection.isClosed()) {
+            connection = MultiplexedOcrConnection.open(address, connectTimeout, window, timer);
+        }
+        return connection;
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (connection != null) {
+            connection.close();
+        }
+        timer.shutdownNow();
+    }
+
+    /**
+     * Builder class for {@link PipelinedOcrClient}.
+     */
+    public static class Builder {
+        private final String host;
+        private final int port;
+        private int window = 4;
+        private int connectTimeout = 10000;
+        private long requestTimeout = 60000;
+
+        /**
+         * @param host Server host name or IP address.
+         * @param port Server port.
+         */
+        public Builder(String host, int port) {
+            if (host == null || host.length() == 0) {
+                throw new IllegalArgumentException("host must not be empty");
+            }
+            this.host = host;
+            this.port = port;
+        }
+
+        /**
+         * Sets how many requests may be outstanding at once. Defaults to 4.
+         */
+        public Builder setWindow(int window) {
+            if (window < 1) {
+                throw new IllegalArgumentException("window must be >= 1");
+            }
+            this.window = window;
+            return this;
+        }
+
+        /**
+         * Sets the connect timeout in milliseconds. Defaults to 10 seconds.
+         */
+        public Builder setConnectTimeout(int connectTimeout) {
+            this.connectTimeout = connectTimeout;
+            return this;
+        }
+
+        /**
+         * Sets the time allowed for each reply in milliseconds, 0 for none. Defaults to 60 seconds.
+         */
+        public Builder setRequestTimeout(long requestTimeout) {
+            this.requestTimeout = requestTimeout;
+            return this;
+        }
+
+        public PipelinedOcrClient build() {
+            return new PipelinedOcrClient(this);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.dart.core.pipeline;
+
+/**
+ * One step of a {@link StagedPipeline}. A stage transforms the output of the previous stage
+ * into the input of the next one, on the stage's own worker thread(s).
+ *
+ * @param <I> Input type.
+ * @param <O> Output type.
+ */
+public interface Stage<I, O> {
+
+    /**
+     * Processes one job.
+     *
+     * @param input The previous stage's output, or the submitted value for the first stage.
+     * @return The value handed to the next stage, or delivered to the listener for the last stage.
+     * @throws Exception If the job cannot be processed; the job is dropped and its listener notified.
+     */
+    O process(I input) throws Exception;
+}
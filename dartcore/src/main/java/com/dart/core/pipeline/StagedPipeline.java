@@ -0,0 +1,287 @@
+package com.dart.core.pipeline;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A chain of {@link Stage}s, each running on its own worker thread(s) and fed through its own
+ * bounded handoff queue. While one job is in a later stage (e.g. uploading) the next job can
+ * already be processed by an earlier stage (e.g. decoding), so stages overlap across jobs.
+ * <p>
+ * Submission never blocks: if the first stage's queue is full, {@link #submit} returns -1.
+ * Between stages, a full queue blocks the upstream worker, which propagates back-pressure
+ * instead of buffering unbounded work. Only the final result (or the failure) of each job is
+ * delivered to its {@link Listener}, on the callback executor given to the builder; on Android
+ * this is typically an executor that posts to the main thread's {@code Handler}.
+ * <p>
+ * This class uses a Builder pattern for its instantiation.
+ *
+ * @param <I> Type submitted to the first stage.
+ * @param <O> Type produced by the last stage.
+ */
+public final class StagedPipeline<I, O> {
+
+    /**
+     * Receives the outcome of a submitted job on the pipeline's callback executor.
+     *
+     * @param <O> Type produced by the last stage.
+     */
+    public interface Listener<O> {
+        /**
+         * Called once the last stage has produced its output.
+         *
+         * @param jobId  The id returned by {@link StagedPipeline#submit}.
+         * @param result The output of the last stage.
+         */
+        void onComplete(long jobId, O result);
+
+        /**
+         * Called if any stage throws, including errors such as {@link OutOfMemoryError}; the job
+         * is dropped and the stage keeps serving later jobs.
+         *
+         * @param jobId The id returned by {@link StagedPipeline#submit}.
+         * @param stage The name of the stage that failed.
+         * @param error The exception or error thrown by the stage.
+         */
+        void onFailure(long jobId, String stage, Throwable error);
+    }
+
+    private final StageRunner[] runners;
+    private final Executor callbackExecutor;
+    private final AtomicLong nextId = new AtomicLong(1);
+    private volatile boolean running = true;
+
+    private StagedPipeline(List<StageSpec> specs, Executor callbackExecutor) {
+        this.callbackExecutor = callbackExecutor;
+        this.runners = new StageRunner[specs.size()];
+        for (int i = 0; i < runners.length; i++) {
+            runners[i] = new StageRunner(this, i, specs.get(i));
+        }
+        for (StageRunner runner : runners) {
+            runner.start();
+        }
+    }
+
+    /**
+     * Queues a job for the first stage without blocking.
+     *
+     * @param input    Value handed to the first stage.
+     * @param listener Receives the job's result or failure.
+     * @return The job id, or -1 if the first stage's queue is full or the pipeline is shut down.
+     */
+    public long submit(I input, Listener<? super O> listener) {
+        if (!running) {
+            return -1;
+        }
+        long id = nextId.getAndIncrement();
+        return runners[0].queue.offer(new Job(id, input, listener)) ? id : -1;
+    }
+
+    /**
+     * @param stage Index of the stage.
+     * @return Number of jobs waiting in the stage's queue (not counting the ones being processed).
+     */
+    public int queued(int stage) {
+        return runners[stage].queue.size();
+    }
+
+    /**
+     * @return Number of stages in the pipeline.
+     */
+    public int stageCount() {
+        return runners.length;
+    }
+
+    /**
+     * Stops all workers. Queued jobs are discarded without notifying their listeners.
+     */
+    public void shutdown() {
+        running = false;
+        for (StageRunner runner : runners) {
+            runner.stop();
+        }
+    }
+
+    private void deliver(final Job job) {
+        callbackExecutor.execute(new Runnable() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public void run() {
+                ((Listener<Object>) job.listener).onComplete(job.id, job.value);
+            }
+        });
+    }
+
+    private void fail(final Job job, final String stage, final Throwable error) {
+        callbackExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                job.listener.onFailure(job.id, stage, error);
+            }
+        });
+    }
+
+    /**
+     * A job in flight. The value is replaced by each stage's output as it moves down the chain.
+     */
+    private static final class Job {
+        final long id;
+        final Listener<?> listener;
+        Object value;
+
+        Job(long id, Object value, Listener<?> listener) {
+            this.id = id;
+            this.value = value;
+            this.listener = listener;
+        }
+    }
+
+    /**
+     * Configuration of one stage, collected by the builder.
+     */
+    private static final class StageSpec {
+        final String name;
+        final Stage<Object, Object> stage;
+        final int queueCapacity;
+        final int threads;
+
+        @SuppressWarnings("unchecked")
+        StageSpec(String name, Stage<?, ?> stage, int queueCapacity, int threads) {
+            this.name = name;
+            this.stage = (Stage<Object, Object>) stage;
+            this.queueCapacity = queueCapacity;
+            this.threads = threads;
+        }
+    }
+
+    /**
+     * Worker threads and the bounded queue feeding one stage.
+     */
+    private static final class StageRunner implements Runnable {
+        final StagedPipeline<?, ?> pipeline;
+        final int index;
+        final StageSpec spec;
+        final BlockingQueue<Job> queue;
+        final Thread[] workers;
+
+        StageRunner(StagedPipeline<?, ?> pipeline, int index, StageSpec spec) {
+            this.pipeline = pipeline;
+            this.index = index;
+            this.spec = spec;
+            this.queue = new ArrayBlockingQueue<>(spec.queueCapacity);
+            this.workers = new Thread[spec.threads];
+            for (int i = 0; i < workers.length; i++) {
+                workers[i] = new Thread(this, "dart-" + spec.name + "-" + i);
+                workers[i].setDaemon(true);
+            }
+        }
+
+        void start() {
+            for (Thread worker : workers) {
+                worker.start();
+            }
+        }
+
+        void stop() {
+            for (Thread worker : workers) {
+                worker.interrupt();
+            }
+            queue.clear();
+        }
+
+        @Override
+        public void run() {
+            try {
+                StageRunner[] runners = pipeline.runners;
+                while (pipeline.running) {
+                    Job job = queue.take();
+                    try {
+                        job.value = spec.stage.process(job.value);
+                    } catch (Throwable e) { // An error must not kill the worker and strand the queue.
+                        pipeline.fail(job, spec.name, e);
+                        continue;
+                    }
+                    if (index == runners.length - 1) {
+                        pipeline.deliver(job);
+                    } else {
+                        runners[index + 1].queue.put(job); // Blocks while the next stage is saturated.
+                    }
+                }
+            } catch (InterruptedException e) {
+                // Shutdown requested.
+            }
+        }
+    }
+
+    /**
+     * Builder class for {@link StagedPipeline}. Stages are added in processing order; the type
+     * parameters track the output type of the last stage added so far.
+     *
+     * @param <I> Type submitted to the first stage.
+     * @param <T> Output type of the last stage added.
+     */
+    public static final class Builder<I, T> {
+        private final List<StageSpec> specs;
+        private final Executor callbackExecutor;
+
+        /**
+         * Starts a pipeline definition.
+         *
+         * @param callbackExecutor Executor on which listeners are invoked.
+         * @param <I>              Type submitted to the first stage.
+         * @return A builder with no stages.
+         */
+        public static <I> Builder<I, I> start(Executor callbackExecutor) {
+            if (callbackExecutor == null) {
+                throw new NullPointerException("callbackExecutor");
+            }
+            return new Builder<>(new ArrayList<StageSpec>(), callbackExecutor);
+        }
+
+        private Builder(List<StageSpec> specs, Executor callbackExecutor) {
+            this.specs = specs;
+            this.callbackExecutor = callbackExecutor;
+        }
+
+        /**
+         * Appends a stage served by a single worker thread.
+         *
+         * @param name          Name used for the worker thread and in failure callbacks.
+         * @param stage         The stage.
+         * @param queueCapacity Maximum number of jobs waiting for this stage.
+         */
+        public <R> Builder<I, R> then(String name, Stage<? super T, R> stage, int queueCapacity) {
+            return then(name, stage, queueCapacity, 1);
+        }
+
+        /**
+         * Appends a stage.
+         *
+         * @param name          Name used for the worker threads and in failure callbacks.
+         * @param stage         The stage; must be thread-safe if {@code threads > 1}.
+         * @param queueCapacity Maximum number of jobs waiting for this stage.
+         * @param threads       Number of worker threads serving this stage.
+         */
+        public <R> Builder<I, R> then(String name, Stage<? super T, R> stage, int queueCapacity, int threads) {
+            if (queueCapacity < 1 || threads < 1) {
+                throw new IllegalArgumentException("queueCapacity and threads must be >= 1");
+            }
+            specs.add(new StageSpec(name, stage, queueCapacity, threads));
+            return new Builder<>(specs, callbackExecutor);
+        }
+
+        /**
+         * Starts the worker threads and returns the pipeline.
+         */
+        public StagedPipeline<I, T> build() {
+            if (specs.isEmpty()) {
+                throw new IllegalStateException("Pipeline has no stages");
+            }
+            return new StagedPipeline<>(new ArrayList<>(specs), callbackExecutor);
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package com.dart.core.pool;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Pool of image buffers (OpenCV Mats, Android Bitmaps, ...) keyed by width, height and type,
+ * so that captures of the same resolution reuse the buffers of earlier ones instead of
+ * allocating native memory that is only given back at finalization.
+ * <p>
+ * {@link #acquire} hands out an idle buffer of the requested shape, most recently released
+ * first, or allocates one; {@link #release} takes it back. Released buffers are kept up to a
+ * byte budget, beyond which the least recently released are freed. The budget covers idle
+ * buffers only: the pool never refuses an acquire. A buffer must not be used after it is
+ * released; releasing one that is already idle is ignored.
+ * <p>
+ * Buffer types plug in through an {@link Allocator}. Thread-safe.
+ * <p>
+ * This class uses a Builder pattern for its instantiation.
+ *
+ * @param <T> Buffer type.
+ */
+public final class BufferPool<T> {
+
+    /**
+     * Creates, measures and frees buffers of one type.
+     *
+     * @param <T> Buffer type.
+     */
+    public interface Allocator<T> {
+        /**
+         * @param key Shape of the buffer.
+         * @return A new buffer of that shape.
+         */
+        T allocate(Key key);
+
+        /**
+         * @param buffer A buffer being released.
+         * @return Its current shape.
+         */
+        Key keyOf(T buffer);
+
+        /**
+         * @param key Shape of a buffer.
+         * @return Memory held by a buffer of that shape, in bytes.
+         */
+        long bytes(Key key);
+
+        /**
+         * @param buffer A buffer being released.
+         * @return False if it can no longer be used, e.g. it was already freed; it is then dropped.
+         */
+        boolean isReusable(T buffer);
+
+        /**
+         * Frees a buffer the pool no longer keeps. Called without the pool's lock held.
+         *
+         * @param buffer Buffer to free.
+         */
+        void free(T buffer);
+    }
+
+    /**
+     * Shape of a buffer. The meaning of {@code type} is up to the {@link Allocator}, e.g. an
+     * OpenCV type such as {@code CV_8UC4}.
+     */
+    public static final class Key {
+        public final int width;
+        public final int height;
+        public final int type;
+
+        public Key(int width, int height, int type) {
+            this.width = width;
+            this.height = height;
+            this.type = type;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return width == other.width && height == other.height && type == other.type;
+        }
+
+        @Override
+        public int hashCode() {
+            return (width * 31 + height) * 31 + type;
+        }
+
+        @Override
+        public String toString() {
+            return width + "x" + height + "/" + type;
+        }
+    }
+
+    /**
+     * Snapshot of the pool's counters.
+     */
+    public static final class Stats {
+        /** Acquires served from an idle buffer. */
+        public final long hits;
+        /** Acquires that allocated a new buffer. */
+        public final long misses;
+        /** Idle buffers freed to stay within the budget, or too large to keep at all. */
+        public final long evictions;
+        /** Buffers currently idle in the pool. */
+        public final int idle;
+        /** Memory held by the idle buffers, in bytes. */
+        public final long idleBytes;
+
+        Stats(long hits, long misses, long evictions, int idle, long idleBytes) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.idle = idle;
+            this.idleBytes = idleBytes;
+        }
+
+        /**
+         * @return Fraction of acquires served from the pool; 0 before the first.
+         */
+        public double hitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("hits=%d misses=%d (%.0f%%) evictions=%d idle=%d (%d KB)",
+                    hits, misses, 100 * hitRate(), evictions, idle, idleBytes / 1024);
+        }
+    }
+
+    private final Allocator<T> allocator;
+    private final long maxBytes;
+
+    private final List<Entry<T>> idle = new ArrayList<>(); // Least recently released first.
+    private long idleBytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    private BufferPool(Builder<T> builder) {
+        this.allocator = builder.allocator;
+        this.maxBytes = builder.maxBytes;
+    }
+
+    /**
+     * @param width  Buffer width.
+     * @param height Buffer height.
+     * @param type   Buffer type, as the allocator understands it.
+     * @return An idle buffer of that shape, or a new one. Its contents are undefined.
+     */
+    public T acquire(int width, int height, int type) {
+        Key key = new Key(width, height, type);
+        synchronized (this) {
+            for (int i = idle.size() - 1; i >= 0; i--) {
+                Entry<T> entry = idle.get(i);
+                if (entry.key.equals(key)) {
+                    idle.remove(i);
+                    idleBytes -= entry.bytes;
+                    hits++;
+                    return entry.buffer;
+                }
+            }
+            misses++;
+        }
+        return allocator.allocate(key);
+    }
+
+    /**
+     * Returns a buffer to the pool, freeing the least recently released ones if the idle
+     * buffers now exceed the budget.
+     *
+     * @param buffer Buffer from {@link #acquire}, or any other buffer of the pool's type; may be null.
+     */
+    public void release(T buffer) {
+        if (buffer == null || !allocator.isReusable(buffer)) {
+            return;
+        }
+        Key key = allocator.keyOf(buffer);
+        long bytes = allocator.bytes(key);
+        List<T> freed = new ArrayList<>();
+        synchronized (this) {
+            for (Entry<T> entry : idle) {
+                if (entry.buffer == buffer) {
+                    return; // Already released.
+                }
+            }
+            if (bytes > maxBytes) {
+                evictions++;
+                freed.add(buffer);
+            } else {
+                idle.add(new Entry<>(key, buffer, bytes));
+                idleBytes += bytes;
+                while (idleBytes > maxBytes) {
+                    Entry<T> oldest = idle.remove(0);
+                    idleBytes -= oldest.bytes;
+                    evictions++;
+                    freed.add(oldest.buffer);
+                }
+            }
+        }
+        for (T evicted : freed) {
+            allocator.free(evicted);
+        }
+    }
+
+    /**
+     * Frees every idle buffer, e.g. when the app is asked to trim its memory.
+     */
+    public void clear() {
+        List<Entry<T>> freed;
+        synchronized (this) {
+            freed = new ArrayList<>(idle);
+            idle.clear();
+            idleBytes = 0;
+        }
+        for (Entry<T> entry : freed) {
+            allocator.free(entry.buffer);
+        }
+    }
+
+    /**
+     * @return Current counters.
+     */
+    public synchronized Stats stats() {
+        return new Stats(hits, misses, evictions, idle.size(), idleBytes);
+    }
+
+    private static final class Entry<T> {
+        final Key key;
+        final T buffer;
+        final long bytes;
+
+        Entry(Key key, T buffer, long bytes) {
+            this.key = key;
+            this.buffer = buffer;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * Builder class for {@link BufferPool}.
+     *
+     * @param <T> Buffer type.
+     */
+    public static class Builder<T> {
+        private final Allocator<T> allocator;
+        private long maxBytes = 16 * 1024 * 1024;
+
+        /**
+         * @param allocator Creates and frees the buffers.
+         */
+        public Builder(Allocator<T> allocator) {
+            this.allocator = allocator;
+        }
+
+        /**
+         * @param maxBytes Most memory idle buffers may hold, in bytes. Default 16 MB.
+         * @return This builder.
+         */
+        public Builder<T> setMaxBytes(long maxBytes) {
+            if (maxBytes < 0) {
+                throw new IllegalArgumentException("maxBytes must be >= 0: " + maxBytes);
+            }
+            this.maxBytes = maxBytes;
+            return this;
+        }
+
+        /**
+         * @return A new, empty pool.
+         */
+        public BufferPool<T> build() {
+            return new BufferPool<>(this);
+        }
+    }
+}
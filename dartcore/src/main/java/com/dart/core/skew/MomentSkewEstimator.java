@@ -0,0 +1,370 @@
+package com.dart.core.skew;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Streaming skew estimator: one pass over an 8-bit grayscale image yields the skew of its
+ * foreground and the rotated rectangle bounding it, without listing the foreground pixels.
+ * <p>
+ * The foreground is what {@code CameraFragment.correctSkew} extracts with OpenCV: pixels at
+ * or below a threshold (ink on paper), eroded by a 3x3 square. Erosion is done on the fly over
+ * a window of three rows. Each eroded row then contributes its pixel count and sums to the
+ * image moments, and its leftmost and rightmost foreground pixel to a list of per-row
+ * extremes. Every convex-hull vertex of the foreground is one of those extremes, so they
+ * stand in for the whole point set:
+ * <ul>
+ *   <li>{@link Method#MIN_AREA}: the rectangle is the smallest one enclosing the convex hull
+ *       of the extremes, as {@code Imgproc.minAreaRect} finds over all the pixels.</li>
+ *   <li>{@link Method#MOMENTS}: the skew is the orientation of the principal axis, from the
+ *       second-order central moments; the rectangle is aligned with it. This needs an
+ *       elongated foreground, such as one located address block: ink spread evenly over a
+ *       whole page has no clear principal axis.</li>
+ * </ul>
+ * Time is linear in the number of pixels. Memory is three rows for the erosion and two
+ * entries per row for the extremes, reused from one image to the next.
+ * <p>
+ * Instances are not thread-safe; use one estimator per thread or synchronize externally.
+ * This class uses a Builder pattern for its instantiation.
+ */
+public final class MomentSkewEstimator {
+
+    /**
+     * How the rectangle, and so the skew, is derived.
+     */
+    public enum Method {
+        MOMENTS, MIN_AREA
+    }
+
+    private final Method method;
+    private final int threshold;
+    private final boolean invert;
+    private final boolean erode;
+
+    private boolean[][] window = new boolean[3][0]; // Horizontally eroded foreground of three consecutive rows.
+    private int[] lefts = new int[0];  // Leftmost foreground column of each row, -1 if none.
+    private int[] rights = new int[0]; // Rightmost foreground column of each row.
+    private int[] pointX = new int[0]; // The extremes as points, for MIN_AREA.
+    private int[] pointY = new int[0];
+    private int[] hullX = new int[0];  // Their convex hull.
+    private int[] hullY = new int[0];
+
+    private long m00, m10, m01, m20, m11, m02; // Raw image moments of the foreground.
+
+    private MomentSkewEstimator(Builder builder) {
+        this.method = builder.method;
+        this.threshold = builder.threshold;
+        this.invert = builder.invert;
+        this.erode = builder.erode;
+    }
+
+    /**
+     * Estimates the skew of a tightly packed image.
+     *
+     * @param pixels Row-major 8-bit pixels.
+     * @param width  Image width in pixels.
+     * @param height Image height in pixels.
+     * @return The estimate, or null if the image has no foreground.
+     */
+    public SkewBox estimate(byte[] pixels, int width, int height) {
+        return estimate(ByteBuffer.wrap(pixels), 0, width, width, height);
+    }
+
+    /**
+     * Estimates the skew of an image stored with an arbitrary row stride, such as a direct
+     * buffer over the memory of an OpenCV Mat.
+     *
+     * @param pixels 8-bit pixels, read with absolute gets; its position is ignored.
+     * @param offset Index of the first pixel of the first row.
+     * @param stride Distance in bytes between the starts of consecutive rows.
+     * @param width  Image width in pixels.
+     * @param height Image height in pixels.
+     * @return The estimate, or null if the image has no foreground.
+     */
+    public SkewBox estimate(ByteBuffer pixels, int offset, int stride, int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Invalid image size: " + width + "x" + height);
+        }
+        if (stride < width || offset < 0 || offset + (long) stride * (height - 1) + width > pixels.limit()) {
+            throw new IllegalArgumentException("Pixel buffer too small for " + width + "x" + height);
+        }
+        if (window[0].length < width) {
+            window = new boolean[3][width];
+        }
+        if (lefts.length < height) {
+            lefts = new int[height];
+            rights = new int[height];
+        }
+        m00 = m10 = m01 = m20 = m11 = m02 = 0;
+        for (int r = 0; r < height; r++) {
+            boolean[] row = window[r % 3];
+            load(pixels, offset + r * stride, width, row);
+            if (!erode) {
+                accumulate(r, width, row, null, null);
+            } else if (r > 0) {
+                accumulate(r - 1, width, window[(r - 1) % 3], r > 1 ? window[(r - 2) % 3] : null, row);
+            }
+        }
+        if (erode) {
+            accumulate(height - 1, width, window[(height - 1) % 3],
+                    height > 1 ? window[(height - 2) % 3] : null, null);
+        }
+        if (m00 == 0) {
+            return null;
+        }
+        double t;
+        if (method == Method.MOMENTS) {
+            double cx = (double) m10 / m00;
+            double cy = (double) m01 / m00;
+            double mu20 = (double) m20 / m00 - cx * cx;
+            double mu02 = (double) m02 / m00 - cy * cy;
+            double mu11 = (double) m11 / m00 - cx * cy;
+            t = 0.5 * Math.atan2(2 * mu11, mu20 - mu02); // Principal axis, in image coordinates.
+        } else {
+            t = minAreaAngle(hull(height));
+        }
+        return box(t, height);
+    }
+
+    /**
+     * Marks the foreground of one row, eroded horizontally when erosion is on. Columns beyond
+     * the edge count as foreground, as with OpenCV's default erosion border.
+     */
+    private void load(ByteBuffer pixels, int start, int width, boolean[] row) {
+        for (int x = 0; x < width; x++) {
+            int v = pixels.get(start + x) & 0xFF;
+            row[x] = invert ? v > threshold : v <= threshold;
+        }
+        if (erode && width > 1) {
+            boolean previous = true; // Unchanged value of column x - 1.
+            for (int x = 0; x < width; x++) {
+                boolean current = row[x];
+                row[x] = previous && current && (x == width - 1 || row[x + 1]);
+                previous = current;
+            }
+        }
+    }
+
+    /**
+     * Adds row {@code y}, eroded vertically against the rows above and below (null beyond the
+     * edge), to the moments and the extremes.
+     */
+    private void accumulate(int y, int width, boolean[] row, boolean[] above, boolean[] below) {
+        long n = 0;
+        long sx = 0;
+        long sxx = 0;
+        int left = -1;
+        int right = -1;
+        for (int x = 0; x < width; x++) {
+            if (row[x] && (above == null || above[x]) && (below == null || below[x])) {
+                n++;
+                sx += x;
+                sxx += (long) x * x;
+                if (left < 0) {
+                    left = x;
+                }
+                right = x;
+            }
+        }
+        lefts[y] = left;
+        rights[y] = right;
+        m00 += n;
+        m10 += sx;
+        m01 += n * y;
+        m20 += sxx;
+        m11 += sx * y;
+        m02 += n * y * y;
+    }
+
+    /**
+     * Builds the convex hull of the per-row extremes with Andrew's monotone chain; the
+     * extremes are already sorted by row, then column.
+     *
+     * @return Number of hull vertices, stored in order around the hull in {@link #hullX}
+     * and {@link #hullY}.
+     */
+    private int hull(int height) {
+        if (pointX.length < 2 * height) {
+            pointX = new int[2 * height];
+            pointY = new int[2 * height];
+            hullX = new int[4 * height + 1];
+            hullY = new int[4 * height + 1];
+        }
+        int[] px = pointX;
+        int[] py = pointY;
+        int n = 0;
+        for (int y = 0; y < height; y++) {
+            if (lefts[y] >= 0) {
+                px[n] = lefts[y];
+                py[n++] = y;
+                if (rights[y] != lefts[y]) {
+                    px[n] = rights[y];
+                    py[n++] = y;
+                }
+            }
+        }
+        if (n < 3) {
+            System.arraycopy(px, 0, hullX, 0, n);
+            System.arraycopy(py, 0, hullY, 0, n);
+            return n;
+        }
+        int k = 0;
+        for (int i = 0; i < n; i++) { // One chain.
+            while (k >= 2 && cross(k, px[i], py[i]) <= 0) {
+                k--;
+            }
+            hullX[k] = px[i];
+            hullY[k++] = py[i];
+        }
+        for (int i = n - 2, lower = k + 1; i >= 0; i--) { // The other, back to the start.
+            while (k >= lower && cross(k, px[i], py[i]) <= 0) {
+                k--;
+            }
+            hullX[k] = px[i];
+            hullY[k++] = py[i];
+        }
+        return k - 1; // The last point repeats the first.
+    }
+
+    private long cross(int k, int x, int y) {
+        long ax = hullX[k - 1] - hullX[k - 2];
+        long ay = hullY[k - 1] - hullY[k - 2];
+        return ax * (y - hullY[k - 2]) - ay * (x - hullX[k - 2]);
+    }
+
+    /**
+     * The smallest enclosing rectangle has a side along a hull edge: tries each edge.
+     *
+     * @return Direction of that side, in radians in image coordinates.
+     */
+    private double minAreaAngle(int vertices) {
+        if (vertices < 2) {
+            return 0;
+        }
+        double best = 0;
+        double bestArea = Double.MAX_VALUE;
+        for (int i = 0; i < vertices; i++) {
+            int j = (i + 1) % vertices;
+            double t = Math.atan2(hullY[j] - hullY[i], hullX[j] - hullX[i]);
+            double cos = Math.cos(t);
+            double sin = Math.sin(t);
+            double uMin = Double.MAX_VALUE, uMax = -Double.MAX_VALUE;
+            double vMin = Double.MAX_VALUE, vMax = -Double.MAX_VALUE;
+            for (int p = 0; p < vertices; p++) {
+                double u = hullX[p] * cos + hullY[p] * sin;
+                double v = -hullX[p] * sin + hullY[p] * cos;
+                uMin = Math.min(uMin, u);
+                uMax = Math.max(uMax, u);
+                vMin = Math.min(vMin, v);
+                vMax = Math.max(vMax, v);
+            }
+            double area = (uMax - uMin) * (vMax - vMin);
+            if (area < bestArea) {
+                bestArea = area;
+                best = t;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Bounds the extremes with a rectangle having a side along direction {@code t}, and turns
+     * it by quarter turns so that its angle falls in (-45, 45].
+     */
+    private SkewBox box(double t, int height) {
+        double cos = Math.cos(t);
+        double sin = Math.sin(t);
+        double uMin = Double.MAX_VALUE, uMax = -Double.MAX_VALUE;
+        double vMin = Double.MAX_VALUE, vMax = -Double.MAX_VALUE;
+        for (int y = 0; y < height; y++) {
+            if (lefts[y] < 0) {
+                continue;
+            }
+            for (int side = 0; side < 2; side++) {
+                int x = side == 0 ? lefts[y] : rights[y];
+                double u = x * cos + y * sin;
+                double v = -x * sin + y * cos;
+                uMin = Math.min(uMin, u);
+                uMax = Math.max(uMax, u);
+                vMin = Math.min(vMin, v);
+                vMax = Math.max(vMax, v);
+            }
+        }
+        double u = (uMin + uMax) / 2;
+        double v = (vMin + vMax) / 2;
+        double width = uMax - uMin;
+        double length = vMax - vMin;
+        double angle = -Math.toDegrees(t); // Counter-clockwise on screen.
+        while (angle > 45) {
+            angle -= 90;
+            double swap = width;
+            width = length;
+            length = swap;
+        }
+        while (angle <= -45) {
+            angle += 90;
+            double swap = width;
+            width = length;
+            length = swap;
+        }
+        return new SkewBox(angle, u * cos - v * sin, u * sin + v * cos, width, length, m00);
+    }
+
+    /**
+     * Builder class for {@link MomentSkewEstimator}. The defaults match
+     * {@code CameraFragment.correctSkew}: pixels at or below 200, eroded by a 3x3 square.
+     */
+    public static class Builder {
+        private Method method = Method.MIN_AREA;
+        private int threshold = 200;
+        private boolean invert;
+        private boolean erode = true;
+
+        /**
+         * @param method How the rectangle is derived. Default {@link Method#MIN_AREA}.
+         * @return This builder.
+         */
+        public Builder setMethod(Method method) {
+            this.method = method;
+            return this;
+        }
+
+        /**
+         * @param threshold Pixels at or below this value (0-255) are foreground. Default 200.
+         * @return This builder.
+         */
+        public Builder setThreshold(int threshold) {
+            if (threshold < 0 || threshold > 255) {
+                throw new IllegalArgumentException("threshold must be in [0, 255]: " + threshold);
+            }
+            this.threshold = threshold;
+            return this;
+        }
+
+        /**
+         * @param invert True for bright foreground: pixels above the threshold, e.g. for an
+         *               image already inverted. Default false.
+         * @return This builder.
+         */
+        public Builder setInvert(boolean invert) {
+            this.invert = invert;
+            return this;
+        }
+
+        /**
+         * @param erode False to skip the 3x3 erosion that drops specks and thin strokes.
+         *              Default true.
+         * @return This builder.
+         */
+        public Builder setErode(boolean erode) {
+            this.erode = erode;
+            return this;
+        }
+
+        /**
+         * @return A new estimator.
+         */
+        public MomentSkewEstimator build() {
+            return new MomentSkewEstimator(this);
+        }
+    }
+}
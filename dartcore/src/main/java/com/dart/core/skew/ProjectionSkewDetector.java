@@ -0,0 +1,295 @@
+package com.dart.core.skew;
+
+/**
+ * Projection-profile skew detector that works on a plain copy of a binary image.
+ * <p>
+ * The image is copied once into primitive coordinate arrays holding only the foreground
+ * pixels. The horizontal projection for a candidate angle is then built by computing the row
+ * each foreground pixel would land on after rotating the image around its centre, instead of
+ * rotating (and cloning) the image itself. Nothing is allocated per angle: the projection
+ * buffer and coordinate arrays are owned by the detector and reused across angles and across
+ * images of the same or smaller size.
+ * <p>
+ * Instances are not thread-safe; use one detector per thread or synchronize externally.
+ */
+public final class ProjectionSkewDetector {
+
+    /** Pixel value treated as foreground by default (white, as produced by THRESH_BINARY). */
+    public static final int DEFAULT_FOREGROUND = 255;
+
+    private final int foreground; // Pixel value (0-255) counted in the projection.
+
+    private int width;  // Width of the currently loaded image.
+    private int height; // Height of the currently loaded image.
+
+    private int[] xs = new int[0]; // Column of each foreground pixel.
+    private int[] ys = new int[0]; // Row of each foreground pixel.
+    private int count;             // Number of valid entries in xs/ys.
+
+    private int[] projection = new int[0]; // Horizontal projection, one bin per row.
+
+    /**
+     * Creates a detector counting pixels equal to {@link #DEFAULT_FOREGROUND}.
+     */
+    public ProjectionSkewDetector() {
+        this(DEFAULT_FOREGROUND);
+    }
+
+    /**
+     * Creates a detector counting pixels equal to the given value.
+     *
+     * @param foreground The pixel value (0-255) that marks a foreground pixel.
+     */
+    public ProjectionSkewDetector(int foreground) {
+        if (foreground < 0 || foreground > 255) {
+            throw new IllegalArgumentException("foreground must be in [0, 255]: " + foreground);
+        }
+        this.foreground = foreground;
+    }
+
+    /**
+     * Loads a single-channel 8-bit image, replacing any previously loaded image.
+     * Only the coordinates of foreground pixels are retained.
+     *
+     * @param pixels Row-major pixel data, e.g. the result of {@code Mat.get(0, 0, byte[])}.
+     * @param width  Image width in pixels.
+     * @param height Image height in pixels.
+     */
+    public void load(byte[] pixels, int width, int height) {
+        load(pixels, 0, width, width, height);
+    }
+
+    /**
+     * Loads a single-channel 8-bit image stored with an arbitrary row stride.
+     *
+     * @param pixels Pixel data.
+     * @param offset Index of the first pixel of the first row.
+     * @param stride Distance in bytes between the starts of consecutive rows.
+     * @param width  Image width in pixels.
+     * @param height Image height in pixels.
+     */
+    public void load(byte[] pixels, int offset, int stride, int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Invalid image size: " + width + "x" + height);
+        }
+        if (stride < width || offset < 0 || offset + (long) stride * (height - 1) + width > pixels.length) {
+            throw new IllegalArgumentException("Pixel buffer too small for " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+        if (projection.length < height) {
+            projection = new int[height];
+        }
+
+        // First pass counts the foreground so the coordinate arrays are sized exactly once.
+        final byte fg = (byte) foreground;
+        int n = 0;
+        for (int y = 0, row = offset; y < height; y++, row += stride) {
+            for (int x = row, end = row + width; x < end; x++) {
+                if (pixels[x] == fg) {
+                    n++;
+                }
+            }
+        }
+        if (xs.length < n) {
+            xs = new int[n];
+            ys = new int[n];
+        }
+
+        int i = 0;
+        for (int y = 0, row = offset; y < height; y++, row += stride) {
+            for (int x = 0; x < width; x++) {
+                if (pixels[row + x] == fg) {
+                    xs[i] = x;
+                    ys[i] = y;
+                    i++;
+                }
+            }
+        }
+        count = n;
+    }
+
+    /**
+     * Loads a reduced copy of a single-channel 8-bit image. Each {@code factor x factor} block
+     * becomes one pixel, which is foreground if any pixel of the block is. Thin strokes therefore
+     * survive the reduction, and the reduced image has roughly {@code 1 / factor^2} as many
+     * foreground pixels to project.
+     *
+     * @param pixels Pixel data.
+     * @param offset Index of the first pixel of the first row.
+     * @param stride Distance in bytes between the starts of consecutive rows.
+     * @param width  Image width in pixels.
+     * @param height Image height in pixels.
+     * @param factor Reduction factor; 1 is equivalent to {@link #load(byte[], int, int, int, int)}.
+     */
+    public void load(byte[] pixels, int offset, int stride, int width, int height, int factor) {
+        if (factor < 1) {
+            throw new IllegalArgumentException("factor must be >= 1: " + factor);
+        }
+        if (factor == 1) {
+            load(pixels, offset, stride, width, height);
+            return;
+        }
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Invalid image size: " + width + "x" + height);
+        }
+        if (stride < width || offset < 0 || offset + (long) stride * (height - 1) + width > pixels.length) {
+            throw new IllegalArgumentException("Pixel buffer too small for " + width + "x" + height);
+        }
+        int rw = (width + factor - 1) / factor;
+        int rh = (height + factor - 1) / factor;
+        this.width = rw;
+        this.height = rh;
+        if (projection.length < rh) {
+            projection = new int[rh];
+        }
+
+        int n = 0;
+        for (int by = 0; by < rh; by++) {
+            for (int bx = 0; bx < rw; bx++) {
+                if (blockHasForeground(pixels, offset, stride, width, height, bx * factor, by * factor, factor)) {
+                    n++;
+                }
+            }
+        }
+        if (xs.length < n) {
+            xs = new int[n];
+            ys = new int[n];
+        }
+
+        int i = 0;
+        for (int by = 0; by < rh; by++) {
+            for (int bx = 0; bx < rw; bx++) {
+                if (blockHasForeground(pixels, offset, stride, width, height, bx * factor, by * factor, factor)) {
+                    xs[i] = bx;
+                    ys[i] = by;
+                    i++;
+                }
+            }
+        }
+        count = n;
+    }
+
+    /**
+     * Checks whether any pixel of the block starting at ({@code x}, {@code y}) is foreground.
+     */
+    private boolean blockHasForeground(byte[] pixels, int offset, int stride, int width, int height,
+                                       int x, int y, int factor) {
+        final byte fg = (byte) foreground;
+        int xEnd = Math.min(x + factor, width);
+        int yEnd = Math.min(y + factor, height);
+        for (int yy = y, row = offset + y * stride; yy < yEnd; yy++, row += stride) {
+            for (int xx = row + x, end = row + xEnd; xx < end; xx++) {
+                if (pixels[xx] == fg) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return Width of the loaded image.
+     */
+    public int width() {
+        return width;
+    }
+
+    /**
+     * @return Height of the loaded image, which is also the number of projection bins.
+     */
+    public int height() {
+        return height;
+    }
+
+    /**
+     * @return Number of foreground pixels in the loaded image.
+     */
+    public int foregroundCount() {
+        return count;
+    }
+
+    /**
+     * Computes the horizontal projection of the loaded image as it would look after rotating
+     * it by {@code -theta} degrees around its centre (i.e. what {@code RotateImage(mat, -theta)}
+     * followed by a per-row count would produce). Pixels that fall outside the image are dropped.
+     * <p>
+     * The returned array is owned by the detector and overwritten by the next call; only the
+     * first {@link #height()} entries are valid.
+     *
+     * @param theta Rotation angle in degrees.
+     * @return The projection buffer.
+     */
+    public int[] projection(double theta) {
+        final int[] proj = projection;
+        final int h = height;
+        for (int i = 0; i < h; i++) {
+            proj[i] = 0;
+        }
+
+        final double rad = Math.toRadians(theta);
+        final double sin = Math.sin(rad);
+        final double cos = Math.cos(rad);
+        final double x0 = width / 2.0;  // Centre of rotation.
+        final double y0 = height / 2.0;
+        // new_row = (x - x0) * sin + (y - y0) * cos + y0, with +0.5 folded in for rounding.
+        final double k = y0 - x0 * sin - y0 * cos + 0.5;
+
+        final int[] px = xs;
+        final int[] py = ys;
+        for (int i = 0, n = count; i < n; i++) {
+            double row = px[i] * sin + py[i] * cos + k;
+            if (row >= 0 && row < h) {
+                proj[(int) row]++;
+            }
+        }
+        return proj;
+    }
+
+    /**
+     * Scores a single candidate angle using the peak of its projection profile.
+     *
+     * @param theta Rotation angle in degrees.
+     * @return The highest row count in the rotated projection.
+     */
+    public double score(double theta) {
+        return score(theta, SkewCriteria.PEAK);
+    }
+
+    /**
+     * Scores a single candidate angle with the given criterion.
+     *
+     * @param theta     Rotation angle in degrees.
+     * @param criterion Function applied to the rotated projection.
+     * @return The criterion value for this angle.
+     */
+    public double score(double theta, SkewCriterion criterion) {
+        return criterion.score(projection(theta), height);
+    }
+
+    /**
+     * Tests every whole-degree angle in {@code [minAngle, maxAngle]} and returns the one whose
+     * projection scores highest. Angles with an absolute value of {@code skipBelow} or less are
+     * ignored, matching the behaviour of the original rotate-and-count implementation.
+     *
+     * @param minAngle  Smallest angle to test, in degrees.
+     * @param maxAngle  Largest angle to test, in degrees.
+     * @param skipBelow Angles with {@code |theta| <= skipBelow} are skipped; pass -1 to test all.
+     * @return The best scoring angle, or 0 if no angle was tested.
+     */
+    public int detect(int minAngle, int maxAngle, int skipBelow) {
+        int best = 0;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        for (int theta = minAngle; theta <= maxAngle; theta++) {
+            if (Math.abs(theta) <= skipBelow) {
+                continue;
+            }
+            double s = score(theta);
+            if (bestScore < s) {
+                bestScore = s;
+                best = theta;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,56 @@
+package com.dart.core.skew;
+
+/**
+ * Result of a {@link MomentSkewEstimator}: the skew of the foreground and the rotated
+ * rectangle bounding it, in pixel coordinates of the image (x right, y down).
+ */
+public final class SkewBox {
+
+    /**
+     * Skew in degrees, in (-45, 45], counter-clockwise as seen on screen; rotating the image
+     * by {@code -angle} straightens it, as for {@link SkewEstimate#angle}.
+     */
+    public final double angle;
+    /** Column of the rectangle's centre. */
+    public final double centerX;
+    /** Row of the rectangle's centre. */
+    public final double centerY;
+    /** Side of the rectangle along {@link #angle}, between the outermost pixel centres. */
+    public final double width;
+    /** Side of the rectangle across {@link #angle}. */
+    public final double height;
+    /** Number of foreground pixels the estimate is based on. */
+    public final long count;
+
+    public SkewBox(double angle, double centerX, double centerY, double width, double height, long count) {
+        this.angle = angle;
+        this.centerX = centerX;
+        this.centerY = centerY;
+        this.width = width;
+        this.height = height;
+        this.count = count;
+    }
+
+    /**
+     * @return The four corners as x0, y0, ... x3, y3, going round the rectangle, e.g. for
+     * drawing it.
+     */
+    public double[] corners() {
+        double t = Math.toRadians(-angle); // Image coordinates have y pointing down.
+        double ux = Math.cos(t) * width / 2;
+        double uy = Math.sin(t) * width / 2;
+        double vx = -Math.sin(t) * height / 2;
+        double vy = Math.cos(t) * height / 2;
+        return new double[]{
+                centerX - ux - vx, centerY - uy - vy,
+                centerX + ux - vx, centerY + uy - vy,
+                centerX + ux + vx, centerY + uy + vy,
+                centerX - ux + vx, centerY - uy + vy};
+    }
+
+    @Override
+    public String toString() {
+        return "SkewBox{angle=" + angle + ", center=(" + centerX + ", " + centerY + "), size="
+                + width + "x" + height + ", count=" + count + "}";
+    }
+}
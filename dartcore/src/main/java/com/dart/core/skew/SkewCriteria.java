@@ -0,0 +1,66 @@
+package com.dart.core.skew;
+
+/**
+ * Stock {@link SkewCriterion} implementations.
+ */
+public final class SkewCriteria {
+
+    /**
+     * Highest row count in the profile. This is the criterion the original
+     * {@code CameraFragment.criterion_func} used. It is cheap but flat around the optimum,
+     * so it cannot separate angles that differ by a fraction of a degree.
+     */
+    public static final SkewCriterion PEAK = new SkewCriterion() {
+        @Override
+        public double score(int[] projection, int length) {
+            int max = 0;
+            for (int i = 0; i < length; i++) {
+                if (max < projection[i]) {
+                    max = projection[i];
+                }
+            }
+            return max;
+        }
+    };
+
+    /**
+     * Variance of the row counts. Aligned text concentrates pixels into a few rows, which
+     * raises the variance smoothly as the angle approaches the true skew.
+     */
+    public static final SkewCriterion VARIANCE = new SkewCriterion() {
+        @Override
+        public double score(int[] projection, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            long sum = 0;
+            long sumSq = 0;
+            for (int i = 0; i < length; i++) {
+                int p = projection[i];
+                sum += p;
+                sumSq += (long) p * p;
+            }
+            double mean = (double) sum / length;
+            return (double) sumSq / length - mean * mean;
+        }
+    };
+
+    /**
+     * Sum of squared differences between adjacent rows. Rewards sharp transitions between
+     * text lines and the gaps between them.
+     */
+    public static final SkewCriterion SQUARED_DIFFERENCE = new SkewCriterion() {
+        @Override
+        public double score(int[] projection, int length) {
+            long sum = 0;
+            for (int i = 1; i < length; i++) {
+                long d = projection[i] - projection[i - 1];
+                sum += d * d;
+            }
+            return sum;
+        }
+    };
+
+    private SkewCriteria() {
+    }
+}
@@ -0,0 +1,20 @@
+package com.dart.core.skew;
+
+/**
+ * Scores a horizontal projection profile. Higher scores mean the rows of the image are better
+ * aligned with the horizontal axis, so the skew search keeps the angle with the highest score.
+ * <p>
+ * Implementations must not retain or modify the projection array; it is a buffer owned by
+ * {@link ProjectionSkewDetector} and reused for every angle.
+ *
+ * @see SkewCriteria
+ */
+public interface SkewCriterion {
+
+    /**
+     * @param projection Foreground pixel count per row.
+     * @param length     Number of valid entries in {@code projection}.
+     * @return The score of this profile.
+     */
+    double score(int[] projection, int length);
+}
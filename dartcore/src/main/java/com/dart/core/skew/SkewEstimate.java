@@ -0,0 +1,36 @@
+package com.dart.core.skew;
+
+/**
+ * Result of a {@link SkewSearch}: the best angle found, its score, and how much work it took.
+ */
+public final class SkewEstimate {
+
+    /** Detected skew in degrees; rotating the image by {@code -angle} straightens it. */
+    public final double angle;
+    /** Criterion value of {@link #angle} on the full-resolution image. */
+    public final double score;
+    /** Number of projections computed on the reduced image. */
+    public final int coarseEvaluations;
+    /** Number of projections computed on the full-resolution image. */
+    public final int fineEvaluations;
+
+    public SkewEstimate(double angle, double score, int coarseEvaluations, int fineEvaluations) {
+        this.angle = angle;
+        this.score = score;
+        this.coarseEvaluations = coarseEvaluations;
+        this.fineEvaluations = fineEvaluations;
+    }
+
+    /**
+     * @return Total number of criterion evaluations, coarse and fine.
+     */
+    public int evaluations() {
+        return coarseEvaluations + fineEvaluations;
+    }
+
+    @Override
+    public String toString() {
+        return "SkewEstimate{angle=" + angle + ", score=" + score
+                + ", coarse=" + coarseEvaluations + ", fine=" + fineEvaluations + "}";
+    }
+}
@@ -0,0 +1,190 @@
+package com.dart.core.skew;
+
+/**
+ * Coarse-to-fine skew search built on {@link ProjectionSkewDetector}.
+ * <p>
+ * The search first scores evenly spaced angles on a reduced copy of the image (1/4 scale by
+ * default), which is cheap because the reduced copy has a fraction of the foreground pixels.
+ * It then refines the best coarse angle on the full-resolution image with a golden-section
+ * search over the neighbouring interval until the bracket is narrower than the tolerance
+ * (0.1 degrees by default). The number of evaluations spent in each phase is reported in the
+ * returned {@link SkewEstimate}, so callers can trade latency against accuracy per device by
+ * adjusting the builder parameters.
+ * <p>
+ * A search instance reuses its detectors' buffers across calls and is not thread-safe.
+ * This class uses a Builder pattern for its instantiation.
+ */
+public final class SkewSearch {
+
+    private static final double INV_PHI = (Math.sqrt(5) - 1) / 2; // 1 / golden ratio.
+
+    private final double minAngle;
+    private final double maxAngle;
+    private final double coarseStep;
+    private final double tolerance;
+    private final int scale;
+    private final SkewCriterion criterion;
+
+    private final ProjectionSkewDetector coarse;
+    private final ProjectionSkewDetector fine;
+
+    private SkewSearch(Builder builder) {
+        this.minAngle = builder.minAngle;
+        this.maxAngle = builder.maxAngle;
+        this.coarseStep = builder.coarseStep;
+        this.tolerance = builder.tolerance;
+        this.scale = builder.scale;
+        this.criterion = builder.criterion;
+        this.coarse = new ProjectionSkewDetector(builder.foreground);
+        this.fine = new ProjectionSkewDetector(builder.foreground);
+    }
+
+    /**
+     * Searches for the skew of a continuous single-channel 8-bit image.
+     *
+     * @param pixels Row-major pixel data.
+     * @param width  Image width in pixels.
+     * @param height Image height in pixels.
+     * @return The best angle and the evaluation counts.
+     */
+    public SkewEstimate search(byte[] pixels, int width, int height) {
+        return search(pixels, 0, width, width, height);
+    }
+
+    /**
+     * Searches for the skew of a single-channel 8-bit image with an arbitrary row stride.
+     *
+     * @param pixels Pixel data.
+     * @param offset Index of the first pixel of the first row.
+     * @param stride Distance in bytes between the starts of consecutive rows.
+     * @param width  Image width in pixels.
+     * @param height Image height in pixels.
+     * @return The best angle and the evaluation counts.
+     */
+    public SkewEstimate search(byte[] pixels, int offset, int stride, int width, int height) {
+        // --- Coarse pass on the reduced image ---
+        coarse.load(pixels, offset, stride, width, height, scale);
+        int coarseEvaluations = 0;
+        double best = minAngle;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        int steps = (int) Math.floor((maxAngle - minAngle) / coarseStep + 1e-9);
+        for (int i = 0; i <= steps; i++) {
+            double theta = minAngle + i * coarseStep;
+            double s = coarse.score(theta, criterion);
+            coarseEvaluations++;
+            if (bestScore < s) {
+                bestScore = s;
+                best = theta;
+            }
+        }
+
+        // --- Golden-section refinement on the full image around the coarse winner ---
+        fine.load(pixels, offset, stride, width, height);
+        double a = Math.max(minAngle, best - coarseStep);
+        double b = Math.min(maxAngle, best + coarseStep);
+        double c = b - INV_PHI * (b - a);
+        double d = a + INV_PHI * (b - a);
+        double fc = fine.score(c, criterion);
+        double fd = fine.score(d, criterion);
+        int fineEvaluations = 2;
+        while (b - a > tolerance) {
+            if (fc >= fd) { // Maximum lies in [a, d].
+                b = d;
+                d = c;
+                fd = fc;
+                c = b - INV_PHI * (b - a);
+                fc = fine.score(c, criterion);
+            } else {        // Maximum lies in [c, b].
+                a = c;
+                c = d;
+                fc = fd;
+                d = a + INV_PHI * (b - a);
+                fd = fine.score(d, criterion);
+            }
+            fineEvaluations++;
+        }
+        double angle = fc >= fd ? c : d;
+        return new SkewEstimate(angle, Math.max(fc, fd), coarseEvaluations, fineEvaluations);
+    }
+
+    /**
+     * Builder class for {@link SkewSearch}. Provides a fluent API to configure the search.
+     */
+    public static class Builder {
+        private double minAngle = -15;
+        private double maxAngle = 15;
+        private double coarseStep = 1;
+        private double tolerance = 0.1;
+        private int scale = 4;
+        private SkewCriterion criterion = SkewCriteria.VARIANCE;
+        private int foreground = ProjectionSkewDetector.DEFAULT_FOREGROUND;
+
+        /**
+         * Sets the range of angles to search, in degrees. Defaults to [-15, 15].
+         */
+        public Builder setRange(double minAngle, double maxAngle) {
+            if (minAngle > maxAngle) {
+                throw new IllegalArgumentException("minAngle > maxAngle");
+            }
+            this.minAngle = minAngle;
+            this.maxAngle = maxAngle;
+            return this;
+        }
+
+        /**
+         * Sets the spacing of the angles scored on the reduced image. Defaults to 1 degree.
+         */
+        public Builder setCoarseStep(double coarseStep) {
+            if (coarseStep <= 0) {
+                throw new IllegalArgumentException("coarseStep must be positive");
+            }
+            this.coarseStep = coarseStep;
+            return this;
+        }
+
+        /**
+         * Sets the width of the final bracket of the refinement. Defaults to 0.1 degrees.
+         */
+        public Builder setTolerance(double tolerance) {
+            if (tolerance <= 0) {
+                throw new IllegalArgumentException("tolerance must be positive");
+            }
+            this.tolerance = tolerance;
+            return this;
+        }
+
+        /**
+         * Sets the reduction factor of the coarse pass. Defaults to 4 (1/4 scale); 1 disables it.
+         */
+        public Builder setScale(int scale) {
+            if (scale < 1) {
+                throw new IllegalArgumentException("scale must be >= 1");
+            }
+            this.scale = scale;
+            return this;
+        }
+
+        /**
+         * Sets the function used to score projection profiles. Defaults to {@link SkewCriteria#VARIANCE}.
+         */
+        public Builder setCriterion(SkewCriterion criterion) {
+            if (criterion == null) {
+                throw new NullPointerException("criterion");
+            }
+            this.criterion = criterion;
+            return this;
+        }
+
+        /**
+         * Sets the pixel value counted as foreground. Defaults to 255.
+         */
+        public Builder setForeground(int foreground) {
+            this.foreground = foreground;
+            return this;
+        }
+
+        public SkewSearch build() {
+            return new SkewSearch(this);
+        }
+    }
+}
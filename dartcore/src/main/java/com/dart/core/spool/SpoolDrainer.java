@@ -0,0 +1,284 @@
+package com.dart.core.spool;
+
+import com.dart.core.net.OcrServerException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Background thread that uploads whatever is pending in an {@link UploadSpool}.
+ * <p>
+ * While uploads succeed, the drainer sends pending records back to back, oldest first, so a
+ * backlog built up while offline is flushed as soon as the link returns. When an upload fails
+ * with an {@link IOException} the record stays in the spool and the drainer sleeps with
+ * exponential backoff (with jitter) before trying again. {@link #wakeUp()} cuts the wait short
+ * and resets the backoff, e.g. when the platform reports that connectivity changed. A reply
+ * with a server error ({@link OcrServerException}) is final: the record is acknowledged and
+ * reported as rejected rather than retried forever.
+ * <p>
+ * This class uses a Builder pattern for its instantiation.
+ */
+public final class SpoolDrainer implements Closeable {
+
+    /**
+     * Sends one record; called on the drainer thread.
+     */
+    public interface Uploader {
+        /**
+         * @return The recognised text.
+         * @throws OcrServerException If the server rejected the record; it will not be retried.
+         * @throws IOException        If the upload failed and should be retried later.
+         */
+        String upload(SpoolRecord record, byte[] payload) throws IOException;
+    }
+
+    /**
+     * Receives drain results on the drainer thread.
+     */
+    public interface Listener {
+        void onUploaded(SpoolRecord record, String text);
+
+        void onRejected(SpoolRecord record, OcrServerException error);
+
+        /**
+         * Called when an upload failed and the drainer is about to back off.
+         *
+         * @param delayMillis How long the drainer will wait unless woken up.
+         * @param pending     Number of records still pending.
+         * @param cause       The failure.
+         */
+        void onBackoff(long delayMillis, int pending, IOException cause);
+    }
+
+    private final UploadSpool spool;
+    private final Uploader uploader;
+    private final Listener listener;
+    private final long initialBackoff;
+    private final long maxBackoff;
+    private final int batchSize;
+    private final Random random = new Random();
+    private final Thread thread;
+
+    private final Object lock = new Object();
+    private boolean kicked;   // Guarded by lock; set by wakeUp().
+    private boolean backingOff; // Guarded by lock; true from a failed pass until the retry.
+    private boolean running = true;
+    private int failures;     // Consecutive failed attempts, drives the backoff.
+
+    private SpoolDrainer(Builder builder) {
+        this.spool = builder.spool;
+        this.uploader = builder.uploader;
+        this.listener = builder.listener;
+        this.initialBackoff = builder.initialBackoff;
+        this.maxBackoff = builder.maxBackoff;
+        this.batchSize = builder.batchSize;
+        this.thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                drainLoop();
+            }
+        }, "dart-spool-drainer");
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Starts the drainer thread.
+     *
+     * @return This drainer.
+     */
+    public SpoolDrainer start() {
+        thread.start();
+        return this;
+    }
+
+    /**
+     * Retries immediately, resetting the backoff. Call after appending a record or when the
+     * network comes back.
+     */
+    public void wakeUp() {
+        synchronized (lock) {
+            kicked = true;
+            failures = 0;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Tells the drainer that records were appended. Unlike {@link #wakeUp()} this does not
+     * interrupt a backoff, so a failing link is not retried early.
+     */
+    public void recordsAdded() {
+        synchronized (lock) {
+            if (!backingOff) {
+                kicked = true;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Stops the drainer thread. Pending records stay in the spool.
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            running = false;
+            lock.notifyAll();
+        }
+        thread.interrupt();
+    }
+
+    /**
+     * @param attempt Number of consecutive failures so far, starting at 1.
+     * @return Delay before the next attempt: exponential, capped, with up to 50% jitter.
+     */
+    long backoffDelay(int attempt) {
+        long delay = initialBackoff;
+        for (int i = 1; i < attempt && delay < maxBackoff; i++) {
+            delay *= 2;
+        }
+        delay = Math.min(delay, maxBackoff);
+        return delay / 2 + (long) (random.nextDouble() * (delay / 2));
+    }
+
+    private void drainLoop() {
+        while (isRunning()) {
+            List<SpoolRecord> batch = spool.claimPending(batchSize);
+            if (batch.isEmpty()) {
+                waitFor(0); // Nothing to send until someone appends and wakes us.
+                continue;
+            }
+            IOException failure = null;
+            for (int i = 0; i < batch.size(); i++) {
+                SpoolRecord record = batch.get(i);
+                if (failure != null || !isRunning()) {
+                    spool.release(record.id); // Leave the rest for the next attempt.
+                    continue;
+                }
+                try {
+                    String text = uploader.upload(record, spool.readPayload(record));
+                    spool.ack(record.id);
+                    if (listener != null) {
+                        listener.onUploaded(record, text);
+                    }
+                } catch (OcrServerException e) {
+                    ackQuietly(record);
+                    if (listener != null) {
+                        listener.onRejected(record, e);
+                    }
+                } catch (IOException e) {
+                    spool.release(record.id);
+                    failure = e;
+                }
+            }
+            if (failure == null) {
+                synchronized (lock) {
+                    failures = 0;
+                }
+                continue; // Link is good: keep draining without delay.
+            }
+            long delay;
+            synchronized (lock) {
+                backingOff = true;
+                kicked = false; // Appends seen during the failed pass must not cut the backoff short.
+                delay = backoffDelay(++failures);
+            }
+            if (listener != null) {
+                listener.onBackoff(delay, spool.pendingCount(), failure);
+            }
+            waitFor(delay);
+        }
+    }
+
+    private void ackQuietly(SpoolRecord record) {
+        try {
+            spool.ack(record.id);
+        } catch (IOException e) {
+            spool.release(record.id);
+        }
+    }
+
+    private boolean isRunning() {
+        synchronized (lock) {
+            return running;
+        }
+    }
+
+    /**
+     * Waits until woken up or the delay elapses; 0 waits indefinitely.
+     */
+    private void waitFor(long delayMillis) {
+        synchronized (lock) {
+            long deadline = System.currentTimeMillis() + delayMillis;
+            try {
+                while (running && !kicked) {
+                    if (delayMillis == 0) {
+                        lock.wait();
+                    } else {
+                        long left = deadline - System.currentTimeMillis();
+                        if (left <= 0) {
+                            break;
+                        }
+                        lock.wait(left);
+                    }
+                }
+            } catch (InterruptedException e) {
+                running = false;
+            }
+            backingOff = false;
+            kicked = false;
+        }
+    }
+
+    /**
+     * Builder class for {@link SpoolDrainer}.
+     */
+    public static class Builder {
+        private final UploadSpool spool;
+        private final Uploader uploader;
+        private Listener listener;
+        private long initialBackoff = 2000;
+        private long maxBackoff = 5 * 60 * 1000;
+        private int batchSize = 16;
+
+        public Builder(UploadSpool spool, Uploader uploader) {
+            this.spool = spool;
+            this.uploader = uploader;
+        }
+
+        public Builder setListener(Listener listener) {
+            this.listener = listener;
+            return this;
+        }
+
+        /**
+         * Sets the delay after the first failure, in milliseconds. Defaults to 2 seconds.
+         */
+        public Builder setInitialBackoff(long initialBackoff) {
+            this.initialBackoff = initialBackoff;
+            return this;
+        }
+
+        /**
+         * Sets the longest delay between attempts, in milliseconds. Defaults to 5 minutes.
+         */
+        public Builder setMaxBackoff(long maxBackoff) {
+            this.maxBackoff = maxBackoff;
+            return this;
+        }
+
+        /**
+         * Sets how many records are claimed per pass. Defaults to 16.
+         */
+        public Builder setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        public SpoolDrainer build() {
+            return new SpoolDrainer(this);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.dart.core.spool;
+
+/**
+ * Metadata of one request held in an {@link UploadSpool}. The payload itself stays on disk and
+ * is read with {@link UploadSpool#readPayload(SpoolRecord)}.
+ */
+public final class SpoolRecord {
+
+    /** Spool-wide id, increasing in append order and across restarts. */
+    public final long id;
+    /** Wall-clock time the record was appended, in milliseconds since the epoch. */
+    public final long createdAt;
+    /** {@link com.dart.core.net.OcrLanguage#code} of the request. */
+    public final int language;
+    /** {@link com.dart.core.net.Frame} format of the payload. */
+    public final int format;
+    /** Free-form caller label, e.g. the capture's file name. */
+    public final String label;
+    /** Payload size in bytes. */
+    public final int payloadLength;
+
+    final long segment;       // Number of the segment file holding the record.
+    final long payloadOffset; // Offset of the payload within the segment file.
+
+    SpoolRecord(long id, long createdAt, int language, int format, String label, int payloadLength,
+                long segment, long payloadOffset) {
+        this.id = id;
+        this.createdAt = createdAt;
+        this.language = language;
+        this.format = format;
+        this.label = label;
+        this.payloadLength = payloadLength;
+        this.segment = segment;
+        this.payloadOffset = payloadOffset;
+    }
+
+    @Override
+    public String toString() {
+        return "SpoolRecord{id=" + id + ", label=" + label + ", bytes=" + payloadLength + "}";
+    }
+}
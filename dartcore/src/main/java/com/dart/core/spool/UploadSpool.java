@@ -0,0 +1,522 @@
+package com.dart.core.spool;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * Durable on-device queue of OCR requests that have not been answered yet.
+ * <p>
+ * Records are appended to segment files ({@code NNNNNNNN.seg}) and synced to disk before
+ * {@link #append} returns, so a capture survives the app being killed or the device
+ * rebooting. Completed records are acknowledged by appending their id to the segment's
+ * companion {@code NNNNNNNN.ack} file; once every record of a closed segment is acknowledged
+ * both files are deleted. On {@link #open}, the in-memory index of pending records is rebuilt
+ * by scanning the segments and subtracting the acknowledgements. A record torn by a crash
+ * mid-append fails its CRC and is truncated away.
+ * <p>
+ * Records handed out for upload are <em>claimed</em> so that two uploaders never send the same
+ * record at once; a claim is dropped by {@link #ack} or {@link #release}. Thread-safe.
+ *
+ * Record layout (big-endian):
+ * <pre>
+ *   magic u32 | id u64 | createdAt u64 | language u8 | format u8 | label (u16 length + UTF-8)
+ *   | payloadLength u32 | payload | crc32 u32 (over id .. payload)
+ * </pre>
+ */
+public final class UploadSpool implements Closeable {
+
+    private static final int RECORD_MAGIC = 0x53504C31; // "SPL1"
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String ACK_SUFFIX = ".ack";
+    private static final String STAGING_SUFFIX = ".tmp";
+    private static final int COPY_CHUNK = 64 * 1024;
+
+    private final File dir;
+    private final long maxSegmentBytes;
+
+    private final TreeMap<Long, SpoolRecord> pending = new TreeMap<>(); // By id, oldest first.
+    private final Set<Long> claimed = new HashSet<>();
+    private final TreeMap<Long, int[]> liveCounts = new TreeMap<>();     // Segment -> {pending records}.
+    private long pendingBytes;
+
+    private long nextId = 1;
+    private long currentSegment;
+    private RandomAccessFile currentFile; // Open for append; null until the first append.
+    private boolean closed;
+
+    private UploadSpool(File dir, long maxSegmentBytes) {
+        this.dir = dir;
+        this.maxSegmentBytes = maxSegmentBytes;
+    }
+
+    /**
+     * Opens (or creates) a spool and rebuilds its index of pending records.
+     *
+     * @param dir             Directory owned by the spool.
+     * @param maxSegmentBytes Size after which a new segment file is started.
+     * @return The opened spool.
+     * @throws IOException If the directory cannot be created or read.
+     */
+    public static UploadSpool open(File dir, long maxSegmentBytes) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create spool directory " + dir);
+        }
+        UploadSpool spool = new UploadSpool(dir, maxSegmentBytes);
+        spool.recover();
+        return spool;
+    }
+
+    /**
+     * Durably appends a request.
+     *
+     * @param language Language code of the request.
+     * @param format   Payload format.
+     * @param label    Caller label, may be empty.
+     * @param payload  Encoded image.
+     * @param claim    True to return the record already claimed by the caller, so that a
+     *                 drainer does not pick it up while the caller tries it directly.
+     * @return The new record.
+     * @throws IOException If the record cannot be written and synced.
+     */
+    public SpoolRecord append(int language, int format, String label, byte[] payload, boolean claim)
+            throws IOException {
+        return writeRecord(language, format, label, new ByteArrayInputStream(payload), payload.length, claim);
+    }
+
+    /**
+     * Starts a record whose payload is streamed in, e.g. while it is still being encoded and
+     * sent. The payload is staged in a temporary file and only copied into the current segment
+     * and synced by {@link Appender#commit}, so concurrent appenders do not hold up each other
+     * or {@link #append}. Staging files left behind by a crash are deleted by {@link #open}.
+     *
+     * @param language Language code of the request.
+     * @param format   Payload format.
+     * @param label    Caller label, may be empty.
+     * @return The appender; call {@link Appender#commit} or {@link Appender#abort} when done.
+     * @throws IOException If the staging file cannot be created.
+     */
+    public Appender appender(int language, int format, String label) throws IOException {
+        synchronized (this) {
+            checkOpen();
+        }
+        return new Appender(File.createTempFile("append", STAGING_SUFFIX, dir), language, format, label);
+    }
+
+    /**
+     * Writes one record at the end of the current segment and syncs it. A record that cannot
+     * be written completely is cut off again.
+     */
+    private synchronized SpoolRecord writeRecord(int language, int format, String label, InputStream payload,
+                                                 int length, boolean claim) throws IOException {
+        checkOpen();
+        if (currentFile == null || currentFile.length() >= maxSegmentBytes) {
+            rollSegment();
+        }
+        long id = nextId++;
+        long createdAt = System.currentTimeMillis();
+        byte[] labelBytes = label.getBytes("UTF-8");
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(labelBytes.length + 40);
+        DataOutputStream header = new DataOutputStream(buffer);
+        header.writeInt(RECORD_MAGIC);
+        header.writeLong(id);
+        header.writeLong(createdAt);
+        header.writeByte(language);
+        header.writeByte(format);
+        header.writeShort(labelBytes.length);
+        header.write(labelBytes);
+        header.writeInt(length);
+        byte[] head = buffer.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(head, 4, head.length - 4);
+
+        long start = currentFile.length();
+        try {
+            currentFile.seek(start);
+            currentFile.write(head);
+            byte[] chunk = new byte[Math.max(1, Math.min(COPY_CHUNK, length))];
+            for (int remaining = length; remaining > 0; ) {
+                int n = payload.read(chunk, 0, Math.min(chunk.length, remaining));
+                if (n < 0) {
+                    throw new EOFException("Payload ended " + remaining + " bytes early");
+                }
+                currentFile.write(chunk, 0, n);
+                crc.update(chunk, 0, n);
+                remaining -= n;
+            }
+            currentFile.writeInt((int) crc.getValue());
+            currentFile.getFD().sync();
+        } catch (IOException e) {
+            currentFile.setLength(start);
+            throw e;
+        }
+
+        SpoolRecord record = new SpoolRecord(id, createdAt, language, format, label, length,
+                currentSegment, start + head.length);
+        index(record);
+        if (claim) {
+            claimed.add(id);
+        }
+        return record;
+    }
+
+    /**
+     * Claims up to {@code max} unclaimed pending records, oldest first.
+     *
+     * @return The claimed records; each must later be passed to {@link #ack} or {@link #release}.
+     */
+    public synchronized List<SpoolRecord> claimPending(int max) {
+        List<SpoolRecord> result = new ArrayList<>();
+        for (SpoolRecord record : pending.values()) {
+            if (result.size() >= max) {
+                break;
+            }
+            if (claimed.add(record.id)) {
+                result.add(record);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns a claimed record to the pending pool, e.g. after a failed upload attempt.
+     */
+    public synchronized void release(long id) {
+        claimed.remove(id);
+    }
+
+    /**
+     * Marks a record as done. Deletes its segment once every record in it is done.
+     *
+     * @throws IOException If the acknowledgement cannot be written.
+     */
+    public synchronized void ack(long id) throws IOException {
+        checkOpen();
+        claimed.remove(id);
+        SpoolRecord record = pending.remove(id);
+        if (record == null) {
+            return;
+        }
+        pendingBytes -= record.payloadLength;
+        // Not synced: losing an acknowledgement in a crash only means the record is sent again.
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(ackFile(record.segment), true));
+        try {
+            out.writeLong(id);
+        } finally {
+            out.close();
+        }
+        int[] live = liveCounts.get(record.segment);
+        if (--live[0] == 0 && (record.segment != currentSegment || currentFile == null)) {
+            deleteSegment(record.segment);
+        }
+    }
+
+    /**
+     * Reads a record's payload from disk.
+     */
+    public byte[] readPayload(SpoolRecord record) throws IOException {
+        byte[] payload = new byte[record.payloadLength];
+        RandomAccessFile file = new RandomAccessFile(segmentFile(record.segment), "r");
+        try {
+            file.seek(record.payloadOffset);
+            file.readFully(payload);
+        } finally {
+            file.close();
+        }
+        return payload;
+    }
+
+    /**
+     * @return Number of records not yet acknowledged, claimed or not.
+     */
+    public synchronized int pendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * @return Total payload bytes of records not yet acknowledged.
+     */
+    public synchronized long pendingBytes() {
+        return pendingBytes;
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (currentFile != null) {
+            try {
+                currentFile.close();
+            } catch (IOException e) {
+                // Everything appended was already synced.
+            }
+            currentFile = null;
+        }
+    }
+
+    private void checkOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Spool is closed");
+        }
+    }
+
+    private void index(SpoolRecord record) {
+        pending.put(record.id, record);
+        pendingBytes += record.payloadLength;
+        int[] live = liveCounts.get(record.segment);
+        if (live == null) {
+            live = new int[1];
+            liveCounts.put(record.segment, live);
+        }
+        live[0]++;
+    }
+
+    private void rollSegment() throws IOException {
+        if (currentFile != null) {
+            currentFile.close();
+            int[] live = liveCounts.get(currentSegment);
+            if (live == null || live[0] == 0) {
+                deleteSegment(currentSegment); // Everything in it was already acknowledged.
+            }
+        }
+        currentSegment++;
+        currentFile = new RandomAccessFile(segmentFile(currentSegment), "rw");
+    }
+
+    private void deleteSegment(long segment) {
+        segmentFile(segment).delete();
+        ackFile(segment).delete();
+        liveCounts.remove(segment);
+    }
+
+    private File segmentFile(long segment) {
+        return new File(dir, String.format("%08d%s", segment, SEGMENT_SUFFIX));
+    }
+
+    private File ackFile(long segment) {
+        return new File(dir, String.format("%08d%s", segment, ACK_SUFFIX));
+    }
+
+    /**
+     * Rebuilds the pending index from the segment and acknowledgement files.
+     */
+    private void recover() throws IOException {
+        TreeMap<Long, File> segments = new TreeMap<>();
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                if (name.endsWith(STAGING_SUFFIX)) {
+                    file.delete(); // An appender that was never committed.
+                } else if (name.endsWith(SEGMENT_SUFFIX)) {
+                    try {
+                        segments.put(Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())), file);
+                    } catch (NumberFormatException e) {
+                        // Not ours.
+                    }
+                }
+            }
+        }
+        for (Map.Entry<Long, File> entry : segments.entrySet()) {
+            long segment = entry.getKey();
+            Set<Long> acked = readAcks(ackFile(segment));
+            scanSegment(segment, entry.getValue(), acked);
+            currentSegment = segment;
+        }
+        // Drop segments with nothing left to send; appends always start a fresh segment.
+        Iterator<Map.Entry<Long, File>> it = segments.entrySet().iterator();
+        while (it.hasNext()) {
+            long segment = it.next().getKey();
+            int[] live = liveCounts.get(segment);
+            if (live == null || live[0] == 0) {
+                deleteSegment(segment);
+            }
+        }
+    }
+
+    private Set<Long> readAcks(File file) throws IOException {
+        Set<Long> acked = new HashSet<>();
+        if (!file.exists()) {
+            return acked;
+        }
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            while (true) {
+                acked.add(in.readLong());
+            }
+        } catch (EOFException e) {
+            // End of acknowledgements; a torn final entry is ignored.
+        } finally {
+            in.close();
+        }
+        return acked;
+    }
+
+    private void scanSegment(long segment, File file, Set<Long> acked) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            long length = raf.length();
+            long offset = 0;
+            while (offset < length) {
+                SpoolRecord record = readRecord(raf, segment, offset, length);
+                if (record == null) {
+                    raf.setLength(offset); // Torn or corrupt tail from an interrupted append.
+                    break;
+                }
+                nextId = Math.max(nextId, record.id + 1);
+                if (!acked.contains(record.id)) {
+                    index(record);
+                }
+                offset = record.payloadOffset + record.payloadLength + 4;
+            }
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Reads and verifies the record at {@code offset}.
+     *
+     * @return The record, or null if it is incomplete or fails its checksum.
+     */
+    private static SpoolRecord readRecord(RandomAccessFile raf, long segment, long offset, long length)
+            throws IOException {
+        final int fixed = 4 + 8 + 8 + 1 + 1 + 2;
+        if (length - offset < fixed) {
+            return null;
+        }
+        raf.seek(offset);
+        if (raf.readInt() != RECORD_MAGIC) {
+            return null;
+        }
+        long id = raf.readLong();
+        long createdAt = raf.readLong();
+        int language = raf.readUnsignedByte();
+        int format = raf.readUnsignedByte();
+        int labelLength = raf.readUnsignedShort();
+        if (length - raf.getFilePointer() < labelLength + 4) {
+            return null;
+        }
+        byte[] labelBytes = new byte[labelLength];
+        raf.readFully(labelBytes);
+        int payloadLength = raf.readInt();
+        long payloadOffset = raf.getFilePointer();
+        if (payloadLength < 0 || length - payloadOffset < (long) payloadLength + 4) {
+            return null;
+        }
+        // Verify the checksum over everything after the magic.
+        CRC32 crc = new CRC32();
+        byte[] chunk = new byte[8192];
+        raf.seek(offset + 4);
+        long remaining = payloadOffset + payloadLength - (offset + 4);
+        while (remaining > 0) {
+            int n = (int) Math.min(chunk.length, remaining);
+            raf.readFully(chunk, 0, n);
+            crc.update(chunk, 0, n);
+            remaining -= n;
+        }
+        if (raf.readInt() != (int) crc.getValue()) {
+            return null;
+        }
+        return new SpoolRecord(id, createdAt, language, format, new String(labelBytes, "UTF-8"),
+                payloadLength, segment, payloadOffset);
+    }
+
+    /**
+     * Stream for one record's payload, see {@link #appender}. Closing it does nothing; the
+     * record is added by {@link #commit} or dropped by {@link #abort}.
+     */
+    public final class Appender extends OutputStream {
+        private final File file;
+        private final OutputStream out;
+        private final int language;
+        private final int format;
+        private final String label;
+        private long length;
+        private boolean done;
+
+        private Appender(File file, int language, int format, String label) throws IOException {
+            this.file = file;
+            this.out = new BufferedOutputStream(new FileOutputStream(file), COPY_CHUNK);
+            this.language = language;
+            this.format = format;
+            this.label = label;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            length++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            length += len;
+        }
+
+        /**
+         * Durably adds the record with everything written so far as its payload.
+         *
+         * @param claim True to return the record already claimed by the caller.
+         * @return The new record.
+         * @throws IOException If the record cannot be written and synced.
+         */
+        public SpoolRecord commit(boolean claim) throws IOException {
+            if (done) {
+                throw new IllegalStateException("Appender already finished");
+            }
+            done = true;
+            try {
+                out.close();
+                if (length > Integer.MAX_VALUE) {
+                    throw new IOException("Payload too large: " + length);
+                }
+                InputStream in = new FileInputStream(file);
+                try {
+                    return writeRecord(language, format, label, in, (int) length, claim);
+                } finally {
+                    in.close();
+                }
+            } finally {
+                file.delete();
+            }
+        }
+
+        /**
+         * Drops the staged payload. Does nothing after {@link #commit}.
+         */
+        public void abort() {
+            if (done) {
+                return;
+            }
+            done = true;
+            try {
+                out.close();
+            } catch (IOException e) {
+                // Deleted below anyway.
+            }
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package com.dart.core.threshold;
+
+import com.dart.core.tile.Band;
+import com.dart.core.tile.BandFilter;
+import com.dart.core.tile.TiledExecutor;
+
+/**
+ * Adaptive (local) binarisation of an 8-bit grayscale image, computing each pixel's threshold
+ * from the statistics of the window around it:
+ * <ul>
+ *   <li>{@link Method#MEAN}: the window mean minus a constant, exactly as OpenCV's
+ *       {@code adaptiveThreshold(src, dst, 255, ADAPTIVE_THRESH_MEAN_C, THRESH_BINARY, window, c)}.</li>
+ *   <li>{@link Method#SAUVOLA}: {@code mean * (1 + k * (stddev / r - 1))}, which holds up
+ *       better than a fixed offset on stained or unevenly lit envelopes.</li>
+ *   <li>{@link Method#NIBLACK}: {@code mean + k * stddev}.</li>
+ * </ul>
+ * Pixels above their threshold become 255 (paper), the others 0 (ink). Windows reaching past
+ * the image edge see the edge pixels repeated, like OpenCV's {@code BORDER_REPLICATE}.
+ * <p>
+ * The window statistics come from an integral image (and, for Sauvola and Niblack, an
+ * integral of squares) built over the border-padded rows, so each pixel costs four lookups
+ * whatever the window size. The integral of sums is kept in {@code int}s that may wrap
+ * around: a window sum is a difference of four entries and is exact modulo 2^32, and no
+ * window sum of 8-bit pixels comes near that.
+ * <p>
+ * The engine is a {@link BandFilter} with a halo of half the window, so it can be chained
+ * with other neighbourhood filters on a {@link TiledExecutor}. With a
+ * {@link Builder#setParallelism(int) parallelism} above 1, {@link #apply} itself runs bands
+ * in parallel that way, each with its own integral of the band and its halo.
+ * <p>
+ * Integral buffers are kept per thread and reused, and instances are thread-safe.
+ * <p>
+ * This class uses a Builder pattern for its instantiation.
+ */
+public final class AdaptiveThreshold implements BandFilter {
+
+    /**
+     * How the threshold is derived from the window statistics.
+     */
+    public enum Method {
+        MEAN, SAUVOLA, NIBLACK
+    }
+
+    private final Method method;
+    private final int radius;
+    private final double c;
+    private final double k;
+    private final double r;
+    private final TiledExecutor executor;
+
+    /** Integral buffers of each thread, reused across bands and images. */
+    private final ThreadLocal<Scratch> scratch = new ThreadLocal<Scratch>() {
+        @Override
+        protected Scratch initialValue() {
+            return new Scratch();
+        }
+    };
+
+    private AdaptiveThreshold(Builder builder) {
+        this.method = builder.method;
+        this.radius = builder.window / 2;
+        this.c = builder.c;
+        this.k = builder.k;
+        this.r = builder.r;
+        this.executor = new TiledExecutor.Builder().setParallelism(builder.parallelism).build();
+    }
+
+    /**
+     * Binarises a tightly packed single-channel image.
+     *
+     * @param src    Row-major 8-bit pixels, e.g. the result of {@code Mat.get(0, 0, byte[])}.
+     * @param dst    Receives 0 or 255 per pixel; may be {@code src}.
+     * @param width  Image width in pixels.
+     * @param height Image height in pixels.
+     */
+    public void apply(byte[] src, byte[] dst, int width, int height) {
+        if (src.length < width * height || dst.length < width * height) {
+            throw new IllegalArgumentException("Buffers smaller than " + width + "x" + height);
+        }
+        if (executor.parallelism() == 1) {
+            // One band: the integral is built before any output is written, so in place is safe.
+            filter(Band.of(src, width, height), Band.of(dst, width, height), 0, height);
+        } else {
+            executor.apply(src, dst, width, height, this);
+        }
+    }
+
+    @Override
+    public int halo() {
+        return radius;
+    }
+
+    @Override
+    public void filter(Band src, Band dst, int y0, int y1) {
+        Scratch buffers = scratch.get();
+        integrate(buffers, src, y0, y1);
+        threshold(buffers, src, dst, y0, y1);
+    }
+
+    /**
+     * Builds the integrals over rows {@code [y0, y1)} padded by the window radius on every side.
+     */
+    private void integrate(Scratch buffers, Band src, int y0, int y1) {
+        int width = src.width;
+        int pw = width + 2 * radius;
+        int ph = y1 - y0 + 2 * radius;
+        int stride = pw + 1;
+        int size = stride * (ph + 1);
+        boolean squared = method != Method.MEAN;
+        if (buffers.sums.length < size) {
+            buffers.sums = new int[size];
+        }
+        if (squared && buffers.squares.length < size) {
+            buffers.squares = new long[size];
+        }
+        int[] sums = buffers.sums;
+        long[] squares = buffers.squares;
+        byte[] pixels = src.pixels;
+        for (int x = 0; x < stride; x++) { // Row 0 of the integral is all zero.
+            sums[x] = 0;
+            if (squared) {
+                squares[x] = 0;
+            }
+        }
+        for (int py = 0; py < ph; py++) {
+            int row = src.offset(y0 - radius + py);
+            int above = py * stride;
+            int at = above + stride;
+            sums[at] = 0;
+            int rowSum = 0;
+            long rowSquares = 0;
+            for (int px = 0; px < pw; px++) {
+                int v = pixels[row + clamp(px - radius, width)] & 0xFF;
+                rowSum += v;
+                sums[at + px + 1] = sums[above + px + 1] + rowSum;
+                if (squared) {
+                    rowSquares += v * v;
+                    squares[at + px + 1] = squares[above + px + 1] + rowSquares;
+                }
+            }
+            if (squared) {
+                squares[at] = 0;
+            }
+        }
+    }
+
+    /**
+     * Thresholds rows {@code [y0, y1)} using the integrals.
+     */
+    private void threshold(Scratch buffers, Band src, Band dst, int y0, int y1) {
+        int width = src.width;
+        int window = 2 * radius + 1;
+        int stride = width + 2 * radius + 1;
+        int area = window * window;
+        int offset = (int) Math.ceil(c); // OpenCV rounds the constant up for THRESH_BINARY.
+        int[] sums = buffers.sums;
+        long[] squares = buffers.squares;
+        for (int y = y0; y < y1; y++) {
+            // Window of pixel (x, y) spans padded columns x..x+window-1 and integral rows top..bottom.
+            int top = (y - y0) * stride;
+            int bottom = (y - y0 + window) * stride;
+            int in = src.offset(y);
+            int out = dst.offset(y);
+            for (int x = 0; x < width; x++) {
+                int sum = sums[bottom + x + window] - sums[top + x + window] - sums[bottom + x] + sums[top + x];
+                int v = src.pixels[in + x] & 0xFF;
+                boolean paper;
+                if (method == Method.MEAN) {
+                    int mean = (2 * sum + area) / (2 * area); // Rounded; area is odd, so never a tie.
+                    paper = v - mean > -offset;
+                } else {
+                    long sq = squares[bottom + x + window] - squares[top + x + window] - squares[bottom + x]
+                            + squares[top + x];
+                    double mean = (double) sum / area;
+                    double deviation = Math.sqrt(Math.max(0, (double) sq / area - mean * mean));
+                    double t = method == Method.SAUVOLA ? mean * (1 + k * (deviation / r - 1)) : mean + k * deviation;
+                    paper = v > t;
+                }
+                dst.pixels[out + x] = paper ? (byte) 255 : 0;
+            }
+        }
+    }
+
+    private static int clamp(int i, int size) {
+        return i < 0 ? 0 : i >= size ? size - 1 : i;
+    }
+
+    /**
+     * Integral buffers of one thread.
+     */
+    private static final class Scratch {
+        int[] sums = new int[0];      // Integral of the padded band, (paddedWidth + 1) per row.
+        long[] squares = new long[0]; // Integral of the squared padded band; Sauvola and Niblack only.
+    }
+
+    /**
+     * Builder class for {@link AdaptiveThreshold}. The defaults match the preprocess stage:
+     * mean of a 15 pixel window minus 9.
+     */
+    public static class Builder {
+        private Method method = Method.MEAN;
+        private int window = 15;
+        private double c = 9;
+        private double k = Double.NaN;
+        private double r = 128;
+        private int parallelism = 1;
+
+        /**
+         * @param method How thresholds are derived. Default {@link Method#MEAN}.
+         * @return This builder.
+         */
+        public Builder setMethod(Method method) {
+            this.method = method;
+            return this;
+        }
+
+        /**
+         * @param window Side of the square window in pixels; odd and at least 3. Default 15.
+         * @return This builder.
+         */
+        public Builder setWindow(int window) {
+            if (window < 3 || window % 2 == 0) {
+                throw new IllegalArgumentException("window must be odd and >= 3: " + window);
+            }
+            this.window = window;
+            return this;
+        }
+
+        /**
+         * @param c Constant subtracted from the mean by {@link Method#MEAN}. Default 9.
+         * @return This builder.
+         */
+        public Builder setC(double c) {
+            this.c = c;
+            return this;
+        }
+
+        /**
+         * @param k Weight of the standard deviation. Default 0.34 for {@link Method#SAUVOLA},
+         *          -0.2 for {@link Method#NIBLACK}.
+         * @return This builder.
+         */
+        public Builder setK(double k) {
+            this.k = k;
+            return this;
+        }
+
+        /**
+         * @param r Dynamic range of the standard deviation for {@link Method#SAUVOLA}. Default 128.
+         * @return This builder.
+         */
+        public Builder setR(double r) {
+            this.r = r;
+            return this;
+        }
+
+        /**
+         * @param parallelism Threads thresholding bands of rows in {@link #apply}; 1 to run
+         *                    on the calling thread only. Fork/join needs Android API 21.
+         *                    Default 1.
+         * @return This builder.
+         */
+        public Builder setParallelism(int parallelism) {
+            if (parallelism < 1) {
+                throw new IllegalArgumentException("parallelism must be >= 1: " + parallelism);
+            }
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        /**
+         * @return A new engine.
+         */
+        public AdaptiveThreshold build() {
+            if (Double.isNaN(k)) {
+                k = method == Method.NIBLACK ? -0.2 : 0.34;
+            }
+            return new AdaptiveThreshold(this);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.dart.core.tile;
+
+/**
+ * A run of consecutive rows of an 8-bit single-channel image, held in a buffer of its own or
+ * in the whole image's. Rows above or below the image read as its first or last row, like
+ * OpenCV's {@code BORDER_REPLICATE}, so filters need no special case at the image edges.
+ */
+public final class Band {
+
+    /** Row-major pixels, {@link #width} per row, starting with image row {@link #top}. */
+    public final byte[] pixels;
+    /** Image width in pixels. */
+    public final int width;
+    /** Height of the whole image, not of the band. */
+    public final int height;
+    /** First image row held. */
+    public final int top;
+    /** Number of rows held. */
+    public final int rows;
+
+    /**
+     * @param pixels Buffer holding the rows.
+     * @param width  Image width.
+     * @param height Image height.
+     * @param top    First image row held.
+     * @param rows   Number of rows held.
+     */
+    public Band(byte[] pixels, int width, int height, int top, int rows) {
+        if (top < 0 || rows < 0 || top + rows > height || pixels.length < rows * width) {
+            throw new IllegalArgumentException("Band of rows " + top + "+" + rows + " does not fit "
+                    + width + "x" + height + " in " + pixels.length + " bytes");
+        }
+        this.pixels = pixels;
+        this.width = width;
+        this.height = height;
+        this.top = top;
+        this.rows = rows;
+    }
+
+    /**
+     * @param pixels Whole image.
+     * @param width  Image width.
+     * @param height Image height.
+     * @return A band holding every row of the image.
+     */
+    public static Band of(byte[] pixels, int width, int height) {
+        return new Band(pixels, width, height, 0, height);
+    }
+
+    /**
+     * @param y Image row, possibly above or below the image.
+     * @return Index in {@link #pixels} of the first pixel of the row, after clamping it to the image.
+     */
+    public int offset(int y) {
+        int row = y < 0 ? 0 : y >= height ? height - 1 : y;
+        if (row < top || row >= top + rows) {
+            throw new IndexOutOfBoundsException("Row " + y + " outside band " + top + "+" + rows);
+        }
+        return (row - top) * width;
+    }
+}
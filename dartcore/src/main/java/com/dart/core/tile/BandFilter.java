@@ -0,0 +1,29 @@
+package com.dart.core.tile;
+
+/**
+ * A local-neighbourhood image operation that can be computed band by band: each output row
+ * depends only on the input rows within {@link #halo()} of it. Such filters can be run on
+ * overlapping horizontal bands in parallel, and chained, by a {@link TiledExecutor}.
+ * <p>
+ * Implementations must be safe to call from several threads at once on different bands.
+ */
+public interface BandFilter {
+
+    /**
+     * @return Number of input rows above and below an output row that it depends on, e.g. the
+     * radius of the filter's kernel.
+     */
+    int halo();
+
+    /**
+     * Computes rows {@code [y0, y1)} of the output.
+     *
+     * @param src Input; holds at least rows {@code y0 - halo()} to {@code y1 + halo() - 1},
+     *            clamped to the image.
+     * @param dst Output; holds at least rows {@code [y0, y1)}. Never shares its buffer with
+     *            {@code src}.
+     * @param y0  First image row to compute.
+     * @param y1  Row after the last one to compute.
+     */
+    void filter(Band src, Band dst, int y0, int y1);
+}
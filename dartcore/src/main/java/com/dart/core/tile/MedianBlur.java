@@ -0,0 +1,88 @@
+package com.dart.core.tile;
+
+import java.util.Arrays;
+
+/**
+ * Median filter over a square window of an 8-bit single-channel image, with the edge pixels
+ * repeated beyond the border: the same pixels as OpenCV's {@code medianBlur(src, dst, size)}.
+ * <p>
+ * Each row slides a 256-bin histogram along the window, adding and removing one column per
+ * pixel and moving the median from its previous value, so a pixel costs about
+ * {@code 2 * size} histogram updates rather than a sort of {@code size * size} values.
+ */
+public final class MedianBlur implements BandFilter {
+
+    private final int size;
+
+    /**
+     * @param size Side of the window in pixels; odd and at least 3.
+     */
+    public MedianBlur(int size) {
+        if (size < 3 || size % 2 == 0) {
+            throw new IllegalArgumentException("size must be odd and >= 3: " + size);
+        }
+        this.size = size;
+    }
+
+    @Override
+    public int halo() {
+        return size / 2;
+    }
+
+    @Override
+    public void filter(Band src, Band dst, int y0, int y1) {
+        int radius = size / 2;
+        int width = src.width;
+        int half = size * size / 2; // The median has this many values below it, at most.
+        int[] rows = new int[size];
+        int[] histogram = new int[256];
+        byte[] in = src.pixels;
+        for (int y = y0; y < y1; y++) {
+            for (int i = 0; i < size; i++) {
+                rows[i] = src.offset(y - radius + i);
+            }
+            Arrays.fill(histogram, 0);
+            for (int dx = -radius; dx <= radius; dx++) {
+                int x = clamp(dx, width);
+                for (int row : rows) {
+                    histogram[in[row + x] & 0xFF]++;
+                }
+            }
+            int median = 0;
+            int below = 0; // Window values less than median.
+            int out = dst.offset(y);
+            for (int x = 0; ; x++) {
+                while (below > half) {
+                    median--;
+                    below -= histogram[median];
+                }
+                while (below + histogram[median] <= half) {
+                    below += histogram[median];
+                    median++;
+                }
+                dst.pixels[out + x] = (byte) median;
+                if (x == width - 1) {
+                    break;
+                }
+                int leaving = clamp(x - radius, width);
+                int entering = clamp(x + radius + 1, width);
+                for (int row : rows) {
+                    int v = in[row + leaving] & 0xFF;
+                    histogram[v]--;
+                    if (v < median) {
+                        below--;
+                    }
+                    v = in[row + entering] & 0xFF;
+                    histogram[v]++;
+                    if (v < median) {
+                        below++;
+                    }
+                }
+            }
+        }
+    }
+
+    private static int clamp(int x, int width) {
+        return x < 0 ? 0 : x >= width ? width - 1 : x;
+    }
+}
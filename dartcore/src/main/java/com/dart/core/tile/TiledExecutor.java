@@ -0,0 +1,187 @@
+package com.dart.core.tile;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs a chain of {@link BandFilter}s over an 8-bit single-channel image as independent
+ * horizontal bands, in parallel on a {@link ForkJoinPool}.
+ * <p>
+ * Each band computes its own output rows through the whole chain. It takes as many extra rows
+ * (the halo) from the previous filter as the filters after it reach, so the result is exactly
+ * that of running each filter over the whole image in turn. Bands never wait for each other,
+ * and intermediate images only ever exist one band (plus halo) at a time.
+ * <p>
+ * With a parallelism of 1 the chain runs on the calling thread, as a single band unless a
+ * band height is set, and {@link ForkJoinPool} is never loaded; it needs Android API 21.
+ * <p>
+ * This class uses a Builder pattern for its instantiation.
+ */
+public final class TiledExecutor {
+
+    /** Smallest band height chosen automatically, so halos stay a small part of each band. */
+    private static final int MIN_BAND_ROWS = 32;
+
+    /** Bands per thread chosen automatically, so that uneven bands balance out. */
+    private static final int BANDS_PER_THREAD = 4;
+
+    private final int parallelism;
+    private final int bandRows;
+    private ForkJoinPool pool; // Created on first parallel use.
+
+    private TiledExecutor(Builder builder) {
+        this.parallelism = builder.parallelism;
+        this.bandRows = builder.bandRows;
+    }
+
+    /**
+     * @return Number of threads bands run on.
+     */
+    public int parallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Applies the filters in order to the image.
+     *
+     * @param src     Row-major 8-bit pixels.
+     * @param dst     Receives the output of the last filter. If it is {@code src}, the input is
+     *                copied first.
+     * @param width   Image width in pixels.
+     * @param height  Image height in pixels.
+     * @param filters Chain to apply; at least one.
+     */
+    public void apply(byte[] src, byte[] dst, int width, int height, BandFilter... filters) {
+        if (filters.length == 0) {
+            throw new IllegalArgumentException("No filters");
+        }
+        if (height == 0) {
+            return;
+        }
+        Band in = Band.of(src == dst ? src.clone() : src, width, height);
+        Band out = Band.of(dst, width, height);
+        int[] reach = new int[filters.length]; // Rows beyond its output each filter must compute.
+        for (int i = filters.length - 2; i >= 0; i--) {
+            reach[i] = reach[i + 1] + filters[i + 1].halo();
+        }
+        int rows = bandRows > 0 ? bandRows
+                : parallelism == 1 ? height : Math.max(MIN_BAND_ROWS, height / (BANDS_PER_THREAD * parallelism));
+        int bands = (height + rows - 1) / rows;
+        if (parallelism == 1 || bands == 1) {
+            for (int band = 0; band < bands; band++) {
+                run(in, out, filters, reach, band * rows, Math.min(height, (band + 1) * rows));
+            }
+        } else {
+            Parallel.run(this, in, out, filters, reach, rows, bands);
+        }
+    }
+
+    /**
+     * Computes output rows {@code [y0, y1)} through the whole chain.
+     */
+    static void run(Band src, Band dst, BandFilter[] filters, int[] reach, int y0, int y1) {
+        Band in = src;
+        for (int i = 0; i < filters.length; i++) {
+            int lo = Math.max(0, y0 - reach[i]);
+            int hi = Math.min(src.height, y1 + reach[i]);
+            Band out = i == filters.length - 1 ? dst
+                    : new Band(new byte[(hi - lo) * src.width], src.width, src.height, lo, hi - lo);
+            filters[i].filter(in, out, lo, hi);
+            in = out;
+        }
+    }
+
+    /**
+     * Fork/join execution, in its own class so that sequential executors never load
+     * {@link ForkJoinPool}.
+     */
+    private static final class Parallel {
+
+        static void run(TiledExecutor executor, Band src, Band dst, BandFilter[] filters, int[] reach,
+                        int rows, int bands) {
+            synchronized (executor) {
+                if (executor.pool == null) {
+                    executor.pool = new ForkJoinPool(executor.parallelism);
+                }
+            }
+            executor.pool.invoke(new Bands(src, dst, filters, reach, rows, 0, bands));
+        }
+
+        /**
+         * Runs a range of bands, splitting it in halves down to single bands.
+         */
+        private static final class Bands extends RecursiveAction {
+            private static final long serialVersionUID = 1L;
+
+            private final Band src;
+            private final Band dst;
+            private final BandFilter[] filters;
+            private final int[] reach;
+            private final int rows;
+            private final int first;
+            private final int end;
+
+            Bands(Band src, Band dst, BandFilter[] filters, int[] reach, int rows, int first, int end) {
+                this.src = src;
+                this.dst = dst;
+                this.filters = filters;
+                this.reach = reach;
+                this.rows = rows;
+                this.first = first;
+                this.end = end;
+            }
+
+            @Override
+            protected void compute() {
+                if (end - first == 1) {
+                    TiledExecutor.run(src, dst, filters, reach, first * rows, Math.min(src.height, end * rows));
+                    return;
+                }
+                int mid = (first + end) >>> 1;
+                invokeAll(new Bands(src, dst, filters, reach, rows, first, mid),
+                        new Bands(src, dst, filters, reach, rows, mid, end));
+            }
+        }
+    }
+
+    /**
+     * Builder class for {@link TiledExecutor}.
+     */
+    public static class Builder {
+        private int parallelism = 1;
+        private int bandRows;
+
+        /**
+         * @param parallelism Threads running bands; 1 to run on the calling thread only.
+         *                    Fork/join needs Android API 21. Default 1.
+         * @return This builder.
+         */
+        public Builder setParallelism(int parallelism) {
+            if (parallelism < 1) {
+                throw new IllegalArgumentException("parallelism must be >= 1: " + parallelism);
+            }
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        /**
+         * @param bandRows Output rows per band, halo excluded; 0 to choose from the image
+         *                 height and parallelism. Default 0.
+         * @return This builder.
+         */
+        public Builder setBandRows(int bandRows) {
+            if (bandRows < 0) {
+                throw new IllegalArgumentException("bandRows must be >= 0: " + bandRows);
+            }
+            this.bandRows = bandRows;
+            return this;
+        }
+
+        /**
+         * @return A new executor.
+         */
+        public TiledExecutor build() {
+            return new TiledExecutor(this);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.dart.core.trace;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency histogram with a fixed set of preallocated, log-linear buckets, safe to record into
+ * from any number of threads without locking or allocating.
+ * <p>
+ * Latencies are counted in microseconds. Values below 16 get a bucket each; above that, each
+ * power of two is split into 8 buckets, so a reported percentile is within 12.5% of the true
+ * value. The buckets reach beyond a day, and longer latencies land in the last one.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BITS = 3;                 // log2 of the buckets per power of two.
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int LINEAR = 2 * SUB_BUCKETS;     // Values below this get a bucket each.
+    private static final int MAX_MAGNITUDE = 37;           // 2^37 microseconds is about 38 hours.
+
+    /** Number of buckets. */
+    static final int BUCKETS = LINEAR + (MAX_MAGNITUDE - SUB_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sumMicros = new AtomicLong();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    /**
+     * Counts one latency.
+     *
+     * @param nanos Latency in nanoseconds; negative values count as 0.
+     */
+    public void record(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        counts.incrementAndGet(bucket(micros));
+        count.incrementAndGet();
+        sumMicros.addAndGet(micros);
+        long max = maxMicros.get();
+        while (micros > max && !maxMicros.compareAndSet(max, micros)) {
+            max = maxMicros.get();
+        }
+    }
+
+    /**
+     * @return Number of latencies recorded.
+     */
+    public long count() {
+        return count.get();
+    }
+
+    /**
+     * @return Mean latency in milliseconds; 0 if none were recorded.
+     */
+    public double meanMillis() {
+        long n = count.get();
+        return n == 0 ? 0 : sumMicros.get() / 1000.0 / n;
+    }
+
+    /**
+     * @return Largest latency recorded, in milliseconds.
+     */
+    public double maxMillis() {
+        return maxMicros.get() / 1000.0;
+    }
+
+    /**
+     * @param percentile 0-100.
+     * @return Latency at that percentile (nearest rank) in milliseconds, taken as the middle
+     * of its bucket but never above the maximum; 0 if none were recorded.
+     */
+    public double percentileMillis(double percentile) {
+        long total = 0;
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                double middle = lowerBound(i) + (width(i) - 1) / 2.0;
+                return Math.min(middle, maxMicros.get()) / 1000.0;
+            }
+        }
+        return maxMillis();
+    }
+
+    /**
+     * Clears all counts.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.set(0);
+        sumMicros.set(0);
+        maxMicros.set(0);
+    }
+
+    /**
+     * @param micros Latency in microseconds, not negative.
+     * @return Index of the bucket counting it.
+     */
+    static int bucket(long micros) {
+        if (micros < LINEAR) {
+            return (int) micros;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(micros); // >= SUB_BITS + 1
+        if (magnitude > MAX_MAGNITUDE) {
+            return BUCKETS - 1;
+        }
+        int sub = (int) (micros >>> (magnitude - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR + (magnitude - SUB_BITS - 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * @return Smallest latency, in microseconds, counted by the bucket.
+     */
+    static long lowerBound(int bucket) {
+        if (bucket < LINEAR) {
+            return bucket;
+        }
+        int magnitude = (bucket - LINEAR) / SUB_BUCKETS + SUB_BITS + 1;
+        int sub = (bucket - LINEAR) % SUB_BUCKETS;
+        return (1L << magnitude) + ((long) sub << (magnitude - SUB_BITS));
+    }
+
+    /**
+     * @return Number of microsecond values counted by the bucket.
+     */
+    static long width(int bucket) {
+        if (bucket < LINEAR) {
+            return 1;
+        }
+        int magnitude = (bucket - LINEAR) / SUB_BUCKETS + SUB_BITS + 1;
+        return 1L << (magnitude - SUB_BITS);
+    }
+}
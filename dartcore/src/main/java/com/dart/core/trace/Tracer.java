@@ -0,0 +1,241 @@
+package com.dart.core.trace;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records how long each step of a traced operation took, into a {@link LatencyHistogram} per
+ * step and a ring buffer of the most recent spans.
+ * <p>
+ * Steps are registered once, up front, with {@link #stage(String)}, which returns the id
+ * spans are recorded under. Recording a span is a handful of atomic updates on preallocated
+ * primitive arrays: no locks, no allocation, no clock reads beyond the caller's own
+ * {@link #now()}. While the tracer is disabled, recording returns immediately.
+ * <p>
+ * Timestamps come from {@link System#nanoTime()}, which is monotonic; spans taken on different
+ * threads can be compared, wall-clock changes cannot distort them.
+ * <p>
+ * The ring buffer is written without locks. An export racing with recording may show a span
+ * that is being overwritten with fields of both the old and the new span; it is a diagnostic
+ * log, not a ledger.
+ * <p>
+ * This class uses a Builder pattern for its instantiation.
+ */
+public final class Tracer {
+
+    private final int mask;                // Ring capacity - 1; the capacity is a power of two.
+    private final long[] traces;           // Trace id of each span in the ring.
+    private final int[] stages;            // Stage id of each span.
+    private final long[] starts;           // Start of each span, System.nanoTime().
+    private final long[] durations;        // Duration of each span in nanoseconds.
+    private final AtomicLong written = new AtomicLong(); // Spans ever written to the ring.
+    private final AtomicLong nextTrace = new AtomicLong(1);
+
+    private volatile String[] names = new String[0];
+    private volatile LatencyHistogram[] histograms = new LatencyHistogram[0];
+    private volatile boolean enabled;
+
+    private Tracer(Builder builder) {
+        int capacity = Integer.highestOneBit(builder.capacity - 1) << 1;
+        this.mask = capacity - 1;
+        this.traces = new long[capacity];
+        this.stages = new int[capacity];
+        this.starts = new long[capacity];
+        this.durations = new long[capacity];
+        this.enabled = builder.enabled;
+    }
+
+    /**
+     * Registers a stage, or looks up one registered before. Meant for setup, not the hot path.
+     *
+     * @param name Name shown in summaries and exports, e.g. "decode".
+     * @return The id to record the stage's spans under.
+     */
+    public synchronized int stage(String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        String[] grownNames = Arrays.copyOf(names, names.length + 1);
+        LatencyHistogram[] grownHistograms = Arrays.copyOf(histograms, histograms.length + 1);
+        grownNames[names.length] = name;
+        grownHistograms[names.length] = new LatencyHistogram();
+        histograms = grownHistograms; // Before names, so a reader seeing a name sees its histogram.
+        names = grownNames;
+        return names.length - 1;
+    }
+
+    /**
+     * @return A new trace id, to tie together the spans of one operation.
+     */
+    public long newTrace() {
+        return nextTrace.getAndIncrement();
+    }
+
+    /**
+     * @return The current time for span boundaries, in nanoseconds.
+     */
+    public static long now() {
+        return System.nanoTime();
+    }
+
+    /**
+     * @param enabled False to make recording a no-op. Histograms and the ring are kept.
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @return True if spans are being recorded.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Records a span.
+     *
+     * @param trace      Trace id from {@link #newTrace()}.
+     * @param stage      Stage id from {@link #stage(String)}.
+     * @param startNanos Start of the span, from {@link #now()}.
+     * @param endNanos   End of the span, from {@link #now()}.
+     */
+    public void record(long trace, int stage, long startNanos, long endNanos) {
+        if (!enabled) {
+            return;
+        }
+        long duration = endNanos - startNanos;
+        histograms[stage].record(duration);
+        int slot = (int) written.getAndIncrement() & mask;
+        traces[slot] = trace;
+        stages[slot] = stage;
+        starts[slot] = startNanos;
+        durations[slot] = duration;
+    }
+
+    /**
+     * Records a span ending now.
+     *
+     * @param trace      Trace id from {@link #newTrace()}.
+     * @param stage      Stage id from {@link #stage(String)}.
+     * @param startNanos Start of the span, from {@link #now()}.
+     * @return The end of the span, to start the next one from.
+     */
+    public long end(long trace, int stage, long startNanos) {
+        long end = now();
+        record(trace, stage, startNanos, end);
+        return end;
+    }
+
+    /**
+     * @param stage Stage id from {@link #stage(String)}.
+     * @return The histogram of the stage's spans.
+     */
+    public LatencyHistogram histogram(int stage) {
+        return histograms[stage];
+    }
+
+    /**
+     * @return Number of spans recorded since the last {@link #reset()}, including those
+     * already overwritten in the ring.
+     */
+    public long spans() {
+        return written.get();
+    }
+
+    /**
+     * Clears the histograms and the ring. Registered stages are kept.
+     */
+    public void reset() {
+        for (LatencyHistogram histogram : histograms) {
+            histogram.reset();
+        }
+        written.set(0);
+    }
+
+    /**
+     * @return One line per stage that has spans: count, p50, p90, p99, max and mean in
+     * milliseconds, e.g. for logcat.
+     */
+    public String summary() {
+        String[] names = this.names;
+        StringBuilder sb = new StringBuilder(String.format(Locale.US, "%-16s %6s %8s %8s %8s %8s %8s",
+                "stage", "count", "p50", "p90", "p99", "max", "mean"));
+        for (int i = 0; i < names.length; i++) {
+            LatencyHistogram h = histograms[i];
+            if (h.count() == 0) {
+                continue;
+            }
+            sb.append('\n').append(String.format(Locale.US, "%-16s %6d %8.1f %8.1f %8.1f %8.1f %8.1f",
+                    names[i], h.count(), h.percentileMillis(50), h.percentileMillis(90),
+                    h.percentileMillis(99), h.maxMillis(), h.meanMillis()));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Writes the spans still in the ring, oldest first, as CSV with a header line:
+     * trace id, stage name, start in microseconds since the oldest span, duration in microseconds.
+     *
+     * @param out Destination; not closed.
+     * @throws IOException If writing fails.
+     */
+    public void writeSpans(Writer out) throws IOException {
+        String[] names = this.names;
+        long end = written.get();
+        long begin = Math.max(0, end - (mask + 1));
+        long origin = Long.MAX_VALUE;
+        for (long i = begin; i < end; i++) {
+            origin = Math.min(origin, starts[(int) i & mask]);
+        }
+        out.write("trace,stage,start_us,duration_us\n");
+        for (long i = begin; i < end; i++) {
+            int slot = (int) i & mask;
+            int stage = stages[slot];
+            out.write(traces[slot] + "," + (stage < names.length ? names[stage] : "?") + ","
+                    + (starts[slot] - origin) / 1000 + "," + durations[slot] / 1000 + "\n");
+        }
+        out.flush();
+    }
+
+    /**
+     * Builder class for {@link Tracer}.
+     */
+    public static class Builder {
+        private int capacity = 1024;
+        private boolean enabled = true;
+
+        /**
+         * @param capacity Spans kept in the ring, rounded up to a power of two. Default 1024.
+         * @return This builder.
+         */
+        public Builder setCapacity(int capacity) {
+            if (capacity < 1) {
+                throw new IllegalArgumentException("capacity must be >= 1: " + capacity);
+            }
+            this.capacity = capacity;
+            return this;
+        }
+
+        /**
+         * @param enabled False to start with recording switched off. Default true.
+         * @return This builder.
+         */
+        public Builder setEnabled(boolean enabled) {
+            this.enabled = enabled;
+            return this;
+        }
+
+        /**
+         * @return A new tracer.
+         */
+        public Tracer build() {
+            return new Tracer(this);
+        }
+    }
+}
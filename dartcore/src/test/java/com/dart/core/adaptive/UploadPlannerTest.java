@@ -0,0 +1,112 @@
+package com.dart.core.adaptive;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class UploadPlannerTest {
+
+    private static final UploadPlanner.Crop FULL = new UploadPlanner.Crop("full", 750, 1000);
+    private static final UploadPlanner.Crop GUESS = new UploadPlanner.Crop("guess", 400, 200);
+    private static final Set<UploadEncoding> PNG = EnumSet.of(
+            UploadEncoding.PNG_RGBA, UploadEncoding.PNG_GRAY_FAST, UploadEncoding.PNG_BILEVEL_SMALL);
+
+    private static LinkEstimator link(double bytesPerSecond) {
+        return new LinkEstimator.Builder()
+                .setInitialThroughput(bytesPerSecond)
+                .setInitialConnectMillis(100)
+                .setInitialWaitMillis(1000)
+                .build();
+    }
+
+    @Test
+    public void fastLinkSendsFullResolution() {
+        UploadPlan plan = new UploadPlanner.Builder(link(1024 * 1024)).setTargetMillis(3000).build()
+                .plan(Arrays.asList(FULL, GUESS), PNG, false);
+
+        assertSame(plan.toString(), FULL, plan.crop);
+        assertEquals(1.0, plan.scale, 0);
+        assertEquals(750, plan.width);
+        assertTrue(plan.toString(), plan.meetsTarget());
+    }
+
+    @Test
+    public void slowLinkDegradesUntilTargetIsMet() {
+        // 2 KiB/s: the full image is ~22 KB as 1-bit PNG, ~11 s; the guessed block takes ~2.5 s.
+        UploadPlan plan = new UploadPlanner.Builder(link(2048)).setTargetMillis(4000).build()
+                .plan(Arrays.asList(FULL, GUESS), PNG, true);
+
+        assertSame(plan.toString(), GUESS, plan.crop);
+        assertEquals(1.0, plan.scale, 0); // The crop alone is enough; no need to downscale.
+        assertEquals(UploadEncoding.PNG_BILEVEL_SMALL, plan.encoding);
+        assertTrue(plan.toString(), plan.meetsTarget());
+        assertEquals(0, plan.connectMillis, 0);
+    }
+
+    @Test
+    public void unreachableTargetSendsFastestOption() {
+        UploadPlan plan = new UploadPlanner.Builder(link(256)).setTargetMillis(1000).setScales(1, 0.5).build()
+                .plan(Arrays.asList(FULL, GUESS), PNG, false);
+
+        assertSame(GUESS, plan.crop);
+        assertEquals(0.5, plan.scale, 0);
+        assertEquals(200, plan.width);
+        assertFalse(plan.meetsTarget());
+        assertEquals(2 * 2 * PNG.size(), plan.options);
+    }
+
+    @Test
+    public void sendBufferDoesNotHidePayloadSize() {
+        // 2 KiB/s link, 1 s on the server. The whole ~22 KB image fits in the send buffer, so
+        // every write returns at once and the transfer shows up in the wait instead.
+        LinkEstimator link = link(2048);
+        for (int i = 0; i < 10; i++) {
+            link.recordTransfer(22000, 0, 22000 * 1000 / 2048 + 1000);
+        }
+        assertEquals(2048, link.throughput(), 0);
+        assertEquals(1000, link.waitMillis(), 1);
+
+        UploadPlan plan = new UploadPlanner.Builder(link).setTargetMillis(4000).build()
+                .plan(Arrays.asList(FULL, GUESS), PNG, true);
+        assertSame(plan.toString(), GUESS, plan.crop);
+        assertEquals(1.0, plan.scale, 0);
+        assertTrue(plan.toString(), plan.meetsTarget());
+    }
+
+    @Test
+    public void measurementsReplaceInitialEstimates() {
+        LinkEstimator link = link(1024);
+        final List<UploadPlan> plans = new ArrayList<>();
+        UploadPlanner planner = new UploadPlanner.Builder(link).setListener(new UploadPlanner.Listener() {
+            @Override
+            public void onPlan(UploadPlan plan) {
+                plans.add(plan);
+            }
+        }).build();
+
+        link.recordTransfer(512, 0, 1000);  // Fits in the socket buffer: only the wait counts.
+        assertEquals(1024, link.throughput(), 0);
+        assertEquals(850, link.waitMillis(), 1e-9); // 500 ms of the wait drained the buffer.
+        link.recordTransfer(356 * 1024, 1000, 500); // 100 KiB left the device while blocked.
+        assertEquals(1024 + 0.3 * (100 * 1024 - 1024), link.throughput(), 1e-9);
+        assertEquals(2, link.transfers());
+
+        planner.recordEncode(UploadEncoding.BILEVEL_RUNS, 1000000, 50000, 2000000);
+        assertEquals(0.02 + 0.3 * (0.05 - 0.02), planner.bytesPerPixel(UploadEncoding.BILEVEL_RUNS), 1e-9);
+        assertEquals(5 + 0.3 * (2 - 5), planner.nanosPerPixel(UploadEncoding.BILEVEL_RUNS), 1e-9);
+
+        UploadPlan plan = planner.plan(Arrays.asList(FULL), EnumSet.of(UploadEncoding.BILEVEL_RUNS), true);
+        assertEquals(Arrays.asList(plan), plans);
+        long pixels = 750 * 1000;
+        assertEquals((long) Math.ceil(pixels * planner.bytesPerPixel(UploadEncoding.BILEVEL_RUNS)), plan.predictedBytes);
+    }
+}
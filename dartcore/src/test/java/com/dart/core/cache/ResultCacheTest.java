@@ -0,0 +1,132 @@
+package com.dart.core.cache;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ResultCacheTest {
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("results", ".cache");
+        file.delete();
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    /**
+     * White page with dark blocks of "text" laid out from the seed, shifted by (dx, dy).
+     */
+    static byte[] envelope(long seed, int width, int height, int dx, int dy) {
+        byte[] pixels = new byte[width * height];
+        Arrays.fill(pixels, (byte) 255);
+        Random random = new Random(seed);
+        for (int line = 0; line < 6; line++) {
+            int y = 40 + line * 45 + dy;
+            int x = 30 + random.nextInt(60) + dx;
+            int length = 80 + random.nextInt(width - 200);
+            for (int yy = y; yy < y + 20 && yy < height; yy++) {
+                for (int xx = Math.max(x, 0); xx < x + length && xx < width; xx++) {
+                    pixels[yy * width + xx] = 0;
+                }
+            }
+        }
+        return pixels;
+    }
+
+    @Test
+    public void reshotEnvelopeHashesClose() {
+        long original = AverageHash.compute(envelope(1, 400, 320, 0, 0), 400, 320);
+        long shifted = AverageHash.compute(envelope(1, 400, 320, 3, 2), 400, 320);
+        byte[] noisy = envelope(1, 400, 320, 0, 0);
+        Random random = new Random(7);
+        for (int i = 0; i < 2000; i++) {
+            noisy[random.nextInt(noisy.length)] ^= (byte) 255; // Salt-and-pepper noise.
+        }
+        long other = AverageHash.compute(envelope(2, 400, 320, 0, 0), 400, 320);
+
+        assertTrue(AverageHash.distance(original, shifted) <= 4);
+        assertTrue(AverageHash.distance(original, AverageHash.compute(noisy, 400, 320)) <= 4);
+        assertTrue(AverageHash.distance(original, other) > 4);
+    }
+
+    @Test
+    public void lookupMatchesWithinDistanceAndLanguage() {
+        ResultCache cache = new ResultCache.Builder().setMaxDistance(3).build();
+        cache.put(0xF0F0L, 1, "english");
+        cache.put(0xF0F0L, 0, "urdu");
+
+        assertEquals("english", cache.lookup(0xF0F7L, 1)); // 3 bits apart.
+        assertEquals("urdu", cache.lookup(0xF0F0L, 0));
+        assertNull(cache.lookup(0xF0FFL, 1));               // 4 bits apart.
+        assertEquals(2, cache.hits());
+        assertEquals(1, cache.misses());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedByCount() {
+        ResultCache cache = new ResultCache.Builder().setMaxEntries(2).setMaxDistance(0).build();
+        cache.put(1, 1, "a");
+        cache.put(2, 1, "b");
+        cache.lookup(1, 1); // Makes 2 the eldest.
+        cache.put(3, 1, "c");
+
+        assertEquals(2, cache.size());
+        assertEquals("a", cache.lookup(1, 1));
+        assertNull(cache.lookup(2, 1));
+        assertEquals("c", cache.lookup(3, 1));
+    }
+
+    @Test
+    public void evictsByBytes() {
+        char[] big = new char[1000];
+        Arrays.fill(big, 'x');
+        ResultCache cache = new ResultCache.Builder().setMaxBytes(4500).setMaxDistance(0).build();
+        cache.put(1, 1, new String(big));
+        cache.put(2, 1, new String(big));
+        cache.put(3, 1, new String(big));
+
+        assertEquals(2, cache.size());
+        assertTrue(cache.bytes() <= 4500);
+        assertNull(cache.lookup(1, 1));
+    }
+
+    @Test
+    public void persistsAcrossInstances() throws IOException {
+        ResultCache cache = new ResultCache.Builder().setFile(file).setMaxEntries(2).setMaxDistance(0).build();
+        cache.put(1, 1, "one");
+        cache.put(2, 0, "\u062F\u0648");
+        cache.lookup(1, 1); // 2 is now least recently used.
+        cache.flush();
+
+        ResultCache reopened = new ResultCache.Builder().setFile(file).setMaxEntries(2).setMaxDistance(0).build();
+        assertEquals(2, reopened.size());
+        reopened.put(3, 1, "three"); // Evicts 2 if the order survived.
+        assertEquals("one", reopened.lookup(1, 1));
+        assertNull(reopened.lookup(2, 0));
+    }
+
+    @Test
+    public void corruptFileIsIgnored() throws IOException {
+        java.io.FileOutputStream out = new java.io.FileOutputStream(file);
+        out.write(new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+        out.close();
+
+        ResultCache cache = new ResultCache.Builder().setFile(file).build();
+        assertEquals(0, cache.size());
+    }
+}
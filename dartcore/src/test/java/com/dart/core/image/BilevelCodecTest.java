@@ -0,0 +1,122 @@
+package com.dart.core.image;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BilevelCodecTest {
+
+    /** White page with a few blocks of random ink and some blank rows, as 0/255 pixels. */
+    private static byte[] envelope(int width, int height, long seed) {
+        Random random = new Random(seed);
+        byte[] pixels = new byte[width * height];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = (byte) 255;
+        }
+        for (int y = height / 4; y < height * 3 / 4; y++) {
+            if (y % 10 < 3) {
+                continue; // Gap between lines repeats the previous blank row.
+            }
+            for (int x = 3; x < width - 3; x++) {
+                if (random.nextInt(6) == 0) {
+                    pixels[y * width + x] = 0;
+                }
+            }
+        }
+        return pixels;
+    }
+
+    @Test
+    public void runsRoundTrip() throws IOException {
+        for (int width : new int[]{1, 7, 8, 13, 200}) {
+            byte[] pixels = envelope(width, 60, width);
+            BilevelImage decoded = BilevelCodec.decode(BilevelCodec.encodeRuns(pixels, width, 60));
+            assertEquals(width, decoded.width);
+            assertEquals(60, decoded.height);
+            assertArrayEquals(pixels, decoded.toGray());
+        }
+    }
+
+    @Test
+    public void packedRoundTrip() throws IOException {
+        byte[] pixels = envelope(37, 21, 1);
+        BilevelImage image = BilevelImage.pack(pixels, 37, 21, 128);
+        BilevelImage decoded = BilevelCodec.decode(BilevelCodec.encodePacked(image));
+        assertArrayEquals(image.bits, decoded.bits);
+        assertArrayEquals(pixels, decoded.toGray());
+    }
+
+    @Test
+    public void runsMatchPackedBits() throws IOException {
+        byte[] pixels = envelope(100, 50, 2);
+        BilevelImage packed = BilevelImage.pack(pixels, 100, 50, 128);
+        assertArrayEquals(packed.bits, BilevelCodec.decode(BilevelCodec.encodeRuns(pixels, 100, 50)).bits);
+    }
+
+    @Test
+    public void blankPageIsTiny() {
+        byte[] pixels = new byte[1000 * 800];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = (byte) 255;
+        }
+        // Header, one explicit row, then one "repeat" byte per row.
+        assertTrue(BilevelCodec.encodeRuns(pixels, 1000, 800).length < 9 + 3 + 800);
+    }
+
+    @Test
+    public void writesPbm() throws IOException {
+        byte[] pixels = {0, (byte) 255, (byte) 255, 0};
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BilevelImage.pack(pixels, 2, 2, 128).writePbm(out);
+        byte[] pbm = out.toByteArray();
+        assertEquals("P4\n2 2\n", new String(pbm, 0, 7, "US-ASCII"));
+        assertEquals((byte) 0x80, pbm[7]);
+        assertEquals((byte) 0x40, pbm[8]);
+    }
+
+    @Test(expected = ProtocolException.class)
+    public void rejectsOverlongRow() throws IOException {
+        byte[] data = BilevelCodec.encodeRuns(new byte[4], 4, 1);
+        data[data.length - 1] = 9; // Ink run longer than the row.
+        BilevelCodec.decode(data);
+    }
+
+    @Test
+    public void rejectsHostileHeadersBeforeAllocating() {
+        // 65535 x 65535 would be about 512 MB of bits; the packed 16 Mpx one 2 MB from 9 bytes.
+        int[][] sizes = {{0xFFFF, 0xFFFF, BilevelCodec.MODE_RUNS}, {0xFFFF, 0xFFFF, BilevelCodec.MODE_PACKED},
+                {4096, 4096, BilevelCodec.MODE_PACKED}, {4096, 4096, BilevelCodec.MODE_RUNS}};
+        for (int[] size : sizes) {
+            byte[] data = {'D', 'B', 'I', '1', (byte) (size[0] >>> 8), (byte) size[0],
+                    (byte) (size[1] >>> 8), (byte) size[1], (byte) size[2]};
+            try {
+                BilevelCodec.decode(data);
+                fail("Accepted " + size[0] + "x" + size[1] + " mode " + size[2]);
+            } catch (IOException e) {
+                assertTrue(e instanceof ProtocolException);
+            }
+        }
+    }
+
+    @Test
+    public void rejectsNegativeRuns() throws IOException {
+        // 16x1 in runs mode with runs 3, -8, 0, 8, 13: the -8 moves x left of the row, and
+        // the ink run of 8 would then be set from a negative column.
+        byte[] data = {'D', 'B', 'I', '1', 0, 16, 0, 1, (byte) BilevelCodec.MODE_RUNS,
+                5, 3, (byte) 0xF8, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F, 0, 8, 13};
+        try {
+            BilevelCodec.decode(data);
+            fail("Accepted a negative run");
+        } catch (ProtocolException e) {
+            // Expected.
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.dart.core.layout;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AddressBlockLocatorTest {
+
+    private static final int W = 640;
+    private static final int H = 400;
+
+    private static void fill(byte[] pixels, int x0, int y0, int x1, int y1) {
+        for (int y = y0; y < y1; y++) {
+            Arrays.fill(pixels, y * W + x0, y * W + x1, (byte) 0);
+        }
+    }
+
+    /**
+     * Handwriting-like strokes: short dashes with gaps, {@code lines} lines from (x, y).
+     */
+    private static void writeLines(byte[] pixels, Random random, int x, int y, int lines, int lineWidth) {
+        for (int line = 0; line < lines; line++) {
+            int top = y + line * 28;
+            for (int cx = x; cx < x + lineWidth; ) {
+                int word = 10 + random.nextInt(30);
+                for (int px = cx; px < Math.min(cx + word, x + lineWidth); px += 3) {
+                    int h = 6 + random.nextInt(10);
+                    fill(pixels, px, top + 16 - h, px + 2, top + 16);
+                }
+                cx += word + 8 + random.nextInt(8);
+            }
+        }
+    }
+
+    private static byte[] envelope() {
+        byte[] pixels = new byte[W * H];
+        Arrays.fill(pixels, (byte) 255);
+        Random random = new Random(3);
+        fill(pixels, 4, 4, W - 4, 7);          // Border.
+        fill(pixels, 4, H - 7, W - 4, H - 4);
+        fill(pixels, 4, 4, 7, H - 4);
+        fill(pixels, W - 7, 4, W - 4, H - 4);
+        fill(pixels, 520, 20, 610, 120);        // Solid stamp.
+        writeLines(pixels, random, 20, 20, 2, 120);   // Sender block.
+        writeLines(pixels, random, 200, 180, 5, 300); // Address block.
+        fill(pixels, 190, 330, 520, 332);       // Ruling line under the address.
+        return pixels;
+    }
+
+    @Test
+    public void cropsToAddressBlock() {
+        TextBlock block = new AddressBlockLocator.Builder().build().locate(envelope(), W, H);
+
+        assertFalse(block.toString(), block.fallback);
+        assertTrue(block.toString(), block.confidence > 0.7);
+        assertTrue(block.toString(), block.x <= 200 && block.x >= 170);
+        assertTrue(block.toString(), block.y <= 180 && block.y >= 150);
+        assertTrue(block.toString(), block.x + block.width >= 500 && block.x + block.width <= 530);
+        assertTrue(block.toString(), block.y + block.height >= 180 + 4 * 28 + 16);
+        assertTrue(block.toString(), block.y + block.height < 330); // Ruling line not included.
+    }
+
+    @Test
+    public void cropCopiesPixels() {
+        byte[] pixels = envelope();
+        TextBlock block = new AddressBlockLocator.Builder().build().locate(pixels, W, H);
+        byte[] crop = block.crop(pixels, W);
+
+        assertEquals(block.width * block.height, crop.length);
+        assertEquals(pixels[(block.y + 5) * W + block.x + 7], crop[5 * block.width + 7]);
+    }
+
+    @Test
+    public void fallsBackWhenNoBlockDominates() {
+        byte[] pixels = new byte[W * H];
+        Arrays.fill(pixels, (byte) 255);
+        Random random = new Random(5);
+        // Four equally sized blocks far apart: none holds half of the text.
+        writeLines(pixels, random, 20, 20, 3, 150);
+        writeLines(pixels, random, 400, 20, 3, 150);
+        writeLines(pixels, random, 20, 260, 3, 150);
+        writeLines(pixels, random, 400, 260, 3, 150);
+
+        TextBlock block = new AddressBlockLocator.Builder().build().locate(pixels, W, H);
+        assertTrue(block.fallback);
+        assertTrue(block.confidence < 0.5);
+        assertEquals(W, block.width);
+        assertEquals(H, block.height);
+    }
+
+    @Test
+    public void blankImageFallsBack() {
+        byte[] pixels = new byte[W * H];
+        Arrays.fill(pixels, (byte) 255);
+        TextBlock block = new AddressBlockLocator.Builder().build().locate(pixels, W, H);
+        assertTrue(block.fallback);
+        assertEquals(0, block.confidence, 0);
+    }
+}
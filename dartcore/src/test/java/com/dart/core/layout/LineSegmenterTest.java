@@ -0,0 +1,90 @@
+package com.dart.core.layout;
+
+import com.dart.core.image.LinesCodec;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LineSegmenterTest {
+
+    private static final int W = 400;
+    private static final int H = 200;
+
+    /**
+     * White block with {@code lines} lines of dark strokes, 16px tall with 24px pitch, rotated
+     * by {@code theta} degrees about the centre.
+     */
+    static byte[] block(int lines, double theta) {
+        byte[] pixels = new byte[W * H];
+        Arrays.fill(pixels, (byte) 255);
+        Random random = new Random(11);
+        double slope = -Math.tan(Math.toRadians(theta));
+        for (int line = 0; line < lines; line++) {
+            int base = 40 + line * 36;
+            for (int x = 40; x < W - 40; x++) {
+                if (x % 5 > 1 || random.nextInt(6) == 0) {
+                    continue; // Gaps between strokes and words.
+                }
+                int top = base + (int) Math.round(slope * (x - W / 2.0));
+                for (int y = top; y < top + 16; y++) {
+                    pixels[y * W + x] = 0;
+                }
+            }
+        }
+        return pixels;
+    }
+
+    @Test
+    public void splitsLevelLines() {
+        LineSegmenter segmenter = new LineSegmenter.Builder().setDeskew(false).build();
+        List<TextLine> lines = segmenter.segment(block(4, 0), W, H);
+
+        assertEquals(4, lines.size());
+        for (int i = 0; i < 4; i++) {
+            TextLine line = lines.get(i);
+            assertEquals(40 + i * 36 - 2, line.y);  // Band plus the 2px margin.
+            assertEquals(16 + 4, line.height);
+            assertTrue(line.toString(), line.x <= 40 && line.x + line.width >= W - 42);
+        }
+    }
+
+    @Test
+    public void splitsSkewedLinesIntoLevelStrips() {
+        LineSegmenter segmenter = new LineSegmenter.Builder().build();
+        List<TextLine> lines = segmenter.segment(block(4, 3), W, H);
+
+        assertEquals(4, lines.size());
+        for (TextLine line : lines) {
+            // A skewed 360px line spans ~35px; deskewed, the strip is close to the stroke height.
+            assertTrue(line.toString(), line.height <= 24);
+        }
+    }
+
+    @Test
+    public void blankBlockHasNoLines() {
+        byte[] pixels = new byte[W * H];
+        Arrays.fill(pixels, (byte) 255);
+        assertTrue(new LineSegmenter.Builder().build().segment(pixels, W, H).isEmpty());
+    }
+
+    @Test
+    public void codecRoundTrip() throws Exception {
+        List<TextLine> lines = new LineSegmenter.Builder().setDeskew(false).build().segment(block(3, 0), W, H);
+        List<TextLine> decoded = LinesCodec.decode(LinesCodec.encode(lines));
+
+        assertEquals(lines.size(), decoded.size());
+        for (int i = 0; i < lines.size(); i++) {
+            assertEquals(lines.get(i).x, decoded.get(i).x);
+            assertEquals(lines.get(i).y, decoded.get(i).y);
+            assertEquals(lines.get(i).width, decoded.get(i).width);
+            assertArrayEquals(lines.get(i).pixels, decoded.get(i).pixels);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.dart.core.loadgen;
+
+import com.dart.core.net.LatencyDistribution;
+import com.dart.core.net.LegacyOcrClient;
+import com.dart.core.net.LegacyOcrServer;
+import com.dart.core.net.OcrLanguage;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LoadGeneratorTest {
+
+    private static final List<byte[]> IMAGES = Arrays.asList(new byte[100], new byte[2000]);
+
+    private LegacyOcrServer server;
+
+    @After
+    public void tearDown() {
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    private LegacyOcrClient client() {
+        return new LegacyOcrClient.Builder("127.0.0.1", server.port()).setReadTimeout(5000).build();
+    }
+
+    @Test
+    public void standInSpeaksLegacyProtocol() throws Exception {
+        server = new LegacyOcrServer.Builder().build().start();
+
+        assertEquals("ENGLISH\n5", client().recognise(OcrLanguage.ENGLISH, "image".getBytes("UTF-8")));
+        assertEquals("URDU\n7", client().recognise(OcrLanguage.URDU, "ENGLISH".getBytes("UTF-8")));
+        assertEquals(2, server.requests());
+    }
+
+    @Test
+    public void reportsLatencyPercentiles() throws Exception {
+        server = new LegacyOcrServer.Builder().setLatency(LatencyDistribution.fixed(50)).setSlots(8).build().start();
+
+        LoadReport report = new LoadGenerator.Builder(client(), IMAGES)
+                .setRate(100)
+                .setClients(8)
+                .setRequests(20)
+                .build()
+                .run();
+
+        assertEquals(report.toString(), 20, report.completed());
+        assertEquals(0, report.failed());
+        assertTrue(report.toString(), report.percentileMillis(50) >= 50);
+        assertTrue(report.toString(), report.percentileMillis(99) >= report.percentileMillis(95));
+        assertTrue(report.toString(), report.throughput() > 0);
+    }
+
+    @Test
+    public void queueingAtServerShowsInTailLatency() throws Exception {
+        // One slot of 20 ms can answer 50/s; requests arrive at 200/s, so they pile up.
+        server = new LegacyOcrServer.Builder().setLatency(LatencyDistribution.fixed(20)).setSlots(1).build().start();
+
+        LoadReport report = new LoadGenerator.Builder(client(), IMAGES)
+                .setRate(200)
+                .setClients(20)
+                .setRequests(20)
+                .build()
+                .run();
+
+        assertEquals(20, report.completed());
+        assertTrue(report.toString(), report.percentileMillis(99) > 200);
+        assertTrue(report.toString(), report.throughput() < 60);
+    }
+
+    @Test
+    public void injectedFailuresAreCounted() throws Exception {
+        server = new LegacyOcrServer.Builder().setFailures(1, LegacyOcrServer.Failure.EMPTY).build().start();
+
+        LoadReport report = new LoadGenerator.Builder(client(), IMAGES).setRate(1000).setRequests(5).build().run();
+
+        assertEquals(0, report.completed());
+        assertEquals(Collections.singletonMap("empty reply", 5), report.errors());
+        assertEquals(5, server.failures());
+    }
+
+    @Test
+    public void stallsHitTheReadTimeout() throws Exception {
+        server = new LegacyOcrServer.Builder()
+                .setFailures(1, LegacyOcrServer.Failure.STALL)
+                .setStallMillis(2000)
+                .build()
+                .start();
+        LegacyOcrClient client = new LegacyOcrClient.Builder("127.0.0.1", server.port()).setReadTimeout(100).build();
+
+        LoadReport report = new LoadGenerator.Builder(client, IMAGES).setRate(1000).setRequests(3).build().run();
+
+        assertEquals(Collections.singletonMap("SocketTimeoutException", 3), report.errors());
+    }
+}
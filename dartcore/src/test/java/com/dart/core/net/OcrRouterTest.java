@@ -0,0 +1,143 @@
+package com.dart.core.net;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class OcrRouterTest {
+
+    private final List<OcrEchoServer> servers = new ArrayList<>();
+    private OcrRouter router;
+
+    @After
+    public void tearDown() {
+        if (router != null) {
+            router.close();
+        }
+        for (OcrEchoServer server : servers) {
+            server.close();
+        }
+    }
+
+    private OcrEchoServer server(final long delayMillis) throws IOException {
+        OcrEchoServer server = new OcrEchoServer(0, 4, new OcrEchoServer.Recognizer() {
+            @Override
+            public String recognise(OcrLanguage language, int format, byte[] payload) throws Exception {
+                Thread.sleep(delayMillis);
+                return "" + delayMillis;
+            }
+        }).start();
+        servers.add(server);
+        return server;
+    }
+
+    /** A port nothing listens on. */
+    private static int deadPort() throws IOException {
+        ServerSocket socket = new ServerSocket(0);
+        int port = socket.getLocalPort();
+        socket.close();
+        return port;
+    }
+
+    private OcrRouter.Builder builder() {
+        return new OcrRouter.Builder().setProbeInterval(0).setConnectTimeout(2000).setRequestTimeout(5000);
+    }
+
+    @Test
+    public void failsOverFromUnreachableEndpoint() throws IOException {
+        int dead = deadPort();
+        router = builder().addEndpoint("127.0.0.1", dead).addEndpoint("127.0.0.1", server(0).port()).build();
+
+        assertEquals("0", router.recognise(OcrLanguage.URDU, Frame.FORMAT_PNG, new byte[10]));
+        assertEquals("0", router.recognise(OcrLanguage.URDU, Frame.FORMAT_PNG, new byte[10]));
+
+        OcrRouter.EndpointStats down = router.stats().get(0);
+        assertFalse(down.available);
+        assertEquals(1, down.failures); // Out of rotation after the first failure.
+        assertEquals(2, router.stats().get(1).requests);
+        assertTrue(router.stats().get(1).available);
+    }
+
+    @Test
+    public void streamedRequestFailsOverBeforeWriting() throws IOException {
+        router = builder().addEndpoint("127.0.0.1", deadPort()).addEndpoint("127.0.0.1", server(0).port()).build();
+        final int[] writes = new int[1];
+
+        String text = router.recognise(OcrLanguage.ENGLISH, Frame.FORMAT_BILEVEL, new PayloadWriter() {
+            @Override
+            public void writeTo(OutputStream out) throws IOException {
+                writes[0]++;
+                out.write(new byte[100]);
+            }
+        });
+
+        assertEquals("0", text);
+        assertEquals(1, writes[0]);
+    }
+
+    @Test
+    public void prefersTheFasterEndpoint() throws IOException {
+        router = builder().addEndpoint("127.0.0.1", server(200).port()).addEndpoint("127.0.0.1", server(10).port())
+                .build();
+
+        List<String> answers = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            answers.add(router.recognise(OcrLanguage.URDU, Frame.FORMAT_PNG, new byte[1]));
+        }
+
+        // Each endpoint is tried once, then the fast one takes the rest.
+        assertEquals("[200, 10, 10, 10, 10, 10]", answers.toString());
+        assertTrue(router.stats().get(0).latencyMillis > router.stats().get(1).latencyMillis);
+    }
+
+    @Test
+    public void spreadsConcurrentRequests() throws Exception {
+        router = builder().addEndpoint("127.0.0.1", server(300).port()).addEndpoint("127.0.0.1", server(300).port())
+                .build();
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> replies = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                replies.add(pool.submit(new Callable<String>() {
+                    @Override
+                    public String call() throws IOException {
+                        return router.recognise(OcrLanguage.URDU, Frame.FORMAT_PNG, new byte[1]);
+                    }
+                }));
+            }
+            for (Future<String> reply : replies) {
+                assertEquals("300", reply.get());
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        assertEquals(2, router.stats().get(0).requests);
+        assertEquals(2, router.stats().get(1).requests);
+    }
+
+    @Test
+    public void probeTakesDeadEndpointsOutOfRotation() throws IOException {
+        router = builder().addEndpoint("127.0.0.1", server(0).port()).addEndpoint("127.0.0.1", deadPort()).build();
+
+        router.probe();
+
+        assertTrue(router.stats().get(0).available);
+        assertTrue(router.stats().get(0).probeMillis >= 0);
+        assertFalse(router.stats().get(1).available);
+        assertTrue(router.stats().get(1).lastError, router.stats().get(1).lastError.contains("ConnectException"));
+    }
+}
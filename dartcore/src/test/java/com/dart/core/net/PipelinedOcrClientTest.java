@@ -0,0 +1,162 @@
+package com.dart.core.net;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PipelinedOcrClientTest {
+
+    /** Sleeps 50 ms per payload byte, then echoes. */
+    private static final OcrEchoServer.Recognizer SLOW = new OcrEchoServer.Recognizer() {
+        @Override
+        public String recognise(OcrLanguage language, int format, byte[] payload) throws Exception {
+            Thread.sleep(50L * payload.length);
+            return OcrEchoServer.ECHO.recognise(language, format, payload);
+        }
+    };
+
+    private OcrEchoServer server;
+    private PipelinedOcrClient client;
+
+    @After
+    public void tearDown() {
+        if (client != null) {
+            client.close();
+        }
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    @Test
+    public void matchesOutOfOrderReplies() throws IOException {
+        server = new OcrEchoServer(0, 4, SLOW).start();
+        client = new PipelinedOcrClient.Builder("127.0.0.1", server.port()).setWindow(4).build();
+
+        final List<Integer> completionOrder = Collections.synchronizedList(new ArrayList<Integer>());
+        OcrCall.Callback record = new OcrCall.Callback() {
+            @Override
+            public void onResult(int requestId, String text) {
+                completionOrder.add(requestId);
+            }
+
+            @Override
+            public void onFailure(int requestId, IOException error) {
+            }
+        };
+        OcrCall slow = client.submit(OcrLanguage.URDU, Frame.FORMAT_PNG, new byte[6], record);
+        OcrCall medium = client.submit(OcrLanguage.ENGLISH, Frame.FORMAT_PNG, new byte[3], record);
+        OcrCall fast = client.submit(OcrLanguage.URDU, Frame.FORMAT_PNG, new byte[1], record);
+
+        assertEquals("URDU 0 6", slow.get());
+        assertEquals("ENGLISH 0 3", medium.get());
+        assertEquals("URDU 0 1", fast.get());
+        assertEquals(fast.requestId(), (int) completionOrder.get(0));
+        assertEquals(slow.requestId(), (int) completionOrder.get(2));
+        assertEquals(0, client.inFlight());
+    }
+
+    @Test
+    public void windowLimitsOutstandingRequests() throws Exception {
+        server = new OcrEchoServer(0, 4, SLOW).start();
+        client = new PipelinedOcrClient.Builder("127.0.0.1", server.port()).setWindow(2).build();
+        client.submit(OcrLanguage.URDU, Frame.FORMAT_PNG, new byte[4], null);
+        client.submit(OcrLanguage.URDU, Frame.FORMAT_PNG, new byte[4], null);
+        long start = System.nanoTime();
+        OcrCall third = client.submit(OcrLanguage.URDU, Frame.FORMAT_PNG, new byte[1], null);
+        long waitedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("third request should wait for a slot, waited " + waitedMillis, waitedMillis >= 150);
+        assertEquals("URDU 0 1", third.get());
+    }
+
+    @Test
+    public void timesOutSingleRequestAndKeepsConnection() throws IOException {
+        server = new OcrEchoServer(0, 2, SLOW).start();
+        client = new PipelinedOcrClient.Builder("127.0.0.1", server.port()).setRequestTimeout(100).build();
+        OcrCall late = client.submit(OcrLanguage.URDU, Frame.FORMAT_PNG, new byte[10], null);
+        try {
+            late.get();
+            fail();
+        } catch (SocketTimeoutException expected) {
+            // The reply takes 500 ms.
+        }
+        assertEquals("URDU 0 0", client.recognise(OcrLanguage.URDU, Frame.FORMAT_PNG, new byte[0]));
+    }
+
+    @Test
+    public void failsPendingRequestsWhenServerGoesAway() throws IOException {
+        server = new OcrEchoServer(0, 1, SLOW).start();
+        client = new PipelinedOcrClient.Builder("127.0.0.1", server.port()).setRequestTimeout(0).build();
+        OcrCall call = client.submit(OcrLanguage.URDU, Frame.FORMAT_PNG, new byte[20], null);
+        server.close();
+        try {
+            call.get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (SocketTimeoutException e) {
+            fail("pending call should fail with the connection, not hang");
+        } catch (IOException expected) {
+            // Connection reset or closed.
+        }
+    }
+
+    @Test
+    public void streamsPayloadInParts() throws IOException {
+        server = new OcrEchoServer(0, 2, OcrEchoServer.ECHO).start();
+        client = new PipelinedOcrClient.Builder("127.0.0.1", server.port()).build();
+        final int size = 3 * MultiplexedOcrConnection.PART_SIZE + 123;
+
+        String reply = client.recognise(OcrLanguage.ENGLISH, Frame.FORMAT_BILEVEL, new PayloadWriter() {
+            @Override
+            public void writeTo(OutputStream out) throws IOException {
+                for (int i = 0; i < size; i++) {
+                    out.write(i); // Byte at a time, like a row encoder.
+                }
+            }
+        });
+        assertEquals("ENGLISH " + Frame.FORMAT_BILEVEL + " " + size, reply);
+    }
+
+    @Test
+    public void failedWriterAbortsOnlyItsRequest() throws IOException {
+        server = new OcrEchoServer(0, 2, OcrEchoServer.ECHO).start();
+        client = new PipelinedOcrClient.Builder("127.0.0.1", server.port()).build();
+        try {
+            client.recognise(OcrLanguage.URDU, Frame.FORMAT_PNG, new PayloadWriter() {
+                @Override
+                public void writeTo(OutputStream out) throws IOException {
+                    out.write(new byte[MultiplexedOcrConnection.PART_SIZE + 10]); // One part already sent.
+                    throw new IOException("encoder failed");
+                }
+            });
+            fail();
+        } catch (IOException expected) {
+            assertEquals("encoder failed", expected.getMessage());
+        }
+        assertEquals(0, client.inFlight());
+        assertEquals("URDU 0 5", client.recognise(OcrLanguage.URDU, Frame.FORMAT_PNG, new byte[5]));
+    }
+
+    @Test
+    public void prewarmOpensConnectionInBackground() throws Exception {
+        server = new OcrEchoServer(0, 1, OcrEchoServer.ECHO).start();
+        client = new PipelinedOcrClient.Builder("127.0.0.1", server.port()).build();
+        assertFalse(client.isConnected());
+        client.prewarm();
+        for (int i = 0; i < 100 && !client.isConnected(); i++) {
+            Thread.sleep(20);
+        }
+        assertTrue(client.isConnected());
+    }
+}
@@ -0,0 +1,166 @@
+package com.dart.core.pipeline;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class StagedPipelineTest {
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private StagedPipeline<Integer, String> pipeline;
+
+    @After
+    public void tearDown() {
+        if (pipeline != null) {
+            pipeline.shutdown();
+        }
+    }
+
+    @Test
+    public void runsStagesInOrder() throws Exception {
+        pipeline = StagedPipeline.Builder.<Integer>start(DIRECT)
+                .then("double", new Stage<Integer, Integer>() {
+                    @Override
+                    public Integer process(Integer input) {
+                        return input * 2;
+                    }
+                }, 4)
+                .then("format", new Stage<Integer, String>() {
+                    @Override
+                    public String process(Integer input) {
+                        return "v" + input;
+                    }
+                }, 4)
+                .build();
+
+        final List<String> results = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch done = new CountDownLatch(3);
+        StagedPipeline.Listener<String> listener = new StagedPipeline.Listener<String>() {
+            @Override
+            public void onComplete(long jobId, String result) {
+                results.add(result);
+                done.countDown();
+            }
+
+            @Override
+            public void onFailure(long jobId, String stage, Throwable error) {
+                done.countDown();
+            }
+        };
+        for (int i = 1; i <= 3; i++) {
+            assertTrue(pipeline.submit(i, listener) > 0);
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(3, results.size());
+        assertEquals("v2", results.get(0)); // Single-threaded stages preserve submission order.
+        assertEquals("v6", results.get(2));
+    }
+
+    @Test
+    public void reportsFailingStage() throws Exception {
+        pipeline = StagedPipeline.Builder.<Integer>start(DIRECT)
+                .then("boom", new Stage<Integer, String>() {
+                    @Override
+                    public String process(Integer input) throws Exception {
+                        throw new IllegalStateException("bad input " + input);
+                    }
+                }, 1)
+                .build();
+        final String[] failed = new String[1];
+        final CountDownLatch done = new CountDownLatch(1);
+        pipeline.submit(7, new StagedPipeline.Listener<String>() {
+            @Override
+            public void onComplete(long jobId, String result) {
+                done.countDown();
+            }
+
+            @Override
+            public void onFailure(long jobId, String stage, Throwable error) {
+                failed[0] = stage;
+                done.countDown();
+            }
+        });
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals("boom", failed[0]);
+    }
+
+    @Test
+    public void survivesErrorThrownByStage() throws Exception {
+        pipeline = StagedPipeline.Builder.<Integer>start(DIRECT)
+                .then("decode", new Stage<Integer, String>() {
+                    @Override
+                    public String process(Integer input) throws Exception {
+                        if (input == 1) {
+                            throw new OutOfMemoryError("bitmap");
+                        }
+                        return "v" + input;
+                    }
+                }, 4)
+                .build();
+        final List<Object> outcomes = Collections.synchronizedList(new ArrayList<Object>());
+        final CountDownLatch done = new CountDownLatch(2);
+        StagedPipeline.Listener<String> listener = new StagedPipeline.Listener<String>() {
+            @Override
+            public void onComplete(long jobId, String result) {
+                outcomes.add(result);
+                done.countDown();
+            }
+
+            @Override
+            public void onFailure(long jobId, String stage, Throwable error) {
+                outcomes.add(error);
+                done.countDown();
+            }
+        };
+        assertTrue(pipeline.submit(1, listener) > 0);
+        assertTrue(pipeline.submit(2, listener) > 0);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(outcomes.get(0) instanceof OutOfMemoryError);
+        assertEquals("v2", outcomes.get(1)); // The worker is still alive.
+    }
+
+    @Test
+    public void rejectsWhenFirstQueueFull() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch started = new CountDownLatch(1);
+        pipeline = StagedPipeline.Builder.<Integer>start(DIRECT)
+                .then("slow", new Stage<Integer, String>() {
+                    @Override
+                    public String process(Integer input) throws Exception {
+                        started.countDown();
+                        release.await();
+                        return "";
+                    }
+                }, 1)
+                .build();
+        StagedPipeline.Listener<String> ignore = new StagedPipeline.Listener<String>() {
+            @Override
+            public void onComplete(long jobId, String result) {
+            }
+
+            @Override
+            public void onFailure(long jobId, String stage, Throwable error) {
+            }
+        };
+        assertTrue(pipeline.submit(1, ignore) > 0); // Taken by the worker.
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertTrue(pipeline.submit(2, ignore) > 0); // Fills the queue.
+        assertEquals(-1, pipeline.submit(3, ignore));
+        release.countDown();
+    }
+}
@@ -0,0 +1,114 @@
+package com.dart.core.pool;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class BufferPoolTest {
+
+    /** Stand-in for a Mat: a shape and a freed flag. */
+    private static final class Buffer {
+        final BufferPool.Key key;
+        boolean freed;
+
+        Buffer(BufferPool.Key key) {
+            this.key = key;
+        }
+    }
+
+    private final List<Buffer> freed = new ArrayList<>();
+
+    private final BufferPool.Allocator<Buffer> allocator = new BufferPool.Allocator<Buffer>() {
+        @Override
+        public Buffer allocate(BufferPool.Key key) {
+            return new Buffer(key);
+        }
+
+        @Override
+        public BufferPool.Key keyOf(Buffer buffer) {
+            return buffer.key;
+        }
+
+        @Override
+        public long bytes(BufferPool.Key key) {
+            return (long) key.width * key.height;
+        }
+
+        @Override
+        public boolean isReusable(Buffer buffer) {
+            return !buffer.freed;
+        }
+
+        @Override
+        public void free(Buffer buffer) {
+            buffer.freed = true;
+            freed.add(buffer);
+        }
+    };
+
+    @Test
+    public void reusesBuffersOfTheSameShape() {
+        BufferPool<Buffer> pool = new BufferPool.Builder<>(allocator).setMaxBytes(1000).build();
+        Buffer first = pool.acquire(10, 10, 0);
+        pool.release(first);
+
+        assertSame(first, pool.acquire(10, 10, 0));
+        assertNotSame(first, pool.acquire(10, 10, 0)); // Still out, so a new one.
+        pool.release(first);
+        assertNotSame(first, pool.acquire(10, 10, 1));  // Different type.
+
+        BufferPool.Stats stats = pool.stats();
+        assertEquals(1, stats.hits);
+        assertEquals(3, stats.misses);
+        assertEquals(1, stats.idle);
+        assertEquals(100, stats.idleBytes);
+    }
+
+    @Test
+    public void evictsLeastRecentlyReleasedBeyondBudget() {
+        BufferPool<Buffer> pool = new BufferPool.Builder<>(allocator).setMaxBytes(250).build();
+        Buffer a = pool.acquire(10, 10, 0);
+        Buffer b = pool.acquire(10, 10, 0);
+        Buffer c = pool.acquire(10, 10, 0);
+        pool.release(a);
+        pool.release(b);
+        pool.release(c);
+
+        assertEquals(1, freed.size());
+        assertSame(a, freed.get(0));
+        assertEquals(1, pool.stats().evictions);
+        assertEquals(200, pool.stats().idleBytes);
+        assertSame(c, pool.acquire(10, 10, 0)); // Most recently released first.
+
+        Buffer huge = pool.acquire(100, 100, 0);
+        pool.release(huge);
+        assertTrue(huge.freed); // Larger than the whole budget.
+    }
+
+    @Test
+    public void ignoresDoubleAndDeadReleases() {
+        BufferPool<Buffer> pool = new BufferPool.Builder<>(allocator).build();
+        Buffer a = pool.acquire(4, 4, 0);
+        pool.release(a);
+        pool.release(a);
+        pool.release(null);
+        assertEquals(1, pool.stats().idle);
+
+        Buffer dead = pool.acquire(4, 4, 0);
+        dead.freed = true;
+        pool.release(dead);
+        assertEquals(0, pool.stats().idle);
+
+        pool.release(pool.acquire(8, 8, 0));
+        pool.clear();
+        assertEquals(0, pool.stats().idle);
+        assertEquals(0, pool.stats().idleBytes);
+        assertEquals(1, freed.size());
+    }
+}
@@ -0,0 +1,94 @@
+package com.dart.core.skew;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class MomentSkewEstimatorTest {
+
+    /**
+     * Draws a dark rectangle on white paper, tilted counter-clockwise on screen by
+     * {@code theta} degrees.
+     */
+    static byte[] tiltedBlock(int width, int height, int blockWidth, int blockHeight, double theta) {
+        byte[] pixels = new byte[width * height];
+        double t = Math.toRadians(-theta);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                double dx = x - width / 2.0;
+                double dy = y - height / 2.0;
+                double u = dx * Math.cos(t) + dy * Math.sin(t);
+                double v = -dx * Math.sin(t) + dy * Math.cos(t);
+                boolean ink = Math.abs(u) <= blockWidth / 2.0 && Math.abs(v) <= blockHeight / 2.0;
+                pixels[y * width + x] = ink ? 0 : (byte) 255;
+            }
+        }
+        return pixels;
+    }
+
+    @Test
+    public void recoversAngleAndBox() {
+        for (MomentSkewEstimator.Method method : MomentSkewEstimator.Method.values()) {
+            MomentSkewEstimator estimator = new MomentSkewEstimator.Builder().setMethod(method).build();
+            for (double theta : new double[]{-20, -7.5, 0, 3, 12}) {
+                SkewBox box = estimator.estimate(tiltedBlock(400, 300, 240, 60, theta), 400, 300);
+                assertEquals(method + " " + theta, theta, box.angle, 0.5);
+                assertEquals(method + " " + theta, 240, box.width, 4);
+                assertEquals(method + " " + theta, 60, box.height, 4);
+                assertEquals(200, box.centerX, 1);
+                assertEquals(150, box.centerY, 1);
+            }
+        }
+    }
+
+    @Test
+    public void erodesLikeOpenCv() {
+        // Compared with a 3x3 erosion where pixels beyond the edge count as foreground.
+        Random random = new Random(3);
+        int width = 23;
+        int height = 17;
+        byte[] pixels = new byte[width * height];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = random.nextInt(5) == 0 ? (byte) 255 : (byte) random.nextInt(200);
+        }
+        long expected = 0;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                boolean ink = true;
+                for (int dy = -1; dy <= 1; dy++) {
+                    for (int dx = -1; dx <= 1; dx++) {
+                        int sx = x + dx;
+                        int sy = y + dy;
+                        if (sx >= 0 && sx < width && sy >= 0 && sy < height) {
+                            ink &= (pixels[sy * width + sx] & 0xFF) <= 200;
+                        }
+                    }
+                }
+                if (ink) {
+                    expected++;
+                }
+            }
+        }
+        MomentSkewEstimator estimator = new MomentSkewEstimator.Builder().build();
+        assertEquals(expected, estimator.estimate(pixels, width, height).count);
+
+        // Same image inside a wider stride, behind an offset.
+        int stride = width + 5;
+        byte[] padded = new byte[3 + stride * height];
+        for (int y = 0; y < height; y++) {
+            System.arraycopy(pixels, y * width, padded, 3 + y * stride, width);
+        }
+        assertEquals(expected, estimator.estimate(ByteBuffer.wrap(padded), 3, stride, width, height).count);
+    }
+
+    @Test
+    public void blankImageHasNoEstimate() {
+        byte[] paper = new byte[40 * 30];
+        java.util.Arrays.fill(paper, (byte) 255);
+        assertNull(new MomentSkewEstimator.Builder().build().estimate(paper, 40, 30));
+    }
+}
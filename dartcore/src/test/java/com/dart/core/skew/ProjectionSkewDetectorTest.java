@@ -0,0 +1,61 @@
+package com.dart.core.skew;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class ProjectionSkewDetectorTest {
+
+    /**
+     * Draws horizontal text-like lines and then skews them so that rotating the image by
+     * {@code -theta} degrees makes them horizontal again.
+     */
+    static byte[] skewedLines(int width, int height, double theta) {
+        byte[] pixels = new byte[width * height];
+        double slope = -Math.tan(Math.toRadians(theta));
+        for (int line = 60; line < height - 60; line += 40) {
+            for (int x = 0; x < width; x++) {
+                int y = (int) Math.round(line + slope * (x - width / 2.0));
+                for (int t = 0; t < 3; t++) {
+                    if (y + t >= 0 && y + t < height) {
+                        pixels[(y + t) * width + x] = (byte) 255;
+                    }
+                }
+            }
+        }
+        return pixels;
+    }
+
+    @Test
+    public void detectsSyntheticSkew() {
+        ProjectionSkewDetector detector = new ProjectionSkewDetector();
+        for (int theta : new int[]{-12, -5, 4, 9}) {
+            detector.load(skewedLines(400, 300, theta), 400, 300);
+            assertEquals(theta, detector.detect(-15, 15, 1));
+        }
+    }
+
+    @Test
+    public void projectionAtZeroIsRowCount() {
+        byte[] pixels = new byte[5 * 4];
+        pixels[0] = pixels[1] = pixels[2] = (byte) 255; // row 0: 3 pixels
+        pixels[3 * 5 + 4] = (byte) 255;                 // row 3: 1 pixel
+        ProjectionSkewDetector detector = new ProjectionSkewDetector();
+        detector.load(pixels, 5, 4);
+        int[] proj = detector.projection(0);
+        assertEquals(3, proj[0]);
+        assertEquals(0, proj[1]);
+        assertEquals(1, proj[3]);
+        assertEquals(4, detector.foregroundCount());
+    }
+
+    @Test
+    public void honoursStrideAndForeground() {
+        // 2x2 image embedded in a 3-byte stride; foreground is black.
+        byte[] pixels = {9, 0, 7, (byte) 255, 0, 7};
+        ProjectionSkewDetector detector = new ProjectionSkewDetector(0);
+        detector.load(pixels, 0, 3, 2, 2);
+        assertEquals(1, detector.projection(0)[0]);
+        assertEquals(1, detector.projection(0)[1]);
+    }
+}
@@ -0,0 +1,42 @@
+package com.dart.core.skew;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SkewSearchTest {
+
+    @Test
+    public void findsSubDegreeSkew() {
+        SkewSearch search = new SkewSearch.Builder().build();
+        for (double theta : new double[]{-7.3, -0.6, 0.4, 2.5, 11.8}) {
+            byte[] pixels = ProjectionSkewDetectorTest.skewedLines(600, 400, theta);
+            SkewEstimate estimate = search.search(pixels, 600, 400);
+            assertEquals("theta " + theta, theta, estimate.angle, 0.15);
+        }
+    }
+
+    @Test
+    public void reportsEvaluations() {
+        SkewSearch search = new SkewSearch.Builder()
+                .setRange(-10, 10)
+                .setCoarseStep(2)
+                .setCriterion(SkewCriteria.SQUARED_DIFFERENCE)
+                .build();
+        SkewEstimate estimate = search.search(ProjectionSkewDetectorTest.skewedLines(400, 300, 3), 400, 300);
+        assertEquals(11, estimate.coarseEvaluations);
+        assertTrue(estimate.fineEvaluations > 2);
+        assertEquals(estimate.coarseEvaluations + estimate.fineEvaluations, estimate.evaluations());
+        assertEquals(3, estimate.angle, 0.2);
+    }
+
+    @Test
+    public void criteriaScoreFlatProfileLowest() {
+        int[] flat = {4, 4, 4, 4};
+        int[] peaked = {0, 16, 0, 0};
+        for (SkewCriterion c : new SkewCriterion[]{SkewCriteria.PEAK, SkewCriteria.VARIANCE, SkewCriteria.SQUARED_DIFFERENCE}) {
+            assertTrue(c.score(peaked, 4) > c.score(flat, 4));
+        }
+    }
+}
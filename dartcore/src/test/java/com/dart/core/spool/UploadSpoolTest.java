@@ -0,0 +1,198 @@
+package com.dart.core.spool;
+
+import com.dart.core.net.OcrServerException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class UploadSpoolTest {
+
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = File.createTempFile("spool", "");
+        dir.delete();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    private static byte[] payload(int n) {
+        byte[] payload = new byte[n];
+        for (int i = 0; i < n; i++) {
+            payload[i] = (byte) (i * 31 + n);
+        }
+        return payload;
+    }
+
+    @Test
+    public void recoversPendingRecordsAfterReopen() throws IOException {
+        UploadSpool spool = UploadSpool.open(dir, 1 << 20);
+        SpoolRecord a = spool.append(1, 2, "a.jpg", payload(100), false);
+        SpoolRecord b = spool.append(0, 2, "b.jpg", payload(50), false);
+        spool.append(0, 0, "c.jpg", payload(10), false);
+        spool.ack(b.id);
+        spool.close();
+
+        UploadSpool reopened = UploadSpool.open(dir, 1 << 20);
+        assertEquals(2, reopened.pendingCount());
+        assertEquals(110, reopened.pendingBytes());
+        List<SpoolRecord> records = reopened.claimPending(10);
+        assertEquals(a.id, records.get(0).id);
+        assertEquals("a.jpg", records.get(0).label);
+        assertEquals(1, records.get(0).language);
+        assertArrayEquals(payload(100), reopened.readPayload(records.get(0)));
+        assertEquals("c.jpg", records.get(1).label);
+        assertTrue(reopened.append(0, 0, "d", payload(1), false).id > records.get(1).id);
+        reopened.close();
+    }
+
+    @Test
+    public void truncatesTornTail() throws IOException {
+        UploadSpool spool = UploadSpool.open(dir, 1 << 20);
+        spool.append(0, 0, "ok", payload(30), false);
+        spool.append(0, 0, "torn", payload(30), false);
+        spool.close();
+        File segment = dir.listFiles()[0];
+        RandomAccessFile raf = new RandomAccessFile(segment, "rw");
+        raf.setLength(raf.length() - 5); // Simulate a crash in the middle of the second append.
+        raf.close();
+
+        UploadSpool reopened = UploadSpool.open(dir, 1 << 20);
+        assertEquals(1, reopened.pendingCount());
+        assertEquals("ok", reopened.claimPending(1).get(0).label);
+        reopened.close();
+    }
+
+    @Test
+    public void deletesFullyAcknowledgedSegments() throws IOException {
+        UploadSpool spool = UploadSpool.open(dir, 64); // Roll after every record.
+        SpoolRecord a = spool.append(0, 0, "", payload(100), false);
+        SpoolRecord b = spool.append(0, 0, "", payload(100), false);
+        spool.ack(a.id);
+        spool.ack(b.id);
+        spool.append(0, 0, "", payload(100), false);
+        spool.close();
+        assertEquals(1, dir.listFiles().length); // Only the newest segment is left.
+    }
+
+    @Test
+    public void claimedRecordsAreNotHandedOutTwice() throws IOException {
+        UploadSpool spool = UploadSpool.open(dir, 1 << 20);
+        SpoolRecord mine = spool.append(0, 0, "", payload(1), true);
+        spool.append(0, 0, "", payload(1), false);
+        List<SpoolRecord> claimed = spool.claimPending(10);
+        assertEquals(1, claimed.size());
+        assertTrue(claimed.get(0).id != mine.id);
+        spool.release(mine.id);
+        assertEquals(mine.id, spool.claimPending(10).get(0).id);
+        spool.close();
+    }
+
+    @Test
+    public void appenderStreamsPayloadIntoRecord() throws IOException {
+        UploadSpool spool = UploadSpool.open(dir, 1 << 20);
+        UploadSpool.Appender appender = spool.appender(1, 3, "streamed");
+        byte[] data = payload(200000);
+        appender.write(data, 0, 1000);
+        for (int i = 1000; i < 2000; i++) {
+            appender.write(data[i]);
+        }
+        appender.write(data, 2000, data.length - 2000);
+        UploadSpool.Appender dropped = spool.appender(0, 0, "dropped");
+        dropped.write(payload(10));
+        dropped.abort();
+        SpoolRecord record = appender.commit(false);
+        spool.close();
+
+        assertEquals(1, dir.listFiles().length); // Staging files are gone.
+        UploadSpool reopened = UploadSpool.open(dir, 1 << 20);
+        assertEquals(1, reopened.pendingCount());
+        SpoolRecord recovered = reopened.claimPending(1).get(0);
+        assertEquals(record.id, recovered.id);
+        assertEquals(3, recovered.format);
+        assertArrayEquals(data, reopened.readPayload(recovered));
+        reopened.close();
+    }
+
+    @Test
+    public void uncommittedAppenderIsDiscardedOnOpen() throws IOException {
+        UploadSpool spool = UploadSpool.open(dir, 1 << 20);
+        spool.appender(0, 0, "crashed").write(payload(100));
+        spool.close();
+
+        UploadSpool reopened = UploadSpool.open(dir, 1 << 20);
+        assertEquals(0, reopened.pendingCount());
+        assertEquals(0, dir.listFiles().length);
+        reopened.close();
+    }
+
+    @Test
+    public void drainerRetriesWithBackoffThenDrains() throws Exception {
+        UploadSpool spool = UploadSpool.open(dir, 1 << 20);
+        for (int i = 0; i < 3; i++) {
+            spool.append(0, 0, "e" + i, payload(i + 1), false);
+        }
+        final AtomicInteger attempts = new AtomicInteger();
+        final AtomicInteger backoffs = new AtomicInteger();
+        final CountDownLatch uploaded = new CountDownLatch(2);
+        final CountDownLatch rejected = new CountDownLatch(1);
+        SpoolDrainer drainer = new SpoolDrainer.Builder(spool, new SpoolDrainer.Uploader() {
+            @Override
+            public String upload(SpoolRecord record, byte[] payload) throws IOException {
+                if (attempts.incrementAndGet() <= 2) {
+                    throw new IOException("offline");
+                }
+                if (record.label.equals("e1")) {
+                    throw new OcrServerException("unreadable");
+                }
+                return "text" + payload.length;
+            }
+        }).setInitialBackoff(10).setMaxBackoff(20).setListener(new SpoolDrainer.Listener() {
+            @Override
+            public void onUploaded(SpoolRecord record, String text) {
+                uploaded.countDown();
+            }
+
+            @Override
+            public void onRejected(SpoolRecord record, OcrServerException error) {
+                rejected.countDown();
+            }
+
+            @Override
+            public void onBackoff(long delayMillis, int pending, IOException cause) {
+                assertTrue(delayMillis <= 20);
+                backoffs.incrementAndGet();
+            }
+        }).build().start();
+
+        assertTrue(uploaded.await(5, TimeUnit.SECONDS));
+        assertTrue(rejected.await(5, TimeUnit.SECONDS));
+        assertEquals(2, backoffs.get());
+        assertEquals(0, spool.pendingCount());
+        drainer.close();
+        spool.close();
+    }
+}
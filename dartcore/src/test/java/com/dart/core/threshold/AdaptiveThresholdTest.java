@@ -0,0 +1,125 @@
+package com.dart.core.threshold;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class AdaptiveThresholdTest {
+
+    /**
+     * Unevenly lit paper with dark strokes and sensor noise.
+     */
+    static byte[] envelope(int width, int height, long seed) {
+        Random random = new Random(seed);
+        byte[] pixels = new byte[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int light = 140 + 100 * x / width - 40 * y / height; // Shadow across the envelope.
+                boolean stroke = (y / 6) % 3 == 1 && (x / 3) % 4 != 0;
+                int v = (stroke ? light / 3 : light) + random.nextInt(21) - 10;
+                pixels[y * width + x] = (byte) Math.max(0, Math.min(255, v));
+            }
+        }
+        return pixels;
+    }
+
+    /**
+     * Direct, window-by-window reference: the window sums with replicated borders, as
+     * OpenCV's box filter computes them, then the same threshold rules.
+     */
+    static byte[] reference(byte[] src, int width, int height, AdaptiveThreshold.Method method, int window,
+                            double c, double k, double r) {
+        byte[] dst = new byte[width * height];
+        int radius = window / 2;
+        int area = window * window;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                long sum = 0;
+                long sq = 0;
+                for (int dy = -radius; dy <= radius; dy++) {
+                    for (int dx = -radius; dx <= radius; dx++) {
+                        int sy = Math.max(0, Math.min(height - 1, y + dy));
+                        int sx = Math.max(0, Math.min(width - 1, x + dx));
+                        int v = src[sy * width + sx] & 0xFF;
+                        sum += v;
+                        sq += v * v;
+                    }
+                }
+                int v = src[y * width + x] & 0xFF;
+                boolean paper;
+                if (method == AdaptiveThreshold.Method.MEAN) {
+                    long mean = Math.round((double) sum / area);
+                    paper = v > mean - Math.ceil(c);
+                } else {
+                    double mean = (double) sum / area;
+                    double deviation = Math.sqrt(Math.max(0, (double) sq / area - mean * mean));
+                    double t = method == AdaptiveThreshold.Method.SAUVOLA
+                            ? mean * (1 + k * (deviation / r - 1)) : mean + k * deviation;
+                    paper = v > t;
+                }
+                dst[y * width + x] = paper ? (byte) 255 : 0;
+            }
+        }
+        return dst;
+    }
+
+    @Test
+    public void meanMatchesOpenCvSemantics() {
+        for (int window : new int[]{3, 15, 31}) {
+            byte[] src = envelope(97, 61, window);
+            byte[] dst = new byte[src.length];
+            new AdaptiveThreshold.Builder().setWindow(window).build().apply(src, dst, 97, 61);
+            assertArrayEquals("window " + window,
+                    reference(src, 97, 61, AdaptiveThreshold.Method.MEAN, window, 9, 0, 0), dst);
+        }
+    }
+
+    @Test
+    public void sauvolaAndNiblackMatchReference() {
+        byte[] src = envelope(80, 70, 3);
+        byte[] dst = new byte[src.length];
+
+        new AdaptiveThreshold.Builder().setMethod(AdaptiveThreshold.Method.SAUVOLA).setWindow(21).build()
+                .apply(src, dst, 80, 70);
+        assertArrayEquals(reference(src, 80, 70, AdaptiveThreshold.Method.SAUVOLA, 21, 0, 0.34, 128), dst);
+
+        new AdaptiveThreshold.Builder().setMethod(AdaptiveThreshold.Method.NIBLACK).setWindow(21).build()
+                .apply(src, dst, 80, 70);
+        assertArrayEquals(reference(src, 80, 70, AdaptiveThreshold.Method.NIBLACK, 21, 0, -0.2, 0), dst);
+    }
+
+    @Test
+    public void parallelMatchesSequentialAndWorksInPlace() {
+        byte[] src = envelope(300, 517, 5);
+        for (AdaptiveThreshold.Method method : AdaptiveThreshold.Method.values()) {
+            byte[] sequential = new byte[src.length];
+            new AdaptiveThreshold.Builder().setMethod(method).build().apply(src, sequential, 300, 517);
+
+            byte[] parallel = src.clone();
+            AdaptiveThreshold engine = new AdaptiveThreshold.Builder().setMethod(method).setParallelism(4).build();
+            engine.apply(parallel, parallel, 300, 517);
+            assertArrayEquals(method.toString(), sequential, parallel);
+        }
+    }
+
+    @Test
+    public void reusesBuffersAcrossSizes() {
+        AdaptiveThreshold engine = new AdaptiveThreshold.Builder().build();
+        byte[] large = envelope(120, 90, 1);
+        engine.apply(large, new byte[large.length], 120, 90);
+
+        byte[] small = envelope(40, 30, 2);
+        byte[] dst = new byte[small.length];
+        engine.apply(small, dst, 40, 30);
+        assertArrayEquals(reference(small, 40, 30, AdaptiveThreshold.Method.MEAN, 15, 9, 0, 0), dst);
+
+        byte[] flat = new byte[16];
+        Arrays.fill(flat, (byte) 200);
+        engine.apply(flat, flat, 4, 4);
+        assertEquals(255, flat[5] & 0xFF); // A flat page is all paper.
+    }
+}
@@ -0,0 +1,88 @@
+package com.dart.core.tile;
+
+import com.dart.core.threshold.AdaptiveThreshold;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+
+public class TiledExecutorTest {
+
+    private static byte[] noise(int width, int height, long seed) {
+        Random random = new Random(seed);
+        byte[] pixels = new byte[width * height];
+        for (int i = 0; i < pixels.length; i++) {
+            int light = 120 + 100 * (i % width) / width;
+            pixels[i] = (byte) (random.nextInt(4) == 0 ? light / 3 : light + random.nextInt(31) - 15);
+        }
+        return pixels;
+    }
+
+    /** Sorts every window, with replicated borders. */
+    private static byte[] referenceMedian(byte[] src, int width, int height, int size) {
+        byte[] dst = new byte[src.length];
+        int radius = size / 2;
+        int[] window = new int[size * size];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int n = 0;
+                for (int dy = -radius; dy <= radius; dy++) {
+                    for (int dx = -radius; dx <= radius; dx++) {
+                        int sy = Math.max(0, Math.min(height - 1, y + dy));
+                        int sx = Math.max(0, Math.min(width - 1, x + dx));
+                        window[n++] = src[sy * width + sx] & 0xFF;
+                    }
+                }
+                Arrays.sort(window);
+                dst[y * width + x] = (byte) window[window.length / 2];
+            }
+        }
+        return dst;
+    }
+
+    @Test
+    public void medianMatchesSortedWindows() {
+        for (int size : new int[]{3, 5, 7}) {
+            byte[] src = noise(53, 41, size);
+            byte[] dst = new byte[src.length];
+            new TiledExecutor.Builder().build().apply(src, dst, 53, 41, new MedianBlur(size));
+            assertArrayEquals("size " + size, referenceMedian(src, 53, 41, size), dst);
+        }
+    }
+
+    @Test
+    public void bandsStitchWithoutSeams() {
+        int width = 211;
+        int height = 307;
+        byte[] src = noise(width, height, 9);
+        BandFilter threshold = new AdaptiveThreshold.Builder().build();
+        BandFilter median = new MedianBlur(5);
+
+        // Whole-image passes, one filter after the other.
+        byte[] thresholded = new byte[src.length];
+        threshold.filter(Band.of(src, width, height), Band.of(thresholded, width, height), 0, height);
+        byte[] expected = referenceMedian(thresholded, width, height, 5);
+
+        // Odd band heights put band edges everywhere relative to the halos; 1 row is the extreme.
+        for (int rows : new int[]{1, 7, 64, 1000}) {
+            for (int parallelism : new int[]{1, 3}) {
+                byte[] dst = new byte[src.length];
+                new TiledExecutor.Builder().setBandRows(rows).setParallelism(parallelism).build()
+                        .apply(src, dst, width, height, threshold, median);
+                assertArrayEquals(rows + " rows, " + parallelism + " threads", expected, dst);
+            }
+        }
+    }
+
+    @Test
+    public void runsInPlace() {
+        byte[] src = noise(64, 200, 4);
+        byte[] expected = referenceMedian(src, 64, 200, 3);
+        new TiledExecutor.Builder().setBandRows(16).setParallelism(2).build()
+                .apply(src, src, 64, 200, new MedianBlur(3));
+        assertArrayEquals(expected, src);
+    }
+}
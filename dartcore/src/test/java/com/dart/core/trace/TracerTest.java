@@ -0,0 +1,74 @@
+package com.dart.core.trace;
+
+import org.junit.Test;
+
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TracerTest {
+
+    private static final long MS = 1000000;
+
+    @Test
+    public void bucketsCoverEveryValueOnce() {
+        for (long micros = 0; micros < 100000; micros++) {
+            int bucket = LatencyHistogram.bucket(micros);
+            long lower = LatencyHistogram.lowerBound(bucket);
+            assertTrue(micros + " in " + bucket, lower <= micros && micros < lower + LatencyHistogram.width(bucket));
+        }
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucket(Long.MAX_VALUE / 1000));
+    }
+
+    @Test
+    public void percentilesAreWithinBucketPrecision() {
+        LatencyHistogram h = new LatencyHistogram();
+        for (int ms = 1; ms <= 1000; ms++) {
+            h.record(ms * MS);
+        }
+
+        assertEquals(1000, h.count());
+        assertEquals(500, h.percentileMillis(50), 500 * 0.125);
+        assertEquals(990, h.percentileMillis(99), 990 * 0.125);
+        assertEquals(1000, h.maxMillis(), 0);
+        assertEquals(500.5, h.meanMillis(), 0.01);
+        assertTrue(h.percentileMillis(100) <= 1000);
+    }
+
+    @Test
+    public void ringKeepsNewestSpansInOrder() throws Exception {
+        Tracer tracer = new Tracer.Builder().setCapacity(4).build();
+        int decode = tracer.stage("decode");
+        int upload = tracer.stage("upload");
+        assertEquals(decode, tracer.stage("decode"));
+
+        for (int i = 0; i < 6; i++) {
+            tracer.record(i, i % 2 == 0 ? decode : upload, i * MS, (i + 1) * MS);
+        }
+        StringWriter out = new StringWriter();
+        tracer.writeSpans(out);
+
+        assertEquals("trace,stage,start_us,duration_us\n"
+                + "2,decode,0,1000\n"
+                + "3,upload,1000,1000\n"
+                + "4,decode,2000,1000\n"
+                + "5,upload,3000,1000\n", out.toString());
+        assertEquals(3, tracer.histogram(decode).count());
+        assertEquals(6, tracer.spans());
+    }
+
+    @Test
+    public void disabledTracerRecordsNothing() {
+        Tracer tracer = new Tracer.Builder().setEnabled(false).build();
+        int stage = tracer.stage("encode");
+
+        tracer.end(tracer.newTrace(), stage, Tracer.now());
+
+        assertEquals(0, tracer.histogram(stage).count());
+        assertEquals(0, tracer.spans());
+        tracer.setEnabled(true);
+        tracer.record(1, stage, 0, 5 * MS);
+        assertTrue(tracer.summary(), tracer.summary().contains("encode"));
+    }
+}
@@ -1,11 +1,36 @@
 package org.opencv.core;
 
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
 // C++: class Mat
 //javadoc: Mat
-public class Mat {
+/**
+ * Native n-dimensional array. The native object is deleted by {@link #close()}, or failing
+ * that by the finalizer once the Mat is garbage collected. Mats created inside a
+ * {@link MatScope} are closed with it.
+ * <p>
+ * Implements {@link Closeable} rather than {@code AutoCloseable}, which needs Android API 19.
+ */
+public class Mat implements Closeable {
 
     public final long nativeObj;
 
+    private static final AtomicLong sCreated = new AtomicLong();
+    private static final AtomicLong sClosed = new AtomicLong();
+    private static final AtomicLong sFinalized = new AtomicLong();
+
+    private boolean closed;
+    MatScope scope; // Scope that closes this Mat, if any; guarded by the owning thread.
+
+    {
+        sCreated.incrementAndGet();
+        MatScope.track(this);
+    }
+
     public Mat(long addr)
     {
         if (addr == 0)
@@ -906,9 +931,105 @@ public class Mat {
         return retVal;
     }
 
+    /**
+     * Deletes the native object now rather than at finalization. The Mat must not be used
+     * afterwards; closing it again does nothing.
+     */
     @Override
-    protected void finalize() throws Throwable {
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        sClosed.incrementAndGet();
         n_delete(nativeObj);
+    }
+
+    /**
+     * @return True once {@link #close()} has been called.
+     */
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Views the pixels of a continuous Mat in place, without copying them or a JNI call per
+     * element. The view is only valid while this Mat is open and not reallocated, e.g. by
+     * {@code create()} with another size; keep the Mat reachable while using it.
+     *
+     * @return Native-order direct buffer over all {@code total() * elemSize()} bytes.
+     * @throws UnsupportedOperationException If the Mat is not continuous; use {@link #rowCursor()}.
+     */
+    public ByteBuffer byteBuffer() {
+        if (!isContinuous()) {
+            throw new UnsupportedOperationException("Mat is not continuous; use rowCursor()");
+        }
+        return MatBuffers.wrap(dataAddr(), total() * elemSize());
+    }
+
+    /**
+     * Same as {@link #byteBuffer()}, as 32-bit integers.
+     *
+     * @return View of the elements of a {@link CvType#CV_32S} Mat, channels interleaved.
+     * @throws UnsupportedOperationException If the Mat is not continuous or not CV_32S.
+     */
+    public IntBuffer intBuffer() {
+        if (depth() != CvType.CV_32S) {
+            throw new UnsupportedOperationException("Mat depth is not CV_32S: " + CvType.typeToString(type()));
+        }
+        return byteBuffer().asIntBuffer();
+    }
+
+    /**
+     * Same as {@link #byteBuffer()}, as 32-bit floats.
+     *
+     * @return View of the elements of a {@link CvType#CV_32F} Mat, channels interleaved.
+     * @throws UnsupportedOperationException If the Mat is not continuous or not CV_32F.
+     */
+    public FloatBuffer floatBuffer() {
+        if (depth() != CvType.CV_32F) {
+            throw new UnsupportedOperationException("Mat depth is not CV_32F: " + CvType.typeToString(type()));
+        }
+        return byteBuffer().asFloatBuffer();
+    }
+
+    /**
+     * @return A cursor over the rows of this Mat, continuous or not, reading them in place.
+     */
+    public MatRowCursor rowCursor() {
+        return new MatRowCursor(this);
+    }
+
+    /**
+     * @return Number of Mats constructed so far.
+     */
+    public static long createdCount() {
+        return sCreated.get();
+    }
+
+    /**
+     * @return Number of Mats deleted by {@link #close()}, directly or through a {@link MatScope}.
+     */
+    public static long closedCount() {
+        return sClosed.get();
+    }
+
+    /**
+     * @return Number of Mats that were never closed and whose native memory was reclaimed by
+     * the finalizer instead: each one held native memory until a garbage collection.
+     */
+    public static long finalizedCount() {
+        return sFinalized.get();
+    }
+
+    @Override
+    protected void finalize() throws Throwable {
+        if (!isClosed()) {
+            sFinalized.incrementAndGet();
+            n_delete(nativeObj);
+        }
         super.finalize();
     }
 
@@ -0,0 +1,32 @@
+package org.opencv.core;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Wraps Mat memory as direct buffers through the small {@code opencv_buffers} JNI library,
+ * loaded the first time a view is made.
+ */
+final class MatBuffers {
+
+    static {
+        System.loadLibrary("opencv_buffers");
+    }
+
+    private MatBuffers() {
+    }
+
+    /**
+     * @param address  First byte.
+     * @param capacity Number of bytes.
+     * @return A native-order direct buffer over the memory, without copying it.
+     */
+    static ByteBuffer wrap(long address, long capacity) {
+        if (capacity > Integer.MAX_VALUE) {
+            throw new UnsupportedOperationException("Mat too large for a buffer view: " + capacity + " bytes");
+        }
+        return n_wrap(address, capacity).order(ByteOrder.nativeOrder());
+    }
+
+    private static native ByteBuffer n_wrap(long address, long capacity);
+}
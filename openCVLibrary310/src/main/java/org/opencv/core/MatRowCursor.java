@@ -0,0 +1,108 @@
+package org.opencv.core;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Walks the rows of a Mat that need not be continuous, such as a submat of a larger image,
+ * reading them straight from the Mat's memory. One direct buffer spans all the rows, so
+ * moving to the next row is arithmetic rather than a JNI call:
+ * <pre>
+ * MatRowCursor rows = mat.rowCursor();
+ * ByteBuffer pixels = rows.buffer();
+ * while (rows.next()) {
+ *     int at = rows.offset();
+ *     for (int x = 0; x &lt; rows.rowBytes(); x++) {
+ *         int v = pixels.get(at + x) &amp; 0xFF;
+ *     }
+ * }
+ * </pre>
+ * Like the buffers of {@link Mat#byteBuffer()}, the cursor reads the Mat's memory in place: it
+ * is only valid while the Mat is open and not reallocated.
+ */
+public final class MatRowCursor {
+
+    private final ByteBuffer buffer;
+    private final int rows;
+    private final int step;
+    private final int rowBytes;
+    private int row = -1;
+
+    MatRowCursor(Mat mat) {
+        rows = mat.rows();
+        step = (int) (mat.step1(0) * mat.elemSize1());
+        rowBytes = (int) (mat.cols() * mat.elemSize());
+        long span = rows == 0 ? 0 : (long) (rows - 1) * step + rowBytes;
+        buffer = MatBuffers.wrap(mat.dataAddr(), span);
+    }
+
+    /**
+     * Moves to the next row; the cursor starts before the first.
+     *
+     * @return False once past the last row.
+     */
+    public boolean next() {
+        if (row < rows) {
+            row++;
+        }
+        return row < rows;
+    }
+
+    /**
+     * @return The current row.
+     */
+    public int row() {
+        return row;
+    }
+
+    /**
+     * @return Index in {@link #buffer()} of the current row's first byte.
+     */
+    public int offset() {
+        return offset(row);
+    }
+
+    /**
+     * @param row Any row of the Mat.
+     * @return Index in {@link #buffer()} of its first byte.
+     */
+    public int offset(int row) {
+        if (row < 0 || row >= rows) {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + rows);
+        }
+        return row * step;
+    }
+
+    /**
+     * @return Distance in {@link #buffer()} between the starts of consecutive rows, in bytes.
+     */
+    public int step() {
+        return step;
+    }
+
+    /**
+     * @return Bytes of pixel data per row: columns times element size.
+     */
+    public int rowBytes() {
+        return rowBytes;
+    }
+
+    /**
+     * @return Native-order direct buffer spanning all rows, padding between rows included;
+     * index it with {@link #offset()}.
+     */
+    public ByteBuffer buffer() {
+        return buffer;
+    }
+
+    /**
+     * Copies the current row into an array.
+     *
+     * @param dst    Destination.
+     * @param offset Index in {@code dst} of the first byte; {@link #rowBytes()} are written.
+     */
+    public void get(byte[] dst, int offset) {
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset());
+        view.get(dst, offset, rowBytes);
+    }
+}
@@ -0,0 +1,134 @@
+package org.opencv.core;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Arena for the Mats of one block of code: every Mat constructed on this thread while the
+ * scope is open, including those OpenCV methods return, is closed when the scope is.
+ * <pre>
+ * MatScope scope = MatScope.open();
+ * try {
+ *     Mat rotation = Imgproc.getRotationMatrix2D(center, angle, 1.0);
+ *     ...
+ *     return scope.keep(result); // Outlives the scope.
+ * } finally {
+ *     scope.close();
+ * }
+ * </pre>
+ * Scopes nest: a Mat belongs to the innermost open scope of the thread that created it, and
+ * {@link #keep} hands it to the enclosing scope, if there is one. Scopes must be closed on
+ * the thread that opened them, innermost first.
+ */
+public final class MatScope implements Closeable {
+
+    private static final ThreadLocal<MatScope> current = new ThreadLocal<MatScope>();
+
+    private final MatScope parent;
+    private final Thread thread;
+    private final List<Mat> mats = new ArrayList<Mat>();
+    private boolean closed;
+
+    private MatScope(MatScope parent) {
+        this.parent = parent;
+        this.thread = Thread.currentThread();
+    }
+
+    /**
+     * @return A new scope, the innermost of this thread until it is closed.
+     */
+    public static MatScope open() {
+        MatScope scope = new MatScope(current.get());
+        current.set(scope);
+        return scope;
+    }
+
+    /**
+     * Called by every Mat constructor.
+     */
+    static void track(Mat mat) {
+        MatScope scope = current.get();
+        if (scope != null) {
+            mat.scope = scope;
+            scope.mats.add(mat);
+        }
+    }
+
+    /**
+     * Takes a Mat out of this scope, so that it is not closed with it; it then belongs to the
+     * enclosing scope, or, if there is none, to the caller.
+     *
+     * @param mat A Mat created in this scope.
+     * @param <T> Mat type.
+     * @return The same Mat.
+     */
+    public <T extends Mat> T keep(T mat) {
+        if (mat.scope == this) {
+            mat.scope = parent; // Its entry here is skipped on close.
+            if (parent != null) {
+                parent.mats.add(mat);
+            }
+        }
+        return mat;
+    }
+
+    /**
+     * Takes a Mat out of whichever scope it was created in, so that only the caller closes
+     * it, e.g. a buffer kept in a pool across captures. Call on the thread that created it.
+     *
+     * @param mat Any Mat.
+     * @param <T> Mat type.
+     * @return The same Mat.
+     */
+    public static <T extends Mat> T detach(T mat) {
+        mat.scope = null;
+        return mat;
+    }
+
+    /**
+     * @return Number of Mats this scope will close.
+     */
+    public int size() {
+        int n = 0;
+        for (Mat mat : mats) {
+            if (mat.scope == this) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Closes every Mat still in the scope, newest first, and makes the enclosing scope the
+     * innermost again. Closing a scope twice does nothing.
+     *
+     * @throws IllegalStateException If called on another thread, or with an inner scope still open.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        if (Thread.currentThread() != thread) {
+            throw new IllegalStateException("MatScope closed on another thread");
+        }
+        if (current.get() != this) {
+            throw new IllegalStateException("Inner MatScope still open");
+        }
+        closed = true;
+        if (parent != null) {
+            current.set(parent);
+        } else {
+            current.remove();
+        }
+        for (int i = mats.size() - 1; i >= 0; i--) {
+            Mat mat = mats.get(i);
+            if (mat.scope == this) {
+                mat.scope = null;
+                mat.close();
+            }
+        }
+        mats.clear();
+    }
+}
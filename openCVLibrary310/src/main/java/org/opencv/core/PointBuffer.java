@@ -0,0 +1,164 @@
+package org.opencv.core;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of integer points packed into a single {@code int[]} as x0, y0, x1, y1, ...:
+ * the layout of a {@code CV_32SC2} Mat such as {@link MatOfPoint} or the output of
+ * {@code Core.findNonZero}. Points are read by index with {@link #x(int)} and {@link #y(int)}
+ * and moved to and from Mats in one bulk copy, so large point sets never become one
+ * {@link Point} object each.
+ * <p>
+ * {@link #read(Mat)} reuses the array once it is large enough, so one buffer can serve
+ * capture after capture without allocating. Not thread-safe.
+ */
+public final class PointBuffer {
+
+    private int[] xy;
+    private int size;
+
+    /**
+     * Creates an empty buffer with room for 16 points.
+     */
+    public PointBuffer() {
+        this(16);
+    }
+
+    /**
+     * @param capacity Points the buffer holds before it grows.
+     */
+    public PointBuffer(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity must be >= 0: " + capacity);
+        }
+        xy = new int[2 * capacity];
+    }
+
+    /**
+     * @return Number of points.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param i Index of a point.
+     * @return Its x coordinate.
+     */
+    public int x(int i) {
+        return xy[2 * check(i)];
+    }
+
+    /**
+     * @param i Index of a point.
+     * @return Its y coordinate.
+     */
+    public int y(int i) {
+        return xy[2 * check(i) + 1];
+    }
+
+    /**
+     * @param i Index of a point.
+     * @return A new {@link Point} with its coordinates, for the occasional caller that needs one.
+     */
+    public Point get(int i) {
+        return new Point(x(i), y(i));
+    }
+
+    /**
+     * Replaces a point.
+     *
+     * @param i Index of the point.
+     * @param x New x coordinate.
+     * @param y New y coordinate.
+     */
+    public void set(int i, int x, int y) {
+        check(i);
+        xy[2 * i] = x;
+        xy[2 * i + 1] = y;
+    }
+
+    /**
+     * Appends a point, growing the array if needed.
+     *
+     * @param x X coordinate.
+     * @param y Y coordinate.
+     */
+    public void add(int x, int y) {
+        ensureCapacity(size + 1);
+        xy[2 * size] = x;
+        xy[2 * size + 1] = y;
+        size++;
+    }
+
+    /**
+     * Removes every point, keeping the array.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * @return The backing array, x0, y0, x1, y1, ...; only the first {@code 2 * size()}
+     * entries are points. Changes write through until the buffer next grows.
+     */
+    public int[] array() {
+        return xy;
+    }
+
+    /**
+     * Replaces the contents with the points of a Mat, in one copy out of native memory.
+     *
+     * @param m A {@code CV_32SC2} Mat with one point per element, e.g. a {@link MatOfPoint}
+     *          or the locations from {@code Core.findNonZero}; may be empty.
+     * @return This buffer.
+     */
+    public PointBuffer read(Mat m) {
+        int count = m.empty() ? 0 : m.checkVector(2, CvType.CV_32S);
+        if (count < 0) {
+            throw new IllegalArgumentException("Mat is not a vector of CV_32SC2 points: " + m);
+        }
+        ensureCapacity(count);
+        size = count;
+        if (count > 0) {
+            m.get(0, 0, xy); // Copies no more than the Mat holds, however long the array.
+        }
+        return this;
+    }
+
+    /**
+     * Replaces the contents of a Mat with these points, in one copy into native memory.
+     *
+     * @param m Receives the points; reallocated to {@code size()} rows unless already that shape.
+     * @return {@code m}.
+     */
+    public MatOfPoint write(MatOfPoint m) {
+        if (size == 0) {
+            m.release();
+            return m;
+        }
+        m.create(size, 1, CvType.CV_32SC2);
+        m.put(0, 0, xy); // Copies no more than the Mat holds: the first size() points.
+        return m;
+    }
+
+    /**
+     * @return A new {@link MatOfPoint} holding these points.
+     */
+    public MatOfPoint toMat() {
+        return write(new MatOfPoint());
+    }
+
+    private void ensureCapacity(int points) {
+        if (xy.length < 2 * points) {
+            xy = Arrays.copyOf(xy, 2 * Math.max(points, xy.length)); // At least doubles.
+        }
+    }
+
+    private int check(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("Point " + i + " of " + size);
+        }
+        return i;
+    }
+}
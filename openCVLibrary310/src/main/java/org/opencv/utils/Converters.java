@@ -37,38 +37,35 @@ public class Converters {
         if (count > 0) {
             switch (typeDepth) {
             case CvType.CV_32S: {
-                res = new Mat(count, 1, CvType.CV_32SC2);
                 int[] buff = new int[count * 2];
                 for (int i = 0; i < count; i++) {
                     Point p = pts.get(i);
                     buff[i * 2] = (int) p.x;
                     buff[i * 2 + 1] = (int) p.y;
                 }
-                res.put(0, 0, buff);
+                res = xy_int_to_Mat(buff);
             }
                 break;
 
             case CvType.CV_32F: {
-                res = new Mat(count, 1, CvType.CV_32FC2);
                 float[] buff = new float[count * 2];
                 for (int i = 0; i < count; i++) {
                     Point p = pts.get(i);
                     buff[i * 2] = (float) p.x;
                     buff[i * 2 + 1] = (float) p.y;
                 }
-                res.put(0, 0, buff);
+                res = xy_float_to_Mat(buff);
             }
                 break;
 
             case CvType.CV_64F: {
-                res = new Mat(count, 1, CvType.CV_64FC2);
                 double[] buff = new double[count * 2];
                 for (int i = 0; i < count; i++) {
                     Point p = pts.get(i);
                     buff[i * 2] = p.x;
                     buff[i * 2 + 1] = p.y;
                 }
-                res.put(0, 0, buff);
+                res = xy_double_to_Mat(buff);
             }
                 break;
 
@@ -164,20 +161,17 @@ public class Converters {
 
         pts.clear();
         if (type == CvType.CV_32SC2) {
-            int[] buff = new int[2 * count];
-            m.get(0, 0, buff);
+            int[] buff = Mat_to_xy_int(m);
             for (int i = 0; i < count; i++) {
                 pts.add(new Point(buff[i * 2], buff[i * 2 + 1]));
             }
         } else if (type == CvType.CV_32FC2) {
-            float[] buff = new float[2 * count];
-            m.get(0, 0, buff);
+            float[] buff = Mat_to_xy_float(m);
             for (int i = 0; i < count; i++) {
                 pts.add(new Point(buff[i * 2], buff[i * 2 + 1]));
             }
         } else if (type == CvType.CV_64FC2) {
-            double[] buff = new double[2 * count];
-            m.get(0, 0, buff);
+            double[] buff = Mat_to_xy_double(m);
             for (int i = 0; i < count; i++) {
                 pts.add(new Point(buff[i * 2], buff[i * 2 + 1]));
             }
@@ -268,20 +262,12 @@ public class Converters {
     }
 
     public static Mat vector_float_to_Mat(List<Float> fs) {
-        Mat res;
         int count = (fs != null) ? fs.size() : 0;
-        if (count > 0) {
-            res = new Mat(count, 1, CvType.CV_32FC1);
-            float[] buff = new float[count];
-            for (int i = 0; i < count; i++) {
-                float f = fs.get(i);
-                buff[i] = f;
-            }
-            res.put(0, 0, buff);
-        } else {
-            res = new Mat();
+        float[] buff = new float[count];
+        for (int i = 0; i < count; i++) {
+            buff[i] = fs.get(i);
         }
-        return res;
+        return array_float_to_Mat(buff);
     }
 
     public static void Mat_to_vector_float(Mat m, List<Float> fs) {
@@ -293,28 +279,19 @@ public class Converters {
                     "CvType.CV_32FC1 != m.type() ||  m.cols()!=1\n" + m);
 
         fs.clear();
-        float[] buff = new float[count];
-        m.get(0, 0, buff);
+        float[] buff = Mat_to_array_float(m);
         for (int i = 0; i < count; i++) {
             fs.add(buff[i]);
         }
     }
 
     public static Mat vector_uchar_to_Mat(List<Byte> bs) {
-        Mat res;
         int count = (bs != null) ? bs.size() : 0;
-        if (count > 0) {
-            res = new Mat(count, 1, CvType.CV_8UC1);
-            byte[] buff = new byte[count];
-            for (int i = 0; i < count; i++) {
-                byte b = bs.get(i);
-                buff[i] = b;
-            }
-            res.put(0, 0, buff);
-        } else {
-            res = new Mat();
+        byte[] buff = new byte[count];
+        for (int i = 0; i < count; i++) {
+            buff[i] = bs.get(i);
         }
-        return res;
+        return array_uchar_to_Mat(buff);
     }
 
     public static void Mat_to_vector_uchar(Mat m, List<Byte> us) {
@@ -326,45 +303,28 @@ public class Converters {
                     "CvType.CV_8UC1 != m.type() ||  m.cols()!=1\n" + m);
 
         us.clear();
-        byte[] buff = new byte[count];
-        m.get(0, 0, buff);
+        byte[] buff = Mat_to_array_uchar(m);
         for (int i = 0; i < count; i++) {
             us.add(buff[i]);
         }
     }
 
     public static Mat vector_char_to_Mat(List<Byte> bs) {
-        Mat res;
         int count = (bs != null) ? bs.size() : 0;
-        if (count > 0) {
-            res = new Mat(count, 1, CvType.CV_8SC1);
-            byte[] buff = new byte[count];
-            for (int i = 0; i < count; i++) {
-                byte b = bs.get(i);
-                buff[i] = b;
-            }
-            res.put(0, 0, buff);
-        } else {
-            res = new Mat();
+        byte[] buff = new byte[count];
+        for (int i = 0; i < count; i++) {
+            buff[i] = bs.get(i);
         }
-        return res;
+        return array_char_to_Mat(buff);
     }
 
     public static Mat vector_int_to_Mat(List<Integer> is) {
-        Mat res;
         int count = (is != null) ? is.size() : 0;
-        if (count > 0) {
-            res = new Mat(count, 1, CvType.CV_32SC1);
-            int[] buff = new int[count];
-            for (int i = 0; i < count; i++) {
-                int v = is.get(i);
-                buff[i] = v;
-            }
-            res.put(0, 0, buff);
-        } else {
-            res = new Mat();
+        int[] buff = new int[count];
+        for (int i = 0; i < count; i++) {
+            buff[i] = is.get(i);
         }
-        return res;
+        return array_int_to_Mat(buff);
     }
 
     public static void Mat_to_vector_int(Mat m, List<Integer> is) {
@@ -376,8 +336,7 @@ public class Converters {
                     "CvType.CV_32SC1 != m.type() ||  m.cols()!=1\n" + m);
 
         is.clear();
-        int[] buff = new int[count];
-        m.get(0, 0, buff);
+        int[] buff = Mat_to_array_int(m);
         for (int i = 0; i < count; i++) {
             is.add(buff[i]);
         }
@@ -392,8 +351,7 @@ public class Converters {
                     "CvType.CV_8SC1 != m.type() ||  m.cols()!=1\n" + m);
 
         bs.clear();
-        byte[] buff = new byte[count];
-        m.get(0, 0, buff);
+        byte[] buff = Mat_to_array_char(m);
         for (int i = 0; i < count; i++) {
             bs.add(buff[i]);
         }
@@ -602,20 +560,12 @@ public class Converters {
     }
 
     public static Mat vector_double_to_Mat(List<Double> ds) {
-        Mat res;
         int count = (ds != null) ? ds.size() : 0;
-        if (count > 0) {
-            res = new Mat(count, 1, CvType.CV_64FC1);
-            double[] buff = new double[count];
-            for (int i = 0; i < count; i++) {
-                double v = ds.get(i);
-                buff[i] = v;
-            }
-            res.put(0, 0, buff);
-        } else {
-            res = new Mat();
+        double[] buff = new double[count];
+        for (int i = 0; i < count; i++) {
+            buff[i] = ds.get(i);
         }
-        return res;
+        return array_double_to_Mat(buff);
     }
 
     public static void Mat_to_vector_double(Mat m, List<Double> ds) {
@@ -627,8 +577,7 @@ public class Converters {
                     "CvType.CV_64FC1 != m.type() ||  m.cols()!=1\n" + m);
 
         ds.clear();
-        double[] buff = new double[count];
-        m.get(0, 0, buff);
+        double[] buff = Mat_to_array_double(m);
         for (int i = 0; i < count; i++) {
             ds.add(buff[i]);
         }
@@ -733,4 +682,127 @@ public class Converters {
         }
         mats.clear();
     }
+
+    // Primitive arrays, without boxing: one element per row for the scalar types, packed
+    // x0, y0, x1, y1, ... for the point types. Empty or null arrays give an empty Mat.
+
+    public static Mat array_int_to_Mat(int[] is) {
+        return array_to_Mat(is, is != null ? is.length : 0, CvType.CV_32SC1);
+    }
+
+    public static int[] Mat_to_array_int(Mat m) {
+        int[] buff = new int[rows(m, CvType.CV_32SC1)];
+        if (buff.length > 0)
+            m.get(0, 0, buff);
+        return buff;
+    }
+
+    public static Mat array_float_to_Mat(float[] fs) {
+        return array_to_Mat(fs, fs != null ? fs.length : 0, CvType.CV_32FC1);
+    }
+
+    public static float[] Mat_to_array_float(Mat m) {
+        float[] buff = new float[rows(m, CvType.CV_32FC1)];
+        if (buff.length > 0)
+            m.get(0, 0, buff);
+        return buff;
+    }
+
+    public static Mat array_double_to_Mat(double[] ds) {
+        return array_to_Mat(ds, ds != null ? ds.length : 0, CvType.CV_64FC1);
+    }
+
+    public static double[] Mat_to_array_double(Mat m) {
+        double[] buff = new double[rows(m, CvType.CV_64FC1)];
+        if (buff.length > 0)
+            m.get(0, 0, buff);
+        return buff;
+    }
+
+    public static Mat array_uchar_to_Mat(byte[] bs) {
+        return array_to_Mat(bs, bs != null ? bs.length : 0, CvType.CV_8UC1);
+    }
+
+    public static byte[] Mat_to_array_uchar(Mat m) {
+        byte[] buff = new byte[rows(m, CvType.CV_8UC1)];
+        if (buff.length > 0)
+            m.get(0, 0, buff);
+        return buff;
+    }
+
+    public static Mat array_char_to_Mat(byte[] bs) {
+        return array_to_Mat(bs, bs != null ? bs.length : 0, CvType.CV_8SC1);
+    }
+
+    public static byte[] Mat_to_array_char(Mat m) {
+        byte[] buff = new byte[rows(m, CvType.CV_8SC1)];
+        if (buff.length > 0)
+            m.get(0, 0, buff);
+        return buff;
+    }
+
+    public static Mat xy_int_to_Mat(int[] xy) {
+        return array_to_Mat(xy, points(xy != null ? xy.length : 0), CvType.CV_32SC2);
+    }
+
+    public static int[] Mat_to_xy_int(Mat m) {
+        int[] buff = new int[2 * rows(m, CvType.CV_32SC2)];
+        if (buff.length > 0)
+            m.get(0, 0, buff);
+        return buff;
+    }
+
+    public static Mat xy_float_to_Mat(float[] xy) {
+        return array_to_Mat(xy, points(xy != null ? xy.length : 0), CvType.CV_32FC2);
+    }
+
+    public static float[] Mat_to_xy_float(Mat m) {
+        float[] buff = new float[2 * rows(m, CvType.CV_32FC2)];
+        if (buff.length > 0)
+            m.get(0, 0, buff);
+        return buff;
+    }
+
+    public static Mat xy_double_to_Mat(double[] xy) {
+        return array_to_Mat(xy, points(xy != null ? xy.length : 0), CvType.CV_64FC2);
+    }
+
+    public static double[] Mat_to_xy_double(Mat m) {
+        double[] buff = new double[2 * rows(m, CvType.CV_64FC2)];
+        if (buff.length > 0)
+            m.get(0, 0, buff);
+        return buff;
+    }
+
+    // Creates a count x 1 Mat of the type and copies the array into it in one call.
+    private static Mat array_to_Mat(Object buff, int count, int type) {
+        if (count == 0)
+            return new Mat();
+        Mat res = new Mat(count, 1, type);
+        if (buff instanceof int[])
+            res.put(0, 0, (int[]) buff);
+        else if (buff instanceof float[])
+            res.put(0, 0, (float[]) buff);
+        else if (buff instanceof double[])
+            res.put(0, 0, (double[]) buff);
+        else
+            res.put(0, 0, (byte[]) buff);
+        return res;
+    }
+
+    private static int points(int length) {
+        if (length % 2 != 0)
+            throw new java.lang.IllegalArgumentException("Packed xy array has odd length " + length);
+        return length / 2;
+    }
+
+    // Rows of a single-column Mat of the given type.
+    private static int rows(Mat m, int type) {
+        if (m == null)
+            throw new java.lang.IllegalArgumentException("Input Mat can't be null");
+        if (type != m.type() || m.cols() != 1)
+            throw new java.lang.IllegalArgumentException(
+                    "CvType." + CvType.typeToString(type) + " != m.type() ||  m.cols()!=1\n" + m);
+        return m.rows();
+    }
 }
@@ -0,0 +1,10 @@
+LOCAL_PATH := $(call my-dir)
+
+include $(CLEAR_VARS)
+
+# Direct ByteBuffer views of Mat memory (org.opencv.core.MatBuffers). Needs only jni.h, not
+# the OpenCV headers: the Mat's data address comes from Mat.dataAddr() on the Java side.
+LOCAL_MODULE    := opencv_buffers
+LOCAL_SRC_FILES := mat_buffers.cpp
+
+include $(BUILD_SHARED_LIBRARY)
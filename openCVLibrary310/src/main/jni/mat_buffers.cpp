@@ -0,0 +1,11 @@
+#include <jni.h>
+
+extern "C" {
+JNIEXPORT jobject JNICALL Java_org_opencv_core_MatBuffers_n_1wrap(JNIEnv*, jclass, jlong address, jlong capacity);
+
+// Wraps native memory, without copying it, as a java.nio direct ByteBuffer.
+JNIEXPORT jobject JNICALL Java_org_opencv_core_MatBuffers_n_1wrap(JNIEnv* env, jclass, jlong address, jlong capacity)
+{
+    return env->NewDirectByteBuffer(reinterpret_cast<void*>(address), capacity);
+}
+}
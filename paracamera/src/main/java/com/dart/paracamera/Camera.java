@@ -46,6 +46,48 @@ public class Camera {
      */
     public static int REQUEST_TAKE_PHOTO = 1234;
 
+    /** Step of {@link #resizeAndGetCameraBitmap(int, StepTimer)}: decoding and downsampling the file. */
+    public static final int STEP_DECODE = 0;
+    /** Step of {@link #resizeAndGetCameraBitmap(int, StepTimer)}: correcting the orientation. */
+    public static final int STEP_ROTATE = 1;
+    /** Step of {@link #resizeAndGetCameraBitmap(int, StepTimer)}: saving the processed image back. */
+    public static final int STEP_SAVE = 2;
+
+    /**
+     * Receives the duration of each step of processing a captured image, for profiling.
+     */
+    public interface StepTimer {
+        /**
+         * Called on the processing thread after each step that ran.
+         *
+         * @param step       One of {@link #STEP_DECODE}, {@link #STEP_ROTATE}, {@link #STEP_SAVE}.
+         * @param startNanos {@link System#nanoTime()} when the step started.
+         * @param endNanos   {@link System#nanoTime()} when the step ended.
+         */
+        void onStep(int step, long startNanos, long endNanos);
+    }
+
+    /**
+     * Source of reusable bitmaps for processing captured images, so that repeated captures of
+     * the same size need not allocate new ones. See {@link Builder#setBitmapPool(BitmapPool)}.
+     */
+    public interface BitmapPool {
+        /**
+         * @param width  Bitmap width.
+         * @param height Bitmap height.
+         * @param config Pixel format.
+         * @return A mutable bitmap of that size and format, with undefined contents.
+         */
+        Bitmap acquire(int width, int height, Bitmap.Config config);
+
+        /**
+         * Takes back a bitmap the camera no longer uses.
+         *
+         * @param bitmap A bitmap from {@link #acquire} or from decoding.
+         */
+        void release(Bitmap bitmap);
+    }
+
     // Member variables
     private Context context;
     private Activity activity;
@@ -59,6 +101,7 @@ public class Camera {
     private int imageHeight;
     private int compression;
     private boolean isCorrectOrientationRequired;
+    private BitmapPool bitmapPool; // Null to allocate and recycle bitmaps.
     private MODE mode;
 
     private String authority; // FileProvider authority string.
@@ -80,6 +123,7 @@ public class Camera {
         isCorrectOrientationRequired = builder.isCorrectOrientationRequired;
         compression = builder.compression;
         imageHeight = builder.imageHeight;
+        bitmapPool = builder.bitmapPool;
         authority = context.getApplicationContext().getPackageName() + ".imageprovider"; // Construct FileProvider authority.
     }
 
@@ -182,6 +226,16 @@ public class Camera {
         return resizeAndGetCameraBitmap(imageHeight);
     }
 
+    /**
+     * Same as {@link #getCameraBitmap()}, reporting how long each processing step took.
+     *
+     * @param timer Receives the step durations; may be null.
+     * @return The processed {@link Bitmap}, or null if an error occurs or no image is available.
+     */
+    public Bitmap getCameraBitmap(StepTimer timer) {
+        return resizeAndGetCameraBitmap(imageHeight, timer);
+    }
+
     /**
      * Resizes the captured image to the specified height (maintaining aspect ratio),
      * applies orientation correction and compression if specified, saves it, and returns its file path.
@@ -205,22 +259,37 @@ public class Camera {
      * @return The processed {@link Bitmap}, or null if an error occurs.
      */
     public Bitmap resizeAndGetCameraBitmap(int imageHeight) {
+        return resizeAndGetCameraBitmap(imageHeight, null);
+    }
+
+    /**
+     * Same as {@link #resizeAndGetCameraBitmap(int)}, reporting how long each processing step took.
+     *
+     * @param imageHeight The target height to resize the image to, maintaining aspect ratio.
+     * @param timer       Receives the step durations; may be null.
+     * @return The processed {@link Bitmap}, or null if an error occurs.
+     */
+    public Bitmap resizeAndGetCameraBitmap(int imageHeight, StepTimer timer) {
         try {
             // If a previously loaded bitmap exists, recycle it to free memory.
             if (cameraBitmap != null) {
-                cameraBitmap.recycle();
+                discard(cameraBitmap);
             }
 
-            // Decode the image file from path, scaling it down to near the required height.
-            cameraBitmap = Utils.decodeFile(new File(cameraBitmapPath), imageHeight);
+            // Decode the image file from path, scaled down to the required height, into a pooled bitmap if possible.
+            long start = System.nanoTime();
+            cameraBitmap = Utils.decodeFile(new File(cameraBitmapPath), imageHeight, bitmapPool);
+            start = step(timer, STEP_DECODE, start);
 
             if (cameraBitmap != null) {
                 // Correct image orientation if required.
                 if (isCorrectOrientationRequired) {
-                    cameraBitmap = Utils.rotateBitmap(cameraBitmap, Utils.getImageRotation(cameraBitmapPath));
+                    cameraBitmap = Utils.rotateBitmap(cameraBitmap, Utils.getImageRotation(cameraBitmapPath), bitmapPool);
+                    start = step(timer, STEP_ROTATE, start);
                 }
                 // Save the processed (resized, rotated) bitmap back to the file, applying compression.
                 Utils.saveBitmap(cameraBitmap, cameraBitmapPath, imageType, compression);
+                step(timer, STEP_SAVE, start);
             }
             return cameraBitmap;
         } catch (Exception e) {
@@ -230,6 +299,19 @@ public class Camera {
         }
     }
 
+    /**
+     * Reports a finished step to the timer, if there is one.
+     *
+     * @return The end of the step, i.e. the start of the next one.
+     */
+    private static long step(StepTimer timer, int step, long start) {
+        long end = System.nanoTime();
+        if (timer != null) {
+            timer.onStep(step, start, end);
+        }
+        return end;
+    }
+
     /**
      * Deletes the image file that was captured by the camera.
      * It's good practice to call this when the image is no longer needed to free up storage.
@@ -243,11 +325,22 @@ public class Camera {
         }
         // Optionally, also recycle and nullify cameraBitmap if it's holding the image data.
         if (cameraBitmap != null) {
-            cameraBitmap.recycle();
+            discard(cameraBitmap);
             cameraBitmap = null;
         }
     }
 
+    /**
+     * Returns a bitmap to the pool if there is one, else recycles it.
+     */
+    private void discard(Bitmap bitmap) {
+        if (bitmapPool != null) {
+            bitmapPool.release(bitmap);
+        } else {
+            bitmap.recycle();
+        }
+    }
+
     /**
      * Enum to specify the context from which the camera is being launched (Activity, Fragment, or support Fragment).
      * This helps in calling the appropriate `startActivityForResult` method.
@@ -269,6 +362,7 @@ public class Camera {
         private int imageHeight;
         private int compression;
         private boolean isCorrectOrientationRequired;
+        private BitmapPool bitmapPool;
         private MODE mode;
         private int REQUEST_TAKE_PHOTO; // Request code for starting camera intent.
 
@@ -372,6 +466,18 @@ public class Camera {
             return this;
         }
 
+        /**
+         * Sets a pool that bitmaps are taken from and given back to instead of being allocated
+         * and recycled. The bitmap returned by {@link #getCameraBitmap()} is then given back to
+         * the pool, not recycled, when the next image is processed or the image is deleted.
+         * @param bitmapPool The pool, or null to allocate and recycle bitmaps (the default).
+         * @return This Builder instance for chaining.
+         */
+        public Builder setBitmapPool(BitmapPool bitmapPool) {
+            this.bitmapPool = bitmapPool;
+            return this;
+        }
+
         /**
          * Sets the compression quality for JPEG images.
          * The value should be between 0 (lowest quality, highest compression) and 100 (highest quality, lowest compression).
@@ -1,14 +1,18 @@
 package com.dart.paracamera;
 
 import android.content.Context;
+import android.content.res.Resources;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
 import android.graphics.Matrix;
+import android.graphics.Paint;
 import android.media.ExifInterface;
+import android.os.Build;
 
 import java.io.File;
+import java.io.FileDescriptor;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 
@@ -64,38 +68,117 @@ public class Utils {
     }
 
     /**
-     * Decodes an image file into a {@link Bitmap}, scaling it down to approximately the required height
-     * while maintaining aspect ratio. This method is optimized to reduce memory usage by first
-     * checking the image dimensions and then decoding a scaled-down version.
+     * Decodes an image file into a {@link Bitmap} exactly {@code requiredHeight} pixels high,
+     * maintaining aspect ratio. Same as {@link #decodeFile(File, int, Camera.BitmapPool)}
+     * without a pool.
      *
      * @param file           The image file to decode.
-     * @param requiredHeight The target height for the decoded bitmap. The actual height may vary slightly
-     *                       due to the scaling factor being a power of 2.
+     * @param requiredHeight The height of the decoded bitmap; images that are not as high are decoded at full size.
      * @return The decoded {@link Bitmap}, or null if decoding fails or the file is not found.
      */
     public static Bitmap decodeFile(File file, int requiredHeight) {
+        return decodeFile(file, requiredHeight, null);
+    }
+
+    /**
+     * Decodes an image file into a {@link Bitmap} exactly {@code requiredHeight} pixels high,
+     * maintaining aspect ratio.
+     * <p>
+     * The file is opened once, and closed before returning: the header and the pixels are
+     * both decoded from the same descriptor, whose position the decoder leaves unchanged. The
+     * decoder first skips pixels by the largest power-of-two {@code inSampleSize} that keeps
+     * the image at least as high as required, then scales the remaining factor (less than 2)
+     * away as if converting between densities, in the same pass.
+     * <p>
+     * Decoded bitmaps are mutable, so they can be pooled. With a pool, the pixels are decoded
+     * into a bitmap of the final size taken from it ({@code inBitmap}): on Android 4.4 and
+     * later always, before that only when the image needs neither sampling nor scaling.
+     *
+     * @param file           The image file to decode.
+     * @param requiredHeight The height of the decoded bitmap; images that are not as high are decoded at full size.
+     * @param pool           Source of the bitmap to decode into; may be null.
+     * @return The decoded {@link Bitmap}, or null if decoding fails or the file is not found.
+     */
+    public static Bitmap decodeFile(File file, int requiredHeight, Camera.BitmapPool pool) {
+        FileInputStream in = null;
         try {
-            // First, decode with inJustDecodeBounds=true to check dimensions without loading the full bitmap.
+            in = new FileInputStream(file);
+            FileDescriptor fd = in.getFD();
+
+            // First, read just the dimensions from the header.
             BitmapFactory.Options o = new BitmapFactory.Options();
             o.inJustDecodeBounds = true;
-            BitmapFactory.decodeStream(new FileInputStream(file), null, o);
-
-            // Calculate the largest inSampleSize value that is a power of 2 and keeps both
-            // height and width larger than or equal to the requiredHeight.
-            // This optimizes memory usage by loading a smaller version of the image.
-            int scale = 1;
-            while (o.outWidth / scale / 2 >= requiredHeight &&
-                    o.outHeight / scale / 2 >= requiredHeight) {
-                scale *= 2;
+            BitmapFactory.decodeFileDescriptor(fd, null, o);
+            if (o.outWidth <= 0 || o.outHeight <= 0) {
+                return null;
             }
 
-            // Decode the bitmap with the calculated inSampleSize.
+            // Largest power-of-two sample size that keeps the height at or above the required one.
+            int sample = 1;
+            while (requiredHeight > 0 && o.outHeight / (sample * 2) >= requiredHeight) {
+                sample *= 2;
+            }
+            int width = (o.outWidth + sample - 1) / sample; // JPEG decoders round sampled sizes up.
+            int height = (o.outHeight + sample - 1) / sample;
+
             BitmapFactory.Options o2 = new BitmapFactory.Options();
-            o2.inSampleSize = scale;
-            return BitmapFactory.decodeStream(new FileInputStream(file), null, o2);
-        } catch (FileNotFoundException e) {
+            o2.inSampleSize = sample;
+            o2.inMutable = true; // Poolable, and drawable into, afterwards.
+            if (requiredHeight > 0 && height > requiredHeight) {
+                // Scales by inTargetDensity / inDensity after sampling, in the same decode.
+                o2.inScaled = true;
+                o2.inDensity = height;
+                o2.inTargetDensity = requiredHeight;
+                width = (int) (width * ((float) requiredHeight / height) + 0.5f); // Rounded as the decoder does.
+                height = requiredHeight;
+            }
+
+            Bitmap reuse = null;
+            if (pool != null && (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT
+                    || (sample == 1 && o2.inDensity == 0))) {
+                reuse = pool.acquire(width, height, Bitmap.Config.ARGB_8888);
+                o2.inBitmap = reuse;
+            }
+            Bitmap bitmap;
+            try {
+                bitmap = BitmapFactory.decodeFileDescriptor(fd, null, o2);
+            } catch (IllegalArgumentException e) {
+                // The pooled bitmap does not fit the decoded image after all: decode without it.
+                o2.inBitmap = null;
+                bitmap = BitmapFactory.decodeFileDescriptor(fd, null, o2);
+            }
+            if (reuse != null && bitmap != reuse) {
+                pool.release(reuse);
+            }
+            if (bitmap == null) {
+                return null;
+            }
+            // Density scaling leaves the target density on the bitmap; restore the usual one.
+            bitmap.setDensity(Resources.getSystem().getDisplayMetrics().densityDpi);
+
+            if (requiredHeight > 0 && o.outHeight >= requiredHeight && bitmap.getHeight() != requiredHeight) {
+                // A decoder that rounds sampled sizes differently: fix up the last pixel or so.
+                int scaledWidth = Math.round((float) bitmap.getWidth() * requiredHeight / bitmap.getHeight());
+                Bitmap scaled = Bitmap.createScaledBitmap(bitmap, scaledWidth, requiredHeight, true);
+                if (pool != null) {
+                    pool.release(bitmap);
+                } else {
+                    bitmap.recycle();
+                }
+                bitmap = scaled;
+            }
+            return bitmap;
+        } catch (IOException e) {
             e.printStackTrace();
             return null;
+        } finally {
+            try {
+                if (in != null) {
+                    in.close(); // Never leave the descriptor to the finalizer.
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
         }
     }
 
@@ -194,6 +277,33 @@ public class Utils {
         return src; // Return the original bitmap if no rotation is needed.
     }
 
+    /**
+     * Rotates a {@link Bitmap} by a multiple of 90 degrees into a bitmap from the pool, and gives
+     * the source back to the pool. Without a pool, same as {@link #rotateBitmap(Bitmap, int)}.
+     *
+     * @param src      The source {@link Bitmap} to rotate.
+     * @param rotation The rotation angle in degrees: 0, 90, 180 or 270, as from {@link #getImageRotation(String)}.
+     * @param pool     Source of the rotated bitmap; may be null.
+     * @return The rotated {@link Bitmap}. If rotation is 0, the original bitmap is returned.
+     */
+    public static Bitmap rotateBitmap(Bitmap src, int rotation, Camera.BitmapPool pool) {
+        if (pool == null || rotation == 0) {
+            return rotateBitmap(src, rotation);
+        }
+        boolean quarter = rotation % 180 != 0;
+        int width = quarter ? src.getHeight() : src.getWidth();
+        int height = quarter ? src.getWidth() : src.getHeight();
+        Bitmap.Config config = src.getConfig() != null ? src.getConfig() : Bitmap.Config.ARGB_8888;
+        Bitmap dst = pool.acquire(width, height, config);
+        // Rotate about the source centre, then move that centre to the centre of the destination.
+        Matrix matrix = new Matrix();
+        matrix.setRotate(rotation, src.getWidth() / 2f, src.getHeight() / 2f);
+        matrix.postTranslate((width - src.getWidth()) / 2f, (height - src.getHeight()) / 2f);
+        new Canvas(dst).drawBitmap(src, matrix, new Paint(Paint.FILTER_BITMAP_FLAG));
+        pool.release(src);
+        return dst;
+    }
+
     /**
      * Converts EXIF orientation constants to rotation angles in degrees.
      *